@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -133,6 +133,8 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 
 	private int autoGrowCollectionLimit = Integer.MAX_VALUE;
 
+	private boolean useGeneratedAccessors = CachedIntrospectionResults.shouldGenerateAccessors;
+
 
 	/**
 	 * Create new empty BeanWrapperImpl. Wrapped instance needs to be set afterwards.
@@ -198,6 +200,7 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 		setExtractOldValueForEditor(superBw.isExtractOldValueForEditor());
 		setAutoGrowNestedPaths(superBw.isAutoGrowNestedPaths());
 		setAutoGrowCollectionLimit(superBw.getAutoGrowCollectionLimit());
+		setUseGeneratedAccessors(superBw.isUseGeneratedAccessors());
 		setConversionService(superBw.getConversionService());
 		setSecurityContext(superBw.acc);
 	}
@@ -290,6 +293,29 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 		return this.autoGrowCollectionLimit;
 	}
 
+	/**
+	 * Set whether to read and write properties through a generated accessor class
+	 * per bean class, with direct invocations of public read and write methods,
+	 * instead of reflection. Properties not accessible from a generated class
+	 * are still accessed reflectively, as are all properties while a
+	 * SecurityManager is active.
+	 * <p>Default is "false", unless the "spring.beans.accessors.generate"
+	 * system property has been set to "true".
+	 * @since 4.1.10
+	 * @see CachedIntrospectionResults#GENERATE_ACCESSORS_PROPERTY_NAME
+	 */
+	public void setUseGeneratedAccessors(boolean useGeneratedAccessors) {
+		this.useGeneratedAccessors = useGeneratedAccessors;
+	}
+
+	/**
+	 * Return whether properties are accessed through generated accessor classes.
+	 * @since 4.1.10
+	 */
+	public boolean isUseGeneratedAccessors() {
+		return this.useGeneratedAccessors;
+	}
+
 	/**
 	 * Set the security context used during the invocation of the wrapped instance methods.
 	 * Can be null.
@@ -493,17 +519,12 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 	 * @throws TypeMismatchException if type conversion failed
 	 */
 	public Object convertForProperty(Object value, String propertyName) throws TypeMismatchException {
-		CachedIntrospectionResults cachedIntrospectionResults = getCachedIntrospectionResults();
-		PropertyDescriptor pd = cachedIntrospectionResults.getPropertyDescriptor(propertyName);
+		PropertyDescriptor pd = getCachedIntrospectionResults().getPropertyDescriptor(propertyName);
 		if (pd == null) {
 			throw new InvalidPropertyException(getRootClass(), this.nestedPath + propertyName,
 					"No property '" + propertyName + "' found");
 		}
-		TypeDescriptor td = cachedIntrospectionResults.getTypeDescriptor(pd);
-		if (td == null) {
-			td = cachedIntrospectionResults.addTypeDescriptor(pd, new TypeDescriptor(property(pd)));
-		}
-		return convertForProperty(propertyName, null, value, td);
+		return convertForProperty(propertyName, null, value, getTypeDescriptor(pd));
 	}
 
 	private Object convertForProperty(String propertyName, Object oldValue, Object newValue, TypeDescriptor td)
@@ -512,6 +533,26 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 		return convertIfNecessary(propertyName, oldValue, newValue, td.getType(), td);
 	}
 
+	private TypeDescriptor getTypeDescriptor(PropertyDescriptor pd) {
+		CachedIntrospectionResults cachedIntrospectionResults = getCachedIntrospectionResults();
+		TypeDescriptor td = cachedIntrospectionResults.getTypeDescriptor(pd);
+		if (td == null) {
+			td = cachedIntrospectionResults.addTypeDescriptor(pd, new TypeDescriptor(property(pd)));
+		}
+		return td;
+	}
+
+	/**
+	 * Return the generated accessor for the given property, if generated
+	 * accessors are to be used and the property is accessible through one.
+	 */
+	private PropertyAccessorGenerator.GeneratedProperty getGeneratedProperty(PropertyDescriptor pd) {
+		if (!this.useGeneratedAccessors || System.getSecurityManager() != null) {
+			return null;
+		}
+		return getCachedIntrospectionResults().getGeneratedProperty(pd);
+	}
+
 	private Property property(PropertyDescriptor pd) {
 		GenericTypeAwarePropertyDescriptor typeAware = (GenericTypeAwarePropertyDescriptor) pd;
 		return new Property(typeAware.getBeanClass(), typeAware.getReadMethod(), typeAware.getWriteMethod(), typeAware.getName());
@@ -731,6 +772,7 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 			throw new NotReadablePropertyException(getRootClass(), this.nestedPath + propertyName);
 		}
 		final Method readMethod = pd.getReadMethod();
+		PropertyAccessorGenerator.GeneratedProperty generatedProperty = getGeneratedProperty(pd);
 		try {
 			if (!Modifier.isPublic(readMethod.getDeclaringClass().getModifiers()) && !readMethod.isAccessible()) {
 				if (System.getSecurityManager() != null) {
@@ -748,7 +790,10 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 			}
 
 			Object value;
-			if (System.getSecurityManager() != null) {
+			if (generatedProperty != null && generatedProperty.isReadable()) {
+				value = generatedProperty.getValue(this.object);
+			}
+			else if (System.getSecurityManager() != null) {
 				try {
 					value = AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
 						@Override
@@ -1078,6 +1123,7 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 				}
 				pv.getOriginalPropertyValue().resolvedDescriptor = pd;
 			}
+			PropertyAccessorGenerator.GeneratedProperty generatedProperty = getGeneratedProperty(pd);
 
 			Object oldValue = null;
 			try {
@@ -1106,7 +1152,10 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 								}
 							}
 							try {
-								if (System.getSecurityManager() != null) {
+								if (generatedProperty != null && generatedProperty.isReadable()) {
+									oldValue = generatedProperty.getValue(this.object);
+								}
+								else if (System.getSecurityManager() != null) {
 									oldValue = AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
 										@Override
 										public Object run() throws Exception {
@@ -1128,8 +1177,7 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 								}
 							}
 						}
-						valueToApply = convertForProperty(
-								propertyName, oldValue, originalValue, new TypeDescriptor(property(pd)));
+						valueToApply = convertForProperty(propertyName, oldValue, originalValue, getTypeDescriptor(pd));
 					}
 					pv.getOriginalPropertyValue().conversionNecessary = (valueToApply != originalValue);
 				}
@@ -1151,7 +1199,10 @@ public class BeanWrapperImpl extends AbstractPropertyAccessor implements BeanWra
 					}
 				}
 				final Object value = valueToApply;
-				if (System.getSecurityManager() != null) {
+				if (generatedProperty != null && generatedProperty.isWritable()) {
+					generatedProperty.setValue(this.object, value);
+				}
+				else if (System.getSecurityManager() != null) {
 					try {
 						AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
 							@Override
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -92,10 +92,28 @@ public class CachedIntrospectionResults {
 	 */
 	public static final String IGNORE_BEANINFO_PROPERTY_NAME = "spring.beaninfo.ignore";
 
+	/**
+	 * System property that instructs Spring to read and write bean properties through
+	 * generated accessor classes rather than reflection: "spring.beans.accessors.generate",
+	 * with a value of "true" generating one accessor class per bean class with direct
+	 * invocations of its public read and write methods, as well as one per class with
+	 * public fields accessed through a {@link DirectFieldAccessor}.
+	 * <p>The default is "false", using reflection for all property access. Consider
+	 * switching this flag to "true" for applications that bind or read properties of the
+	 * same classes at a high rate, e.g. through data binding or JDBC row mapping.
+	 * Individual accessors may also be configured via
+	 * {@link BeanWrapperImpl#setUseGeneratedAccessors} and
+	 * {@link DirectFieldAccessor#setUseGeneratedAccessors}.
+	 * @since 4.1.10
+	 */
+	public static final String GENERATE_ACCESSORS_PROPERTY_NAME = "spring.beans.accessors.generate";
+
 
 	private static final boolean shouldIntrospectorIgnoreBeaninfoClasses =
 			SpringProperties.getFlag(IGNORE_BEANINFO_PROPERTY_NAME);
 
+	static final boolean shouldGenerateAccessors = SpringProperties.getFlag(GENERATE_ACCESSORS_PROPERTY_NAME);
+
 	/** Stores the BeanInfoFactory instances */
 	private static List<BeanInfoFactory> beanInfoFactories = SpringFactoriesLoader.loadFactories(
 			BeanInfoFactory.class, CachedIntrospectionResults.class.getClassLoader());
@@ -253,6 +271,9 @@ public class CachedIntrospectionResults {
 	/** TypeDescriptor objects keyed by PropertyDescriptor */
 	private final ConcurrentMap<PropertyDescriptor, TypeDescriptor> typeDescriptorCache;
 
+	/** Properties accessible through a generated accessor, keyed by property name; created lazily */
+	private volatile Map<String, PropertyAccessorGenerator.GeneratedProperty> generatedProperties;
+
 
 	/**
 	 * Create a new CachedIntrospectionResults instance for the given class.
@@ -361,4 +382,21 @@ public class CachedIntrospectionResults {
 		return this.typeDescriptorCache.get(pd);
 	}
 
+	/**
+	 * Return the given property's access through a generated accessor,
+	 * generating the accessor for the bean class on first access.
+	 * @param pd a property descriptor obtained from this instance
+	 * @return the generated property, or {@code null} if the property is not
+	 * accessible through a generated accessor
+	 */
+	PropertyAccessorGenerator.GeneratedProperty getGeneratedProperty(PropertyDescriptor pd) {
+		Map<String, PropertyAccessorGenerator.GeneratedProperty> generated = this.generatedProperties;
+		if (generated == null) {
+			generated = PropertyAccessorGenerator.forProperties(getBeanClass(), getPropertyDescriptors());
+			this.generatedProperties = generated;
+		}
+		PropertyAccessorGenerator.GeneratedProperty generatedProperty = generated.get(pd.getName());
+		return (generatedProperty != null && generatedProperty.getDescriptor() == pd ? generatedProperty : null);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.beans;
 
 import java.beans.PropertyChangeEvent;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -53,6 +54,8 @@ public class DirectFieldAccessor extends AbstractPropertyAccessor {
 
 	private final Map<String, FieldAccessor> fieldMap = new HashMap<String, FieldAccessor>();
 
+	private boolean useGeneratedAccessors = CachedIntrospectionResults.shouldGenerateAccessors;
+
 
 	/**
 	 * Create a new DirectFieldAccessor for the given root object.
@@ -66,6 +69,29 @@ public class DirectFieldAccessor extends AbstractPropertyAccessor {
 		setExtractOldValueForEditor(true);
 	}
 
+	/**
+	 * Set whether to read and write fields through a generated accessor class
+	 * per declaring class instead of reflection. Only public fields of public
+	 * classes can be accessed through a generated accessor, others are still
+	 * accessed reflectively, as are all fields while a SecurityManager is active.
+	 * <p>Default is "false", unless the "spring.beans.accessors.generate"
+	 * system property has been set to "true".
+	 * @since 4.1.10
+	 * @see CachedIntrospectionResults#GENERATE_ACCESSORS_PROPERTY_NAME
+	 */
+	public void setUseGeneratedAccessors(boolean useGeneratedAccessors) {
+		this.useGeneratedAccessors = useGeneratedAccessors;
+		this.fieldMap.clear();
+	}
+
+	/**
+	 * Return whether fields are accessed through generated accessor classes.
+	 * @since 4.1.10
+	 */
+	public boolean isUseGeneratedAccessors() {
+		return this.useGeneratedAccessors;
+	}
+
 	/**
 	 * Return the root object at the top of the path of this instance.
 	 */
@@ -210,6 +236,8 @@ public class DirectFieldAccessor extends AbstractPropertyAccessor {
 
 		private final Field field;
 
+		private final PropertyAccessorGenerator.GeneratedProperty generatedField;
+
 		/**
 		 * Create a new FieldAccessor instance.
 		 * @param parent the parent accessor, if any
@@ -224,6 +252,8 @@ public class DirectFieldAccessor extends AbstractPropertyAccessor {
 			this.canonicalName = canonicalName;
 			this.actualName = actualName;
 			this.field = field;
+			this.generatedField = (useGeneratedAccessors && System.getSecurityManager() == null ?
+					PropertyAccessorGenerator.forField(field) : null);
 		}
 
 		/**
@@ -247,6 +277,23 @@ public class DirectFieldAccessor extends AbstractPropertyAccessor {
 
 		public void setValue(Object value) {
 			Object localTarget = getLocalTarget(getRootInstance());
+			if (this.generatedField != null && this.generatedField.isWritable()) {
+				try {
+					this.generatedField.setValue(localTarget, value);
+					return;
+				}
+				catch (ClassCastException ex) {
+					// Same as Field.set for a value of an incompatible type
+					throw new IllegalArgumentException(ex.getMessage(), ex);
+				}
+				catch (NullPointerException ex) {
+					// Same as Field.set for a null value for a primitive field
+					throw new IllegalArgumentException(ex.getMessage(), ex);
+				}
+				catch (InvocationTargetException ex) {
+					throw new IllegalStateException("Unexpected exception from field access", ex.getTargetException());
+				}
+			}
 			try {
 				this.field.set(localTarget, value);
 			}
@@ -256,6 +303,14 @@ public class DirectFieldAccessor extends AbstractPropertyAccessor {
 		}
 
 		private Object getParentValue(Object target) {
+			if (this.generatedField != null) {
+				try {
+					return this.generatedField.getValue(target);
+				}
+				catch (InvocationTargetException ex) {
+					throw new IllegalStateException("Unexpected exception from field access", ex.getTargetException());
+				}
+			}
 			try {
 				ReflectionUtils.makeAccessible(this.field);
 				return this.field.get(target);
@@ -0,0 +1,531 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Internal helper that generates accessor classes for reading and writing the
+ * bean properties or fields of a given class through direct method invocations
+ * and field instructions instead of reflection. A generated accessor dispatches
+ * on the index of the property or field with a {@code tableswitch}, so a single
+ * class covers all properties or fields of the target class.
+ *
+ * <p>Generated classes are defined in a child of the target class's ClassLoader,
+ * so only public methods and fields declared in public classes can be accessed,
+ * and written values may only be cast to public types. Other properties and
+ * fields are not included in the generated accessor and remain subject to
+ * reflective access, as are all properties when a SecurityManager is active.
+ *
+ * <p>Exceptions thrown by invoked read and write methods are wrapped in an
+ * {@link InvocationTargetException}, as with {@link Method#invoke}.
+ *
+ * @since 4.1.10
+ * @see CachedIntrospectionResults#GENERATE_ACCESSORS_PROPERTY_NAME
+ */
+final class PropertyAccessorGenerator implements Opcodes {
+
+	private static final String GENERATED_CLASS_PREFIX = "org/springframework/beans/generated/";
+
+	private static final String ACCESSOR_INTERNAL_NAME = Type.getInternalName(Accessor.class);
+
+	private static final String GET_VALUE_DESCRIPTOR = "(Ljava/lang/Object;I)Ljava/lang/Object;";
+
+	private static final String SET_VALUE_DESCRIPTOR = "(Ljava/lang/Object;ILjava/lang/Object;)V";
+
+	private static final Log logger = LogFactory.getLog(PropertyAccessorGenerator.class);
+
+	/** Child ClassLoaders for generated classes, keyed by the target classes' ClassLoader */
+	private static final Map<ClassLoader, AccessorClassLoader> classLoaders =
+			new ConcurrentReferenceHashMap<ClassLoader, AccessorClassLoader>(16);
+
+	/** Generated field accessors keyed by declaring class, then by field name */
+	private static final Map<Class<?>, Map<String, GeneratedProperty>> fieldCache =
+			new ConcurrentReferenceHashMap<Class<?>, Map<String, GeneratedProperty>>(64);
+
+	/** Counter suffix for generated class names */
+	private static final AtomicInteger suffixId = new AtomicInteger();
+
+
+	private PropertyAccessorGenerator() {
+	}
+
+
+	/**
+	 * Generate an accessor for the given properties of the given bean class.
+	 * @param beanClass the bean class
+	 * @param pds the property descriptors of the bean class
+	 * @return the generated properties keyed by property name
+	 * (empty if none of the properties can be accessed by a generated accessor)
+	 */
+	static Map<String, GeneratedProperty> forProperties(Class<?> beanClass, PropertyDescriptor[] pds) {
+		ClassLoader classLoader = getClassLoader(beanClass);
+		if (classLoader == null) {
+			return Collections.emptyMap();
+		}
+		List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>(pds.length);
+		List<Member> readMembers = new ArrayList<Member>(pds.length);
+		List<Member> writeMembers = new ArrayList<Member>(pds.length);
+		for (PropertyDescriptor pd : pds) {
+			Method readMethod = pd.getReadMethod();
+			Method writeMethod = (pd instanceof GenericTypeAwarePropertyDescriptor ?
+					((GenericTypeAwarePropertyDescriptor) pd).getWriteMethodForActualAccess() : pd.getWriteMethod());
+			if (readMethod != null && (readMethod.getParameterTypes().length != 0 ||
+					!isAccessible(readMethod, null, classLoader))) {
+				readMethod = null;
+			}
+			if (writeMethod != null && (writeMethod.getParameterTypes().length != 1 ||
+					!isAccessible(writeMethod, writeMethod.getParameterTypes()[0], classLoader))) {
+				writeMethod = null;
+			}
+			if (readMethod != null || writeMethod != null) {
+				descriptors.add(pd);
+				readMembers.add(readMethod);
+				writeMembers.add(writeMethod);
+			}
+		}
+		Accessor accessor = generate(beanClass, classLoader, readMembers, writeMembers);
+		if (accessor == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, GeneratedProperty> result = new HashMap<String, GeneratedProperty>(descriptors.size() * 2);
+		for (int i = 0; i < descriptors.size(); i++) {
+			PropertyDescriptor pd = descriptors.get(i);
+			result.put(pd.getName(), new GeneratedProperty(
+					accessor, i, pd, readMembers.get(i) != null, writeMembers.get(i) != null));
+		}
+		return result;
+	}
+
+	/**
+	 * Return a generated accessor for the given field, generating an accessor
+	 * for all fields of its declaring class if necessary.
+	 * @param field the field to access
+	 * @return the generated field accessor, or {@code null} if the field cannot
+	 * be accessed by a generated accessor
+	 */
+	static GeneratedProperty forField(Field field) {
+		Class<?> declaringClass = field.getDeclaringClass();
+		Map<String, GeneratedProperty> fields = fieldCache.get(declaringClass);
+		if (fields == null) {
+			fields = generateForFields(declaringClass);
+			fieldCache.put(declaringClass, fields);
+		}
+		return fields.get(field.getName());
+	}
+
+	private static Map<String, GeneratedProperty> generateForFields(Class<?> declaringClass) {
+		ClassLoader classLoader = getClassLoader(declaringClass);
+		if (classLoader == null) {
+			return Collections.emptyMap();
+		}
+		List<Field> fields = new ArrayList<Field>();
+		List<Member> readMembers = new ArrayList<Member>();
+		List<Member> writeMembers = new ArrayList<Member>();
+		for (Field field : declaringClass.getDeclaredFields()) {
+			if (isAccessible(field, null, classLoader)) {
+				fields.add(field);
+				readMembers.add(field);
+				writeMembers.add(!Modifier.isFinal(field.getModifiers()) &&
+						isAccessible(field, field.getType(), classLoader) ? field : null);
+			}
+		}
+		Accessor accessor = generate(declaringClass, classLoader, readMembers, writeMembers);
+		if (accessor == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, GeneratedProperty> result = new HashMap<String, GeneratedProperty>(fields.size() * 2);
+		for (int i = 0; i < fields.size(); i++) {
+			result.put(fields.get(i).getName(),
+					new GeneratedProperty(accessor, i, null, true, writeMembers.get(i) != null));
+		}
+		return result;
+	}
+
+	/**
+	 * Determine the ClassLoader to define accessors for the given class with,
+	 * or {@code null} if generated accessors would not be able to implement
+	 * the {@link Accessor} interface.
+	 */
+	private static ClassLoader getClassLoader(Class<?> targetClass) {
+		ClassLoader classLoader = targetClass.getClassLoader();
+		if (classLoader == null) {
+			classLoader = PropertyAccessorGenerator.class.getClassLoader();
+		}
+		return (ClassUtils.isVisible(Accessor.class, classLoader) ? classLoader : null);
+	}
+
+	/**
+	 * Check whether the given method or field can be accessed from a class defined
+	 * in a child of the given ClassLoader.
+	 * @param member the method or field
+	 * @param castType the type that a written value needs to be cast to, if any
+	 * @param classLoader the ClassLoader of the target class
+	 */
+	private static boolean isAccessible(Member member, Class<?> castType, ClassLoader classLoader) {
+		Class<?> declaringClass = member.getDeclaringClass();
+		if (!Modifier.isPublic(member.getModifiers()) || Modifier.isStatic(member.getModifiers()) ||
+				!Modifier.isPublic(declaringClass.getModifiers()) ||
+				!ClassUtils.isVisible(declaringClass, classLoader)) {
+			return false;
+		}
+		if (castType != null) {
+			while (castType.isArray()) {
+				castType = castType.getComponentType();
+			}
+			if (!castType.isPrimitive() && (!Modifier.isPublic(castType.getModifiers()) ||
+					!ClassUtils.isVisible(castType, classLoader))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Generate and instantiate an accessor class for the given methods or fields,
+	 * at the index of each in the given lists.
+	 * @param targetClass the class to generate the accessor for
+	 * @param classLoader the ClassLoader of the target class
+	 * @param readMembers the read methods or fields, with {@code null} elements
+	 * for indexes that can't be read through the accessor
+	 * @param writeMembers the write methods or fields, with {@code null} elements
+	 * for indexes that can't be written through the accessor
+	 * @return the accessor, or {@code null} if generation failed
+	 */
+	private static Accessor generate(Class<?> targetClass, ClassLoader classLoader,
+			List<Member> readMembers, List<Member> writeMembers) {
+
+		if (readMembers.isEmpty()) {
+			return null;
+		}
+		String className = GENERATED_CLASS_PREFIX + ClassUtils.getShortName(targetClass).replace('.', '$') +
+				"$$Accessor" + suffixId.incrementAndGet();
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object",
+				new String[] {ACCESSOR_INTERNAL_NAME});
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		generateGetValue(cw, readMembers);
+		generateSetValue(cw, writeMembers);
+		cw.visitEnd();
+
+		try {
+			Class<?> accessorClass = getAccessorClassLoader(classLoader)
+					.defineAccessorClass(className.replace('/', '.'), cw.toByteArray());
+			return (Accessor) accessorClass.newInstance();
+		}
+		catch (Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to generate property accessor for class [" + targetClass.getName() + "]", ex);
+			}
+			return null;
+		}
+	}
+
+	private static void generateGetValue(ClassWriter cw, List<Member> readMembers) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getValue", GET_VALUE_DESCRIPTOR, null,
+				new String[] {"java/lang/reflect/InvocationTargetException"});
+		Label[] cases = new Label[readMembers.size()];
+		Label noSuchIndex = new Label();
+		Label handler = new Label();
+		Label[] invocationStarts = new Label[readMembers.size()];
+		Label[] invocationEnds = new Label[readMembers.size()];
+		boolean invocations = false;
+		mv.visitCode();
+		for (int i = 0; i < cases.length; i++) {
+			if (readMembers.get(i) != null) {
+				cases[i] = new Label();
+				if (readMembers.get(i) instanceof Method) {
+					invocationStarts[i] = new Label();
+					invocationEnds[i] = new Label();
+					mv.visitTryCatchBlock(invocationStarts[i], invocationEnds[i], handler, "java/lang/Throwable");
+					invocations = true;
+				}
+			}
+			else {
+				cases[i] = noSuchIndex;
+			}
+		}
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitTableSwitchInsn(0, cases.length - 1, noSuchIndex, cases);
+		for (int i = 0; i < cases.length; i++) {
+			Member member = readMembers.get(i);
+			if (member == null) {
+				continue;
+			}
+			String owner = Type.getInternalName(member.getDeclaringClass());
+			mv.visitLabel(cases[i]);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, owner);
+			Class<?> valueType;
+			if (member instanceof Method) {
+				Method method = (Method) member;
+				mv.visitLabel(invocationStarts[i]);
+				visitInvoke(mv, method);
+				mv.visitLabel(invocationEnds[i]);
+				valueType = method.getReturnType();
+			}
+			else {
+				Field field = (Field) member;
+				mv.visitFieldInsn(GETFIELD, owner, field.getName(), Type.getDescriptor(field.getType()));
+				valueType = field.getType();
+			}
+			visitBoxIfNecessary(mv, valueType);
+			mv.visitInsn(ARETURN);
+		}
+		visitNoSuchIndex(mv, noSuchIndex);
+		if (invocations) {
+			visitInvocationTargetHandler(mv, handler, 3);
+		}
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void generateSetValue(ClassWriter cw, List<Member> writeMembers) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "setValue", SET_VALUE_DESCRIPTOR, null,
+				new String[] {"java/lang/reflect/InvocationTargetException"});
+		Label[] cases = new Label[writeMembers.size()];
+		Label noSuchIndex = new Label();
+		Label handler = new Label();
+		Label[] invocationStarts = new Label[writeMembers.size()];
+		Label[] invocationEnds = new Label[writeMembers.size()];
+		boolean invocations = false;
+		mv.visitCode();
+		for (int i = 0; i < cases.length; i++) {
+			if (writeMembers.get(i) != null) {
+				cases[i] = new Label();
+				if (writeMembers.get(i) instanceof Method) {
+					invocationStarts[i] = new Label();
+					invocationEnds[i] = new Label();
+					mv.visitTryCatchBlock(invocationStarts[i], invocationEnds[i], handler, "java/lang/Throwable");
+					invocations = true;
+				}
+			}
+			else {
+				cases[i] = noSuchIndex;
+			}
+		}
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitTableSwitchInsn(0, cases.length - 1, noSuchIndex, cases);
+		for (int i = 0; i < cases.length; i++) {
+			Member member = writeMembers.get(i);
+			if (member == null) {
+				continue;
+			}
+			String owner = Type.getInternalName(member.getDeclaringClass());
+			mv.visitLabel(cases[i]);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitTypeInsn(CHECKCAST, owner);
+			mv.visitVarInsn(ALOAD, 3);
+			if (member instanceof Method) {
+				Method method = (Method) member;
+				visitCastOrUnbox(mv, method.getParameterTypes()[0]);
+				mv.visitLabel(invocationStarts[i]);
+				visitInvoke(mv, method);
+				mv.visitLabel(invocationEnds[i]);
+				Class<?> returnType = method.getReturnType();
+				if (returnType != void.class) {
+					mv.visitInsn(returnType == long.class || returnType == double.class ? POP2 : POP);
+				}
+			}
+			else {
+				Field field = (Field) member;
+				visitCastOrUnbox(mv, field.getType());
+				mv.visitFieldInsn(PUTFIELD, owner, field.getName(), Type.getDescriptor(field.getType()));
+			}
+			mv.visitInsn(RETURN);
+		}
+		visitNoSuchIndex(mv, noSuchIndex);
+		if (invocations) {
+			visitInvocationTargetHandler(mv, handler, 4);
+		}
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void visitInvoke(MethodVisitor mv, Method method) {
+		Class<?> declaringClass = method.getDeclaringClass();
+		mv.visitMethodInsn((declaringClass.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL),
+				Type.getInternalName(declaringClass), method.getName(), Type.getMethodDescriptor(method),
+				declaringClass.isInterface());
+	}
+
+	private static void visitNoSuchIndex(MethodVisitor mv, Label label) {
+		mv.visitLabel(label);
+		mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn("No generated accessor for index");
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException",
+				"<init>", "(Ljava/lang/String;)V", false);
+		mv.visitInsn(ATHROW);
+	}
+
+	private static void visitInvocationTargetHandler(MethodVisitor mv, Label handler, int local) {
+		mv.visitLabel(handler);
+		mv.visitVarInsn(ASTORE, local);
+		mv.visitTypeInsn(NEW, "java/lang/reflect/InvocationTargetException");
+		mv.visitInsn(DUP);
+		mv.visitVarInsn(ALOAD, local);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/reflect/InvocationTargetException",
+				"<init>", "(Ljava/lang/Throwable;)V", false);
+		mv.visitInsn(ATHROW);
+	}
+
+	private static void visitBoxIfNecessary(MethodVisitor mv, Class<?> type) {
+		if (type.isPrimitive()) {
+			if (type == void.class) {
+				mv.visitInsn(ACONST_NULL);
+			}
+			else {
+				Class<?> wrapperType = ClassUtils.resolvePrimitiveIfNecessary(type);
+				mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapperType), "valueOf",
+						"(" + Type.getDescriptor(type) + ")" + Type.getDescriptor(wrapperType), false);
+			}
+		}
+	}
+
+	private static void visitCastOrUnbox(MethodVisitor mv, Class<?> type) {
+		if (type.isPrimitive()) {
+			String wrapperName = Type.getInternalName(ClassUtils.resolvePrimitiveIfNecessary(type));
+			mv.visitTypeInsn(CHECKCAST, wrapperName);
+			mv.visitMethodInsn(INVOKEVIRTUAL, wrapperName, type.getName() + "Value",
+					"()" + Type.getDescriptor(type), false);
+		}
+		else if (type != Object.class) {
+			mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+		}
+	}
+
+	private static AccessorClassLoader getAccessorClassLoader(ClassLoader classLoader) {
+		synchronized (classLoaders) {
+			AccessorClassLoader accessorClassLoader = classLoaders.get(classLoader);
+			if (accessorClassLoader == null) {
+				accessorClassLoader = new AccessorClassLoader(classLoader);
+				classLoaders.put(classLoader, accessorClassLoader);
+			}
+			return accessorClassLoader;
+		}
+	}
+
+
+	/**
+	 * Interface implemented by generated accessor classes. Needs to be public
+	 * for classes in other ClassLoaders to implement it.
+	 */
+	public interface Accessor {
+
+		Object getValue(Object target, int index) throws InvocationTargetException;
+
+		void setValue(Object target, int index, Object value) throws InvocationTargetException;
+	}
+
+
+	/**
+	 * A property or field that can be read and/or written through a generated accessor.
+	 */
+	static final class GeneratedProperty {
+
+		private final Accessor accessor;
+
+		private final int index;
+
+		private final PropertyDescriptor descriptor;
+
+		private final boolean readable;
+
+		private final boolean writable;
+
+		GeneratedProperty(Accessor accessor, int index, PropertyDescriptor descriptor,
+				boolean readable, boolean writable) {
+
+			this.accessor = accessor;
+			this.index = index;
+			this.descriptor = descriptor;
+			this.readable = readable;
+			this.writable = writable;
+		}
+
+		/**
+		 * Return the descriptor of the bean property, or {@code null} for a field.
+		 */
+		public PropertyDescriptor getDescriptor() {
+			return this.descriptor;
+		}
+
+		public boolean isReadable() {
+			return this.readable;
+		}
+
+		public boolean isWritable() {
+			return this.writable;
+		}
+
+		public Object getValue(Object target) throws InvocationTargetException {
+			return this.accessor.getValue(target, this.index);
+		}
+
+		public void setValue(Object target, Object value) throws InvocationTargetException {
+			this.accessor.setValue(target, this.index, value);
+		}
+	}
+
+
+	/**
+	 * ClassLoader that defines generated accessor classes as a child of
+	 * the target classes' ClassLoader.
+	 */
+	private static class AccessorClassLoader extends ClassLoader {
+
+		public AccessorClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		public Class<?> defineAccessorClass(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -132,6 +132,9 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 	 */
 	private boolean allowRawInjectionDespiteWrapping = false;
 
+	/** Whether to freeze instantiation plans after the first creation of a bean */
+	private boolean cacheInstantiationPlans = false;
+
 	/**
 	 * Dependency types to ignore on dependency check and autowire, as Set of
 	 * Class objects: for example, String. Default is none.
@@ -241,6 +244,35 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 		this.allowRawInjectionDespiteWrapping = allowRawInjectionDespiteWrapping;
 	}
 
+	/**
+	 * Set whether to freeze an instantiation plan for each bean definition after
+	 * the first creation of a corresponding bean instance, letting subsequent
+	 * instances skip re-resolution. This is mainly useful for prototype and
+	 * scoped beans that are created at a high rate.
+	 * <p>A plan shortcuts autowired constructor and factory method arguments that
+	 * resolved to a single matching bean directly to a reference to that bean,
+	 * reuses the resolved custom init method, and populates bean properties of
+	 * non-singleton beans through generated accessors where possible.
+	 * <p>Default is "false". Plans are kept with the merged bean definition and
+	 * therefore discarded along with it, e.g. when the bean definition is overridden.
+	 * Note that beans registered after a plan has been frozen will not be considered
+	 * for autowired arguments that the plan already resolved.
+	 * @since 4.1.10
+	 * @see org.springframework.beans.BeanWrapperImpl#setUseGeneratedAccessors
+	 */
+	public void setCacheInstantiationPlans(boolean cacheInstantiationPlans) {
+		this.cacheInstantiationPlans = cacheInstantiationPlans;
+	}
+
+	/**
+	 * Return whether to freeze an instantiation plan for each bean definition
+	 * after the first creation of a corresponding bean instance.
+	 * @since 4.1.10
+	 */
+	public boolean isCacheInstantiationPlans() {
+		return this.cacheInstantiationPlans;
+	}
+
 	/**
 	 * Ignore the given dependency type for autowiring:
 	 * for example, String. Default is none.
@@ -271,6 +303,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 					(AbstractAutowireCapableBeanFactory) otherFactory;
 			this.instantiationStrategy = otherAutowireFactory.instantiationStrategy;
 			this.allowCircularReferences = otherAutowireFactory.allowCircularReferences;
+			this.cacheInstantiationPlans = otherAutowireFactory.cacheInstantiationPlans;
 			this.ignoredDependencyTypes.addAll(otherAutowireFactory.ignoredDependencyTypes);
 			this.ignoredDependencyInterfaces.addAll(otherAutowireFactory.ignoredDependencyInterfaces);
 		}
@@ -503,6 +536,12 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 		if (instanceWrapper == null) {
 			instanceWrapper = createBeanInstance(beanName, mbd, args);
 		}
+		if (mbd.isSingleton()) {
+			singletonInstantiated(beanName);
+		}
+		if (this.cacheInstantiationPlans && !mbd.isSingleton() && instanceWrapper instanceof BeanWrapperImpl) {
+			((BeanWrapperImpl) instanceWrapper).setUseGeneratedAccessors(true);
+		}
 		final Object bean = (instanceWrapper != null ? instanceWrapper.getWrappedInstance() : null);
 		Class<?> beanType = (instanceWrapper != null ? instanceWrapper.getWrappedClass() : null);
 
@@ -849,6 +888,10 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 					(mbd.getFactoryBeanName() != null && isSingletonCurrentlyInCreation(mbd.getFactoryBeanName()))) {
 				return null;
 			}
+			if (isConcurrentSingletonCreation()) {
+				// Partial creation would race with regular creation of the same bean on another thread
+				return null;
+			}
 			Object instance = null;
 			try {
 				// Mark this bean as currently in creation, even if just partially.
@@ -1650,9 +1693,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 	 */
 	protected void invokeCustomInitMethod(String beanName, final Object bean, RootBeanDefinition mbd) throws Throwable {
 		String initMethodName = mbd.getInitMethodName();
-		final Method initMethod = (mbd.isNonPublicAccessAllowed() ?
-				BeanUtils.findMethod(bean.getClass(), initMethodName) :
-				ClassUtils.getMethodIfAvailable(bean.getClass(), initMethodName));
+		final Method initMethod = resolveCustomInitMethod(bean, mbd);
 		if (initMethod == null) {
 			if (mbd.isEnforceInitMethod()) {
 				throw new BeanDefinitionValidationException("Couldn't find an init method named '" +
@@ -1706,6 +1747,27 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 	}
 
 
+	/**
+	 * Resolve the custom init method for the given bean, reusing the method
+	 * resolved for a previous instance if instantiation plans are cached.
+	 * <p>Only public methods are cached, since those are guaranteed to be
+	 * dispatched to the same implementation for any subclass instance.
+	 */
+	private Method resolveCustomInitMethod(Object bean, RootBeanDefinition mbd) {
+		Method initMethod = (this.cacheInstantiationPlans ? mbd.resolvedInitMethod : null);
+		if (initMethod != null && initMethod.getDeclaringClass().isInstance(bean)) {
+			return initMethod;
+		}
+		String initMethodName = mbd.getInitMethodName();
+		initMethod = (mbd.isNonPublicAccessAllowed() ?
+				BeanUtils.findMethod(bean.getClass(), initMethodName) :
+				ClassUtils.getMethodIfAvailable(bean.getClass(), initMethodName));
+		if (this.cacheInstantiationPlans && initMethod != null && Modifier.isPublic(initMethod.getModifiers())) {
+			mbd.resolvedInitMethod = initMethod;
+		}
+		return initMethod;
+	}
+
 	/**
 	 * Applies the {@code postProcessAfterInitialization} callback of all
 	 * registered BeanPostProcessors, giving them a chance to post-process the
@@ -0,0 +1,711 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.BeanMetadataAttributeAccessor;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.RuntimeBeanNameReference;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Utility methods for writing the bean definitions of a registry to a compact
+ * binary snapshot and for registering the bean definitions of such a snapshot
+ * with another registry, e.g. in order to skip parsing of XML bean definition
+ * files on a subsequent startup.
+ *
+ * <p>Each snapshot carries a fingerprint supplied by the caller, typically
+ * derived from the classpath and the configuration resources that the bean
+ * definitions have been loaded from. A snapshot is only applied if its
+ * fingerprint matches the expected one.
+ *
+ * <p>Snapshots cover {@link RootBeanDefinition}, {@link ChildBeanDefinition} and
+ * {@link GenericBeanDefinition} (including subclasses thereof, which are restored
+ * as plain {@code GenericBeanDefinitions}), with property and constructor argument
+ * values consisting of the standard bean metadata elements: {@link TypedStringValue},
+ * bean references, inner bean definitions and managed collections. Bean classes
+ * are recorded by name. Source objects are not retained, with resources retained
+ * as descriptions only. A {@link NotSerializableException} is thrown when
+ * attempting to write a registry with any other content.
+ *
+ * @since 4.1.10
+ * @see #writeSnapshot
+ * @see #readSnapshot
+ */
+public abstract class BeanDefinitionSnapshotUtils {
+
+	private static final int MAGIC = 0x53424453;
+
+	private static final int VERSION = 1;
+
+	private static final byte ROOT_BEAN_DEFINITION = 1;
+
+	private static final byte CHILD_BEAN_DEFINITION = 2;
+
+	private static final byte GENERIC_BEAN_DEFINITION = 3;
+
+	private static final byte NULL_VALUE = 0;
+
+	private static final byte STRING_VALUE = 1;
+
+	private static final byte TYPED_STRING_VALUE = 2;
+
+	private static final byte BEAN_REFERENCE_VALUE = 3;
+
+	private static final byte BEAN_NAME_REFERENCE_VALUE = 4;
+
+	private static final byte BEAN_DEFINITION_HOLDER_VALUE = 5;
+
+	private static final byte BEAN_DEFINITION_VALUE = 6;
+
+	private static final byte LIST_VALUE = 7;
+
+	private static final byte SET_VALUE = 8;
+
+	private static final byte MAP_VALUE = 9;
+
+	private static final byte PROPERTIES_VALUE = 10;
+
+	private static final byte ARRAY_VALUE = 11;
+
+	private static final byte BOOLEAN_VALUE = 12;
+
+	private static final byte INTEGER_VALUE = 13;
+
+	private static final byte LONG_VALUE = 14;
+
+	private static final byte NO_RESOURCE = 0;
+
+	private static final byte RESOURCE_DESCRIPTION = 1;
+
+	private static final byte ORIGINATING_BEAN_DEFINITION = 2;
+
+
+	/**
+	 * Write all bean definitions and aliases of the given registry to the given stream.
+	 * <p>The stream is left open.
+	 * @param registry the registry to take the snapshot of
+	 * @param fingerprint the fingerprint identifying the state the bean definitions
+	 * have been derived from (never {@code null})
+	 * @param out the stream to write the snapshot to
+	 * @throws NotSerializableException if a bean definition contains content that
+	 * is not supported in a snapshot (in which case the stream should be discarded)
+	 * @throws IOException in case of I/O errors
+	 */
+	public static void writeSnapshot(BeanDefinitionRegistry registry, String fingerprint, OutputStream out)
+			throws IOException {
+
+		Assert.notNull(registry, "BeanDefinitionRegistry must not be null");
+		Assert.notNull(fingerprint, "Fingerprint must not be null");
+		SnapshotWriter writer = new SnapshotWriter(new DataOutputStream(out));
+		writer.writeHeader(fingerprint);
+		String[] beanNames = registry.getBeanDefinitionNames();
+		writer.out.writeInt(beanNames.length);
+		for (String beanName : beanNames) {
+			writer.writeString(beanName);
+			writer.writeBeanDefinition(registry.getBeanDefinition(beanName));
+			writer.writeStrings(registry.getAliases(beanName));
+		}
+		writer.out.flush();
+	}
+
+	/**
+	 * Register the bean definitions and aliases contained in the snapshot
+	 * from the given stream with the given registry, provided that the snapshot
+	 * carries the given fingerprint.
+	 * <p>The stream is left open.
+	 * @param in the stream to read the snapshot from
+	 * @param fingerprint the expected fingerprint (never {@code null})
+	 * @param registry the registry to register the bean definitions with
+	 * @return the number of bean definitions registered, or -1 if the snapshot
+	 * does not match the given fingerprint or the current snapshot format
+	 * @throws IOException in case of I/O errors or a corrupt snapshot
+	 */
+	public static int readSnapshot(InputStream in, String fingerprint, BeanDefinitionRegistry registry)
+			throws IOException {
+
+		Assert.notNull(fingerprint, "Fingerprint must not be null");
+		Assert.notNull(registry, "BeanDefinitionRegistry must not be null");
+		SnapshotReader reader = new SnapshotReader(new DataInputStream(in));
+		if (!reader.readHeader(fingerprint)) {
+			return -1;
+		}
+		// Read the entire snapshot before registering anything, not leaving
+		// a partially populated registry behind in case of a corrupt snapshot.
+		int count = reader.in.readInt();
+		List<BeanDefinitionHolder> holders = new ArrayList<BeanDefinitionHolder>(count);
+		for (int i = 0; i < count; i++) {
+			String beanName = reader.readString();
+			BeanDefinition beanDefinition = reader.readBeanDefinition();
+			holders.add(new BeanDefinitionHolder(beanDefinition, beanName, reader.readStrings()));
+		}
+		for (BeanDefinitionHolder holder : holders) {
+			BeanDefinitionReaderUtils.registerBeanDefinition(holder, registry);
+		}
+		return count;
+	}
+
+
+	/**
+	 * Writes bean definitions and bean metadata elements to a DataOutputStream.
+	 */
+	private static class SnapshotWriter {
+
+		private final DataOutputStream out;
+
+		public SnapshotWriter(DataOutputStream out) {
+			this.out = out;
+		}
+
+		public void writeHeader(String fingerprint) throws IOException {
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+			writeString(fingerprint);
+		}
+
+		public void writeBeanDefinition(BeanDefinition beanDefinition) throws IOException {
+			if (beanDefinition instanceof RootBeanDefinition) {
+				this.out.writeByte(ROOT_BEAN_DEFINITION);
+			}
+			else if (beanDefinition instanceof ChildBeanDefinition) {
+				this.out.writeByte(CHILD_BEAN_DEFINITION);
+				writeString(beanDefinition.getParentName());
+			}
+			else if (beanDefinition instanceof GenericBeanDefinition) {
+				this.out.writeByte(GENERIC_BEAN_DEFINITION);
+				writeString(beanDefinition.getParentName());
+			}
+			else {
+				throw new NotSerializableException("Unsupported bean definition type: " + beanDefinition);
+			}
+			AbstractBeanDefinition bd = (AbstractBeanDefinition) beanDefinition;
+			writeString(bd.getBeanClassName());
+			writeString(bd.getScope());
+			int flags = (bd.isAbstract() ? 1 : 0) | (bd.isLazyInit() ? 1 << 1 : 0) |
+					(bd.isAutowireCandidate() ? 1 << 2 : 0) | (bd.isPrimary() ? 1 << 3 : 0) |
+					(bd.isNonPublicAccessAllowed() ? 1 << 4 : 0) | (bd.isLenientConstructorResolution() ? 1 << 5 : 0) |
+					(bd.isEnforceInitMethod() ? 1 << 6 : 0) | (bd.isEnforceDestroyMethod() ? 1 << 7 : 0) |
+					(bd.isSynthetic() ? 1 << 8 : 0);
+			this.out.writeInt(flags);
+			this.out.writeInt(bd.getAutowireMode());
+			this.out.writeInt(bd.getDependencyCheck());
+			this.out.writeInt(bd.getRole());
+			writeStrings(bd.getDependsOn());
+			writeString(bd.getFactoryBeanName());
+			writeString(bd.getFactoryMethodName());
+			writeString(bd.getInitMethodName());
+			writeString(bd.getDestroyMethodName());
+			writeString(bd.getDescription());
+			writeResource(bd);
+			writeQualifiers(bd.getQualifiers());
+			writeConstructorArgumentValues(bd.getConstructorArgumentValues());
+			writePropertyValues(bd.getPropertyValues());
+			writeMethodOverrides(bd.getMethodOverrides());
+			writeAttributes(bd);
+			if (bd instanceof RootBeanDefinition) {
+				RootBeanDefinition rbd = (RootBeanDefinition) bd;
+				if (rbd.getTargetType() != null) {
+					throw new NotSerializableException("Bean definition with target type not supported: " + rbd);
+				}
+				this.out.writeBoolean(rbd.isFactoryMethodUnique);
+				BeanDefinitionHolder decoratedDefinition = rbd.getDecoratedDefinition();
+				this.out.writeBoolean(decoratedDefinition != null);
+				if (decoratedDefinition != null) {
+					writeBeanDefinitionHolder(decoratedDefinition);
+				}
+			}
+		}
+
+		private void writeResource(AbstractBeanDefinition bd) throws IOException {
+			Resource resource = bd.getResource();
+			if (resource instanceof BeanDefinitionResource) {
+				this.out.writeByte(ORIGINATING_BEAN_DEFINITION);
+				writeBeanDefinition(((BeanDefinitionResource) resource).getBeanDefinition());
+			}
+			else if (resource != null) {
+				this.out.writeByte(RESOURCE_DESCRIPTION);
+				writeString(resource.getDescription());
+			}
+			else {
+				this.out.writeByte(NO_RESOURCE);
+			}
+		}
+
+		private void writeQualifiers(Set<AutowireCandidateQualifier> qualifiers) throws IOException {
+			this.out.writeInt(qualifiers.size());
+			for (AutowireCandidateQualifier qualifier : qualifiers) {
+				writeString(qualifier.getTypeName());
+				writeAttributes(qualifier);
+			}
+		}
+
+		private void writeConstructorArgumentValues(ConstructorArgumentValues cargs) throws IOException {
+			Map<Integer, ConstructorArgumentValues.ValueHolder> indexedArgumentValues = cargs.getIndexedArgumentValues();
+			this.out.writeInt(indexedArgumentValues.size());
+			for (Map.Entry<Integer, ConstructorArgumentValues.ValueHolder> entry : indexedArgumentValues.entrySet()) {
+				this.out.writeInt(entry.getKey());
+				writeValueHolder(entry.getValue());
+			}
+			List<ConstructorArgumentValues.ValueHolder> genericArgumentValues = cargs.getGenericArgumentValues();
+			this.out.writeInt(genericArgumentValues.size());
+			for (ConstructorArgumentValues.ValueHolder valueHolder : genericArgumentValues) {
+				writeValueHolder(valueHolder);
+			}
+		}
+
+		private void writeValueHolder(ConstructorArgumentValues.ValueHolder valueHolder) throws IOException {
+			writeValue(valueHolder.getValue());
+			writeString(valueHolder.getType());
+			writeString(valueHolder.getName());
+		}
+
+		private void writePropertyValues(MutablePropertyValues pvs) throws IOException {
+			List<PropertyValue> propertyValues = pvs.getPropertyValueList();
+			this.out.writeInt(propertyValues.size());
+			for (PropertyValue pv : propertyValues) {
+				writeString(pv.getName());
+				writeValue(pv.getValue());
+				this.out.writeBoolean(pv.isOptional());
+				writeAttributes(pv);
+			}
+		}
+
+		private void writeMethodOverrides(MethodOverrides methodOverrides) throws IOException {
+			Set<MethodOverride> overrides = methodOverrides.getOverrides();
+			this.out.writeInt(overrides.size());
+			for (MethodOverride override : overrides) {
+				if (!(override instanceof LookupOverride)) {
+					throw new NotSerializableException("Unsupported method override: " + override);
+				}
+				writeString(override.getMethodName());
+				writeString(((LookupOverride) override).getBeanName());
+				this.out.writeBoolean(override.isOverloaded());
+			}
+		}
+
+		private void writeAttributes(BeanMetadataAttributeAccessor accessor) throws IOException {
+			String[] attributeNames = accessor.attributeNames();
+			this.out.writeInt(attributeNames.length);
+			for (String attributeName : attributeNames) {
+				writeString(attributeName);
+				writeAttributeValue(accessor.getAttribute(attributeName));
+			}
+		}
+
+		private void writeAttributeValue(Object value) throws IOException {
+			if (value == null || value instanceof String || value instanceof Boolean ||
+					value instanceof Integer || value instanceof Long) {
+				writeValue(value);
+			}
+			else {
+				throw new NotSerializableException("Unsupported attribute value: " + value);
+			}
+		}
+
+		private void writeBeanDefinitionHolder(BeanDefinitionHolder holder) throws IOException {
+			writeString(holder.getBeanName());
+			writeStrings(holder.getAliases());
+			writeBeanDefinition(holder.getBeanDefinition());
+		}
+
+		@SuppressWarnings("unchecked")
+		public void writeValue(Object value) throws IOException {
+			if (value == null) {
+				this.out.writeByte(NULL_VALUE);
+			}
+			else if (value instanceof String) {
+				this.out.writeByte(STRING_VALUE);
+				writeString((String) value);
+			}
+			else if (value instanceof Boolean) {
+				this.out.writeByte(BOOLEAN_VALUE);
+				this.out.writeBoolean((Boolean) value);
+			}
+			else if (value instanceof Integer) {
+				this.out.writeByte(INTEGER_VALUE);
+				this.out.writeInt((Integer) value);
+			}
+			else if (value instanceof Long) {
+				this.out.writeByte(LONG_VALUE);
+				this.out.writeLong((Long) value);
+			}
+			else if (value instanceof TypedStringValue) {
+				TypedStringValue typedStringValue = (TypedStringValue) value;
+				this.out.writeByte(TYPED_STRING_VALUE);
+				writeString(typedStringValue.getValue());
+				writeString(typedStringValue.getTargetTypeName());
+				writeString(typedStringValue.getSpecifiedTypeName());
+				this.out.writeBoolean(typedStringValue.isDynamic());
+			}
+			else if (value instanceof RuntimeBeanReference) {
+				RuntimeBeanReference reference = (RuntimeBeanReference) value;
+				this.out.writeByte(BEAN_REFERENCE_VALUE);
+				writeString(reference.getBeanName());
+				this.out.writeBoolean(reference.isToParent());
+			}
+			else if (value instanceof RuntimeBeanNameReference) {
+				this.out.writeByte(BEAN_NAME_REFERENCE_VALUE);
+				writeString(((RuntimeBeanNameReference) value).getBeanName());
+			}
+			else if (value instanceof BeanDefinitionHolder) {
+				this.out.writeByte(BEAN_DEFINITION_HOLDER_VALUE);
+				writeBeanDefinitionHolder((BeanDefinitionHolder) value);
+			}
+			else if (value instanceof BeanDefinition) {
+				this.out.writeByte(BEAN_DEFINITION_VALUE);
+				writeBeanDefinition((BeanDefinition) value);
+			}
+			else if (value instanceof ManagedArray) {
+				ManagedArray array = (ManagedArray) value;
+				this.out.writeByte(ARRAY_VALUE);
+				writeString(array.getElementTypeName());
+				this.out.writeBoolean(array.isMergeEnabled());
+				writeElements(array);
+			}
+			else if (value instanceof ManagedList) {
+				ManagedList<Object> list = (ManagedList<Object>) value;
+				this.out.writeByte(LIST_VALUE);
+				writeString(list.getElementTypeName());
+				this.out.writeBoolean(list.isMergeEnabled());
+				writeElements(list);
+			}
+			else if (value instanceof ManagedSet) {
+				ManagedSet<Object> set = (ManagedSet<Object>) value;
+				this.out.writeByte(SET_VALUE);
+				writeString(set.getElementTypeName());
+				this.out.writeBoolean(set.isMergeEnabled());
+				writeElements(set);
+			}
+			else if (value instanceof ManagedMap) {
+				ManagedMap<Object, Object> map = (ManagedMap<Object, Object>) value;
+				this.out.writeByte(MAP_VALUE);
+				writeString(map.getKeyTypeName());
+				writeString(map.getValueTypeName());
+				this.out.writeBoolean(map.isMergeEnabled());
+				writeEntries(map);
+			}
+			else if (value instanceof ManagedProperties) {
+				ManagedProperties properties = (ManagedProperties) value;
+				this.out.writeByte(PROPERTIES_VALUE);
+				this.out.writeBoolean(properties.isMergeEnabled());
+				writeEntries(properties);
+			}
+			else {
+				throw new NotSerializableException("Unsupported bean metadata value: " + value);
+			}
+		}
+
+		private void writeElements(Collection<?> elements) throws IOException {
+			this.out.writeInt(elements.size());
+			for (Object element : elements) {
+				writeValue(element);
+			}
+		}
+
+		private void writeEntries(Map<?, ?> map) throws IOException {
+			this.out.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(entry.getKey());
+				writeValue(entry.getValue());
+			}
+		}
+
+		public void writeStrings(String[] values) throws IOException {
+			if (values == null) {
+				this.out.writeInt(-1);
+				return;
+			}
+			this.out.writeInt(values.length);
+			for (String value : values) {
+				writeString(value);
+			}
+		}
+
+		public void writeString(String value) throws IOException {
+			if (value == null) {
+				this.out.writeInt(-1);
+				return;
+			}
+			byte[] bytes = value.getBytes("UTF-8");
+			this.out.writeInt(bytes.length);
+			this.out.write(bytes);
+		}
+	}
+
+
+	/**
+	 * Reads bean definitions and bean metadata elements from a DataInputStream.
+	 */
+	private static class SnapshotReader {
+
+		private final DataInputStream in;
+
+		public SnapshotReader(DataInputStream in) {
+			this.in = in;
+		}
+
+		public boolean readHeader(String fingerprint) throws IOException {
+			return (this.in.readInt() == MAGIC && this.in.readInt() == VERSION && fingerprint.equals(readString()));
+		}
+
+		public AbstractBeanDefinition readBeanDefinition() throws IOException {
+			AbstractBeanDefinition bd;
+			byte type = this.in.readByte();
+			if (type == ROOT_BEAN_DEFINITION) {
+				bd = new RootBeanDefinition();
+			}
+			else if (type == CHILD_BEAN_DEFINITION) {
+				bd = new ChildBeanDefinition(readString());
+			}
+			else if (type == GENERIC_BEAN_DEFINITION) {
+				bd = new GenericBeanDefinition();
+				bd.setParentName(readString());
+			}
+			else {
+				throw new IOException("Corrupt bean definition snapshot: unknown bean definition type " + type);
+			}
+			bd.setBeanClassName(readString());
+			bd.setScope(readString());
+			int flags = this.in.readInt();
+			bd.setAbstract((flags & 1) != 0);
+			bd.setLazyInit((flags & 1 << 1) != 0);
+			bd.setAutowireCandidate((flags & 1 << 2) != 0);
+			bd.setPrimary((flags & 1 << 3) != 0);
+			bd.setNonPublicAccessAllowed((flags & 1 << 4) != 0);
+			bd.setLenientConstructorResolution((flags & 1 << 5) != 0);
+			bd.setEnforceInitMethod((flags & 1 << 6) != 0);
+			bd.setEnforceDestroyMethod((flags & 1 << 7) != 0);
+			bd.setSynthetic((flags & 1 << 8) != 0);
+			bd.setAutowireMode(this.in.readInt());
+			bd.setDependencyCheck(this.in.readInt());
+			bd.setRole(this.in.readInt());
+			bd.setDependsOn(readStrings());
+			bd.setFactoryBeanName(readString());
+			bd.setFactoryMethodName(readString());
+			bd.setInitMethodName(readString());
+			bd.setDestroyMethodName(readString());
+			bd.setDescription(readString());
+			readResource(bd);
+			readQualifiers(bd);
+			readConstructorArgumentValues(bd.getConstructorArgumentValues());
+			readPropertyValues(bd.getPropertyValues());
+			readMethodOverrides(bd.getMethodOverrides());
+			readAttributes(bd);
+			if (bd instanceof RootBeanDefinition) {
+				RootBeanDefinition rbd = (RootBeanDefinition) bd;
+				rbd.isFactoryMethodUnique = this.in.readBoolean();
+				if (this.in.readBoolean()) {
+					rbd.setDecoratedDefinition(readBeanDefinitionHolder());
+				}
+			}
+			return bd;
+		}
+
+		private void readResource(AbstractBeanDefinition bd) throws IOException {
+			byte type = this.in.readByte();
+			if (type == ORIGINATING_BEAN_DEFINITION) {
+				bd.setOriginatingBeanDefinition(readBeanDefinition());
+			}
+			else if (type == RESOURCE_DESCRIPTION) {
+				bd.setResourceDescription(readString());
+			}
+		}
+
+		private void readQualifiers(AbstractBeanDefinition bd) throws IOException {
+			int count = this.in.readInt();
+			for (int i = 0; i < count; i++) {
+				AutowireCandidateQualifier qualifier = new AutowireCandidateQualifier(readString());
+				readAttributes(qualifier);
+				bd.addQualifier(qualifier);
+			}
+		}
+
+		private void readConstructorArgumentValues(ConstructorArgumentValues cargs) throws IOException {
+			int count = this.in.readInt();
+			for (int i = 0; i < count; i++) {
+				int index = this.in.readInt();
+				cargs.addIndexedArgumentValue(index, readValueHolder());
+			}
+			count = this.in.readInt();
+			for (int i = 0; i < count; i++) {
+				cargs.addGenericArgumentValue(readValueHolder());
+			}
+		}
+
+		private ConstructorArgumentValues.ValueHolder readValueHolder() throws IOException {
+			Object value = readValue();
+			String type = readString();
+			String name = readString();
+			return new ConstructorArgumentValues.ValueHolder(value, type, name);
+		}
+
+		private void readPropertyValues(MutablePropertyValues pvs) throws IOException {
+			int count = this.in.readInt();
+			for (int i = 0; i < count; i++) {
+				PropertyValue pv = new PropertyValue(readString(), readValue());
+				pv.setOptional(this.in.readBoolean());
+				readAttributes(pv);
+				pvs.addPropertyValue(pv);
+			}
+		}
+
+		private void readMethodOverrides(MethodOverrides methodOverrides) throws IOException {
+			int count = this.in.readInt();
+			for (int i = 0; i < count; i++) {
+				LookupOverride override = new LookupOverride(readString(), readString());
+				override.setOverloaded(this.in.readBoolean());
+				methodOverrides.addOverride(override);
+			}
+		}
+
+		private void readAttributes(BeanMetadataAttributeAccessor accessor) throws IOException {
+			int count = this.in.readInt();
+			for (int i = 0; i < count; i++) {
+				accessor.setAttribute(readString(), readValue());
+			}
+		}
+
+		private BeanDefinitionHolder readBeanDefinitionHolder() throws IOException {
+			String beanName = readString();
+			String[] aliases = readStrings();
+			return new BeanDefinitionHolder(readBeanDefinition(), beanName, aliases);
+		}
+
+		private Object readValue() throws IOException {
+			byte type = this.in.readByte();
+			switch (type) {
+				case NULL_VALUE:
+					return null;
+				case STRING_VALUE:
+					return readString();
+				case BOOLEAN_VALUE:
+					return this.in.readBoolean();
+				case INTEGER_VALUE:
+					return this.in.readInt();
+				case LONG_VALUE:
+					return this.in.readLong();
+				case TYPED_STRING_VALUE:
+					TypedStringValue typedStringValue = new TypedStringValue(readString());
+					String targetTypeName = readString();
+					if (targetTypeName != null) {
+						typedStringValue.setTargetTypeName(targetTypeName);
+					}
+					typedStringValue.setSpecifiedTypeName(readString());
+					if (this.in.readBoolean()) {
+						typedStringValue.setDynamic();
+					}
+					return typedStringValue;
+				case BEAN_REFERENCE_VALUE:
+					return new RuntimeBeanReference(readString(), this.in.readBoolean());
+				case BEAN_NAME_REFERENCE_VALUE:
+					return new RuntimeBeanNameReference(readString());
+				case BEAN_DEFINITION_HOLDER_VALUE:
+					return readBeanDefinitionHolder();
+				case BEAN_DEFINITION_VALUE:
+					return readBeanDefinition();
+				case ARRAY_VALUE:
+					String elementTypeName = readString();
+					boolean mergeEnabled = this.in.readBoolean();
+					int size = this.in.readInt();
+					ManagedArray array = new ManagedArray(elementTypeName, size);
+					array.setMergeEnabled(mergeEnabled);
+					readElements(array, size);
+					return array;
+				case LIST_VALUE:
+					ManagedList<Object> list = new ManagedList<Object>();
+					list.setElementTypeName(readString());
+					list.setMergeEnabled(this.in.readBoolean());
+					readElements(list, this.in.readInt());
+					return list;
+				case SET_VALUE:
+					ManagedSet<Object> set = new ManagedSet<Object>();
+					set.setElementTypeName(readString());
+					set.setMergeEnabled(this.in.readBoolean());
+					readElements(set, this.in.readInt());
+					return set;
+				case MAP_VALUE:
+					ManagedMap<Object, Object> map = new ManagedMap<Object, Object>();
+					map.setKeyTypeName(readString());
+					map.setValueTypeName(readString());
+					map.setMergeEnabled(this.in.readBoolean());
+					readEntries(map);
+					return map;
+				case PROPERTIES_VALUE:
+					ManagedProperties properties = new ManagedProperties();
+					properties.setMergeEnabled(this.in.readBoolean());
+					readEntries(properties);
+					return properties;
+				default:
+					throw new IOException("Corrupt bean definition snapshot: unknown value type " + type);
+			}
+		}
+
+		private void readElements(Collection<Object> elements, int size) throws IOException {
+			for (int i = 0; i < size; i++) {
+				elements.add(readValue());
+			}
+		}
+
+		private void readEntries(Map<Object, Object> map) throws IOException {
+			int size = this.in.readInt();
+			for (int i = 0; i < size; i++) {
+				map.put(readValue(), readValue());
+			}
+		}
+
+		public String[] readStrings() throws IOException {
+			int length = this.in.readInt();
+			if (length < 0) {
+				return null;
+			}
+			String[] values = new String[length];
+			for (int i = 0; i < length; i++) {
+				values[i] = readString();
+			}
+			return values;
+		}
+
+		public String readString() throws IOException {
+			int length = this.in.readInt();
+			if (length < 0) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			this.in.readFully(bytes);
+			return new String(bytes, "UTF-8");
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -44,6 +44,7 @@ import org.springframework.beans.factory.UnsatisfiedDependencyException;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
 import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
 import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.core.GenericTypeResolver;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ParameterNameDiscoverer;
@@ -738,11 +739,24 @@ class ConstructorResolver {
 				}
 				try {
 					MethodParameter param = MethodParameter.forMethodOrConstructor(methodOrCtor, paramIndex);
-					Object autowiredArgument = resolveAutowiredArgument(param, beanName, autowiredBeanNames, converter);
+					Set<String> argumentBeanNames = (this.beanFactory.isCacheInstantiationPlans() ?
+							new LinkedHashSet<String>(1) : autowiredBeanNames);
+					Object autowiredArgument = resolveAutowiredArgument(param, beanName, argumentBeanNames, converter);
 					args.rawArguments[paramIndex] = autowiredArgument;
 					args.arguments[paramIndex] = autowiredArgument;
 					args.preparedArguments[paramIndex] = new AutowiredArgumentMarker();
 					args.resolveNecessary = true;
+					if (argumentBeanNames != autowiredBeanNames) {
+						autowiredBeanNames.addAll(argumentBeanNames);
+						// Shortcut for re-creation: refer to the single matching bean directly.
+						if (argumentBeanNames.size() == 1) {
+							String autowiredBeanName = argumentBeanNames.iterator().next();
+							if (this.beanFactory.containsBean(autowiredBeanName) &&
+									this.beanFactory.isTypeMatch(autowiredBeanName, paramType)) {
+								args.preparedArguments[paramIndex] = new RuntimeBeanReference(autowiredBeanName);
+							}
+						}
+					}
 				}
 				catch (BeansException ex) {
 					throw new UnsatisfiedDependencyException(
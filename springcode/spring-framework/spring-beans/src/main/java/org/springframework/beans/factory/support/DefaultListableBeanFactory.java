@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -42,10 +42,15 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Provider;
 
 import org.springframework.beans.BeansException;
 import org.springframework.beans.FatalBeanException;
+import org.springframework.beans.PropertyValue;
 import org.springframework.beans.TypeConverter;
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.BeanCurrentlyInCreationException;
@@ -62,9 +67,11 @@ import org.springframework.beans.factory.SmartFactoryBean;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.core.OrderComparator;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.lang.UsesJava8;
@@ -153,6 +160,9 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	/** Resolver to use for checking if a bean definition is an autowire candidate */
 	private AutowireCandidateResolver autowireCandidateResolver = new SimpleAutowireCandidateResolver();
 
+	/** Optional Executor for creating independent singletons concurrently on startup */
+	private Executor bootstrapExecutor;
+
 	/** Map from dependency type to corresponding autowired value */
 	private final Map<Class<?>, Object> resolvableDependencies = new HashMap<Class<?>, Object>(16);
 
@@ -165,6 +175,10 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	/** Map of singleton-only bean names, keyed by dependency type */
 	private final Map<Class<?>, String[]> singletonBeanNamesByType = new ConcurrentHashMap<Class<?>, String[]>(64);
 
+	/** Map of singleton and non-singleton bean names, keyed by annotation type */
+	private final Map<Class<? extends Annotation>, String[]> beanNamesByAnnotationType =
+			new ConcurrentHashMap<Class<? extends Annotation>, String[]>(16);
+
 	/** List of bean definition names, in registration order */
 	private final List<String> beanDefinitionNames = new ArrayList<String>(64);
 
@@ -308,6 +322,41 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		return this.autowireCandidateResolver;
 	}
 
+	/**
+	 * Set an Executor for pre-instantiating singletons concurrently.
+	 * <p>Default is none, creating all non-lazy singletons one after the other
+	 * on the calling thread. If specified, {@link #preInstantiateSingletons()}
+	 * groups the singletons into sets of beans connected by the references,
+	 * depends-on relationships and factory beans declared in their bean
+	 * definitions, and creates independent sets concurrently on the given
+	 * Executor - each set in registration order. The number of threads of
+	 * the Executor bounds the number of singletons created at the same time.
+	 * <p>Dependencies that are only discovered during creation (e.g. through
+	 * autowiring) are resolved across threads. Circular references between
+	 * singletons created on different threads are resolved through early
+	 * references, just like within a single thread. Where waiting could deadlock
+	 * otherwise, affected singletons are created one after the other on the
+	 * calling thread once all concurrent creation has finished: preferably
+	 * singletons which have not been instantiated yet. In case of failures, the
+	 * exception reported is the one for the earliest registered singleton,
+	 * as with sequential pre-instantiation.
+	 * <p>Note that the singletons themselves, and any bean definitions registered
+	 * during their initialization, need to be safe for concurrent creation.
+	 * @since 4.1.10
+	 * @see #preInstantiateSingletons()
+	 */
+	public void setBootstrapExecutor(Executor bootstrapExecutor) {
+		this.bootstrapExecutor = bootstrapExecutor;
+	}
+
+	/**
+	 * Return the Executor for pre-instantiating singletons concurrently, if any.
+	 * @since 4.1.10
+	 */
+	public Executor getBootstrapExecutor() {
+		return this.bootstrapExecutor;
+	}
+
 
 	@Override
 	public void copyConfigurationFrom(ConfigurableBeanFactory otherFactory) {
@@ -317,6 +366,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 			this.allowBeanDefinitionOverriding = otherListableFactory.allowBeanDefinitionOverriding;
 			this.allowEagerClassLoading = otherListableFactory.allowEagerClassLoading;
 			this.autowireCandidateResolver = otherListableFactory.autowireCandidateResolver;
+			this.bootstrapExecutor = otherListableFactory.bootstrapExecutor;
 			this.resolvableDependencies.putAll(otherListableFactory.resolvableDependencies);
 		}
 	}
@@ -545,6 +595,21 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 
 	@Override
 	public String[] getBeanNamesForAnnotation(Class<? extends Annotation> annotationType) {
+		if (!isConfigurationFrozen() || annotationType == null) {
+			return doGetBeanNamesForAnnotation(annotationType);
+		}
+		String[] resolvedBeanNames = this.beanNamesByAnnotationType.get(annotationType);
+		if (resolvedBeanNames != null) {
+			return resolvedBeanNames;
+		}
+		resolvedBeanNames = doGetBeanNamesForAnnotation(annotationType);
+		if (ClassUtils.isCacheSafe(annotationType, getBeanClassLoader())) {
+			this.beanNamesByAnnotationType.put(annotationType, resolvedBeanNames);
+		}
+		return resolvedBeanNames;
+	}
+
+	private String[] doGetBeanNamesForAnnotation(Class<? extends Annotation> annotationType) {
 		List<String> results = new ArrayList<String>();
 		for (String beanName : this.beanDefinitionNames) {
 			BeanDefinition beanDefinition = getBeanDefinition(beanName);
@@ -729,30 +794,13 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		List<String> beanNames = new ArrayList<String>(this.beanDefinitionNames);
 
 		// Trigger initialization of all non-lazy singleton beans...
-		for (String beanName : beanNames) {
-			RootBeanDefinition bd = getMergedLocalBeanDefinition(beanName);
-			if (!bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit()) {
-				if (isFactoryBean(beanName)) {
-					final FactoryBean<?> factory = (FactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
-					boolean isEagerInit;
-					if (System.getSecurityManager() != null && factory instanceof SmartFactoryBean) {
-						isEagerInit = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
-							@Override
-							public Boolean run() {
-								return ((SmartFactoryBean<?>) factory).isEagerInit();
-							}
-						}, getAccessControlContext());
-					}
-					else {
-						isEagerInit = (factory instanceof SmartFactoryBean &&
-								((SmartFactoryBean<?>) factory).isEagerInit());
-					}
-					if (isEagerInit) {
-						getBean(beanName);
-					}
-				}
-				else {
-					getBean(beanName);
+		if (this.bootstrapExecutor != null) {
+			preInstantiateSingletonsConcurrently(beanNames, this.bootstrapExecutor);
+		}
+		else {
+			for (String beanName : beanNames) {
+				if (isPreInstantiationCandidate(beanName)) {
+					preInstantiateSingleton(beanName);
 				}
 			}
 		}
@@ -778,6 +826,60 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		}
 	}
 
+	private boolean isPreInstantiationCandidate(String beanName) {
+		RootBeanDefinition bd = getMergedLocalBeanDefinition(beanName);
+		return (!bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit());
+	}
+
+	private void preInstantiateSingleton(String beanName) {
+		if (isFactoryBean(beanName)) {
+			final FactoryBean<?> factory = (FactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
+			boolean isEagerInit;
+			if (System.getSecurityManager() != null && factory instanceof SmartFactoryBean) {
+				isEagerInit = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+					@Override
+					public Boolean run() {
+						return ((SmartFactoryBean<?>) factory).isEagerInit();
+					}
+				}, getAccessControlContext());
+			}
+			else {
+				isEagerInit = (factory instanceof SmartFactoryBean &&
+						((SmartFactoryBean<?>) factory).isEagerInit());
+			}
+			if (isEagerInit) {
+				getBean(beanName);
+			}
+		}
+		else {
+			getBean(beanName);
+		}
+	}
+
+	/**
+	 * Pre-instantiate the given singletons, creating independent sets of them
+	 * concurrently on the given Executor.
+	 * @param beanNames all bean definition names, in registration order
+	 * @param executor the Executor to create the singletons on
+	 * @see #setBootstrapExecutor
+	 */
+	private void preInstantiateSingletonsConcurrently(List<String> beanNames, Executor executor) {
+		List<List<String>> groups = new SingletonGroupResolver(beanNames).resolveGroups();
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Pre-instantiating " + groups.size() + " independent groups of singletons concurrently");
+		}
+		ConcurrentPreInstantiation preInstantiation = new ConcurrentPreInstantiation(beanNames);
+		setConcurrentSingletonCreation(true);
+		try {
+			preInstantiation.createConcurrently(groups, executor);
+		}
+		finally {
+			setConcurrentSingletonCreation(false);
+		}
+		preInstantiation.createDeferred();
+		preInstantiation.rethrowEarliestFailure();
+	}
+
 
 	//---------------------------------------------------------------------
 	// Implementation of BeanDefinitionRegistry interface
@@ -834,6 +936,9 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		if (oldBeanDefinition != null || containsSingleton(beanName)) {
 			resetBeanDefinition(beanName);
 		}
+		else if (isConfigurationFrozen()) {
+			clearByTypeCache();
+		}
 	}
 
 	@Override
@@ -910,11 +1015,12 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 	}
 
 	/**
-	 * Remove any assumptions about by-type mappings.
+	 * Remove any assumptions about by-type and by-annotation mappings.
 	 */
 	private void clearByTypeCache() {
 		this.allBeanNamesByType.clear();
 		this.singletonBeanNamesByType.clear();
+		this.beanNamesByAnnotationType.clear();
 	}
 
 
@@ -1473,4 +1579,297 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 		}
 	}
 
+
+	/**
+	 * Groups non-lazy singletons into sets of beans that are connected by the
+	 * bean references, depends-on relationships and factory beans declared in
+	 * their bean definitions (directly or through other bean definitions).
+	 */
+	private class SingletonGroupResolver {
+
+		private final List<String> beanNames;
+
+		/** Union-find forest: bean name --> parent bean name, for non-root names only */
+		private final Map<String, String> parents = new HashMap<String, String>();
+
+		public SingletonGroupResolver(List<String> beanNames) {
+			this.beanNames = beanNames;
+		}
+
+		/**
+		 * Return the groups of singletons to pre-instantiate, ordered by their
+		 * first bean, with each group in registration order.
+		 */
+		public List<List<String>> resolveGroups() {
+			Set<String> candidates = new LinkedHashSet<String>(this.beanNames.size());
+			for (String beanName : this.beanNames) {
+				RootBeanDefinition bd;
+				try {
+					bd = getMergedLocalBeanDefinition(beanName);
+				}
+				catch (BeansException ex) {
+					// Reported in registration order when trying to create the bean
+					candidates.add(beanName);
+					continue;
+				}
+				if (!bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit()) {
+					candidates.add(beanName);
+				}
+				Set<String> references = new LinkedHashSet<String>();
+				addDefinitionReferences(bd, references);
+				for (String reference : references) {
+					String referencedName = transformedBeanName(reference);
+					if (containsBeanDefinition(referencedName)) {
+						union(beanName, referencedName);
+					}
+				}
+			}
+			Map<String, List<String>> groups = new LinkedHashMap<String, List<String>>();
+			for (String beanName : candidates) {
+				String root = find(beanName);
+				List<String> group = groups.get(root);
+				if (group == null) {
+					group = new ArrayList<String>();
+					groups.put(root, group);
+				}
+				group.add(beanName);
+			}
+			return new ArrayList<List<String>>(groups.values());
+		}
+
+		private void addDefinitionReferences(BeanDefinition bd, Set<String> references) {
+			if (bd.getDependsOn() != null) {
+				Collections.addAll(references, bd.getDependsOn());
+			}
+			if (bd.getFactoryBeanName() != null) {
+				references.add(bd.getFactoryBeanName());
+			}
+			for (PropertyValue pv : bd.getPropertyValues().getPropertyValues()) {
+				addValueReferences(pv.getValue(), references);
+			}
+			ConstructorArgumentValues args = bd.getConstructorArgumentValues();
+			for (ConstructorArgumentValues.ValueHolder valueHolder : args.getIndexedArgumentValues().values()) {
+				addValueReferences(valueHolder.getValue(), references);
+			}
+			for (ConstructorArgumentValues.ValueHolder valueHolder : args.getGenericArgumentValues()) {
+				addValueReferences(valueHolder.getValue(), references);
+			}
+		}
+
+		private void addValueReferences(Object value, Set<String> references) {
+			if (value instanceof RuntimeBeanReference) {
+				RuntimeBeanReference ref = (RuntimeBeanReference) value;
+				if (!ref.isToParent()) {
+					references.add(ref.getBeanName());
+				}
+			}
+			else if (value instanceof BeanDefinitionHolder) {
+				addDefinitionReferences(((BeanDefinitionHolder) value).getBeanDefinition(), references);
+			}
+			else if (value instanceof BeanDefinition) {
+				addDefinitionReferences((BeanDefinition) value, references);
+			}
+			else if (value instanceof Collection) {
+				for (Object element : (Collection<?>) value) {
+					addValueReferences(element, references);
+				}
+			}
+			else if (value instanceof Map) {
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+					addValueReferences(entry.getKey(), references);
+					addValueReferences(entry.getValue(), references);
+				}
+			}
+		}
+
+		private String find(String beanName) {
+			String root = beanName;
+			String parent = this.parents.get(root);
+			while (parent != null) {
+				root = parent;
+				parent = this.parents.get(root);
+			}
+			// Compress the path for subsequent lookups
+			String current = beanName;
+			while (!current.equals(root)) {
+				String next = this.parents.get(current);
+				this.parents.put(current, root);
+				current = next;
+			}
+			return root;
+		}
+
+		private void union(String beanName, String otherBeanName) {
+			String root = find(beanName);
+			String otherRoot = find(otherBeanName);
+			if (!root.equals(otherRoot)) {
+				this.parents.put(otherRoot, root);
+			}
+		}
+	}
+
+
+	/**
+	 * State of a concurrent pre-instantiation run: singletons deferred to
+	 * sequential creation after a creation conflict, and creation failures
+	 * by registration index of the affected singleton.
+	 */
+	private class ConcurrentPreInstantiation {
+
+		private final List<String> beanNames;
+
+		private final Map<String, Integer> registrationIndexes;
+
+		private final Set<String> deferredBeanNames =
+				Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(16));
+
+		private final Map<Integer, Throwable> failures = new ConcurrentHashMap<Integer, Throwable>(16);
+
+		private final AtomicInteger earliestFailureIndex = new AtomicInteger(Integer.MAX_VALUE);
+
+		public ConcurrentPreInstantiation(List<String> beanNames) {
+			this.beanNames = beanNames;
+			this.registrationIndexes = new HashMap<String, Integer>(beanNames.size());
+			for (String beanName : beanNames) {
+				this.registrationIndexes.put(beanName, this.registrationIndexes.size());
+			}
+		}
+
+		/**
+		 * Create the given groups of singletons on the given Executor,
+		 * returning once all of them have been processed.
+		 */
+		public void createConcurrently(List<List<String>> groups, Executor executor) {
+			final CountDownLatch latch = new CountDownLatch(groups.size());
+			for (final List<String> group : groups) {
+				try {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								createGroup(group);
+							}
+							finally {
+								latch.countDown();
+							}
+						}
+					});
+				}
+				catch (RejectedExecutionException ex) {
+					this.deferredBeanNames.addAll(group);
+					latch.countDown();
+				}
+			}
+			boolean interrupted = false;
+			while (latch.getCount() > 0) {
+				try {
+					latch.await();
+				}
+				catch (InterruptedException ex) {
+					// Singletons are still being created: keep waiting for them
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void createGroup(List<String> group) {
+			for (int i = 0; i < group.size(); i++) {
+				String beanName = group.get(i);
+				int index = this.registrationIndexes.get(beanName);
+				if (index > this.earliestFailureIndex.get()) {
+					// An earlier registered singleton failed already
+					return;
+				}
+				try {
+					if (isPreInstantiationCandidate(beanName)) {
+						preInstantiateSingleton(beanName);
+					}
+				}
+				catch (Throwable ex) {
+					if (ex instanceof BeansException &&
+							((BeansException) ex).contains(SingletonCreationConflictException.class)) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("Deferring creation of singleton '" + beanName +
+									"' and its group to sequential pre-instantiation: " + ex);
+						}
+						this.deferredBeanNames.addAll(group.subList(i, group.size()));
+					}
+					else {
+						recordFailure(index, ex);
+					}
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Create the singletons deferred by creation conflicts or rejected
+		 * execution, one after the other in registration order.
+		 */
+		public void createDeferred() {
+			if (this.deferredBeanNames.isEmpty()) {
+				return;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Pre-instantiating " + this.deferredBeanNames.size() + " deferred singletons sequentially");
+			}
+			for (String beanName : this.beanNames) {
+				if (this.deferredBeanNames.contains(beanName)) {
+					int index = this.registrationIndexes.get(beanName);
+					if (index > this.earliestFailureIndex.get()) {
+						return;
+					}
+					try {
+						if (isPreInstantiationCandidate(beanName)) {
+							preInstantiateSingleton(beanName);
+						}
+					}
+					catch (Throwable ex) {
+						recordFailure(index, ex);
+						return;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Rethrow the failure of the earliest registered singleton, if any,
+		 * which is the failure that sequential pre-instantiation would report.
+		 */
+		public void rethrowEarliestFailure() {
+			int earliest = this.earliestFailureIndex.get();
+			if (earliest == Integer.MAX_VALUE) {
+				return;
+			}
+			if (logger.isDebugEnabled() && this.failures.size() > 1) {
+				for (Map.Entry<Integer, Throwable> entry : this.failures.entrySet()) {
+					if (entry.getKey() != earliest) {
+						logger.debug("Concurrent creation of singleton '" + this.beanNames.get(entry.getKey()) +
+								"' failed as well", entry.getValue());
+					}
+				}
+			}
+			Throwable failure = this.failures.get(earliest);
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			throw new FatalBeanException("Pre-instantiation of singleton '" + this.beanNames.get(earliest) +
+					"' failed", failure);
+		}
+
+		private void recordFailure(int index, Throwable ex) {
+			this.failures.put(index, ex);
+			int earliest = this.earliestFailureIndex.get();
+			while (index < earliest && !this.earliestFailureIndex.compareAndSet(earliest, index)) {
+				earliest = this.earliestFailureIndex.get();
+			}
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,15 +16,20 @@
 
 package org.springframework.beans.factory.support;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,6 +40,7 @@ import org.springframework.beans.factory.BeanCurrentlyInCreationException;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.config.SingletonBeanRegistry;
+import org.springframework.core.NamedThreadLocal;
 import org.springframework.core.SimpleAliasRegistry;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -78,6 +84,9 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 	 */
 	protected static final Object NULL_OBJECT = new Object();
 
+	/** Interval for re-checking for deadlocks while waiting for another thread's singleton creation, in ms */
+	private static final long DEADLOCK_CHECK_INTERVAL = 10;
+
 
 	/** //内部标记为一个空的单例对象： 并发 Maps( 不支持空值 )作为标志值。   */
 	protected final Log logger = LogFactory.getLog(getClass());
@@ -110,11 +119,19 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 
 	/** List of suppressed Exceptions, available for associating related causes */
 	//存放异常出现的相关的原因的集合
-	private Set<Exception> suppressedExceptions;
+	private final ThreadLocal<Set<Exception>> suppressedExceptions =
+			new NamedThreadLocal<Set<Exception>>("Suppressed exceptions of singleton creation");
 
 	/** Flag that indicates whether we're currently within destroySingletons */
 	//标志，指示我们目前是否在销毁单例中
-	private boolean singletonsCurrentlyInDestruction = false;
+	private volatile boolean singletonsCurrentlyInDestruction = false;
+
+	/** Per-bean creation locks: bean name --> lock, or {@code null} if singleton creation is serialized */
+	private volatile ConcurrentMap<String, SingletonCreationLock> singletonCreationLocks;
+
+	/** Threads waiting for another thread's singleton creation: thread --> creation lock */
+	private final ConcurrentMap<Thread, SingletonCreationLock> threadsAwaitingSingletonCreation =
+			new ConcurrentHashMap<Thread, SingletonCreationLock>(16);
 
 	/** Disposable bean instances: bean name --> disposable instance */
 	//存放一次性bean的缓存
@@ -203,7 +220,8 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		//获取单例对象的实体类
 		Object singletonObject = this.singletonObjects.get(beanName);
 		// 如果singletonObjects指定beanName的对象是不存在的  
-		if (singletonObject == null && isSingletonCurrentlyInCreation(beanName)) {
+		if (singletonObject == null && isSingletonCurrentlyInCreation(beanName) &&
+				!isSingletonInCreationByOtherThread(beanName)) {
 			synchronized (this.singletonObjects) {
 				//从单例工厂创建的早期的单例对象中获取
 				singletonObject = this.earlySingletonObjects.get(beanName);
@@ -235,66 +253,104 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 	 */
 	public Object getSingleton(String beanName, ObjectFactory<?> singletonFactory) {
 		Assert.notNull(beanName, "'beanName' must not be null");
-		synchronized (this.singletonObjects) {
-			// 如果singetonObjects缓存不存在名称为beanName的对象  
+		ConcurrentMap<String, SingletonCreationLock> creationLocks = this.singletonCreationLocks;
+		if (creationLocks != null) {
 			Object singletonObject = this.singletonObjects.get(beanName);
-			if (singletonObject == null) {
-				//是否在销毁的单例中,默认为false
-				if (this.singletonsCurrentlyInDestruction) {
-					throw new BeanCreationNotAllowedException(beanName,
-							"Singleton bean creation not allowed while the singletons of this factory are in destruction " +
-							"(Do not request a bean from a BeanFactory in a destroy method implementation!)");
-				}
-				//如果目前是debug模式,打印日志
-				if (logger.isDebugEnabled()) {
-					logger.debug("Creating shared instance of singleton bean '" + beanName + "'");
-				}
-				 // 单例对象创建前的回调,默认正在创建的单例 ,判断当前的单例是否是在正在创建的阶段,如果不是抛出异常 
-				beforeSingletonCreation(beanName);
-				boolean newSingleton = false;
-				 // 判断存储异常相关原因的集合是否已存在  
-				boolean recordSuppressedExceptions = (this.suppressedExceptions == null);
-				// 若没有，刚创建异常集合的实例  
-				if (recordSuppressedExceptions) {
-					this.suppressedExceptions = new LinkedHashSet<Exception>();
-				}
-				try {
-					 // 由参数给定的singletonFactory创建singleton对象,getObject方法的具体实现由ObjectFactory的子类决定
-					singletonObject = singletonFactory.getObject();
-					newSingleton = true;
-				}
-				catch (IllegalStateException ex) {
-					// Has the singleton object implicitly appeared in the meantime ->
-					// if yes, proceed with it since the exception indicates that state.
-					singletonObject = this.singletonObjects.get(beanName);
-					if (singletonObject == null) {
-						throw ex;
-					}
+			if (singletonObject != null) {
+				return (singletonObject != NULL_OBJECT ? singletonObject : null);
+			}
+			SingletonCreationLock creationLock = creationLocks.get(beanName);
+			if (creationLock == null) {
+				SingletonCreationLock newLock = new SingletonCreationLock(beanName);
+				creationLock = creationLocks.putIfAbsent(beanName, newLock);
+				if (creationLock == null) {
+					creationLock = newLock;
 				}
-				catch (BeanCreationException ex) {
-					 // 如果异常被抓取，在这里将出现异常的原因抛出  
-					if (recordSuppressedExceptions) {
-						for (Exception suppressedException : this.suppressedExceptions) {
-							ex.addRelatedCause(suppressedException);
-						}
-					}
+			}
+			if (!acquireSingletonCreationLock(beanName, creationLock)) {
+				// Waiting would never end: take the early reference of the singleton
+				// instead, just like for a circular reference within a single thread.
+				return getEarlySingletonReference(beanName);
+			}
+			if (creationLock.getHoldCount() == 1) {
+				creationLock.instantiated = false;
+			}
+			try {
+				return doGetSingleton(beanName, singletonFactory);
+			}
+			finally {
+				creationLock.unlock();
+			}
+		}
+		synchronized (this.singletonObjects) {
+			return doGetSingleton(beanName, singletonFactory);
+		}
+	}
+
+	/**
+	 * Actually obtain the singleton object for the given name, creating and
+	 * registering a new one if none registered yet. Called with either the
+	 * singleton mutex or the bean's creation lock held.
+	 */
+	private Object doGetSingleton(String beanName, ObjectFactory<?> singletonFactory) {
+		// 如果singetonObjects缓存不存在名称为beanName的对象  
+		Object singletonObject = this.singletonObjects.get(beanName);
+		if (singletonObject == null) {
+			//是否在销毁的单例中,默认为false
+			if (this.singletonsCurrentlyInDestruction) {
+				throw new BeanCreationNotAllowedException(beanName,
+						"Singleton bean creation not allowed while the singletons of this factory are in destruction " +
+						"(Do not request a bean from a BeanFactory in a destroy method implementation!)");
+			}
+			//如果目前是debug模式,打印日志
+			if (logger.isDebugEnabled()) {
+				logger.debug("Creating shared instance of singleton bean '" + beanName + "'");
+			}
+			 // 单例对象创建前的回调,默认正在创建的单例 ,判断当前的单例是否是在正在创建的阶段,如果不是抛出异常 
+			beforeSingletonCreation(beanName);
+			boolean newSingleton = false;
+			 // 判断存储异常相关原因的集合是否已存在  
+			boolean recordSuppressedExceptions = (this.suppressedExceptions.get() == null);
+			// 若没有，刚创建异常集合的实例  
+			if (recordSuppressedExceptions) {
+				this.suppressedExceptions.set(new LinkedHashSet<Exception>());
+			}
+			try {
+				 // 由参数给定的singletonFactory创建singleton对象,getObject方法的具体实现由ObjectFactory的子类决定
+				singletonObject = singletonFactory.getObject();
+				newSingleton = true;
+			}
+			catch (IllegalStateException ex) {
+				// Has the singleton object implicitly appeared in the meantime ->
+				// if yes, proceed with it since the exception indicates that state.
+				singletonObject = this.singletonObjects.get(beanName);
+				if (singletonObject == null) {
 					throw ex;
 				}
-				finally {
-					// 结束前，将异常集合销毁掉  
-					if (recordSuppressedExceptions) {
-						this.suppressedExceptions = null;
+			}
+			catch (BeanCreationException ex) {
+				 // 如果异常被抓取，在这里将出现异常的原因抛出  
+				if (recordSuppressedExceptions) {
+					for (Exception suppressedException : this.suppressedExceptions.get()) {
+						ex.addRelatedCause(suppressedException);
 					}
-					// 单例创建之后的回调,默认的实现标志单例不要在创建了。
-					afterSingletonCreation(beanName);
 				}
-				if (newSingleton) {
-					// 注册创建后的单例  
-					addSingleton(beanName, singletonObject);
+				throw ex;
+			}
+			finally {
+				// 结束前，将异常集合销毁掉  
+				if (recordSuppressedExceptions) {
+					this.suppressedExceptions.remove();
 				}
+				// 单例创建之后的回调,默认的实现标志单例不要在创建了。
+				afterSingletonCreation(beanName);
+			}
+			if (newSingleton) {
+				// 注册创建后的单例  
+				addSingleton(beanName, singletonObject);
 			}
-			return (singletonObject != NULL_OBJECT ? singletonObject : null);
 		}
+		return (singletonObject != NULL_OBJECT ? singletonObject : null);
 	}
 
 	/**
@@ -304,10 +360,9 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 	 * 注册 发生在singeton bean 实例创建之间发生的异常  
 	 */
 	protected void onSuppressedException(Exception ex) {
-		synchronized (this.singletonObjects) {
-			if (this.suppressedExceptions != null) {
-				this.suppressedExceptions.add(ex);
-			}
+		Set<Exception> suppressedExceptions = this.suppressedExceptions.get();
+		if (suppressedExceptions != null) {
+			suppressedExceptions.add(ex);
 		}
 	}
 
@@ -402,6 +457,222 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		}
 	}
 
+	/**
+	 * Switch between serialized singleton creation (the default), with every
+	 * singleton created while holding the {@link #getSingletonMutex() singleton mutex},
+	 * and concurrent singleton creation, with every singleton created while holding
+	 * a creation lock of its own, allowing for independent singletons to be created
+	 * by different threads at the same time.
+	 * <p>In concurrent mode, threads which end up waiting for each other's creation
+	 * of singletons resolve this through the early reference of one of the awaited
+	 * singletons, as for a circular reference within a single thread, while the
+	 * thread which created that singleton keeps waiting. Only if none of the awaited
+	 * singletons has been instantiated yet, or if a thread would have to wait while
+	 * holding the singleton mutex, a thread fails with a
+	 * {@link SingletonCreationConflictException} rather than deadlocking, preferably
+	 * a thread which has not instantiated any of the singletons that it is creating.
+	 * Callers are expected to recover from it by retrying in serialized mode.
+	 * @param concurrent whether to allow for concurrent singleton creation
+	 * @since 4.1.10
+	 * @see #isSingletonInCreationByOtherThread
+	 */
+	protected void setConcurrentSingletonCreation(boolean concurrent) {
+		this.singletonCreationLocks = (concurrent ? new ConcurrentHashMap<String, SingletonCreationLock>(256) : null);
+	}
+
+	/**
+	 * Return whether singletons may currently be created concurrently.
+	 * @since 4.1.10
+	 * @see #setConcurrentSingletonCreation
+	 */
+	protected boolean isConcurrentSingletonCreation() {
+		return (this.singletonCreationLocks != null);
+	}
+
+	/**
+	 * Return whether the specified singleton bean is currently in creation
+	 * by a thread other than the current one, which is only possible in
+	 * concurrent mode. Early references to such a bean are not exposed.
+	 * @param beanName the name of the bean
+	 * @since 4.1.10
+	 * @see #setConcurrentSingletonCreation
+	 */
+	protected boolean isSingletonInCreationByOtherThread(String beanName) {
+		Map<String, SingletonCreationLock> creationLocks = this.singletonCreationLocks;
+		if (creationLocks == null) {
+			return false;
+		}
+		SingletonCreationLock creationLock = creationLocks.get(beanName);
+		return (creationLock != null && creationLock.isLocked() && !creationLock.isHeldByCurrentThread());
+	}
+
+	/**
+	 * Callback after the instantiation of the specified singleton bean,
+	 * before its properties get populated. Records the instantiation
+	 * for resolving conflicts between threads in concurrent mode.
+	 * @param beanName the name of the bean
+	 * @since 4.1.10
+	 * @see #setConcurrentSingletonCreation
+	 */
+	protected void singletonInstantiated(String beanName) {
+		Map<String, SingletonCreationLock> creationLocks = this.singletonCreationLocks;
+		if (creationLocks != null) {
+			SingletonCreationLock creationLock = creationLocks.get(beanName);
+			if (creationLock != null && creationLock.isHeldByCurrentThread()) {
+				creationLock.instantiated = true;
+			}
+		}
+	}
+
+	/**
+	 * Acquire the given creation lock, unless waiting for it would never end.
+	 * @return {@code true} if the lock has been acquired, or {@code false} if
+	 * the early reference of the singleton is to be used instead
+	 * @throws SingletonCreationConflictException if neither is possible
+	 */
+	private boolean acquireSingletonCreationLock(String beanName, SingletonCreationLock creationLock) {
+		if (creationLock.tryLock()) {
+			return true;
+		}
+		if (Thread.holdsLock(this.singletonObjects)) {
+			throw new SingletonCreationConflictException(beanName,
+					"Singleton is being created by another thread while the singleton mutex is held");
+		}
+		Thread currentThread = Thread.currentThread();
+		this.threadsAwaitingSingletonCreation.put(currentThread, creationLock);
+		boolean interrupted = false;
+		try {
+			while (true) {
+				if (resolveSingletonCreationDeadlock(beanName, creationLock)) {
+					return false;
+				}
+				try {
+					if (creationLock.tryLock(DEADLOCK_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+				catch (InterruptedException ex) {
+					// Keep waiting, just like an uninterruptible lock would
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			this.threadsAwaitingSingletonCreation.remove(currentThread);
+			if (interrupted) {
+				currentThread.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Check whether the current thread, waiting for the given creation lock,
+	 * is part of a cycle of threads waiting for each other, and resolve it:
+	 * through the early reference of a singleton awaited in the cycle if possible,
+	 * or otherwise by failing one of the threads, preferably one which has not
+	 * instantiated any of the singletons that it is creating yet.
+	 * <p>The threads in a cycle decide one after the other, each of them resolving
+	 * the cycle on its own behalf or leaving it to another thread in the cycle.
+	 * @return {@code true} if the current thread is to use the early reference
+	 * of the awaited singleton, or {@code false} to keep waiting
+	 * @throws SingletonCreationConflictException if the current thread has to fail
+	 */
+	private boolean resolveSingletonCreationDeadlock(String beanName, SingletonCreationLock creationLock) {
+		Thread currentThread = Thread.currentThread();
+		synchronized (this.threadsAwaitingSingletonCreation) {
+			// Follow the chain of lock owners that are waiting themselves:
+			// arriving at the current thread means that waiting would never end.
+			List<SingletonCreationLock> awaitedLocks = new ArrayList<SingletonCreationLock>();
+			Set<Thread> visitedThreads = new HashSet<Thread>();
+			SingletonCreationLock awaitedLock = creationLock;
+			while (awaitedLock != null) {
+				awaitedLocks.add(awaitedLock);
+				Thread owner = awaitedLock.getOwnerThread();
+				if (owner == currentThread) {
+					break;
+				}
+				if (owner == null || !visitedThreads.add(owner)) {
+					return false;
+				}
+				awaitedLock = this.threadsAwaitingSingletonCreation.get(owner);
+			}
+			if (awaitedLock == null) {
+				return false;
+			}
+
+			// All other threads in the cycle are waiting, so their singletons stay as they are.
+			if (hasEarlySingletonReference(creationLock.beanName)) {
+				this.threadsAwaitingSingletonCreation.remove(currentThread);
+				return true;
+			}
+			for (SingletonCreationLock lock : awaitedLocks) {
+				if (hasEarlySingletonReference(lock.beanName)) {
+					// The thread waiting for that singleton is going to take its early reference
+					return false;
+				}
+			}
+			if (hasInstantiatedSingletons(currentThread)) {
+				for (SingletonCreationLock lock : awaitedLocks) {
+					Thread owner = lock.getOwnerThread();
+					if (owner != currentThread && !hasInstantiatedSingletons(owner)) {
+						// That thread is going to fail without losing any singleton instances
+						return false;
+					}
+				}
+			}
+			this.threadsAwaitingSingletonCreation.remove(currentThread);
+			throw new SingletonCreationConflictException(beanName,
+					"Singleton is being created by another thread which is waiting for the current thread");
+		}
+	}
+
+	/**
+	 * Return whether an early reference to the specified singleton is available.
+	 */
+	private boolean hasEarlySingletonReference(String beanName) {
+		synchronized (this.singletonObjects) {
+			return (this.earlySingletonObjects.containsKey(beanName) || this.singletonFactories.containsKey(beanName));
+		}
+	}
+
+	/**
+	 * Obtain the early reference to the specified singleton, which is being
+	 * created by a thread that waits for the current thread.
+	 */
+	private Object getEarlySingletonReference(String beanName) {
+		synchronized (this.singletonObjects) {
+			Object singletonObject = this.earlySingletonObjects.get(beanName);
+			if (singletonObject == null) {
+				ObjectFactory<?> singletonFactory = this.singletonFactories.get(beanName);
+				if (singletonFactory == null) {
+					throw new SingletonCreationConflictException(beanName,
+							"Early reference to singleton is not available anymore");
+				}
+				singletonObject = singletonFactory.getObject();
+				this.earlySingletonObjects.put(beanName, singletonObject);
+				this.singletonFactories.remove(beanName);
+			}
+			return singletonObject;
+		}
+	}
+
+	/**
+	 * Return whether the given thread holds the creation lock of any singleton
+	 * that has been instantiated already.
+	 */
+	private boolean hasInstantiatedSingletons(Thread thread) {
+		Map<String, SingletonCreationLock> creationLocks = this.singletonCreationLocks;
+		if (creationLocks == null) {
+			return false;
+		}
+		for (SingletonCreationLock creationLock : creationLocks.values()) {
+			if (creationLock.instantiated && creationLock.getOwnerThread() == thread) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 
 	/**
 	 * Add the given bean to the list of disposable beans in this registry.
@@ -682,4 +953,26 @@ public class DefaultSingletonBeanRegistry extends SimpleAliasRegistry implements
 		return this.singletonObjects;
 	}
 
+
+	/**
+	 * Lock guarding the creation of a single singleton in concurrent mode,
+	 * exposing its owner for deadlock detection.
+	 */
+	@SuppressWarnings("serial")
+	private static class SingletonCreationLock extends ReentrantLock {
+
+		private final String beanName;
+
+		/** Whether the singleton has been instantiated by the lock's current owner */
+		private volatile boolean instantiated;
+
+		public SingletonCreationLock(String beanName) {
+			this.beanName = beanName;
+		}
+
+		public Thread getOwnerThread() {
+			return getOwner();
+		}
+	}
+
 }
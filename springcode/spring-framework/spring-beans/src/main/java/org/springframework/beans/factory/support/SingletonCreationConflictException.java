@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import org.springframework.beans.factory.BeanCreationException;
+
+/**
+ * Exception thrown in concurrent singleton creation mode when waiting for
+ * another thread's creation of a singleton could deadlock. Signals that
+ * the creation attempt needs to be retried with serialized singleton creation.
+ *
+ * @since 4.1.10
+ * @see DefaultSingletonBeanRegistry#setConcurrentSingletonCreation
+ */
+@SuppressWarnings("serial")
+class SingletonCreationConflictException extends BeanCreationException {
+
+	public SingletonCreationConflictException(String beanName, String msg) {
+		super(beanName, msg);
+	}
+
+}
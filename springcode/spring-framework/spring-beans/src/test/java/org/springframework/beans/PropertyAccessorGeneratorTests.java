@@ -0,0 +1,342 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.util.ReflectionUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PropertyAccessorGenerator}, through {@link BeanWrapperImpl}
+ * and {@link DirectFieldAccessor} with generated accessors enabled.
+ */
+public class PropertyAccessorGeneratorTests {
+
+	private static final String GENERATED_PACKAGE = "org.springframework.beans.generated.";
+
+
+	@Test
+	public void readAndWriteProperties() {
+		Bean bean = new Bean();
+		BeanWrapperImpl bw = createBeanWrapper(bean);
+		bw.setPropertyValue("name", "John");
+		bw.setPropertyValue("age", "42");
+		bw.setPropertyValue("active", "true");
+		bw.setPropertyValue("id", 7L);
+		bw.setPropertyValue("ratio", "0.5");
+		bw.setPropertyValue("initial", "J");
+		bw.setPropertyValue("tags", new String[] {"a", "b"});
+		bw.setPropertyValue("numbers", Arrays.asList("1", "2"));
+
+		assertTrue(bean.setterCaller.startsWith(GENERATED_PACKAGE));
+		assertEquals("John", bw.getPropertyValue("name"));
+		assertTrue(bean.getterCaller.startsWith(GENERATED_PACKAGE));
+		assertEquals(42, bw.getPropertyValue("age"));
+		assertEquals(Boolean.TRUE, bw.getPropertyValue("active"));
+		assertEquals(7L, bw.getPropertyValue("id"));
+		assertEquals(0.5, bw.getPropertyValue("ratio"));
+		assertEquals('J', bw.getPropertyValue("initial"));
+		assertArrayEquals(new String[] {"a", "b"}, (String[]) bw.getPropertyValue("tags"));
+		assertEquals(Arrays.asList(1, 2), bw.getPropertyValue("numbers"));
+		assertEquals(2, bw.getPropertyValue("numbers[1]"));
+	}
+
+	@Test
+	public void writeOnlyAndChainedSetters() {
+		Bean bean = new Bean();
+		BeanWrapperImpl bw = createBeanWrapper(bean);
+		bw.setPropertyValue("secret", "s3cr3t");
+		bw.setPropertyValue("nickname", "Johnny");
+		assertEquals("s3cr3t", bean.secret);
+		assertEquals("Johnny", bw.getPropertyValue("nickname"));
+		assertTrue(bean.setterCaller.startsWith(GENERATED_PACKAGE));
+	}
+
+	@Test
+	public void nestedProperties() {
+		Bean bean = new Bean();
+		bean.setChild(new Bean());
+		BeanWrapperImpl bw = createBeanWrapper(bean);
+		bw.setPropertyValue("child.name", "Jane");
+		assertEquals("Jane", bean.getChild().getName());
+		assertTrue(bean.getChild().setterCaller.startsWith(GENERATED_PACKAGE));
+		assertEquals("Jane", bw.getPropertyValue("child.name"));
+	}
+
+	@Test
+	public void exceptionFromGetter() {
+		BeanWrapperImpl bw = createBeanWrapper(new Bean());
+		try {
+			bw.getPropertyValue("failing");
+			fail("Should have thrown InvalidPropertyException");
+		}
+		catch (InvalidPropertyException ex) {
+			assertTrue(ex.getCause() instanceof InvocationTargetException);
+			assertEquals("getter", ex.getCause().getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void exceptionFromSetter() {
+		BeanWrapperImpl bw = createBeanWrapper(new Bean());
+		try {
+			bw.setPropertyValue("failing", "value");
+			fail("Should have thrown MethodInvocationException");
+		}
+		catch (MethodInvocationException ex) {
+			assertEquals("setter", ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void nullForPrimitiveSameAsReflection() {
+		BeanWrapperImpl reflective = new BeanWrapperImpl(new Bean());
+		BeanWrapperImpl generated = createBeanWrapper(new Bean());
+		assertEquals(getExceptionClass(reflective), getExceptionClass(generated));
+	}
+
+	@Test
+	public void nonPublicClassAccessedReflectively() {
+		NonPublicBean bean = new NonPublicBean();
+		BeanWrapperImpl bw = createBeanWrapper(bean);
+		bw.setPropertyValue("name", "John");
+		assertEquals("John", bw.getPropertyValue("name"));
+
+		CachedIntrospectionResults results = CachedIntrospectionResults.forClass(NonPublicBean.class);
+		assertNull(results.getGeneratedProperty(results.getPropertyDescriptor("name")));
+	}
+
+	@Test
+	public void disabledByDefault() {
+		Bean bean = new Bean();
+		BeanWrapperImpl bw = new BeanWrapperImpl(bean);
+		assertFalse(bw.isUseGeneratedAccessors());
+		bw.setPropertyValue("name", "John");
+		assertFalse(bean.setterCaller.startsWith(GENERATED_PACKAGE));
+	}
+
+	@Test
+	public void readAndWritePublicFields() {
+		FieldBean bean = new FieldBean();
+		DirectFieldAccessor accessor = new DirectFieldAccessor(bean);
+		accessor.setUseGeneratedAccessors(true);
+		accessor.setPropertyValue("name", "John");
+		accessor.setPropertyValue("age", "42");
+		accessor.setPropertyValue("hidden", "value");
+		assertEquals("John", bean.name);
+		assertEquals(42, bean.age);
+		assertEquals("John", accessor.getPropertyValue("name"));
+		assertEquals(42, accessor.getPropertyValue("age"));
+		assertEquals("value", accessor.getPropertyValue("hidden"));
+
+		assertNotNull(PropertyAccessorGenerator.forField(ReflectionUtils.findField(FieldBean.class, "name")));
+		assertNull(PropertyAccessorGenerator.forField(ReflectionUtils.findField(FieldBean.class, "hidden")));
+	}
+
+	@Test
+	public void publicFieldTypeMismatch() {
+		DirectFieldAccessor accessor = new DirectFieldAccessor(new FieldBean());
+		accessor.setUseGeneratedAccessors(true);
+		try {
+			accessor.setPropertyValue("age", "not a number");
+			fail("Should have thrown TypeMismatchException");
+		}
+		catch (TypeMismatchException ex) {
+			// expected
+		}
+	}
+
+
+	private BeanWrapperImpl createBeanWrapper(Object target) {
+		BeanWrapperImpl bw = new BeanWrapperImpl(target);
+		bw.setUseGeneratedAccessors(true);
+		return bw;
+	}
+
+	private Class<?> getExceptionClass(BeanWrapperImpl bw) {
+		try {
+			bw.setPropertyValue("age", null);
+			return null;
+		}
+		catch (Exception ex) {
+			return ex.getClass();
+		}
+	}
+
+
+	public static class Bean {
+
+		private String name;
+
+		private int age;
+
+		private boolean active;
+
+		private long id;
+
+		private double ratio;
+
+		private char initial;
+
+		private String[] tags;
+
+		private List<Integer> numbers;
+
+		private String nickname;
+
+		private String secret;
+
+		private Bean child;
+
+		private String getterCaller = "";
+
+		private String setterCaller = "";
+
+		public String getName() {
+			this.getterCaller = getCaller();
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.setterCaller = getCaller();
+			this.name = name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		public boolean isActive() {
+			return this.active;
+		}
+
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		public long getId() {
+			return this.id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public double getRatio() {
+			return this.ratio;
+		}
+
+		public void setRatio(double ratio) {
+			this.ratio = ratio;
+		}
+
+		public char getInitial() {
+			return this.initial;
+		}
+
+		public void setInitial(char initial) {
+			this.initial = initial;
+		}
+
+		public String[] getTags() {
+			return this.tags;
+		}
+
+		public void setTags(String[] tags) {
+			this.tags = tags;
+		}
+
+		public List<Integer> getNumbers() {
+			return this.numbers;
+		}
+
+		public void setNumbers(List<Integer> numbers) {
+			this.numbers = numbers;
+		}
+
+		public String getNickname() {
+			return this.nickname;
+		}
+
+		public Bean setNickname(String nickname) {
+			this.setterCaller = getCaller();
+			this.nickname = nickname;
+			return this;
+		}
+
+		public void setSecret(String secret) {
+			this.setterCaller = getCaller();
+			this.secret = secret;
+		}
+
+		public Bean getChild() {
+			return this.child;
+		}
+
+		public void setChild(Bean child) {
+			this.child = child;
+		}
+
+		public String getFailing() {
+			throw new IllegalStateException("getter");
+		}
+
+		public void setFailing(String failing) {
+			throw new IllegalStateException("setter");
+		}
+
+		private static String getCaller() {
+			return new Throwable().getStackTrace()[2].getClassName();
+		}
+	}
+
+
+	private static class NonPublicBean {
+
+		private String name;
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+
+	public static class FieldBean {
+
+		public String name;
+
+		public int age;
+
+		@SuppressWarnings("unused")
+		private String hidden;
+	}
+
+}
@@ -32,6 +32,13 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Priority;
 import javax.security.auth.Subject;
 
@@ -2686,6 +2693,195 @@ public class DefaultListableBeanFactoryTests {
 		}
 	}
 
+	@Test
+	public void testByAnnotationLookupWithFrozenConfiguration() {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.registerBeanDefinition("high", new RootBeanDefinition(HighPriorityTestBean.class));
+		lbf.registerBeanDefinition("plain", new RootBeanDefinition(TestBean.class));
+		lbf.freezeConfiguration();
+
+		String[] beanNames = lbf.getBeanNamesForAnnotation(Priority.class);
+		assertEquals(1, beanNames.length);
+		assertEquals("high", beanNames[0]);
+		assertSame(beanNames, lbf.getBeanNamesForAnnotation(Priority.class));
+
+		lbf.registerBeanDefinition("low", new RootBeanDefinition(LowPriorityTestBean.class));
+		beanNames = lbf.getBeanNamesForAnnotation(Priority.class);
+		assertEquals(2, beanNames.length);
+		assertEquals("low", beanNames[1]);
+		assertEquals(2, lbf.getBeansWithAnnotation(Priority.class).size());
+
+		lbf.registerSingleton("manual", new LowPriorityTestBean());
+		assertEquals(3, lbf.getBeanNamesForAnnotation(Priority.class).length);
+		lbf.destroySingleton("manual");
+		assertEquals(2, lbf.getBeanNamesForAnnotation(Priority.class).length);
+
+		lbf.removeBeanDefinition("high");
+		beanNames = lbf.getBeanNamesForAnnotation(Priority.class);
+		assertEquals(1, beanNames.length);
+		assertEquals("low", beanNames[0]);
+	}
+
+	@Test
+	public void testByAnnotationLookupNotCachedWithoutFrozenConfiguration() {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.registerBeanDefinition("high", new RootBeanDefinition(HighPriorityTestBean.class));
+
+		String[] beanNames = lbf.getBeanNamesForAnnotation(Priority.class);
+		assertEquals(1, beanNames.length);
+		assertNotSame(beanNames, lbf.getBeanNamesForAnnotation(Priority.class));
+	}
+
+	@Test
+	public void testByTypeLookupWithFrozenConfigurationAfterRegistration() {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.registerBeanDefinition("high", new RootBeanDefinition(HighPriorityTestBean.class));
+		lbf.freezeConfiguration();
+		assertEquals(1, lbf.getBeanNamesForType(TestBean.class).length);
+
+		lbf.registerBeanDefinition("low", new RootBeanDefinition(LowPriorityTestBean.class));
+		assertEquals(2, lbf.getBeanNamesForType(TestBean.class).length);
+	}
+
+
+	@Test
+	public void testConcurrentPreInstantiation() throws Exception {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		lbf.setBootstrapExecutor(executor);
+		CountDownLatch latch = new CountDownLatch(2);
+		RootBeanDefinition bd1 = new RootBeanDefinition(RendezvousBean.class);
+		bd1.getConstructorArgumentValues().addGenericArgumentValue(latch);
+		lbf.registerBeanDefinition("rendezvous1", bd1);
+		RootBeanDefinition bd2 = new RootBeanDefinition(RendezvousBean.class);
+		bd2.getConstructorArgumentValues().addGenericArgumentValue(latch);
+		lbf.registerBeanDefinition("rendezvous2", bd2);
+		RootBeanDefinition tb = new RootBeanDefinition(TestBean.class);
+		tb.getPropertyValues().add("spouse", new RuntimeBeanReference("spouse"));
+		lbf.registerBeanDefinition("test", tb);
+		lbf.registerBeanDefinition("spouse", new RootBeanDefinition(TestBean.class));
+		try {
+			lbf.preInstantiateSingletons();
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		// Both beans can only have met each other if created concurrently
+		assertTrue(lbf.getBean("rendezvous1", RendezvousBean.class).met);
+		assertTrue(lbf.getBean("rendezvous2", RendezvousBean.class).met);
+		assertSame(lbf.getBean("spouse"), lbf.getBean("test", TestBean.class).getSpouse());
+		assertEquals(4, lbf.getSingletonCount());
+	}
+
+	@Test
+	public void testConcurrentPreInstantiationWithCircularReferenceAcrossThreads() throws Exception {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		lbf.setBootstrapExecutor(executor);
+		CountDownLatch latch = new CountDownLatch(2);
+		// Circular reference only known when autowiring: both beans get created on different threads
+		RootBeanDefinition bd1 = new RootBeanDefinition(CircularRendezvousBean.class);
+		bd1.setAutowireMode(RootBeanDefinition.AUTOWIRE_BY_NAME);
+		bd1.getConstructorArgumentValues().addGenericArgumentValue(latch);
+		lbf.registerBeanDefinition("other", bd1);
+		RootBeanDefinition bd2 = new RootBeanDefinition(OtherCircularRendezvousBean.class);
+		bd2.setAutowireMode(RootBeanDefinition.AUTOWIRE_BY_NAME);
+		bd2.getConstructorArgumentValues().addGenericArgumentValue(latch);
+		lbf.registerBeanDefinition("circular", bd2);
+		try {
+			lbf.preInstantiateSingletons();
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		CircularRendezvousBean bean1 = lbf.getBean("other", CircularRendezvousBean.class);
+		OtherCircularRendezvousBean bean2 = lbf.getBean("circular", OtherCircularRendezvousBean.class);
+		assertSame(bean2, bean1.getCircular());
+		assertSame(bean1, bean2.getOther());
+	}
+
+	@Test
+	public void testConcurrentPreInstantiationWithCircularReferenceAcrossThreadsCreatesEachBeanOnce() throws Exception {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		lbf.setBootstrapExecutor(executor);
+		CountDownLatch latch = new CountDownLatch(2);
+		LifecycleCounter counter1 = new LifecycleCounter();
+		LifecycleCounter counter2 = new LifecycleCounter();
+		// Both beans are instantiated before either of them gets its circular reference injected
+		RootBeanDefinition bd1 = new RootBeanDefinition(CircularRendezvousBean.class);
+		bd1.setAutowireMode(RootBeanDefinition.AUTOWIRE_BY_NAME);
+		bd1.getConstructorArgumentValues().addGenericArgumentValue(latch);
+		bd1.getConstructorArgumentValues().addGenericArgumentValue(counter1);
+		lbf.registerBeanDefinition("other", bd1);
+		RootBeanDefinition bd2 = new RootBeanDefinition(OtherCircularRendezvousBean.class);
+		bd2.setAutowireMode(RootBeanDefinition.AUTOWIRE_BY_NAME);
+		bd2.getConstructorArgumentValues().addGenericArgumentValue(latch);
+		bd2.getConstructorArgumentValues().addGenericArgumentValue(counter2);
+		lbf.registerBeanDefinition("circular", bd2);
+		try {
+			lbf.preInstantiateSingletons();
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		CircularRendezvousBean bean1 = lbf.getBean("other", CircularRendezvousBean.class);
+		OtherCircularRendezvousBean bean2 = lbf.getBean("circular", OtherCircularRendezvousBean.class);
+		assertSame(bean2, bean1.getCircular());
+		assertSame(bean1, bean2.getOther());
+		assertEquals(1, counter1.constructed.get());
+		assertEquals(1, counter1.initialized.get());
+		assertEquals(1, counter2.constructed.get());
+		assertEquals(1, counter2.initialized.get());
+	}
+
+	@Test
+	public void testConcurrentPreInstantiationReportsEarliestRegisteredFailure() throws Exception {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		lbf.setBootstrapExecutor(executor);
+		lbf.registerBeanDefinition("ok", new RootBeanDefinition(TestBean.class));
+		RootBeanDefinition slow = new RootBeanDefinition(FailingInitBean.class);
+		slow.getConstructorArgumentValues().addGenericArgumentValue(200L);
+		lbf.registerBeanDefinition("slowFailure", slow);
+		RootBeanDefinition fast = new RootBeanDefinition(FailingInitBean.class);
+		fast.getConstructorArgumentValues().addGenericArgumentValue(0L);
+		lbf.registerBeanDefinition("fastFailure", fast);
+		try {
+			lbf.preInstantiateSingletons();
+			fail("Should have thrown BeanCreationException");
+		}
+		catch (BeanCreationException ex) {
+			assertEquals("slowFailure", ex.getBeanName());
+			assertTrue(ex.getMostSpecificCause() instanceof IllegalStateException);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrentPreInstantiationWithRejectedExecution() {
+		DefaultListableBeanFactory lbf = new DefaultListableBeanFactory();
+		lbf.setBootstrapExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException();
+			}
+		});
+		RootBeanDefinition tb = new RootBeanDefinition(TestBean.class);
+		tb.getPropertyValues().add("spouse", new RuntimeBeanReference("spouse"));
+		lbf.registerBeanDefinition("test", tb);
+		lbf.registerBeanDefinition("spouse", new RootBeanDefinition(TestBean.class));
+		lbf.preInstantiateSingletons();
+
+		assertTrue(lbf.containsSingleton("test"));
+		assertSame(lbf.getBean("spouse"), lbf.getBean("test", TestBean.class).getSpouse());
+	}
+
 
 	static class A { }
 
@@ -3130,4 +3326,103 @@ public class DefaultListableBeanFactoryTests {
 		}
 	}
 
+
+	public static class RendezvousBean {
+
+		public final boolean met;
+
+		public RendezvousBean(CountDownLatch latch) throws InterruptedException {
+			latch.countDown();
+			this.met = latch.await(5, TimeUnit.SECONDS);
+		}
+	}
+
+
+	public static class CircularRendezvousBean implements InitializingBean {
+
+		private final LifecycleCounter counter;
+
+		private OtherCircularRendezvousBean circular;
+
+		public CircularRendezvousBean(CountDownLatch latch) throws InterruptedException {
+			this(latch, new LifecycleCounter());
+		}
+
+		public CircularRendezvousBean(CountDownLatch latch, LifecycleCounter counter) throws InterruptedException {
+			this.counter = counter;
+			counter.constructed.incrementAndGet();
+			latch.countDown();
+			latch.await(5, TimeUnit.SECONDS);
+		}
+
+		public OtherCircularRendezvousBean getCircular() {
+			return this.circular;
+		}
+
+		public void setCircular(OtherCircularRendezvousBean circular) {
+			this.circular = circular;
+		}
+
+		@Override
+		public void afterPropertiesSet() {
+			this.counter.initialized.incrementAndGet();
+		}
+	}
+
+
+	public static class OtherCircularRendezvousBean implements InitializingBean {
+
+		private final LifecycleCounter counter;
+
+		private CircularRendezvousBean other;
+
+		public OtherCircularRendezvousBean(CountDownLatch latch) throws InterruptedException {
+			this(latch, new LifecycleCounter());
+		}
+
+		public OtherCircularRendezvousBean(CountDownLatch latch, LifecycleCounter counter) throws InterruptedException {
+			this.counter = counter;
+			counter.constructed.incrementAndGet();
+			latch.countDown();
+			latch.await(5, TimeUnit.SECONDS);
+		}
+
+		public CircularRendezvousBean getOther() {
+			return this.other;
+		}
+
+		public void setOther(CircularRendezvousBean other) {
+			this.other = other;
+		}
+
+		@Override
+		public void afterPropertiesSet() {
+			this.counter.initialized.incrementAndGet();
+		}
+	}
+
+
+	public static class LifecycleCounter {
+
+		public final AtomicInteger constructed = new AtomicInteger();
+
+		public final AtomicInteger initialized = new AtomicInteger();
+	}
+
+
+	public static class FailingInitBean implements InitializingBean {
+
+		private final long delay;
+
+		public FailingInitBean(long delay) {
+			this.delay = delay;
+		}
+
+		@Override
+		public void afterPropertiesSet() throws Exception {
+			Thread.sleep(this.delay);
+			throw new IllegalStateException("Initialization failed");
+		}
+	}
+
 }
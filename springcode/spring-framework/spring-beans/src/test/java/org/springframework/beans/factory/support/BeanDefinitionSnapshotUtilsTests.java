@@ -0,0 +1,195 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.xml.XmlBeanCollectionTests;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.tests.sample.beans.HasMap;
+import org.springframework.tests.sample.beans.TestBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link BeanDefinitionSnapshotUtils}.
+ */
+public class BeanDefinitionSnapshotUtilsTests {
+
+	private static final String FINGERPRINT = "fingerprint";
+
+
+	@Test
+	public void roundTripCollections() throws IOException {
+		DefaultListableBeanFactory original = loadXml("collections.xml");
+		DefaultListableBeanFactory restored = roundTrip(original);
+
+		assertSameBeanDefinitions(original, restored);
+		assertEquals(original.getBean("jenny"), restored.getBean("jenny"));
+		assertEquals("verbose", ((TestBean) restored.getBean("verbose2")).getName());
+		assertEquals(getHasMap(original, "literalMap").getMap(), getHasMap(restored, "literalMap").getMap());
+		assertEquals(getHasMap(original, "props").getProps(), getHasMap(restored, "props").getProps());
+		assertArrayEquals(getHasMap(original, "objectArray").getObjectArray(),
+				getHasMap(restored, "objectArray").getObjectArray());
+		assertEquals(((XmlBeanCollectionTests.MapAndSet) original.getBean("setAndMap")).getObject(),
+				((XmlBeanCollectionTests.MapAndSet) restored.getBean("setAndMap")).getObject());
+	}
+
+	@Test
+	public void roundTripCollectionMerging() throws IOException {
+		DefaultListableBeanFactory original = loadXml("collectionMerging.xml");
+		DefaultListableBeanFactory restored = roundTrip(original);
+
+		assertSameBeanDefinitions(original, restored);
+		TestBean bean = (TestBean) restored.getBean("childWithList");
+		assertEquals(((TestBean) original.getBean("childWithList")).getSomeList(), bean.getSomeList());
+		assertEquals(3, bean.getSomeList().size());
+	}
+
+	@Test
+	public void roundTripMetadataAttributesAndAliases() throws IOException {
+		DefaultListableBeanFactory original = loadXml("withMeta.xml");
+		original.registerAlias("testBean1", "alias1");
+		DefaultListableBeanFactory restored = roundTrip(original);
+
+		assertSameBeanDefinitions(original, restored);
+		BeanDefinition bd = restored.getBeanDefinition("testBean1");
+		assertEquals("bar", bd.getAttribute("foo"));
+		assertNotNull(((AbstractBeanDefinition) bd).getMetadataAttribute("foo"));
+		assertEquals("testBean1", restored.getBeanDefinition("testBean2").getParentName());
+		assertEquals("Harrop", restored.getBeanDefinition("testBean3").getPropertyValues()
+				.getPropertyValue("name").getAttribute("surname"));
+		assertEquals(Arrays.asList("alias1"), Arrays.asList(restored.getAliases("testBean1")));
+		assertSame(restored.getBean("alias1"), restored.getBean("testBean1"));
+	}
+
+	@Test
+	public void roundTripProgrammaticDefinitions() throws IOException {
+		DefaultListableBeanFactory original = new DefaultListableBeanFactory();
+		RootBeanDefinition bd = new RootBeanDefinition(TestBean.class);
+		bd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+		bd.setLazyInit(true);
+		bd.setPrimary(true);
+		bd.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+		bd.setDependsOn(new String[] {"other"});
+		bd.addQualifier(new AutowireCandidateQualifier("myQualifier", "myValue"));
+		bd.getConstructorArgumentValues().addIndexedArgumentValue(0, "name", String.class.getName());
+		bd.getPropertyValues().add("age", 42).add("spouse", new RuntimeBeanReference("other"));
+		bd.getMethodOverrides().addOverride(new LookupOverride("getSpouse", "other"));
+		bd.setAttribute("flag", Boolean.TRUE);
+		bd.setOriginatingBeanDefinition(new GenericBeanDefinition());
+		original.registerBeanDefinition("bean", bd);
+		original.registerBeanDefinition("other", new ChildBeanDefinition("parent"));
+		DefaultListableBeanFactory restored = roundTrip(original);
+
+		assertSameBeanDefinitions(original, restored);
+		RootBeanDefinition restoredBd = (RootBeanDefinition) restored.getBeanDefinition("bean");
+		assertEquals(TestBean.class.getName(), restoredBd.getBeanClassName());
+		assertFalse(restoredBd.hasBeanClass());
+		assertEquals(Boolean.TRUE, restoredBd.getAttribute("flag"));
+		assertEquals("myValue", restoredBd.getQualifier("myQualifier").getAttribute(AutowireCandidateQualifier.VALUE_KEY));
+		assertTrue(restoredBd.getOriginatingBeanDefinition() instanceof GenericBeanDefinition);
+		assertTrue(restored.getBeanDefinition("other") instanceof ChildBeanDefinition);
+	}
+
+	@Test
+	public void fingerprintMismatch() throws IOException {
+		DefaultListableBeanFactory original = loadXml("collections.xml");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BeanDefinitionSnapshotUtils.writeSnapshot(original, FINGERPRINT, out);
+
+		DefaultListableBeanFactory restored = new DefaultListableBeanFactory();
+		assertEquals(-1, BeanDefinitionSnapshotUtils.readSnapshot(
+				new ByteArrayInputStream(out.toByteArray()), "other", restored));
+		assertEquals(0, restored.getBeanDefinitionCount());
+	}
+
+	@Test
+	public void corruptSnapshot() throws IOException {
+		DefaultListableBeanFactory original = loadXml("collections.xml");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BeanDefinitionSnapshotUtils.writeSnapshot(original, FINGERPRINT, out);
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() / 2);
+
+		DefaultListableBeanFactory restored = new DefaultListableBeanFactory();
+		try {
+			BeanDefinitionSnapshotUtils.readSnapshot(new ByteArrayInputStream(truncated), FINGERPRINT, restored);
+			fail("Should have thrown IOException");
+		}
+		catch (IOException ex) {
+			// expected
+		}
+		assertEquals(0, restored.getBeanDefinitionCount());
+	}
+
+	@Test(expected = NotSerializableException.class)
+	public void unsupportedPropertyValue() throws IOException {
+		DefaultListableBeanFactory original = new DefaultListableBeanFactory();
+		RootBeanDefinition bd = new RootBeanDefinition(TestBean.class);
+		bd.getPropertyValues().add("spouse", new TestBean());
+		original.registerBeanDefinition("bean", bd);
+		BeanDefinitionSnapshotUtils.writeSnapshot(original, FINGERPRINT, new ByteArrayOutputStream());
+	}
+
+
+	private DefaultListableBeanFactory loadXml(String resourceName) {
+		DefaultListableBeanFactory bf = new DefaultListableBeanFactory();
+		new XmlBeanDefinitionReader(bf).loadBeanDefinitions(
+				new ClassPathResource(resourceName, XmlBeanDefinitionReader.class));
+		return bf;
+	}
+
+	private HasMap getHasMap(DefaultListableBeanFactory bf, String beanName) {
+		return bf.getBean(beanName, HasMap.class);
+	}
+
+	private DefaultListableBeanFactory roundTrip(DefaultListableBeanFactory original) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BeanDefinitionSnapshotUtils.writeSnapshot(original, FINGERPRINT, out);
+		DefaultListableBeanFactory restored = new DefaultListableBeanFactory();
+		int count = BeanDefinitionSnapshotUtils.readSnapshot(
+				new ByteArrayInputStream(out.toByteArray()), FINGERPRINT, restored);
+		assertEquals(original.getBeanDefinitionCount(), count);
+		return restored;
+	}
+
+	private void assertSameBeanDefinitions(DefaultListableBeanFactory expected, DefaultListableBeanFactory actual) {
+		List<String> beanNames = Arrays.asList(expected.getBeanDefinitionNames());
+		assertEquals(beanNames, Arrays.asList(actual.getBeanDefinitionNames()));
+		for (String beanName : beanNames) {
+			BeanDefinition expectedBd = expected.getBeanDefinition(beanName);
+			BeanDefinition actualBd = actual.getBeanDefinition(beanName);
+			assertEquals(beanName, expectedBd.toString(), actualBd.toString());
+			assertEquals(beanName, expectedBd.getPropertyValues().size(), actualBd.getPropertyValues().size());
+			assertEquals(beanName, expectedBd.getConstructorArgumentValues().getArgumentCount(),
+					actualBd.getConstructorArgumentValues().getArgumentCount());
+			assertEquals(beanName, Arrays.asList(expected.getAliases(beanName)),
+					Arrays.asList(actual.getAliases(beanName)));
+		}
+	}
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.tests.sample.beans.TestBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for instantiation plans, as enabled through
+ * {@link AbstractAutowireCapableBeanFactory#setCacheInstantiationPlans}.
+ */
+public class InstantiationPlanTests {
+
+	@Test
+	public void autowiredConstructorArgumentShortcut() {
+		DefaultListableBeanFactory bf = createBeanFactory(true);
+		bf.registerBeanDefinition("testBean", new RootBeanDefinition(TestBean.class));
+		registerPrototype(bf, "consumer", ConstructorConsumer.class);
+
+		ConstructorConsumer consumer1 = bf.getBean("consumer", ConstructorConsumer.class);
+		ConstructorConsumer consumer2 = bf.getBean("consumer", ConstructorConsumer.class);
+		assertNotSame(consumer1, consumer2);
+		assertSame(bf.getBean("testBean"), consumer1.testBean);
+		assertSame(consumer1.testBean, consumer2.testBean);
+
+		Object[] preparedArguments = getMergedBeanDefinition(bf, "consumer").preparedConstructorArguments;
+		assertTrue(preparedArguments[0] instanceof RuntimeBeanReference);
+		assertEquals("testBean", ((RuntimeBeanReference) preparedArguments[0]).getBeanName());
+		assertTrue(Arrays.asList(bf.getDependentBeans("testBean")).contains("consumer"));
+	}
+
+	@Test
+	public void autowiredConstructorArgumentWithoutPlan() {
+		DefaultListableBeanFactory bf = createBeanFactory(false);
+		bf.registerBeanDefinition("testBean", new RootBeanDefinition(TestBean.class));
+		registerPrototype(bf, "consumer", ConstructorConsumer.class);
+
+		ConstructorConsumer consumer1 = bf.getBean("consumer", ConstructorConsumer.class);
+		ConstructorConsumer consumer2 = bf.getBean("consumer", ConstructorConsumer.class);
+		assertSame(consumer1.testBean, consumer2.testBean);
+
+		Object[] preparedArguments = getMergedBeanDefinition(bf, "consumer").preparedConstructorArguments;
+		assertFalse(preparedArguments[0] instanceof RuntimeBeanReference);
+	}
+
+	@Test
+	public void autowiredCollectionArgumentNotShortcut() {
+		DefaultListableBeanFactory bf = createBeanFactory(true);
+		bf.registerBeanDefinition("testBean1", new RootBeanDefinition(TestBean.class));
+		bf.registerBeanDefinition("testBean2", new RootBeanDefinition(TestBean.class));
+		registerPrototype(bf, "consumer", CollectionConsumer.class);
+
+		assertEquals(2, bf.getBean("consumer", CollectionConsumer.class).testBeans.size());
+		assertEquals(2, bf.getBean("consumer", CollectionConsumer.class).testBeans.size());
+
+		Object[] preparedArguments = getMergedBeanDefinition(bf, "consumer").preparedConstructorArguments;
+		assertFalse(preparedArguments[0] instanceof RuntimeBeanReference);
+	}
+
+	@Test
+	public void customInitMethodCached() {
+		DefaultListableBeanFactory bf = createBeanFactory(true);
+		RootBeanDefinition bd = registerPrototype(bf, "initBean", InitBean.class);
+		bd.setInitMethodName("init");
+
+		assertTrue(bf.getBean("initBean", InitBean.class).initialized);
+		RootBeanDefinition mbd = getMergedBeanDefinition(bf, "initBean");
+		assertNotNull(mbd.resolvedInitMethod);
+		assertEquals("init", mbd.resolvedInitMethod.getName());
+		assertTrue(bf.getBean("initBean", InitBean.class).initialized);
+	}
+
+	@Test
+	public void propertiesPopulatedThroughGeneratedAccessors() {
+		DefaultListableBeanFactory bf = createBeanFactory(true);
+		RootBeanDefinition bd = registerPrototype(bf, "propertyBean", PropertyBean.class);
+		bd.getPropertyValues().add("name", "John").add("age", "42");
+
+		for (int i = 0; i < 2; i++) {
+			PropertyBean bean = bf.getBean("propertyBean", PropertyBean.class);
+			assertEquals("John", bean.getName());
+			assertEquals(42, bean.getAge());
+			assertTrue(bean.setterCaller.startsWith("org.springframework.beans.generated."));
+		}
+	}
+
+	@Test
+	public void singletonPropertiesNotPopulatedThroughGeneratedAccessors() {
+		DefaultListableBeanFactory bf = createBeanFactory(true);
+		RootBeanDefinition bd = new RootBeanDefinition(PropertyBean.class);
+		bd.getPropertyValues().add("name", "John").add("age", "42");
+		bf.registerBeanDefinition("propertyBean", bd);
+
+		PropertyBean bean = bf.getBean("propertyBean", PropertyBean.class);
+		assertEquals("John", bean.getName());
+		assertEquals(42, bean.getAge());
+		assertFalse(bean.setterCaller.startsWith("org.springframework.beans.generated."));
+	}
+
+	@Test
+	public void planSettingCopiedWithConfiguration() {
+		DefaultListableBeanFactory bf = createBeanFactory(true);
+		DefaultListableBeanFactory copy = new DefaultListableBeanFactory();
+		assertFalse(copy.isCacheInstantiationPlans());
+		copy.copyConfigurationFrom(bf);
+		assertTrue(copy.isCacheInstantiationPlans());
+	}
+
+
+	private DefaultListableBeanFactory createBeanFactory(boolean cacheInstantiationPlans) {
+		DefaultListableBeanFactory bf = new DefaultListableBeanFactory();
+		bf.setCacheInstantiationPlans(cacheInstantiationPlans);
+		return bf;
+	}
+
+	private RootBeanDefinition registerPrototype(DefaultListableBeanFactory bf, String beanName, Class<?> beanClass) {
+		RootBeanDefinition bd = new RootBeanDefinition(beanClass);
+		bd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+		bd.setAutowireMode(RootBeanDefinition.AUTOWIRE_CONSTRUCTOR);
+		bf.registerBeanDefinition(beanName, bd);
+		return bd;
+	}
+
+	private RootBeanDefinition getMergedBeanDefinition(DefaultListableBeanFactory bf, String beanName) {
+		return (RootBeanDefinition) bf.getMergedBeanDefinition(beanName);
+	}
+
+
+	public static class ConstructorConsumer {
+
+		private final TestBean testBean;
+
+		public ConstructorConsumer(TestBean testBean) {
+			this.testBean = testBean;
+		}
+	}
+
+
+	public static class CollectionConsumer {
+
+		private final List<TestBean> testBeans;
+
+		public CollectionConsumer(List<TestBean> testBeans) {
+			this.testBeans = testBeans;
+		}
+	}
+
+
+	public static class InitBean {
+
+		private boolean initialized;
+
+		public void init() {
+			this.initialized = true;
+		}
+	}
+
+
+	public static class PropertyBean {
+
+		private String name;
+
+		private int age;
+
+		private String setterCaller = "";
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.setterCaller = new Throwable().getStackTrace()[1].getClassName();
+			this.name = name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+	}
+
+}
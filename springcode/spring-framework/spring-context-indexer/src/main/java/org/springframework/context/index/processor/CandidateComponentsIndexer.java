@@ -0,0 +1,217 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.index.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation {@link javax.annotation.processing.Processor} that writes the index
+ * of candidate components to {@code META-INF/spring.components}, allowing
+ * component scanning to skip walking the classpath at runtime.
+ *
+ * <p>Indexes every class carrying Spring's {@code @Component} stereotype, directly
+ * or as a meta-annotation (e.g. through {@code @Service}), as well as every class
+ * carrying a {@code javax} annotation such as {@code @ManagedBean} or {@code @Named}.
+ * Annotations of superclasses and interfaces are taken into account too, since
+ * type filters may consider them. Entries for classes that are not part of the
+ * current compilation are retained from a previously generated index, as long
+ * as those classes still exist.
+ *
+ * @since 4.1.10
+ * @see org.springframework.context.index.CandidateComponentsIndexLoader
+ */
+@SupportedAnnotationTypes("*")
+public class CandidateComponentsIndexer extends AbstractProcessor {
+
+	static final String COMPONENTS_RESOURCE_LOCATION = "META-INF/spring.components";
+
+	private static final String COMPONENT_ANNOTATION = "org.springframework.stereotype.Component";
+
+	/** Candidate types (binary names) --> their stereotypes, sorted for reproducible output */
+	private final Map<String, Set<String>> candidates = new TreeMap<String, Set<String>>();
+
+	private final Set<String> processedTypes = new HashSet<String>();
+
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getRootElements()) {
+			processElement(element);
+		}
+		if (roundEnv.processingOver()) {
+			writeIndex();
+		}
+		return false;
+	}
+
+	private void processElement(Element element) {
+		if (element.getKind() == ElementKind.CLASS) {
+			TypeElement type = (TypeElement) element;
+			String typeName = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+			this.processedTypes.add(typeName);
+			Set<String> stereotypes = new TreeSet<String>();
+			collectStereotypes(type, stereotypes, new HashSet<String>());
+			if (!stereotypes.isEmpty()) {
+				this.candidates.put(typeName, stereotypes);
+			}
+		}
+		for (Element enclosed : element.getEnclosedElements()) {
+			if (enclosed.getKind().isClass() || enclosed.getKind().isInterface()) {
+				processElement(enclosed);
+			}
+		}
+	}
+
+	private void collectStereotypes(TypeElement type, Set<String> stereotypes, Set<String> visitedTypes) {
+		if (!visitedTypes.add(type.getQualifiedName().toString())) {
+			return;
+		}
+		for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			String annotationName = annotationType.getQualifiedName().toString();
+			if (annotationName.startsWith("javax.")) {
+				stereotypes.add(annotationName);
+			}
+			if (isComponentAnnotation(annotationType, new HashSet<String>())) {
+				stereotypes.add(COMPONENT_ANNOTATION);
+			}
+		}
+		collectSupertypeStereotypes(type.getSuperclass(), stereotypes, visitedTypes);
+		for (TypeMirror ifc : type.getInterfaces()) {
+			collectSupertypeStereotypes(ifc, stereotypes, visitedTypes);
+		}
+	}
+
+	private void collectSupertypeStereotypes(TypeMirror supertype, Set<String> stereotypes, Set<String> visitedTypes) {
+		if (supertype.getKind() == TypeKind.DECLARED) {
+			collectStereotypes((TypeElement) ((DeclaredType) supertype).asElement(), stereotypes, visitedTypes);
+		}
+	}
+
+	private boolean isComponentAnnotation(TypeElement annotationType, Set<String> visitedAnnotations) {
+		String annotationName = annotationType.getQualifiedName().toString();
+		if (COMPONENT_ANNOTATION.equals(annotationName)) {
+			return true;
+		}
+		if (annotationName.startsWith("java.lang.annotation.") || !visitedAnnotations.add(annotationName)) {
+			return false;
+		}
+		for (AnnotationMirror metaAnnotation : annotationType.getAnnotationMirrors()) {
+			if (isComponentAnnotation((TypeElement) metaAnnotation.getAnnotationType().asElement(), visitedAnnotations)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeIndex() {
+		Map<String, Set<String>> index = new TreeMap<String, Set<String>>(this.candidates);
+		addPreviousCandidates(index);
+		if (index.isEmpty()) {
+			return;
+		}
+		try {
+			FileObject file = this.processingEnv.getFiler().createResource(
+					StandardLocation.CLASS_OUTPUT, "", COMPONENTS_RESOURCE_LOCATION);
+			Writer writer = new OutputStreamWriter(file.openOutputStream(), "UTF-8");
+			try {
+				for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+					writer.write(entry.getKey());
+					writer.write('=');
+					boolean first = true;
+					for (String stereotype : entry.getValue()) {
+						if (!first) {
+							writer.write(',');
+						}
+						writer.write(stereotype);
+						first = false;
+					}
+					writer.write('\n');
+				}
+			}
+			finally {
+				writer.close();
+			}
+		}
+		catch (IOException ex) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Failed to write candidate components index: " + ex);
+		}
+	}
+
+	/**
+	 * Retain the entries of a previously generated index for types that are not
+	 * part of the current (incremental) compilation but still exist.
+	 */
+	private void addPreviousCandidates(Map<String, Set<String>> index) {
+		Properties previous = new Properties();
+		try {
+			FileObject file = this.processingEnv.getFiler().getResource(
+					StandardLocation.CLASS_OUTPUT, "", COMPONENTS_RESOURCE_LOCATION);
+			InputStream is = file.openInputStream();
+			try {
+				previous.load(is);
+			}
+			finally {
+				is.close();
+			}
+		}
+		catch (IOException ex) {
+			// No previous index available
+			return;
+		}
+		for (String typeName : previous.stringPropertyNames()) {
+			if (!this.processedTypes.contains(typeName) &&
+					this.processingEnv.getElementUtils().getTypeElement(typeName.replace('$', '.')) != null) {
+				Set<String> stereotypes = new TreeSet<String>();
+				for (String stereotype : previous.getProperty(typeName).split(",")) {
+					stereotypes.add(stereotype.trim());
+				}
+				index.put(typeName, stereotypes);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Annotation processor generating the index of candidate components
+ * used by component scanning, to be applied at build time.
+ */
+package org.springframework.context.index.processor;
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.index.processor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CandidateComponentsIndexer}.
+ */
+public class CandidateComponentsIndexerTests {
+
+	private static final String COMPONENT = "org.springframework.stereotype.Component";
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File outputDirectory;
+
+
+	@Before
+	public void setup() throws IOException {
+		this.outputDirectory = this.temporaryFolder.newFolder();
+	}
+
+
+	@Test
+	public void stereotypes() throws IOException {
+		Properties index = compile(
+				source("sample.PlainComponent", "@org.springframework.stereotype.Component public class PlainComponent {}"),
+				source("sample.SampleService", "@org.springframework.stereotype.Service public class SampleService {}"),
+				source("sample.SampleNamed", "@javax.inject.Named public class SampleNamed {}"),
+				source("sample.NotAComponent", "public class NotAComponent {}"));
+		assertEquals(3, index.size());
+		assertEquals(COMPONENT, index.getProperty("sample.PlainComponent"));
+		assertEquals(COMPONENT, index.getProperty("sample.SampleService"));
+		assertEquals("javax.inject.Named", index.getProperty("sample.SampleNamed"));
+		assertNull(index.getProperty("sample.NotAComponent"));
+	}
+
+	@Test
+	public void customMetaStereotype() throws IOException {
+		Properties index = compile(
+				source("sample.Custom", "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) " +
+						"@org.springframework.stereotype.Repository public @interface Custom {}"),
+				source("sample.CustomComponent", "@Custom public class CustomComponent {}"));
+		assertEquals(1, index.size());
+		assertEquals(COMPONENT, index.getProperty("sample.CustomComponent"));
+	}
+
+	@Test
+	public void nestedAndInheritedStereotypes() throws IOException {
+		Properties index = compile(
+				source("sample.Outer", "public class Outer { @org.springframework.stereotype.Component " +
+						"public static class Inner {} }"),
+				source("sample.Base", "@javax.inject.Named public abstract class Base {}"),
+				source("sample.Sub", "@org.springframework.stereotype.Controller public class Sub extends Base {}"));
+		assertEquals(3, index.size());
+		assertEquals(COMPONENT, index.getProperty("sample.Outer$Inner"));
+		assertEquals("javax.inject.Named", index.getProperty("sample.Base"));
+		assertEquals("javax.inject.Named," + COMPONENT, index.getProperty("sample.Sub"));
+	}
+
+	@Test
+	public void noCandidates() throws IOException {
+		compile(source("sample.NotAComponent", "public class NotAComponent {}"));
+		assertFalse(new File(this.outputDirectory, CandidateComponentsIndexer.COMPONENTS_RESOURCE_LOCATION).exists());
+	}
+
+
+	private Properties compile(JavaFileObject... sources) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		List<String> options = new ArrayList<String>();
+		options.add("-d");
+		options.add(this.outputDirectory.getAbsolutePath());
+		options.add("-classpath");
+		options.add(System.getProperty("java.class.path"));
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null, Arrays.asList(sources));
+		task.setProcessors(Arrays.asList(new CandidateComponentsIndexer()));
+		assertTrue("Compilation failed", task.call());
+
+		Properties index = new Properties();
+		File indexFile = new File(this.outputDirectory, CandidateComponentsIndexer.COMPONENTS_RESOURCE_LOCATION);
+		if (indexFile.exists()) {
+			InputStream is = new FileInputStream(indexFile);
+			try {
+				index.load(is);
+			}
+			finally {
+				is.close();
+			}
+		}
+		return index;
+	}
+
+	private static JavaFileObject source(String className, String body) {
+		int index = className.lastIndexOf('.');
+		final String content = "package " + className.substring(0, index) + "; " + body;
+		URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+		return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return content;
+			}
+		};
+	}
+
+}
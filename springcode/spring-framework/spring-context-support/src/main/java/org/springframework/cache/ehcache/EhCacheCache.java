@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.cache.ehcache;
 
+import java.util.concurrent.Callable;
+
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.Status;
@@ -77,6 +79,40 @@ public class EhCacheCache implements Cache {
 		return (T) value;
 	}
 
+	/**
+	 * This implementation invokes the value loader while holding Ehcache's
+	 * write lock for the given key, so that concurrent callers for the same
+	 * key wait for the loaded value.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Callable<T> valueLoader) {
+		Element element = this.cache.get(key);
+		if (element != null) {
+			return (T) element.getObjectValue();
+		}
+		this.cache.acquireWriteLockOnKey(key);
+		try {
+			// A load for the same key may have completed in the meantime
+			element = this.cache.get(key);
+			if (element != null) {
+				return (T) element.getObjectValue();
+			}
+			T value;
+			try {
+				value = valueLoader.call();
+			}
+			catch (Throwable ex) {
+				throw new ValueRetrievalException(key, valueLoader, ex);
+			}
+			put(key, value);
+			return value;
+		}
+		finally {
+			this.cache.releaseWriteLockOnKey(key);
+		}
+	}
+
 	@Override
 	public void put(Object key, Object value) {
 		this.cache.put(new Element(key, value));
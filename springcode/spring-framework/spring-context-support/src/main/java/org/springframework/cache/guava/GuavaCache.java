@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ExecutionError;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.springframework.cache.Cache;
@@ -113,6 +114,32 @@ public class GuavaCache implements Cache {
 		return (T) value;
 	}
 
+	/**
+	 * This implementation delegates to Guava's {@code Cache.get(key, Callable)},
+	 * which invokes the value loader at most once at a time per key.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, final Callable<T> valueLoader) {
+		try {
+			return (T) fromStoreValue(this.cache.get(key, new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return toStoreValue(valueLoader.call());
+				}
+			}));
+		}
+		catch (ExecutionException ex) {
+			throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+		}
+		catch (UncheckedExecutionException ex) {
+			throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+		}
+		catch (ExecutionError ex) {
+			throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+		}
+	}
+
 	@Override
 	public void put(Object key, Object value) {
 		this.cache.put(key, toStoreValue(value));
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,9 +17,11 @@
 package org.springframework.cache.jcache;
 
 import java.io.Serializable;
+import java.util.concurrent.Callable;
 
 import org.springframework.cache.Cache;
 import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.cache.support.ValueLoaderSynchronizer;
 import org.springframework.util.Assert;
 
 /**
@@ -40,6 +42,8 @@ public class JCacheCache implements Cache {
 
 	private final boolean allowNullValues;
 
+	private final ValueLoaderSynchronizer valueLoaderSynchronizer = new ValueLoaderSynchronizer();
+
 
 	/**
 	 * Create an {@link org.springframework.cache.jcache.JCacheCache} instance.
@@ -91,6 +95,39 @@ public class JCacheCache implements Cache {
 		return (T) value;
 	}
 
+	/**
+	 * This implementation invokes the value loader at most once at a time
+	 * per key within this process, with concurrent callers for the same key
+	 * waiting for its result.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		Object storeValue = this.cache.get(key);
+		if (storeValue != null) {
+			return (T) fromStoreValue(storeValue);
+		}
+		return this.valueLoaderSynchronizer.load(key, new Callable<T>() {
+			@Override
+			public T call() {
+				// A load for the same key may have completed in the meantime
+				Object storeValue = cache.get(key);
+				if (storeValue != null) {
+					return (T) fromStoreValue(storeValue);
+				}
+				T value;
+				try {
+					value = valueLoader.call();
+				}
+				catch (Throwable ex) {
+					throw new ValueRetrievalException(key, valueLoader, ex);
+				}
+				put(key, value);
+				return value;
+			}
+		});
+	}
+
 	@Override
 	public void put(Object key, Object value) {
 		this.cache.put(key, toStoreValue(value));
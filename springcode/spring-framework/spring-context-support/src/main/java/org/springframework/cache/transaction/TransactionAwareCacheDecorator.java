@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.cache.transaction;
 
+import java.util.concurrent.Callable;
+
 import org.springframework.cache.Cache;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
@@ -71,6 +73,11 @@ public class TransactionAwareCacheDecorator implements Cache {
 		return this.targetCache.get(key, type);
 	}
 
+	@Override
+	public <T> T get(Object key, Callable<T> valueLoader) {
+		return this.targetCache.get(key, valueLoader);
+	}
+
 	@Override
 	public void put(final Object key, final Object value) {
 		if (TransactionSynchronizationManager.isSynchronizationActive()) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,17 @@
 
 package org.springframework.cache;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -56,7 +67,7 @@ public abstract class AbstractCacheTests<T extends Cache> {
 		assertEquals(value, cache.get(key).get());
 		assertEquals(value, cache.get(key, String.class));
 		assertEquals(value, cache.get(key, Object.class));
-		assertEquals(value, cache.get(key, null));
+		assertEquals(value, cache.get(key, (Class<?>) null));
 
 		cache.put(key, null);
 		assertNotNull(cache.get(key));
@@ -102,4 +113,96 @@ public abstract class AbstractCacheTests<T extends Cache> {
 		assertNull(cache.get("vlaicu"));
 		assertNull(cache.get("enescu"));
 	}
+
+	@Test
+	public void testCacheGetCallable() {
+		T cache = getCache();
+		String key = createRandomKey();
+
+		assertNull(cache.get(key));
+		Object value = cache.get(key, new Callable<Object>() {
+			@Override
+			public Object call() {
+				return "george";
+			}
+		});
+		assertEquals("george", value);
+		assertEquals("george", cache.get(key).get());
+	}
+
+	@Test
+	public void testCacheGetCallableNotInvokedWithHit() {
+		T cache = getCache();
+		String key = createRandomKey();
+
+		cache.put(key, "enescu");
+		Object value = cache.get(key, new Callable<Object>() {
+			@Override
+			public Object call() {
+				throw new IllegalStateException("Should not have been invoked");
+			}
+		});
+		assertEquals("enescu", value);
+	}
+
+	@Test
+	public void testCacheGetCallableFail() {
+		T cache = getCache();
+		String key = createRandomKey();
+
+		try {
+			cache.get(key, new Callable<Object>() {
+				@Override
+				public Object call() {
+					throw new UnsupportedOperationException("Expected exception");
+				}
+			});
+			fail("Should have thrown Cache.ValueRetrievalException");
+		}
+		catch (Cache.ValueRetrievalException ex) {
+			assertTrue(ex.getCause() instanceof UnsupportedOperationException);
+			assertEquals(key, ex.getKey());
+		}
+		assertNull(cache.get(key));
+	}
+
+	@Test
+	public void testCacheGetSynchronized() throws Exception {
+		final T cache = getCache();
+		final String key = createRandomKey();
+		final AtomicInteger counter = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Callable<Object> valueLoader = new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				latch.await(5, TimeUnit.SECONDS);
+				return counter.incrementAndGet();
+			}
+		};
+
+		int threads = 10;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < threads; i++) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					return cache.get(key, valueLoader);
+				}
+			}));
+		}
+		Thread.sleep(100);
+		latch.countDown();
+		for (Future<Object> result : results) {
+			assertEquals(1, result.get(5, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+		assertEquals(1, counter.get());
+	}
+
+
+	protected String createRandomKey() {
+		return UUID.randomUUID().toString();
+	}
+
 }
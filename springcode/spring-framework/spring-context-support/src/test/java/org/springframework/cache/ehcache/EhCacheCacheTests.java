@@ -79,7 +79,7 @@ public class EhCacheCacheTests extends AbstractCacheTests<EhCacheCache> {
 		assertEquals(value, cache.get(key).get());
 		assertEquals(value, cache.get(key, String.class));
 		assertEquals(value, cache.get(key, Object.class));
-		assertEquals(value, cache.get(key, null));
+		assertEquals(value, cache.get(key, (Class<?>) null));
 
 		cache.put(key, null);
 		assertNotNull(cache.get(key));
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.cache;
 
+import java.util.concurrent.Callable;
+
 /**
  * Interface that defines common cache operations.
  *
@@ -73,6 +75,24 @@ public interface Cache {
 	 */
 	<T> T get(Object key, Class<T> type);
 
+	/**
+	 * Return the value to which this cache maps the specified key, obtaining
+	 * that value from {@code valueLoader} if necessary. This method provides
+	 * a simple substitute for the conventional "if cached, return; otherwise
+	 * create, cache and return" pattern.
+	 * <p>If possible, implementations should ensure that the loading operation
+	 * is synchronized so that the specified {@code valueLoader} is only called
+	 * once in case of concurrent access on the same key.
+	 * <p>If the {@code valueLoader} throws an exception, it is wrapped in
+	 * a {@link ValueRetrievalException}.
+	 * @param key the key whose associated value is to be returned
+	 * @param valueLoader the loader to obtain the value from on a cache miss
+	 * @return the value to which this cache maps the specified key
+	 * @throws ValueRetrievalException if the {@code valueLoader} throws an exception
+	 * @since 4.1.10
+	 */
+	<T> T get(Object key, Callable<T> valueLoader);
+
 	/**
 	 * Associate the specified value with the specified key in this cache.
 	 * <p>If the cache previously contained a mapping for this key, the old
@@ -133,4 +153,25 @@ public interface Cache {
 		Object get();
 	}
 
+
+	/**
+	 * Wrapper exception to be thrown from {@link #get(Object, Callable)}
+	 * in case of the value loader callback failing with an exception.
+	 * @since 4.1.10
+	 */
+	@SuppressWarnings("serial")
+	class ValueRetrievalException extends RuntimeException {
+
+		private final Object key;
+
+		public ValueRetrievalException(Object key, Callable<?> loader, Throwable ex) {
+			super(String.format("Value for key '%s' could not be loaded using '%s'", key, loader), ex);
+			this.key = key;
+		}
+
+		public Object getKey() {
+			return this.key;
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -142,4 +142,23 @@ public @interface Cacheable {
 	 */
 	String unless() default "";
 
+	/**
+	 * Synchronize the invocation of the underlying method if several threads
+	 * attempt to load a value for the same key, so that only one of them invokes
+	 * the method while the others wait for its result, as a protection against
+	 * a stampede of concurrent cache misses on a frequently requested key.
+	 * <p>The value is obtained through {@link org.springframework.cache.Cache#get(Object,
+	 * java.util.concurrent.Callable)}, which leads to a couple of limitations:
+	 * <ul>
+	 * <li>{@link #unless} is not supported</li>
+	 * <li>Only one cache may be specified</li>
+	 * <li>No other cache-related operation can be combined on the same method</li>
+	 * </ul>
+	 * <p>The actual synchronization is up to the cache provider: the adapters for
+	 * {@code ConcurrentMapCache}, Guava, EhCache and JCache synchronize the loading
+	 * per key within the current process.
+	 * @since 4.1.10
+	 */
+	boolean sync() default false;
+
 }
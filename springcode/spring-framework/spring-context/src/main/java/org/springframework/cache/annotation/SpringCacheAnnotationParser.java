@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -106,6 +106,7 @@ public class SpringCacheAnnotationParser implements CacheAnnotationParser, Seria
 		op.setKeyGenerator(caching.keyGenerator());
 		op.setCacheManager(caching.cacheManager());
 		op.setCacheResolver(caching.cacheResolver());
+		op.setSync(caching.sync());
 		op.setName(ae.toString());
 
 		defaultConfig.applyDefault(op);
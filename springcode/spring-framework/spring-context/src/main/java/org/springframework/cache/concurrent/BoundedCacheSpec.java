@@ -0,0 +1,242 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Configuration of a {@link BoundedConcurrentCache}: its size or weight limit,
+ * expiration and whether to record statistics.
+ *
+ * <p>A specification can also be parsed from a comma-separated String of
+ * key-value pairs, in the style of Guava's {@code CacheBuilderSpec}, e.g.
+ * {@code "maximumSize=1000,expireAfterAccess=10m,recordStats"}. Supported
+ * keys are {@code maximumSize}, {@code maximumWeight}, {@code expireAfterWrite},
+ * {@code expireAfterAccess} and {@code recordStats}; durations are specified as
+ * a number followed by one of the units {@code ms}, {@code s}, {@code m},
+ * {@code h} or {@code d}.
+ *
+ * @since 4.1.10
+ * @see #parse(String)
+ * @see ConcurrentMapCacheManager#setCacheSpecification
+ */
+public class BoundedCacheSpec {
+
+	private long maximumSize = -1;
+
+	private long maximumWeight = -1;
+
+	private long expireAfterWrite = -1;
+
+	private long expireAfterAccess = -1;
+
+	private boolean recordStats = false;
+
+
+	/**
+	 * Set the maximum number of entries in the cache.
+	 * <p>Mutually exclusive with {@link #setMaximumWeight "maximumWeight"}.
+	 * Default is none.
+	 */
+	public void setMaximumSize(long maximumSize) {
+		Assert.isTrue(maximumSize >= 0, "Maximum size must not be negative");
+		Assert.isTrue(this.maximumWeight < 0, "Maximum size cannot be combined with maximum weight");
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Return the maximum number of entries in the cache, or -1 if none.
+	 */
+	public long getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	/**
+	 * Set the maximum total weight of the entries in the cache, as determined
+	 * by a {@link CacheWeigher}.
+	 * <p>Mutually exclusive with {@link #setMaximumSize "maximumSize"}.
+	 * Default is none.
+	 */
+	public void setMaximumWeight(long maximumWeight) {
+		Assert.isTrue(maximumWeight >= 0, "Maximum weight must not be negative");
+		Assert.isTrue(this.maximumSize < 0, "Maximum weight cannot be combined with maximum size");
+		this.maximumWeight = maximumWeight;
+	}
+
+	/**
+	 * Return the maximum total weight of the entries in the cache, or -1 if none.
+	 */
+	public long getMaximumWeight() {
+		return this.maximumWeight;
+	}
+
+	/**
+	 * Set the time (in milliseconds) after which an entry expires once it
+	 * has been stored. Default is none.
+	 */
+	public void setExpireAfterWrite(long expireAfterWrite) {
+		Assert.isTrue(expireAfterWrite >= 0, "Expiration time must not be negative");
+		this.expireAfterWrite = expireAfterWrite;
+	}
+
+	/**
+	 * Return the time (in milliseconds) after which an entry expires once
+	 * it has been stored, or -1 if none.
+	 */
+	public long getExpireAfterWrite() {
+		return this.expireAfterWrite;
+	}
+
+	/**
+	 * Set the time (in milliseconds) after which an entry expires once it
+	 * has last been stored or read. Default is none.
+	 */
+	public void setExpireAfterAccess(long expireAfterAccess) {
+		Assert.isTrue(expireAfterAccess >= 0, "Expiration time must not be negative");
+		this.expireAfterAccess = expireAfterAccess;
+	}
+
+	/**
+	 * Return the time (in milliseconds) after which an entry expires once
+	 * it has last been stored or read, or -1 if none.
+	 */
+	public long getExpireAfterAccess() {
+		return this.expireAfterAccess;
+	}
+
+	/**
+	 * Set whether to record hit, miss, load and eviction statistics.
+	 * <p>Default is "false", avoiding the bookkeeping on every lookup.
+	 * @see BoundedConcurrentCache#getStats()
+	 */
+	public void setRecordStats(boolean recordStats) {
+		this.recordStats = recordStats;
+	}
+
+	/**
+	 * Return whether to record hit, miss, load and eviction statistics.
+	 */
+	public boolean isRecordStats() {
+		return this.recordStats;
+	}
+
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if (this.maximumSize >= 0) {
+			sb.append("maximumSize=").append(this.maximumSize).append(',');
+		}
+		if (this.maximumWeight >= 0) {
+			sb.append("maximumWeight=").append(this.maximumWeight).append(',');
+		}
+		if (this.expireAfterWrite >= 0) {
+			sb.append("expireAfterWrite=").append(this.expireAfterWrite).append("ms,");
+		}
+		if (this.expireAfterAccess >= 0) {
+			sb.append("expireAfterAccess=").append(this.expireAfterAccess).append("ms,");
+		}
+		if (this.recordStats) {
+			sb.append("recordStats,");
+		}
+		return (sb.length() > 0 ? sb.substring(0, sb.length() - 1) : "");
+	}
+
+
+	/**
+	 * Parse the given specification String into a {@code BoundedCacheSpec}.
+	 * @param specification the comma-separated key-value pairs, e.g.
+	 * {@code "maximumSize=1000,expireAfterWrite=30s"}
+	 * @return the corresponding {@code BoundedCacheSpec}
+	 * @throws IllegalArgumentException if the specification is invalid
+	 */
+	public static BoundedCacheSpec parse(String specification) {
+		Assert.notNull(specification, "Specification must not be null");
+		BoundedCacheSpec spec = new BoundedCacheSpec();
+		for (String pair : StringUtils.commaDelimitedListToStringArray(specification)) {
+			pair = pair.trim();
+			if (pair.isEmpty()) {
+				continue;
+			}
+			int separator = pair.indexOf('=');
+			String key = (separator != -1 ? pair.substring(0, separator).trim() : pair);
+			String value = (separator != -1 ? pair.substring(separator + 1).trim() : null);
+			if ("recordStats".equals(key)) {
+				Assert.isTrue(value == null, "Key 'recordStats' does not take a value");
+				spec.setRecordStats(true);
+				continue;
+			}
+			Assert.isTrue(StringUtils.hasLength(value), "Key '" + key + "' requires a value in [" + specification + "]");
+			if ("maximumSize".equals(key)) {
+				spec.setMaximumSize(parseLong(key, value));
+			}
+			else if ("maximumWeight".equals(key)) {
+				spec.setMaximumWeight(parseLong(key, value));
+			}
+			else if ("expireAfterWrite".equals(key)) {
+				spec.setExpireAfterWrite(parseDuration(key, value));
+			}
+			else if ("expireAfterAccess".equals(key)) {
+				spec.setExpireAfterAccess(parseDuration(key, value));
+			}
+			else {
+				throw new IllegalArgumentException("Unknown key '" + key + "' in [" + specification + "]");
+			}
+		}
+		return spec;
+	}
+
+	private static long parseLong(String key, String value) {
+		try {
+			return Long.parseLong(value);
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid value '" + value + "' for key '" + key + "'", ex);
+		}
+	}
+
+	private static long parseDuration(String key, String value) {
+		TimeUnit unit;
+		int suffixLength = 1;
+		if (value.endsWith("ms")) {
+			unit = TimeUnit.MILLISECONDS;
+			suffixLength = 2;
+		}
+		else if (value.endsWith("s")) {
+			unit = TimeUnit.SECONDS;
+		}
+		else if (value.endsWith("m")) {
+			unit = TimeUnit.MINUTES;
+		}
+		else if (value.endsWith("h")) {
+			unit = TimeUnit.HOURS;
+		}
+		else if (value.endsWith("d")) {
+			unit = TimeUnit.DAYS;
+		}
+		else {
+			throw new IllegalArgumentException("Duration '" + value + "' for key '" + key +
+					"' requires a unit of 'ms', 's', 'm', 'h' or 'd'");
+		}
+		long duration = parseLong(key, value.substring(0, value.length() - suffixLength));
+		return unit.toMillis(duration);
+	}
+
+}
@@ -0,0 +1,871 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.cache.support.ValueLoaderSynchronizer;
+import org.springframework.util.Assert;
+
+/**
+ * {@link org.springframework.cache.Cache} implementation with a size or weight
+ * limit, optional expiration and statistics, based on the core JDK
+ * {@code java.util.concurrent} package. An alternative to {@link ConcurrentMapCache}
+ * for production use without a third-party caching library.
+ *
+ * <p>Entries are held in a {@link ConcurrentHashMap}, so that lookups are served
+ * without locking. The eviction policy follows the W-TinyLFU design: new entries
+ * enter a small LRU admission window; entries leaving the window compete with the
+ * least recently used entry of the main space, and the one with the lower estimated
+ * access frequency (as tracked by a compact count-min sketch with periodic aging)
+ * is evicted. The main space is a segmented LRU, protecting entries that have been
+ * accessed more than once. This retains frequently used entries under a scan of
+ * one-off keys, yielding a considerably higher hit ratio than plain LRU.
+ *
+ * <p>Reads record the access in lossy per-thread-striped buffers which are applied
+ * to the eviction policy in batches, by whichever thread acquires the policy lock
+ * without waiting. Writes update the policy under that lock directly, evicting
+ * entries beyond the limit before returning.
+ *
+ * <p>Statistics are recorded only if enabled in the {@link BoundedCacheSpec},
+ * including the time spent loading values through {@link #get(Object, Callable)}.
+ *
+ * @since 4.1.10
+ * @see BoundedCacheSpec
+ * @see ConcurrentMapCacheManager#setCacheSpecifications
+ */
+public class BoundedConcurrentCache implements Cache {
+
+	private static final Object NULL_HOLDER = new NullHolder();
+
+	/** Percentage of the maximum weight given to the admission window */
+	private static final int WINDOW_PERCENTAGE = 1;
+
+	/** Percentage of the main space given to its protected segment */
+	private static final int PROTECTED_PERCENTAGE = 80;
+
+	private static final int READ_BUFFER_SIZE = 16;
+
+	private static final int READ_BUFFER_STRIPES;
+
+	static {
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 16) {
+			stripes <<= 1;
+		}
+		READ_BUFFER_STRIPES = stripes;
+	}
+
+	private static final int NONE = 0;
+
+	private static final int WINDOW = 1;
+
+	private static final int PROBATION = 2;
+
+	private static final int PROTECTED = 3;
+
+
+	private final String name;
+
+	private final ConcurrentMap<Object, Node> store;
+
+	private final boolean allowNullValues;
+
+	private final long maximumWeight;
+
+	private final CacheWeigher weigher;
+
+	private final long expireAfterWriteNanos;
+
+	private final long expireAfterAccessNanos;
+
+	private final boolean recordStats;
+
+	private final ValueLoaderSynchronizer valueLoaderSynchronizer = new ValueLoaderSynchronizer();
+
+	private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+
+	/** Lock guarding the eviction policy: the deques, weights and sketch below */
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final NodeDeque windowDeque = new NodeDeque(false);
+
+	private final NodeDeque probationDeque = new NodeDeque(false);
+
+	private final NodeDeque protectedDeque = new NodeDeque(false);
+
+	private final NodeDeque writeOrderDeque = new NodeDeque(true);
+
+	private final FrequencySketch sketch = new FrequencySketch();
+
+	private final long windowMaximum;
+
+	private final long protectedMaximum;
+
+	private long windowWeight;
+
+	private long protectedWeight;
+
+	private long totalWeight;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong loadSuccessCount = new AtomicLong();
+
+	private final AtomicLong loadFailureCount = new AtomicLong();
+
+	private final AtomicLong totalLoadTime = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+
+	/**
+	 * Create a new BoundedConcurrentCache with the specified name and configuration.
+	 * @param name the name of the cache
+	 * @param spec the size limit, expiration and statistics configuration
+	 */
+	public BoundedConcurrentCache(String name, BoundedCacheSpec spec) {
+		this(name, spec, null, true);
+	}
+
+	/**
+	 * Create a new BoundedConcurrentCache with the specified name and configuration.
+	 * @param name the name of the cache
+	 * @param spec the size limit, expiration and statistics configuration
+	 * @param weigher the weigher to determine the weight of each entry
+	 * (required if the specification defines a maximum weight, ignored otherwise)
+	 * @param allowNullValues whether to accept and convert {@code null}
+	 * values for this cache
+	 */
+	public BoundedConcurrentCache(String name, BoundedCacheSpec spec, CacheWeigher weigher, boolean allowNullValues) {
+		Assert.notNull(name, "Name must not be null");
+		Assert.notNull(spec, "BoundedCacheSpec must not be null");
+		this.name = name;
+		this.store = new ConcurrentHashMap<Object, Node>(256);
+		this.allowNullValues = allowNullValues;
+		if (spec.getMaximumWeight() >= 0) {
+			Assert.notNull(weigher, "A CacheWeigher is required for a maximum weight");
+			this.maximumWeight = spec.getMaximumWeight();
+			this.weigher = weigher;
+		}
+		else {
+			this.maximumWeight = (spec.getMaximumSize() >= 0 ? spec.getMaximumSize() : Long.MAX_VALUE);
+			this.weigher = null;
+		}
+		this.expireAfterWriteNanos = (spec.getExpireAfterWrite() >= 0 ?
+				TimeUnit.MILLISECONDS.toNanos(spec.getExpireAfterWrite()) : -1);
+		this.expireAfterAccessNanos = (spec.getExpireAfterAccess() >= 0 ?
+				TimeUnit.MILLISECONDS.toNanos(spec.getExpireAfterAccess()) : -1);
+		this.recordStats = spec.isRecordStats();
+		this.windowMaximum = Math.min(this.maximumWeight, Math.max(1, this.maximumWeight / 100 * WINDOW_PERCENTAGE));
+		long mainMaximum = this.maximumWeight - this.windowMaximum;
+		this.protectedMaximum = mainMaximum - mainMaximum / 100 * (100 - PROTECTED_PERCENTAGE);
+		for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+			this.readBuffers[i] = new ReadBuffer();
+		}
+		this.sketch.ensureCapacity(Math.min(this.maximumWeight, 256));
+	}
+
+
+	@Override
+	public final String getName() {
+		return this.name;
+	}
+
+	/**
+	 * This implementation returns the cache itself, exposing its
+	 * {@link #getStats() statistics} and {@link #size() size}.
+	 */
+	@Override
+	public final BoundedConcurrentCache getNativeCache() {
+		return this;
+	}
+
+	public final boolean isAllowNullValues() {
+		return this.allowNullValues;
+	}
+
+	@Override
+	public ValueWrapper get(Object key) {
+		Node node = getNode(key);
+		return (node != null ? new SimpleValueWrapper(fromStoreValue(node.value)) : null);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Class<T> type) {
+		Node node = getNode(key);
+		Object value = (node != null ? fromStoreValue(node.value) : null);
+		if (value != null && type != null && !type.isInstance(value)) {
+			throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+		}
+		return (T) value;
+	}
+
+	/**
+	 * This implementation invokes the value loader at most once at a time
+	 * per key, with concurrent callers for the same key waiting for its result.
+	 * The time spent in the loader is recorded in the {@link #getStats()
+	 * statistics}, if enabled.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		Node node = getNode(key);
+		if (node != null) {
+			return (T) fromStoreValue(node.value);
+		}
+		return this.valueLoaderSynchronizer.load(key, new Callable<T>() {
+			@Override
+			public T call() {
+				// A load for the same key may have completed in the meantime
+				Node node = store.get(key);
+				if (node != null && !(isExpiring() && isExpired(node, currentTime()))) {
+					return (T) fromStoreValue(node.value);
+				}
+				return load(key, valueLoader);
+			}
+		});
+	}
+
+	@Override
+	public void put(Object key, Object value) {
+		Node node = createNode(key, value);
+		Node prior = this.store.put(key, node);
+		afterWrite(node, prior);
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent(Object key, Object value) {
+		Node node = createNode(key, value);
+		while (true) {
+			Node prior = this.store.putIfAbsent(key, node);
+			if (prior == null) {
+				afterWrite(node, null);
+				return null;
+			}
+			if (!isExpiring() || !isExpired(prior, currentTime())) {
+				afterRead(prior);
+				return new SimpleValueWrapper(fromStoreValue(prior.value));
+			}
+			if (this.store.replace(key, prior, node)) {
+				afterWrite(node, prior);
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public void evict(Object key) {
+		Node node = this.store.remove(key);
+		if (node != null) {
+			this.evictionLock.lock();
+			try {
+				unlink(node);
+			}
+			finally {
+				this.evictionLock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		this.evictionLock.lock();
+		try {
+			for (Node node : this.store.values()) {
+				if (this.store.remove(node.key, node)) {
+					unlink(node);
+				}
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Return the current number of entries in the cache, possibly
+	 * including expired entries that have not been removed yet.
+	 */
+	public int size() {
+		return this.store.size();
+	}
+
+	/**
+	 * Apply any pending access records to the eviction policy and
+	 * remove expired entries.
+	 * <p>This happens regularly on cache access already, so calling this
+	 * method is only necessary to release expired entries of an idle cache.
+	 */
+	public void cleanUp() {
+		this.evictionLock.lock();
+		try {
+			maintenance();
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Return a snapshot of the statistics of this cache. All counts are
+	 * zero unless {@link BoundedCacheSpec#setRecordStats statistics recording}
+	 * is enabled.
+	 */
+	public CacheStats getStats() {
+		return new CacheStats(this.hitCount.get(), this.missCount.get(), this.loadSuccessCount.get(),
+				this.loadFailureCount.get(), this.totalLoadTime.get(), this.evictionCount.get());
+	}
+
+	/**
+	 * Return the current time in nanoseconds, used for expiration.
+	 * <p>The default implementation delegates to {@link System#nanoTime()}.
+	 */
+	protected long currentTime() {
+		return System.nanoTime();
+	}
+
+
+	/**
+	 * Convert the given value from the internal store to a user value
+	 * returned from the get method (adapting {@code null}).
+	 * @param storeValue the store value
+	 * @return the value to return to the user
+	 */
+	protected Object fromStoreValue(Object storeValue) {
+		if (this.allowNullValues && storeValue == NULL_HOLDER) {
+			return null;
+		}
+		return storeValue;
+	}
+
+	/**
+	 * Convert the given user value, as passed into the put method,
+	 * to a value in the internal store (adapting {@code null}).
+	 * @param userValue the given user value
+	 * @return the value to store
+	 */
+	protected Object toStoreValue(Object userValue) {
+		if (this.allowNullValues && userValue == null) {
+			return NULL_HOLDER;
+		}
+		Assert.notNull(userValue, "Cache '" + this.name + "' is configured to not allow null values");
+		return userValue;
+	}
+
+
+	private boolean isExpiring() {
+		return (this.expireAfterWriteNanos >= 0 || this.expireAfterAccessNanos >= 0);
+	}
+
+	private boolean isExpired(Node node, long now) {
+		return ((this.expireAfterWriteNanos >= 0 && now - node.writeTime >= this.expireAfterWriteNanos) ||
+				(this.expireAfterAccessNanos >= 0 && now - node.accessTime >= this.expireAfterAccessNanos));
+	}
+
+	private <T> T load(Object key, Callable<T> valueLoader) {
+		long startTime = System.nanoTime();
+		T value;
+		try {
+			value = valueLoader.call();
+		}
+		catch (Throwable ex) {
+			if (this.recordStats) {
+				this.loadFailureCount.incrementAndGet();
+				this.totalLoadTime.addAndGet(System.nanoTime() - startTime);
+			}
+			throw new ValueRetrievalException(key, valueLoader, ex);
+		}
+		if (this.recordStats) {
+			this.loadSuccessCount.incrementAndGet();
+			this.totalLoadTime.addAndGet(System.nanoTime() - startTime);
+		}
+		put(key, value);
+		return value;
+	}
+
+	private Node createNode(Object key, Object value) {
+		Object storeValue = toStoreValue(value);
+		int weight = 1;
+		if (this.weigher != null) {
+			weight = this.weigher.weigh(key, value);
+			Assert.isTrue(weight >= 0, "CacheWeigher returned a negative weight");
+		}
+		return new Node(key, storeValue, weight, (isExpiring() ? currentTime() : 0));
+	}
+
+	private Node getNode(Object key) {
+		Node node = this.store.get(key);
+		if (node != null && isExpiring()) {
+			long now = currentTime();
+			if (isExpired(node, now)) {
+				this.evictionLock.lock();
+				try {
+					evictNode(node);
+				}
+				finally {
+					this.evictionLock.unlock();
+				}
+				node = null;
+			}
+			else if (this.expireAfterAccessNanos >= 0) {
+				node.accessTime = now;
+			}
+		}
+		if (node == null) {
+			if (this.recordStats) {
+				this.missCount.incrementAndGet();
+			}
+			return null;
+		}
+		if (this.recordStats) {
+			this.hitCount.incrementAndGet();
+		}
+		afterRead(node);
+		return node;
+	}
+
+	private void afterRead(Node node) {
+		int stripe = (int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1);
+		if (this.readBuffers[stripe].record(node) && this.evictionLock.tryLock()) {
+			try {
+				maintenance();
+			}
+			finally {
+				this.evictionLock.unlock();
+			}
+		}
+	}
+
+	private void afterWrite(Node node, Node prior) {
+		this.evictionLock.lock();
+		try {
+			if (prior != null) {
+				unlink(prior);
+			}
+			// A concurrent write or eviction may have replaced or removed the node already
+			if (this.store.get(node.key) == node) {
+				link(node);
+			}
+			maintenance();
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+
+	// Eviction policy, guarded by the eviction lock
+
+	private void maintenance() {
+		for (ReadBuffer buffer : this.readBuffers) {
+			buffer.drainTo(this);
+		}
+		if (isExpiring()) {
+			expireEntries(currentTime());
+		}
+		evictEntries();
+		this.sketch.ensureCapacity(this.store.size());
+	}
+
+	private void link(Node node) {
+		node.queue = WINDOW;
+		this.windowDeque.addLast(node);
+		this.windowWeight += node.weight;
+		this.totalWeight += node.weight;
+		if (this.expireAfterWriteNanos >= 0) {
+			this.writeOrderDeque.addLast(node);
+		}
+		this.sketch.increment(node.key);
+	}
+
+	private void unlink(Node node) {
+		switch (node.queue) {
+			case NONE:
+				return;
+			case WINDOW:
+				this.windowDeque.remove(node);
+				this.windowWeight -= node.weight;
+				break;
+			case PROBATION:
+				this.probationDeque.remove(node);
+				break;
+			case PROTECTED:
+				this.protectedDeque.remove(node);
+				this.protectedWeight -= node.weight;
+				break;
+		}
+		if (this.expireAfterWriteNanos >= 0) {
+			this.writeOrderDeque.remove(node);
+		}
+		this.totalWeight -= node.weight;
+		node.queue = NONE;
+	}
+
+	private void onAccess(Node node) {
+		if (node.queue == NONE) {
+			// Already removed, or not linked yet
+			return;
+		}
+		this.sketch.increment(node.key);
+		if (node.queue == WINDOW) {
+			this.windowDeque.moveToBack(node);
+		}
+		else if (node.queue == PROBATION) {
+			// Accessed again: promote to the protected segment
+			this.probationDeque.remove(node);
+			this.protectedDeque.addLast(node);
+			this.protectedWeight += node.weight;
+			node.queue = PROTECTED;
+			while (this.protectedWeight > this.protectedMaximum) {
+				Node demoted = this.protectedDeque.peekFirst();
+				this.protectedDeque.remove(demoted);
+				this.protectedWeight -= demoted.weight;
+				this.probationDeque.addLast(demoted);
+				demoted.queue = PROBATION;
+			}
+		}
+		else {
+			this.protectedDeque.moveToBack(node);
+		}
+	}
+
+	private void expireEntries(long now) {
+		if (this.expireAfterAccessNanos >= 0) {
+			expireEntries(this.windowDeque, now);
+			expireEntries(this.probationDeque, now);
+			expireEntries(this.protectedDeque, now);
+		}
+		if (this.expireAfterWriteNanos >= 0) {
+			expireEntries(this.writeOrderDeque, now);
+		}
+	}
+
+	private void expireEntries(NodeDeque deque, long now) {
+		Node node = deque.peekFirst();
+		while (node != null && isExpired(node, now)) {
+			evictNode(node);
+			node = deque.peekFirst();
+		}
+	}
+
+	private void evictEntries() {
+		// Entries leaving the admission window become candidates at the end of the probation segment
+		while (this.windowWeight > this.windowMaximum) {
+			Node node = this.windowDeque.peekFirst();
+			this.windowDeque.remove(node);
+			this.windowWeight -= node.weight;
+			this.probationDeque.addLast(node);
+			node.queue = PROBATION;
+		}
+		while (this.totalWeight > this.maximumWeight) {
+			Node victim = this.probationDeque.peekFirst();
+			if (victim == null) {
+				victim = (this.protectedDeque.peekFirst() != null ?
+						this.protectedDeque.peekFirst() : this.windowDeque.peekFirst());
+				evictNode(victim);
+				continue;
+			}
+			// Admit the most recent candidate only if it is used more frequently than the victim
+			Node candidate = this.probationDeque.peekLast();
+			if (candidate != victim &&
+					this.sketch.frequency(candidate.key) > this.sketch.frequency(victim.key)) {
+				evictNode(victim);
+			}
+			else {
+				evictNode(candidate);
+			}
+		}
+	}
+
+	private void evictNode(Node node) {
+		unlink(node);
+		if (this.store.remove(node.key, node) && this.recordStats) {
+			this.evictionCount.incrementAndGet();
+		}
+	}
+
+
+	/**
+	 * A cache entry, linked into the deques of the eviction policy.
+	 */
+	private static final class Node {
+
+		private final Object key;
+
+		private final Object value;
+
+		private final int weight;
+
+		private final long writeTime;
+
+		private volatile long accessTime;
+
+		/** The policy segment holding this node, guarded by the eviction lock */
+		private int queue = NONE;
+
+		private Node accessPrevious;
+
+		private Node accessNext;
+
+		private Node writePrevious;
+
+		private Node writeNext;
+
+		public Node(Object key, Object value, int weight, long now) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.writeTime = now;
+			this.accessTime = now;
+		}
+	}
+
+
+	/**
+	 * Doubly-linked deque of nodes in either access or write order,
+	 * using the links held by the nodes themselves.
+	 */
+	private static final class NodeDeque {
+
+		private final boolean writeOrder;
+
+		private Node first;
+
+		private Node last;
+
+		public NodeDeque(boolean writeOrder) {
+			this.writeOrder = writeOrder;
+		}
+
+		public Node peekFirst() {
+			return this.first;
+		}
+
+		public Node peekLast() {
+			return this.last;
+		}
+
+		public void addLast(Node node) {
+			setPrevious(node, this.last);
+			setNext(node, null);
+			if (this.last == null) {
+				this.first = node;
+			}
+			else {
+				setNext(this.last, node);
+			}
+			this.last = node;
+		}
+
+		public void remove(Node node) {
+			Node previous = getPrevious(node);
+			Node next = getNext(node);
+			if (previous == null) {
+				this.first = next;
+			}
+			else {
+				setNext(previous, next);
+			}
+			if (next == null) {
+				this.last = previous;
+			}
+			else {
+				setPrevious(next, previous);
+			}
+			setPrevious(node, null);
+			setNext(node, null);
+		}
+
+		public void moveToBack(Node node) {
+			if (node != this.last) {
+				remove(node);
+				addLast(node);
+			}
+		}
+
+		private Node getPrevious(Node node) {
+			return (this.writeOrder ? node.writePrevious : node.accessPrevious);
+		}
+
+		private Node getNext(Node node) {
+			return (this.writeOrder ? node.writeNext : node.accessNext);
+		}
+
+		private void setPrevious(Node node, Node previous) {
+			if (this.writeOrder) {
+				node.writePrevious = previous;
+			}
+			else {
+				node.accessPrevious = previous;
+			}
+		}
+
+		private void setNext(Node node, Node next) {
+			if (this.writeOrder) {
+				node.writeNext = next;
+			}
+			else {
+				node.accessNext = next;
+			}
+		}
+	}
+
+
+	/**
+	 * Lossy ring buffer of recently read nodes. Records may be overwritten
+	 * before being drained under contention, which only makes the recorded
+	 * access history slightly less accurate.
+	 */
+	private static final class ReadBuffer {
+
+		private final AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+
+		private final AtomicInteger writeCount = new AtomicInteger();
+
+		/**
+		 * Record the given node, returning whether the buffer should be drained.
+		 */
+		public boolean record(Node node) {
+			int index = this.writeCount.getAndIncrement() & (READ_BUFFER_SIZE - 1);
+			this.nodes.lazySet(index, node);
+			return (index == READ_BUFFER_SIZE - 1);
+		}
+
+		public void drainTo(BoundedConcurrentCache cache) {
+			for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+				Node node = this.nodes.get(i);
+				if (node != null) {
+					this.nodes.lazySet(i, null);
+					cache.onAccess(node);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Count-min sketch with 4-bit counters, estimating the access frequency of
+	 * keys within a sample period. Once the number of recorded accesses reaches
+	 * the sample size, all counters are halved, so that the estimates favor
+	 * recent history.
+	 */
+	private static final class FrequencySketch {
+
+		private static final long[] SEEDS = new long[] {
+				0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private static final long ONE_MASK = 0x1111111111111111L;
+
+		/** 16 counters per slot, 4 bits each */
+		private long[] table;
+
+		private int sampleSize;
+
+		private int size;
+
+		public void ensureCapacity(long expectedSize) {
+			int maximum = (int) Math.min(Math.max(expectedSize, 8), 1 << 30);
+			if (this.table != null && this.table.length >= maximum) {
+				return;
+			}
+			int capacity = Integer.highestOneBit(maximum - 1) << 1;
+			this.table = new long[capacity];
+			this.sampleSize = (capacity > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : capacity * 10);
+			this.size = 0;
+		}
+
+		public int frequency(Object key) {
+			int hash = spread(key.hashCode());
+			int start = (hash & 3) << 2;
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < 4; i++) {
+				int offset = (start + i) << 2;
+				int count = (int) ((this.table[indexOf(hash, i)] >>> offset) & 0xfL);
+				frequency = Math.min(frequency, count);
+			}
+			return frequency;
+		}
+
+		public void increment(Object key) {
+			int hash = spread(key.hashCode());
+			int start = (hash & 3) << 2;
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+			}
+			if (added && ++this.size == this.sampleSize) {
+				reset();
+			}
+		}
+
+		private boolean incrementAt(int index, int offset) {
+			long mask = (0xfL << offset);
+			if ((this.table[index] & mask) != mask) {
+				this.table[index] += (1L << offset);
+				return true;
+			}
+			return false;
+		}
+
+		private void reset() {
+			int oddCounters = 0;
+			for (int i = 0; i < this.table.length; i++) {
+				oddCounters += Long.bitCount(this.table[i] & ONE_MASK);
+				this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+			}
+			this.size = (this.size >>> 1) - (oddCounters >>> 2);
+		}
+
+		private int indexOf(int hash, int depth) {
+			long index = (hash + SEEDS[depth]) * SEEDS[depth];
+			index += (index >>> 32);
+			return ((int) index) & (this.table.length - 1);
+		}
+
+		private static int spread(int hash) {
+			hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+			hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+			return (hash >>> 16) ^ hash;
+		}
+	}
+
+
+	@SuppressWarnings("serial")
+	private static class NullHolder implements Serializable {
+
+		private Object readResolve() {
+			return NULL_HOLDER;
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.io.Serializable;
+
+/**
+ * Immutable snapshot of the statistics of a {@link BoundedConcurrentCache}.
+ *
+ * @since 4.1.10
+ * @see BoundedConcurrentCache#getStats()
+ */
+@SuppressWarnings("serial")
+public final class CacheStats implements Serializable {
+
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long loadSuccessCount;
+
+	private final long loadFailureCount;
+
+	private final long totalLoadTime;
+
+	private final long evictionCount;
+
+
+	/**
+	 * Create a new CacheStats instance.
+	 * @param hitCount the number of lookups that found a cached value
+	 * @param missCount the number of lookups that did not find a cached value
+	 * @param loadSuccessCount the number of values loaded successfully
+	 * @param loadFailureCount the number of failed attempts to load a value
+	 * @param totalLoadTime the time spent loading values, in nanoseconds
+	 * @param evictionCount the number of entries evicted by size or expiration
+	 */
+	public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+			long totalLoadTime, long evictionCount) {
+
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.evictionCount = evictionCount;
+	}
+
+
+	/**
+	 * Return the number of lookups that found a cached value.
+	 */
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * Return the number of lookups that did not find a cached value.
+	 */
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * Return the total number of lookups, i.e. hits plus misses.
+	 */
+	public long getRequestCount() {
+		return this.hitCount + this.missCount;
+	}
+
+	/**
+	 * Return the ratio of lookups that found a cached value,
+	 * or {@code 1.0} if there were no lookups yet.
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		return (requestCount == 0 ? 1.0 : (double) this.hitCount / requestCount);
+	}
+
+	/**
+	 * Return the number of values loaded successfully on a cache miss.
+	 */
+	public long getLoadSuccessCount() {
+		return this.loadSuccessCount;
+	}
+
+	/**
+	 * Return the number of attempts to load a value that threw an exception.
+	 */
+	public long getLoadFailureCount() {
+		return this.loadFailureCount;
+	}
+
+	/**
+	 * Return the total time spent loading values, in nanoseconds.
+	 */
+	public long getTotalLoadTime() {
+		return this.totalLoadTime;
+	}
+
+	/**
+	 * Return the average time spent loading a value, in nanoseconds.
+	 */
+	public double getAverageLoadPenalty() {
+		long loadCount = this.loadSuccessCount + this.loadFailureCount;
+		return (loadCount == 0 ? 0.0 : (double) this.totalLoadTime / loadCount);
+	}
+
+	/**
+	 * Return the number of entries evicted because of the size limit
+	 * or because they expired.
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CacheStats)) {
+			return false;
+		}
+		CacheStats otherStats = (CacheStats) other;
+		return (this.hitCount == otherStats.hitCount && this.missCount == otherStats.missCount &&
+				this.loadSuccessCount == otherStats.loadSuccessCount &&
+				this.loadFailureCount == otherStats.loadFailureCount &&
+				this.totalLoadTime == otherStats.totalLoadTime && this.evictionCount == otherStats.evictionCount);
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = this.hitCount;
+		hash = 31 * hash + this.missCount;
+		hash = 31 * hash + this.loadSuccessCount;
+		hash = 31 * hash + this.loadFailureCount;
+		hash = 31 * hash + this.totalLoadTime;
+		hash = 31 * hash + this.evictionCount;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats [hitCount=" + this.hitCount + ", missCount=" + this.missCount +
+				", loadSuccessCount=" + this.loadSuccessCount + ", loadFailureCount=" + this.loadFailureCount +
+				", totalLoadTime=" + this.totalLoadTime + ", evictionCount=" + this.evictionCount + "]";
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,11 +17,13 @@
 package org.springframework.cache.concurrent;
 
 import java.io.Serializable;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.cache.Cache;
 import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.cache.support.ValueLoaderSynchronizer;
 import org.springframework.util.Assert;
 
 /**
@@ -51,6 +53,8 @@ public class ConcurrentMapCache implements Cache {
 
 	private final boolean allowNullValues;
 
+	private final ValueLoaderSynchronizer valueLoaderSynchronizer = new ValueLoaderSynchronizer();
+
 
 	/**
 	 * Create a new ConcurrentMapCache with the specified name.
@@ -117,6 +121,38 @@ public class ConcurrentMapCache implements Cache {
 		return (T) value;
 	}
 
+	/**
+	 * This implementation invokes the value loader at most once at a time
+	 * per key, with concurrent callers for the same key waiting for its result.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		Object storeValue = this.store.get(key);
+		if (storeValue != null) {
+			return (T) fromStoreValue(storeValue);
+		}
+		return this.valueLoaderSynchronizer.load(key, new Callable<T>() {
+			@Override
+			public T call() {
+				// A load for the same key may have completed in the meantime
+				Object storeValue = store.get(key);
+				if (storeValue != null) {
+					return (T) fromStoreValue(storeValue);
+				}
+				T value;
+				try {
+					value = valueLoader.call();
+				}
+				catch (Throwable ex) {
+					throw new ValueRetrievalException(key, valueLoader, ex);
+				}
+				put(key, value);
+				return value;
+			}
+		});
+	}
+
 	@Override
 	public void put(Object key, Object value) {
 		this.store.put(key, toStoreValue(value));
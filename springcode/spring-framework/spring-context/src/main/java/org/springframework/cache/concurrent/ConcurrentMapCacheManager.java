@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,12 +19,15 @@ package org.springframework.cache.concurrent;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.util.Assert;
 
 /**
  * {@link CacheManager} implementation that lazily builds {@link ConcurrentMapCache}
@@ -32,24 +35,36 @@ import org.springframework.cache.CacheManager;
  * the set of cache names is pre-defined through {@link #setCacheNames}, with no
  * dynamic creation of further cache regions at runtime.
  *
- * <p>Note: This is by no means a sophisticated CacheManager; it comes with no
- * cache configuration options. However, it may be useful for testing or simple
- * caching scenarios. For advanced local caching needs, consider
+ * <p>By default, caches are unbounded {@link ConcurrentMapCache} instances, which
+ * may be useful for testing or simple caching scenarios. A {@link BoundedCacheSpec}
+ * specification, applied to all caches through {@link #setCacheSpecification} or
+ * per cache name through {@link #setCacheSpecifications}, turns the corresponding
+ * caches into {@link BoundedConcurrentCache} instances with a size or weight limit,
+ * expiration and statistics. For further local caching needs, consider
  * {@link org.springframework.cache.guava.GuavaCacheManager} or
  * {@link org.springframework.cache.ehcache.EhCacheCacheManager}.
  *
  * @author Juergen Hoeller
  * @since 3.1
  * @see ConcurrentMapCache
+ * @see BoundedConcurrentCache
  */
 public class ConcurrentMapCacheManager implements CacheManager {
 
 	private final ConcurrentMap<String, Cache> cacheMap = new ConcurrentHashMap<String, Cache>(16);
 
+	private final Set<String> cacheNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(16));
+
 	private boolean dynamic = true;
 
 	private boolean allowNullValues = true;
 
+	private BoundedCacheSpec defaultCacheSpec;
+
+	private final Map<String, BoundedCacheSpec> cacheSpecs = new ConcurrentHashMap<String, BoundedCacheSpec>(16);
+
+	private CacheWeigher cacheWeigher;
+
 
 	/**
 	 * Construct a dynamic ConcurrentMapCacheManager,
@@ -76,9 +91,7 @@ public class ConcurrentMapCacheManager implements CacheManager {
 	 */
 	public void setCacheNames(Collection<String> cacheNames) {
 		if (cacheNames != null) {
-			for (String name : cacheNames) {
-				this.cacheMap.put(name, createConcurrentMapCache(name));
-			}
+			this.cacheNames.addAll(cacheNames);
 			this.dynamic = false;
 		}
 		else {
@@ -98,9 +111,7 @@ public class ConcurrentMapCacheManager implements CacheManager {
 		if (allowNullValues != this.allowNullValues) {
 			this.allowNullValues = allowNullValues;
 			// Need to recreate all Cache instances with the new null-value configuration...
-			for (Map.Entry<String, Cache> entry : this.cacheMap.entrySet()) {
-				entry.setValue(createConcurrentMapCache(entry.getKey()));
-			}
+			resetCaches();
 		}
 	}
 
@@ -113,20 +124,67 @@ public class ConcurrentMapCacheManager implements CacheManager {
 	}
 
 
+	/**
+	 * Set the {@link BoundedCacheSpec} specification String to apply to all caches
+	 * without a specific specification, e.g. {@code "maximumSize=1000,recordStats"}.
+	 * <p>Default is none, creating unbounded {@link ConcurrentMapCache} instances.
+	 * <p>Note: A change of the specification will reset all existing caches,
+	 * if any, to reconfigure them with the new specification.
+	 * @see BoundedCacheSpec#parse(String)
+	 */
+	public void setCacheSpecification(String cacheSpecification) {
+		this.defaultCacheSpec = (cacheSpecification != null ? BoundedCacheSpec.parse(cacheSpecification) : null);
+		resetCaches();
+	}
+
+	/**
+	 * Set {@link BoundedCacheSpec} specification Strings per cache name,
+	 * taking precedence over the {@link #setCacheSpecification default specification}.
+	 * <p>Note: A change of the specifications will reset all existing caches,
+	 * if any, to reconfigure them with the new specifications.
+	 * @see BoundedCacheSpec#parse(String)
+	 */
+	public void setCacheSpecifications(Map<String, String> cacheSpecifications) {
+		Map<String, BoundedCacheSpec> specs = new LinkedHashMap<String, BoundedCacheSpec>();
+		if (cacheSpecifications != null) {
+			for (Map.Entry<String, String> entry : cacheSpecifications.entrySet()) {
+				Assert.notNull(entry.getValue(), "Cache specification must not be null");
+				specs.put(entry.getKey(), BoundedCacheSpec.parse(entry.getValue()));
+			}
+		}
+		this.cacheSpecs.clear();
+		this.cacheSpecs.putAll(specs);
+		resetCaches();
+	}
+
+	/**
+	 * Set the {@link CacheWeigher} for caches whose specification defines
+	 * a {@code maximumWeight}.
+	 * <p>Note: Caches get created on first access, so the weigher may be set
+	 * before or after the specifications that require it. A change of the
+	 * weigher will reset all existing caches, if any.
+	 */
+	public void setCacheWeigher(CacheWeigher cacheWeigher) {
+		this.cacheWeigher = cacheWeigher;
+		resetCaches();
+	}
+
+
 	@Override
 	public Collection<String> getCacheNames() {
-		return Collections.unmodifiableSet(this.cacheMap.keySet());
+		return Collections.unmodifiableSet(this.cacheNames);
 	}
 
 	@Override
 	public Cache getCache(String name) {
 		Cache cache = this.cacheMap.get(name);
-		if (cache == null && this.dynamic) {
+		if (cache == null && (this.dynamic || this.cacheNames.contains(name))) {
 			synchronized (this.cacheMap) {
 				cache = this.cacheMap.get(name);
 				if (cache == null) {
 					cache = createConcurrentMapCache(name);
 					this.cacheMap.put(name, cache);
+					this.cacheNames.add(name);
 				}
 			}
 		}
@@ -134,12 +192,30 @@ public class ConcurrentMapCacheManager implements CacheManager {
 	}
 
 	/**
-	 * Create a new ConcurrentMapCache instance for the specified cache name.
+	 * Create a new ConcurrentMapCache instance for the specified cache name,
+	 * or a BoundedConcurrentCache if a specification applies to it.
 	 * @param name the name of the cache
 	 * @return the ConcurrentMapCache (or a decorator thereof)
 	 */
 	protected Cache createConcurrentMapCache(String name) {
+		BoundedCacheSpec spec = this.cacheSpecs.get(name);
+		if (spec == null) {
+			spec = this.defaultCacheSpec;
+		}
+		if (spec != null) {
+			return new BoundedConcurrentCache(name, spec, this.cacheWeigher, isAllowNullValues());
+		}
 		return new ConcurrentMapCache(name, isAllowNullValues());
 	}
 
+	/**
+	 * Discard the existing caches, to be created again with the current state
+	 * of this manager on their next {@link #getCache} request.
+	 */
+	private void resetCaches() {
+		synchronized (this.cacheMap) {
+			this.cacheMap.clear();
+		}
+	}
+
 }
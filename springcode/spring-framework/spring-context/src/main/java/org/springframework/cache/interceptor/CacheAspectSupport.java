@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
@@ -325,7 +326,36 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 		return targetClass;
 	}
 
-	private Object execute(CacheOperationInvoker invoker, CacheOperationContexts contexts) {
+	private Object execute(final CacheOperationInvoker invoker, CacheOperationContexts contexts) {
+		// Special handling of synchronized invocation
+		if (contexts.isSynchronized()) {
+			CacheOperationContext context = contexts.get(CacheableOperation.class).iterator().next();
+			if (isConditionPassing(context, ExpressionEvaluator.NO_RESULT)) {
+				Object key = generateKey(context, ExpressionEvaluator.NO_RESULT);
+				Cache cache = context.getCaches().iterator().next();
+				try {
+					return cache.get(key, new Callable<Object>() {
+						@Override
+						public Object call() {
+							return invokeOperation(invoker);
+						}
+					});
+				}
+				catch (Cache.ValueRetrievalException ex) {
+					// The invoker wraps any Throwable in a ThrowableWrapper instance,
+					// so make sure that one bubbles up the stack.
+					if (ex.getCause() instanceof CacheOperationInvoker.ThrowableWrapper) {
+						throw (CacheOperationInvoker.ThrowableWrapper) ex.getCause();
+					}
+					throw ex;
+				}
+			}
+			else {
+				// No caching required, only call the underlying method
+				return invokeOperation(invoker);
+			}
+		}
+
 		// Process any early evictions
 		processCacheEvicts(contexts.get(CacheEvictOperation.class), true, ExpressionEvaluator.NO_RESULT);
 
@@ -493,18 +523,59 @@ public abstract class CacheAspectSupport extends AbstractCacheInvoker
 		private final MultiValueMap<Class<? extends CacheOperation>, CacheOperationContext> contexts =
 				new LinkedMultiValueMap<Class<? extends CacheOperation>, CacheOperationContext>();
 
+		private final boolean sync;
+
 		public CacheOperationContexts(Collection<? extends CacheOperation> operations, Method method,
 				Object[] args, Object target, Class<?> targetClass) {
 
 			for (CacheOperation operation : operations) {
 				this.contexts.add(operation.getClass(), getOperationContext(operation, method, args, target, targetClass));
 			}
+			this.sync = determineSyncFlag(method);
 		}
 
 		public Collection<CacheOperationContext> get(Class<? extends CacheOperation> operationClass) {
 			Collection<CacheOperationContext> result = this.contexts.get(operationClass);
 			return (result != null ? result : Collections.<CacheOperationContext>emptyList());
 		}
+
+		public boolean isSynchronized() {
+			return this.sync;
+		}
+
+		private boolean determineSyncFlag(Method method) {
+			List<CacheOperationContext> cacheableContexts = this.contexts.get(CacheableOperation.class);
+			if (cacheableContexts == null) {
+				return false;
+			}
+			boolean syncEnabled = false;
+			for (CacheOperationContext context : cacheableContexts) {
+				if (((CacheableOperation) context.getOperation()).isSync()) {
+					syncEnabled = true;
+					break;
+				}
+			}
+			if (!syncEnabled) {
+				return false;
+			}
+			if (this.contexts.size() > 1) {
+				throw new IllegalStateException("@Cacheable(sync=true) cannot be combined with other " +
+						"cache operations on '" + method + "'");
+			}
+			if (cacheableContexts.size() > 1) {
+				throw new IllegalStateException("Only one @Cacheable(sync=true) entry is allowed on '" + method + "'");
+			}
+			CacheOperationContext context = cacheableContexts.get(0);
+			CacheableOperation operation = (CacheableOperation) context.getOperation();
+			if (context.getCaches().size() > 1) {
+				throw new IllegalStateException("@Cacheable(sync=true) only allows a single cache on '" + operation + "'");
+			}
+			if (StringUtils.hasText(operation.getUnless())) {
+				throw new IllegalStateException("@Cacheable(sync=true) does not support the 'unless' attribute on '" +
+						operation + "'");
+			}
+			return true;
+		}
 	}
 
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.support;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.springframework.cache.Cache;
+
+/**
+ * Helper for {@link Cache} implementations to synchronize the loading of
+ * values in {@link Cache#get(Object, Callable)} per key: concurrent callers
+ * for the same key wait for the result of the load in progress, instead of
+ * all invoking their value loader on a cache miss.
+ *
+ * <p>Callers for different keys do not block each other. The synchronization
+ * is local to this instance, i.e. it does not span several processes sharing
+ * a distributed cache.
+ *
+ * @since 4.1.10
+ */
+public class ValueLoaderSynchronizer {
+
+	private final ConcurrentMap<Object, LoadTask<?>> pendingLoads = new ConcurrentHashMap<Object, LoadTask<?>>(16);
+
+
+	/**
+	 * Execute the given load callback for the given key, unless a load for
+	 * the same key is in progress already, in which case wait for its result.
+	 * <p>The callback is expected to check the cache again before loading,
+	 * since a load for the same key may have completed right before this call,
+	 * and to store the loaded value in the cache.
+	 * @param key the cache key
+	 * @param loadCallback the callback loading and storing the value
+	 * @return the loaded value, possibly as loaded through another caller's callback
+	 * @throws Cache.ValueRetrievalException if the callback threw a checked
+	 * exception (runtime exceptions and errors are propagated as-is)
+	 * @throws IllegalStateException if the callback of a load in progress on
+	 * the current thread attempts to load the same key again
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T load(Object key, Callable<T> loadCallback) {
+		LoadTask<T> task = new LoadTask<T>(loadCallback);
+		LoadTask<T> pendingTask = (LoadTask<T>) this.pendingLoads.putIfAbsent(key, task);
+		if (pendingTask != null && pendingTask.owner == Thread.currentThread()) {
+			// Waiting for our own load would never end
+			throw new IllegalStateException("Recursive load for cache key '" + key + "' on the same thread");
+		}
+		if (pendingTask == null) {
+			pendingTask = task;
+			try {
+				task.run();
+			}
+			finally {
+				this.pendingLoads.remove(key, task);
+			}
+		}
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return pendingTask.get();
+				}
+				catch (InterruptedException ex) {
+					// Keep waiting for the pending load, restoring the interrupt status afterwards
+					interrupted = true;
+				}
+			}
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new Cache.ValueRetrievalException(key, loadCallback, cause);
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+
+	/**
+	 * FutureTask for a load in progress, exposing the thread that runs it.
+	 */
+	private static class LoadTask<T> extends FutureTask<T> {
+
+		private final Thread owner = Thread.currentThread();
+
+		public LoadTask(Callable<T> callable) {
+			super(callable);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,7 @@ import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.util.ClassUtils;
 
 /**
@@ -99,6 +100,18 @@ public class AnnotationConfigUtils {
 	public static final String PERSISTENCE_ANNOTATION_PROCESSOR_BEAN_NAME =
 			"org.springframework.context.annotation.internalPersistenceAnnotationProcessor";
 
+	/**
+	 * The bean name of a {@link MetadataReaderFactory} to be shared by the
+	 * {@link ConfigurationClassPostProcessor} and any {@link ClassPathBeanDefinitionScanner}
+	 * of a context, including its child contexts, instead of each of them keeping
+	 * a local {@link org.springframework.core.type.classreading.CachingMetadataReaderFactory}.
+	 * Typically a {@link org.springframework.core.type.classreading.PersistentMetadataReaderFactory}
+	 * registered in the root context.
+	 * @since 4.1.10
+	 */
+	public static final String SHARED_METADATA_READER_FACTORY_BEAN_NAME =
+			"org.springframework.context.annotation.sharedMetadataReaderFactory";
+
 
 	private static final String PERSISTENCE_ANNOTATION_PROCESSOR_CLASS_NAME =
 			"org.springframework.orm.jpa.support.PersistenceAnnotationBeanPostProcessor";
@@ -194,6 +207,21 @@ public class AnnotationConfigUtils {
 		return new BeanDefinitionHolder(definition, beanName);
 	}
 
+	/**
+	 * Obtain the {@link #SHARED_METADATA_READER_FACTORY_BEAN_NAME shared MetadataReaderFactory}
+	 * from the given registry or its parent bean factories.
+	 * @param registry the registry to operate on
+	 * @return the shared MetadataReaderFactory, or {@code null} if none
+	 * @since 4.1.10
+	 */
+	static MetadataReaderFactory getSharedMetadataReaderFactory(BeanDefinitionRegistry registry) {
+		DefaultListableBeanFactory beanFactory = unwrapDefaultListableBeanFactory(registry);
+		if (beanFactory != null && beanFactory.containsBean(SHARED_METADATA_READER_FACTORY_BEAN_NAME)) {
+			return beanFactory.getBean(SHARED_METADATA_READER_FACTORY_BEAN_NAME, MetadataReaderFactory.class);
+		}
+		return null;
+	}
+
 	private static DefaultListableBeanFactory unwrapDefaultListableBeanFactory(BeanDefinitionRegistry registry) {
 		if (registry instanceof DefaultListableBeanFactory) {
 			return (DefaultListableBeanFactory) registry;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -31,6 +31,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.env.EnvironmentCapable;
 import org.springframework.core.env.StandardEnvironment;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.PatternMatchUtils;
 
@@ -142,6 +143,9 @@ public class ClassPathBeanDefinitionScanner extends ClassPathScanningCandidateCo
 		if (this.registry instanceof ResourceLoader) {
 			setResourceLoader((ResourceLoader) this.registry);
 		}
+		else {
+			applySharedMetadataReaderFactory();
+		}
 	}
 
 
@@ -152,6 +156,18 @@ public class ClassPathBeanDefinitionScanner extends ClassPathScanningCandidateCo
 		return this.registry;
 	}
 
+	/**
+	 * This implementation sets up the default MetadataReaderFactory for the given
+	 * ResourceLoader, unless a MetadataReaderFactory is shared within the context
+	 * hierarchy: In that case, the shared factory remains in use.
+	 * @see AnnotationConfigUtils#SHARED_METADATA_READER_FACTORY_BEAN_NAME
+	 */
+	@Override
+	public void setResourceLoader(ResourceLoader resourceLoader) {
+		super.setResourceLoader(resourceLoader);
+		applySharedMetadataReaderFactory();
+	}
+
 	/**
 	 * Set the defaults to use for detected beans.
 	 * @see BeanDefinitionDefaults
@@ -338,6 +354,17 @@ public class ClassPathBeanDefinitionScanner extends ClassPathScanningCandidateCo
 	}
 
 
+	/**
+	 * Use the MetadataReaderFactory shared within the context hierarchy, if any.
+	 */
+	private void applySharedMetadataReaderFactory() {
+		MetadataReaderFactory sharedMetadataReaderFactory =
+				AnnotationConfigUtils.getSharedMetadataReaderFactory(this.registry);
+		if (sharedMetadataReaderFactory != null) {
+			setMetadataReaderFactory(sharedMetadataReaderFactory);
+		}
+	}
+
 	/**
 	 * Get the Environment from the given registry if possible, otherwise return a new
 	 * StandardEnvironment.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -31,6 +31,9 @@ import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.context.ResourceLoaderAware;
+import org.springframework.context.index.CandidateComponentsIndex;
+import org.springframework.context.index.CandidateComponentsIndexLoader;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.EnvironmentCapable;
 import org.springframework.core.env.StandardEnvironment;
@@ -59,6 +62,11 @@ import org.springframework.util.ClassUtils;
  * {@link org.springframework.core.type.classreading.MetadataReader MetadataReader}
  * facility, backed by an ASM {@link org.springframework.asm.ClassReader ClassReader}.
  *
+ * <p>If a build-time index of candidate components is available (see
+ * {@link CandidateComponentsIndexLoader}), candidates are determined from the
+ * index instead of walking the classpath, as long as all include filters are
+ * supported by the index.
+ *
  * @author Mark Fisher
  * @author Juergen Hoeller
  * @author Ramnivas Laddad
@@ -89,6 +97,8 @@ public class ClassPathScanningCandidateComponentProvider implements EnvironmentC
 
 	private ConditionEvaluator conditionEvaluator;
 
+	private CandidateComponentsIndex componentsIndex;
+
 
 	/**
 	 * Create a ClassPathScanningCandidateComponentProvider with a {@link StandardEnvironment}.
@@ -117,6 +127,7 @@ public class ClassPathScanningCandidateComponentProvider implements EnvironmentC
 		}
 		Assert.notNull(environment, "Environment must not be null");
 		this.environment = environment;
+		this.componentsIndex = CandidateComponentsIndexLoader.loadIndex(this.resourcePatternResolver.getClassLoader());
 	}
 
 
@@ -132,6 +143,7 @@ public class ClassPathScanningCandidateComponentProvider implements EnvironmentC
 	public void setResourceLoader(ResourceLoader resourceLoader) {
 		this.resourcePatternResolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
 		this.metadataReaderFactory = new CachingMetadataReaderFactory(resourceLoader);
+		this.componentsIndex = CandidateComponentsIndexLoader.loadIndex(this.resourcePatternResolver.getClassLoader());
 	}
 
 	/**
@@ -259,10 +271,106 @@ public class ClassPathScanningCandidateComponentProvider implements EnvironmentC
 
 	/**
 	 * Scan the class path for candidate components.
+	 * <p>Uses the index of candidate components instead of walking the
+	 * class path if such an index is available and supports all include filters.
 	 * @param basePackage the package to check for annotated classes
 	 * @return a corresponding Set of autodetected bean definitions
 	 */
 	public Set<BeanDefinition> findCandidateComponents(String basePackage) {
+		if (this.componentsIndex != null && indexSupportsIncludeFilters()) {
+			return addCandidateComponentsFromIndex(this.componentsIndex, basePackage);
+		}
+		else {
+			return scanCandidateComponents(basePackage);
+		}
+	}
+
+	/**
+	 * Determine whether the index of candidate components can be used
+	 * with the configured include filters and resource pattern.
+	 */
+	private boolean indexSupportsIncludeFilters() {
+		if (!DEFAULT_RESOURCE_PATTERN.equals(this.resourcePattern)) {
+			return false;
+		}
+		for (TypeFilter includeFilter : this.includeFilters) {
+			if (extractStereotype(includeFilter) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Extract the stereotype to look up in the index for the given filter:
+	 * {@link Component @Component} for annotations carrying it, or
+	 * the annotation type itself for the JSR-250 and JSR-330 annotations.
+	 * @param filter the filter to handle
+	 * @return the stereotype in the index matching this filter, or
+	 * {@code null} if the filter is not supported by the index
+	 */
+	private String extractStereotype(TypeFilter filter) {
+		if (filter instanceof AnnotationTypeFilter) {
+			Class<? extends Annotation> annotationType = ((AnnotationTypeFilter) filter).getAnnotationType();
+			if (Component.class == annotationType ||
+					AnnotationUtils.findAnnotation(annotationType, Component.class) != null) {
+				return Component.class.getName();
+			}
+			if (annotationType.getName().startsWith("javax.")) {
+				return annotationType.getName();
+			}
+		}
+		return null;
+	}
+
+	private Set<BeanDefinition> addCandidateComponentsFromIndex(CandidateComponentsIndex index, String basePackage) {
+		Set<BeanDefinition> candidates = new LinkedHashSet<BeanDefinition>();
+		String resolvedBasePackage = this.environment.resolveRequiredPlaceholders(basePackage);
+		Set<String> types = new LinkedHashSet<String>();
+		for (TypeFilter filter : this.includeFilters) {
+			types.addAll(index.getCandidateTypes(resolvedBasePackage, extractStereotype(filter)));
+		}
+		boolean traceEnabled = logger.isTraceEnabled();
+		boolean debugEnabled = logger.isDebugEnabled();
+		for (String type : types) {
+			MetadataReader metadataReader;
+			try {
+				metadataReader = this.metadataReaderFactory.getMetadataReader(type);
+			}
+			catch (IOException ex) {
+				throw new BeanDefinitionStoreException("Failed to read indexed candidate component class: " + type, ex);
+			}
+			try {
+				if (isCandidateComponent(metadataReader)) {
+					ScannedGenericBeanDefinition sbd = new ScannedGenericBeanDefinition(metadataReader);
+					sbd.setResource(metadataReader.getResource());
+					sbd.setSource(metadataReader.getResource());
+					if (isCandidateComponent(sbd)) {
+						if (debugEnabled) {
+							logger.debug("Using candidate component class from index: " + type);
+						}
+						candidates.add(sbd);
+					}
+					else {
+						if (debugEnabled) {
+							logger.debug("Ignored because not a concrete top-level class: " + type);
+						}
+					}
+				}
+				else {
+					if (traceEnabled) {
+						logger.trace("Ignored because not matching any filter: " + type);
+					}
+				}
+			}
+			catch (Throwable ex) {
+				throw new BeanDefinitionStoreException("Failed to read candidate component class: " + type, ex);
+			}
+		}
+		return candidates;
+	}
+
+	private Set<BeanDefinition> scanCandidateComponents(String basePackage) {
 		Set<BeanDefinition> candidates = new LinkedHashSet<BeanDefinition>();
 		try {
 			String packageSearchPath = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX +
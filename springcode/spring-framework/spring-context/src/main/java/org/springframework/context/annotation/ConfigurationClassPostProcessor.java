@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -159,7 +159,9 @@ public class ConfigurationClassPostProcessor implements BeanDefinitionRegistryPo
 	/**
 	 * Set the {@link MetadataReaderFactory} to use.
 	 * <p>Default is a {@link CachingMetadataReaderFactory} for the specified
-	 * {@linkplain #setBeanClassLoader bean class loader}.
+	 * {@linkplain #setBeanClassLoader bean class loader}, unless the registry
+	 * provides a {@linkplain AnnotationConfigUtils#SHARED_METADATA_READER_FACTORY_BEAN_NAME
+	 * shared MetadataReaderFactory}.
 	 */
 	public void setMetadataReaderFactory(MetadataReaderFactory metadataReaderFactory) {
 		Assert.notNull(metadataReaderFactory, "MetadataReaderFactory must not be null");
@@ -264,6 +266,14 @@ public class ConfigurationClassPostProcessor implements BeanDefinitionRegistryPo
 	 * {@link Configuration} classes.
 	 */
 	public void processConfigBeanDefinitions(BeanDefinitionRegistry registry) {
+		if (!this.setMetadataReaderFactoryCalled) {
+			MetadataReaderFactory sharedMetadataReaderFactory =
+					AnnotationConfigUtils.getSharedMetadataReaderFactory(registry);
+			if (sharedMetadataReaderFactory != null) {
+				this.metadataReaderFactory = sharedMetadataReaderFactory;
+			}
+		}
+
 		Set<BeanDefinitionHolder> configCandidates = new LinkedHashSet<BeanDefinitionHolder>();
 		String[] candidateNames = registry.getBeanDefinitionNames();
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * Provide access to the candidates that are defined in {@code META-INF/spring.components}.
+ *
+ * <p>Each entry of such a file maps the fully qualified name of a candidate type
+ * to the comma-separated names of the stereotypes it carries, directly or through
+ * meta-annotations and supertypes. For example:
+ *
+ * <pre class="code">com.example.MyService=org.springframework.stereotype.Component</pre>
+ *
+ * <p>The candidates of a stereotype are a superset of the types that a
+ * corresponding type filter matches, so filters still need to be applied.
+ *
+ * @since 4.1.10
+ * @see CandidateComponentsIndexLoader
+ */
+public class CandidateComponentsIndex {
+
+	private static final AntPathMatcher pathMatcher = new AntPathMatcher(".");
+
+	private final MultiValueMap<String, String> index;
+
+
+	/**
+	 * Create a new index from the given index files.
+	 * @param content the {@link Properties} of each index file
+	 */
+	public CandidateComponentsIndex(List<Properties> content) {
+		this.index = parseIndex(content);
+	}
+
+
+	/**
+	 * Return the candidate types that are associated with the specified stereotype.
+	 * @param basePackage the package to check for candidates, potentially
+	 * containing ant-style patterns
+	 * @param stereotype the fully qualified name of the stereotype
+	 * @return the candidate types associated with the specified stereotype in the
+	 * given package, in index order (never {@code null})
+	 */
+	public Set<String> getCandidateTypes(String basePackage, String stereotype) {
+		List<String> candidates = this.index.get(stereotype);
+		if (candidates == null) {
+			return Collections.emptySet();
+		}
+		Set<String> result = new LinkedHashSet<String>();
+		boolean isPattern = pathMatcher.isPattern(basePackage);
+		for (String candidate : candidates) {
+			if (isPattern ? pathMatcher.match(basePackage + ".**", getPackageName(candidate)) :
+					candidate.startsWith(basePackage + ".")) {
+				result.add(candidate);
+			}
+		}
+		return result;
+	}
+
+
+	private static String getPackageName(String type) {
+		int lastDotIndex = type.lastIndexOf('.');
+		return (lastDotIndex != -1 ? type.substring(0, lastDotIndex) : "");
+	}
+
+	private static MultiValueMap<String, String> parseIndex(List<Properties> content) {
+		MultiValueMap<String, String> index = new LinkedMultiValueMap<String, String>();
+		for (Properties entry : content) {
+			List<String> types = new ArrayList<String>(entry.stringPropertyNames());
+			Collections.sort(types);
+			for (String type : types) {
+				for (String stereotype : StringUtils.commaDelimitedListToStringArray(entry.getProperty(type))) {
+					index.add(stereotype.trim(), type);
+				}
+			}
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.index;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.SpringProperties;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * Candidate components index loading mechanism for internal use within the framework.
+ *
+ * <p>Index files are generated at build time by the annotation processor of the
+ * {@code spring-context-indexer} module and may be present in multiple JAR files
+ * in the classpath. Once an index file is available, scanning relies on the index
+ * entirely: every JAR file with candidate components needs to provide its index.
+ *
+ * @since 4.1.10
+ */
+public abstract class CandidateComponentsIndexLoader {
+
+	/**
+	 * The location to look for components.
+	 * <p>Can be present in multiple JAR files.
+	 */
+	public static final String COMPONENTS_RESOURCE_LOCATION = "META-INF/spring.components";
+
+	/**
+	 * System property that instructs Spring to ignore the index, i.e.
+	 * to always scan the classpath for candidate components.
+	 * <p>The default is "false", using the index if present. Switch this flag to
+	 * {@code true} for classpaths where some JAR files have not been indexed.
+	 */
+	public static final String IGNORE_INDEX = "spring.index.ignore";
+
+	private static final boolean shouldIgnoreIndex = SpringProperties.getFlag(IGNORE_INDEX);
+
+	private static final Log logger = LogFactory.getLog(CandidateComponentsIndexLoader.class);
+
+	private static final Map<ClassLoader, CandidateComponentsIndex> cache =
+			new ConcurrentReferenceHashMap<ClassLoader, CandidateComponentsIndex>();
+
+
+	/**
+	 * Load and instantiate the {@link CandidateComponentsIndex} from
+	 * {@value #COMPONENTS_RESOURCE_LOCATION}, using the given class loader.
+	 * If no index is available, return {@code null}.
+	 * @param classLoader the ClassLoader to use for loading (can be {@code null} to use the default)
+	 * @return the index to use or {@code null} if no index was found
+	 * @throws IllegalStateException if any index file cannot be loaded
+	 */
+	public static CandidateComponentsIndex loadIndex(ClassLoader classLoader) {
+		ClassLoader classLoaderToUse = classLoader;
+		if (classLoaderToUse == null) {
+			classLoaderToUse = CandidateComponentsIndexLoader.class.getClassLoader();
+		}
+		CandidateComponentsIndex index = cache.get(classLoaderToUse);
+		if (index == null && !cache.containsKey(classLoaderToUse)) {
+			index = doLoadIndex(classLoaderToUse);
+			cache.put(classLoaderToUse, index);
+		}
+		return index;
+	}
+
+	private static CandidateComponentsIndex doLoadIndex(ClassLoader classLoader) {
+		if (shouldIgnoreIndex) {
+			return null;
+		}
+		try {
+			Enumeration<URL> urls = classLoader.getResources(COMPONENTS_RESOURCE_LOCATION);
+			if (!urls.hasMoreElements()) {
+				return null;
+			}
+			List<Properties> result = new ArrayList<Properties>();
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				result.add(PropertiesLoaderUtils.loadProperties(new UrlResource(url)));
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Loaded " + result.size() + " index file(s) from location [" +
+						COMPONENTS_RESOURCE_LOCATION + "]");
+			}
+			return new CandidateComponentsIndex(result);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Unable to load indexes from location [" +
+					COMPONENTS_RESOURCE_LOCATION + "]", ex);
+		}
+	}
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Support for reading the index of candidate components generated at build
+ * time, as an alternative to classpath scanning.
+ */
+package org.springframework.context.index;
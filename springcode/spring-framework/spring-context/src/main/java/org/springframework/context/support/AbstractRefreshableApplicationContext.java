@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,39 @@
 
 package org.springframework.context.support;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.NotSerializableException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.parsing.EmptyReaderEventListener;
+import org.springframework.beans.factory.parsing.ImportDefinition;
+import org.springframework.beans.factory.parsing.ReaderEventListener;
+import org.springframework.beans.factory.support.BeanDefinitionSnapshotUtils;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextException;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * Base class for {@link org.springframework.context.ApplicationContext}
@@ -63,10 +89,31 @@ import org.springframework.context.ApplicationContextException;
  */
 public abstract class AbstractRefreshableApplicationContext extends AbstractApplicationContext {
 
+	/**
+	 * Name of the property source that records the properties resolved
+	 * whilst loading bean definitions for a snapshot.
+	 */
+	private static final String SNAPSHOT_INPUTS_PROPERTY_SOURCE_NAME = "beanDefinitionSnapshotInputs";
+
+	/**
+	 * Locations of the resources that determine how XML namespaces and
+	 * indexed candidate components are resolved.
+	 */
+	private static final String[] SNAPSHOT_METADATA_LOCATIONS = new String[] {
+			"classpath*:META-INF/spring.handlers", "classpath*:META-INF/spring.schemas",
+			"classpath*:META-INF/spring.components"};
+
 	private Boolean allowBeanDefinitionOverriding;
 
 	private Boolean allowCircularReferences;
 
+	private File beanDefinitionSnapshotFile;
+
+	private String[] beanDefinitionSnapshotResources;
+
+	/** Inputs recorded whilst loading bean definitions for a snapshot */
+	private volatile SnapshotInputs snapshotInputs;
+
 	/** Bean factory for this context */
 	private DefaultListableBeanFactory beanFactory;
 
@@ -110,6 +157,55 @@ public abstract class AbstractRefreshableApplicationContext extends AbstractAppl
 		this.allowCircularReferences = allowCircularReferences;
 	}
 
+	/**
+	 * Set a file to keep a snapshot of this context's bean definitions in,
+	 * for faster subsequent refreshes. Default is none.
+	 * <p>On refresh, bean definitions are taken from the snapshot instead of
+	 * being loaded through {@link #loadBeanDefinitions} if the snapshot's
+	 * fingerprint matches the {@link #determineBeanDefinitionSnapshotFingerprint
+	 * current fingerprint}. Otherwise, bean definitions are loaded as usual,
+	 * with a new snapshot written to the given file afterwards.
+	 * <p>The snapshot is taken right after {@link #loadBeanDefinitions}, i.e.
+	 * <i>before</i> any BeanFactoryPostProcessor runs. All it saves is the parsing
+	 * of XML or Groovy config locations, and it is only used by contexts that
+	 * {@link #isBeanDefinitionSnapshotSupported support it}. Annotation-based
+	 * configuration does not benefit at all: {@link org.springframework.context.annotation.ConfigurationClassPostProcessor}
+	 * does its full work on every refresh, including {@code @ComponentScan} and
+	 * {@code @Conditional} processing, and contexts not derived from this class,
+	 * e.g. {@link GenericApplicationContext}, ignore snapshots. Bean definitions
+	 * with content that cannot be stored in a snapshot, such as bean instances
+	 * passed in as property values, prevent a snapshot from being written.
+	 * <p>Whilst loading bean definitions, this context records every resource
+	 * location resolved through it (config locations, imports, and the class
+	 * file patterns of {@code <context:component-scan>}), every imported resource
+	 * reported to the {@link #getBeanDefinitionSnapshotListener() snapshot listener},
+	 * and every Environment property resolved. These inputs are stored with the
+	 * snapshot and resolved again on the next refresh: any change to them, such as
+	 * an edited imported file or a class added underneath a scanned base package,
+	 * invalidates the snapshot. Other state that bean definitions may depend on,
+	 * e.g. conditions on the presence of classes, is not covered.
+	 * @since 4.1.10
+	 * @see BeanDefinitionSnapshotUtils
+	 */
+	public void setBeanDefinitionSnapshotFile(File beanDefinitionSnapshotFile) {
+		this.beanDefinitionSnapshotFile = beanDefinitionSnapshotFile;
+	}
+
+	/**
+	 * Set further resource locations that the bean definitions of this context
+	 * are derived from, for the {@link #setBeanDefinitionSnapshotFile snapshot}
+	 * fingerprint to take into account. Default is none.
+	 * <p>Only needed for inputs that are not resolved through this context whilst
+	 * loading bean definitions, e.g. resources read by a custom namespace handler.
+	 * Supports resource patterns such as "classpath*:com/mycompany/**&#47;*.xml".
+	 * The snapshot file itself is never taken into account.
+	 * @since 4.1.10
+	 * @see #determineBeanDefinitionSnapshotFingerprint
+	 */
+	public void setBeanDefinitionSnapshotResources(String... beanDefinitionSnapshotResources) {
+		this.beanDefinitionSnapshotResources = beanDefinitionSnapshotResources;
+	}
+
 
 	/**
 	 * This implementation performs an actual refresh of this context's underlying
@@ -126,7 +222,23 @@ public abstract class AbstractRefreshableApplicationContext extends AbstractAppl
 			DefaultListableBeanFactory beanFactory = createBeanFactory();
 			beanFactory.setSerializationId(getId());
 			customizeBeanFactory(beanFactory);
-			loadBeanDefinitions(beanFactory);
+			String snapshotFingerprint = null;
+			if (this.beanDefinitionSnapshotFile != null) {
+				if (isBeanDefinitionSnapshotSupported()) {
+					snapshotFingerprint = determineBeanDefinitionSnapshotFingerprint();
+				}
+				else if (logger.isWarnEnabled()) {
+					logger.warn("Ignoring bean definition snapshot [" + this.beanDefinitionSnapshotFile +
+							"]: not supported by " + getClass().getName());
+				}
+			}
+			if (snapshotFingerprint == null) {
+				loadBeanDefinitions(beanFactory);
+			}
+			else if (!readBeanDefinitionSnapshot(beanFactory, snapshotFingerprint)) {
+				SnapshotInputs inputs = loadBeanDefinitionsForSnapshot(beanFactory);
+				writeBeanDefinitionSnapshot(beanFactory, snapshotFingerprint, inputs);
+			}
 			synchronized (this.beanFactoryMonitor) {
 				this.beanFactory = beanFactory;
 			}
@@ -223,6 +335,339 @@ public abstract class AbstractRefreshableApplicationContext extends AbstractAppl
 		}
 	}
 
+	/**
+	 * Return whether this context's bean definitions may be taken from a
+	 * {@link #setBeanDefinitionSnapshotFile snapshot}: that is, whether
+	 * {@link #loadBeanDefinitions} does nothing but register bean definitions,
+	 * derived from the inputs covered by {@link #determineBeanDefinitionSnapshotFingerprint}.
+	 * <p>The default implementation returns {@code false}. Contexts that load
+	 * bean definitions from XML or Groovy config locations return {@code true}.
+	 * @since 4.1.10
+	 * @see #setBeanDefinitionSnapshotFile
+	 */
+	protected boolean isBeanDefinitionSnapshotSupported() {
+		return false;
+	}
+
+	/**
+	 * Determine the fingerprint that a bean definition snapshot needs to match
+	 * in order to be used instead of loading bean definitions.
+	 * <p>The default implementation is derived from this context's class, its active
+	 * and default profiles, the size and last-modified timestamp of every jar file
+	 * on the classpath of this context's ClassLoader, of every {@code META-INF/spring.handlers},
+	 * {@code META-INF/spring.schemas} and {@code META-INF/spring.components} file, and
+	 * of the {@link #setBeanDefinitionSnapshotResources snapshot resources}.
+	 * Classpath directories are taken into account by name only, with the resources
+	 * loaded from them covered by the inputs recorded whilst loading bean definitions
+	 * (see {@link #setBeanDefinitionSnapshotFile}). Can be overridden in subclasses
+	 * to take further sources of bean definitions into account.
+	 * @return the fingerprint (never {@code null})
+	 * @throws IOException if the fingerprint could not be determined
+	 * @since 4.1.10
+	 * @see #setBeanDefinitionSnapshotFile
+	 * @see #appendBeanDefinitionSnapshotFingerprint
+	 */
+	protected String determineBeanDefinitionSnapshotFingerprint() throws IOException {
+		StringBuilder fingerprint = new StringBuilder(getClass().getName());
+		fingerprint.append(';').append(StringUtils.arrayToCommaDelimitedString(getEnvironment().getActiveProfiles()));
+		fingerprint.append(';').append(StringUtils.arrayToCommaDelimitedString(getEnvironment().getDefaultProfiles()));
+		Set<File> classpathFiles = new LinkedHashSet<File>();
+		for (ClassLoader cl = getClassLoader(); cl != null; cl = cl.getParent()) {
+			if (cl instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) cl).getURLs()) {
+					if (ResourceUtils.URL_PROTOCOL_FILE.equals(url.getProtocol())) {
+						classpathFiles.add(ResourceUtils.getFile(url).getCanonicalFile());
+					}
+				}
+			}
+		}
+		String classpath = System.getProperty("java.class.path");
+		if (classpath != null) {
+			for (String entry : StringUtils.delimitedListToStringArray(classpath, File.pathSeparator)) {
+				classpathFiles.add(new File(entry).getCanonicalFile());
+			}
+		}
+		for (File file : classpathFiles) {
+			if (!isBeanDefinitionSnapshotFile(file)) {
+				fingerprint.append(';').append(file.getPath());
+				if (file.isFile()) {
+					fingerprint.append(':').append(file.length()).append(':').append(file.lastModified());
+				}
+			}
+		}
+		appendBeanDefinitionSnapshotFingerprint(fingerprint, Arrays.asList(SNAPSHOT_METADATA_LOCATIONS));
+		if (this.beanDefinitionSnapshotResources != null) {
+			appendBeanDefinitionSnapshotFingerprint(fingerprint, Arrays.asList(this.beanDefinitionSnapshotResources));
+		}
+		return DigestUtils.md5DigestAsHex(fingerprint.toString().getBytes("UTF-8"));
+	}
+
+	/**
+	 * Append the resources that the given locations currently resolve to.
+	 */
+	private void appendBeanDefinitionSnapshotFingerprint(StringBuilder fingerprint, Collection<String> locations)
+			throws IOException {
+
+		for (String location : locations) {
+			fingerprint.append(';').append(location);
+			for (Resource resource : getResources(location)) {
+				appendBeanDefinitionSnapshotFingerprint(fingerprint, resource);
+			}
+		}
+	}
+
+	/**
+	 * Determine the fingerprint of a snapshot written with the given recorded inputs,
+	 * taking the current state of those inputs into account.
+	 */
+	private String determineBeanDefinitionSnapshotFingerprint(String fingerprint, SnapshotInputs inputs)
+			throws IOException {
+
+		StringBuilder result = new StringBuilder(fingerprint);
+		appendBeanDefinitionSnapshotFingerprint(result, inputs.locations);
+		for (String propertyName : inputs.propertyNames) {
+			result.append(';').append(propertyName).append('=').append(getEnvironment().getProperty(propertyName));
+		}
+		return DigestUtils.md5DigestAsHex(result.toString().getBytes("UTF-8"));
+	}
+
+	/**
+	 * Append the description of the given resource to the given snapshot
+	 * fingerprint, along with its size and last-modified timestamp. Directories
+	 * are taken into account by name only, whereas the snapshot file itself and
+	 * temporary files written next to it are skipped altogether.
+	 * @param fingerprint the fingerprint to append to
+	 * @param resource the resource that bean definitions are derived from
+	 * @throws IOException if the size or timestamp could not be determined
+	 * @since 4.1.10
+	 */
+	protected void appendBeanDefinitionSnapshotFingerprint(StringBuilder fingerprint, Resource resource)
+			throws IOException {
+
+		File file = null;
+		try {
+			file = resource.getFile();
+		}
+		catch (IOException ex) {
+			// Not in the file system, e.g. within a jar file.
+		}
+		if (file != null && isBeanDefinitionSnapshotFile(file)) {
+			return;
+		}
+		fingerprint.append(',').append(resource.getDescription());
+		if (file != null ? file.isFile() : resource.exists()) {
+			fingerprint.append(':').append(resource.contentLength());
+			fingerprint.append(':').append(resource.lastModified());
+		}
+	}
+
+	/**
+	 * Check whether the given file is the snapshot file or one of the
+	 * temporary files that new snapshots get written to.
+	 */
+	private boolean isBeanDefinitionSnapshotFile(File file) throws IOException {
+		if (this.beanDefinitionSnapshotFile == null) {
+			return false;
+		}
+		File snapshotFile = this.beanDefinitionSnapshotFile.getCanonicalFile();
+		File candidate = file.getCanonicalFile();
+		if (candidate.equals(snapshotFile)) {
+			return true;
+		}
+		return (snapshotFile.getParentFile().equals(candidate.getParentFile()) &&
+				candidate.getName().startsWith(snapshotFile.getName()) && candidate.getName().endsWith(".tmp"));
+	}
+
+	/**
+	 * Load bean definitions into the given bean factory, recording the resource
+	 * locations and Environment properties resolved for them.
+	 * @return the recorded inputs
+	 */
+	private SnapshotInputs loadBeanDefinitionsForSnapshot(DefaultListableBeanFactory beanFactory)
+			throws IOException {
+
+		final SnapshotInputs inputs = new SnapshotInputs();
+		MutablePropertySources propertySources = getEnvironment().getPropertySources();
+		propertySources.addFirst(new PropertySource<Object>(SNAPSHOT_INPUTS_PROPERTY_SOURCE_NAME) {
+			@Override
+			public Object getProperty(String name) {
+				inputs.addPropertyName(name);
+				return null;
+			}
+		});
+		this.snapshotInputs = inputs;
+		try {
+			loadBeanDefinitions(beanFactory);
+		}
+		finally {
+			this.snapshotInputs = null;
+			propertySources.remove(SNAPSHOT_INPUTS_PROPERTY_SOURCE_NAME);
+		}
+		return inputs;
+	}
+
+	/**
+	 * Register the bean definitions from the snapshot file with the given bean factory,
+	 * if the snapshot exists and matches the given fingerprint, along with the current
+	 * state of the inputs recorded in the snapshot.
+	 * @return whether the bean definitions have been taken from the snapshot
+	 */
+	private boolean readBeanDefinitionSnapshot(DefaultListableBeanFactory beanFactory, String fingerprint) {
+		if (!this.beanDefinitionSnapshotFile.isFile()) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(this.beanDefinitionSnapshotFile)));
+			try {
+				SnapshotInputs inputs = new SnapshotInputs();
+				inputs.locations.addAll(readStrings(in));
+				inputs.propertyNames.addAll(readStrings(in));
+				int count = BeanDefinitionSnapshotUtils.readSnapshot(
+						in, determineBeanDefinitionSnapshotFingerprint(fingerprint, inputs), beanFactory);
+				if (count < 0) {
+					if (logger.isInfoEnabled()) {
+						logger.info("Ignoring outdated bean definition snapshot [" + this.beanDefinitionSnapshotFile +
+								"] for " + getDisplayName());
+					}
+					return false;
+				}
+				if (logger.isInfoEnabled()) {
+					logger.info("Loaded " + count + " bean definitions from snapshot [" +
+							this.beanDefinitionSnapshotFile + "] for " + getDisplayName());
+				}
+				return true;
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException ex) {
+			logger.warn("Could not read bean definition snapshot [" + this.beanDefinitionSnapshotFile +
+					"] for " + getDisplayName(), ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Write the bean definitions of the given bean factory to the snapshot file,
+	 * along with the given recorded inputs, replacing any previous snapshot.
+	 * Failures are logged but not propagated.
+	 */
+	private void writeBeanDefinitionSnapshot(
+			DefaultListableBeanFactory beanFactory, String fingerprint, SnapshotInputs inputs) {
+
+		File snapshotFile = this.beanDefinitionSnapshotFile.getAbsoluteFile();
+		if (inputs.untrackedResource != null) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Bean definitions of " + getDisplayName() + " cannot be stored in a snapshot: " +
+						"changes to " + inputs.untrackedResource + " could not be detected");
+			}
+			return;
+		}
+		File tempFile = null;
+		try {
+			String inputsFingerprint = determineBeanDefinitionSnapshotFingerprint(fingerprint, inputs);
+			tempFile = File.createTempFile(snapshotFile.getName(), ".tmp", snapshotFile.getParentFile());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				writeStrings(out, inputs.locations);
+				writeStrings(out, inputs.propertyNames);
+				BeanDefinitionSnapshotUtils.writeSnapshot(beanFactory, inputsFingerprint, out);
+			}
+			finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(snapshotFile) && !(snapshotFile.delete() && tempFile.renameTo(snapshotFile))) {
+				throw new IOException("Could not rename [" + tempFile + "] to [" + snapshotFile + "]");
+			}
+			tempFile = null;
+			if (logger.isDebugEnabled()) {
+				logger.debug("Wrote bean definition snapshot [" + snapshotFile + "] for " + getDisplayName());
+			}
+		}
+		catch (NotSerializableException ex) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Bean definitions of " + getDisplayName() +
+						" cannot be stored in a snapshot: " + ex.getMessage());
+			}
+		}
+		catch (IOException ex) {
+			logger.warn("Could not write bean definition snapshot [" + snapshotFile + "] for " + getDisplayName(), ex);
+		}
+		finally {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String string : strings) {
+			out.writeUTF(string);
+		}
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> strings = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			strings.add(in.readUTF());
+		}
+		return strings;
+	}
+
+	/**
+	 * Return a listener for the bean definition readers of this context that
+	 * records the resources imported by bean definition files as inputs of the
+	 * bean definition snapshot, or {@code null} if no snapshot is being taken.
+	 * <p>Imports from absolute locations are resolved through this context and
+	 * recorded anyway; the listener is needed for imports from relative locations.
+	 * @since 4.1.10
+	 * @see org.springframework.beans.factory.xml.XmlBeanDefinitionReader#setEventListener
+	 */
+	protected ReaderEventListener getBeanDefinitionSnapshotListener() {
+		final SnapshotInputs inputs = this.snapshotInputs;
+		if (inputs == null) {
+			return null;
+		}
+		return new EmptyReaderEventListener() {
+			@Override
+			public void importProcessed(ImportDefinition importDefinition) {
+				for (Resource resource : importDefinition.getActualResources()) {
+					inputs.addResource(resource);
+				}
+			}
+		};
+	}
+
+	/**
+	 * This implementation records the given location as an input of the
+	 * bean definition snapshot whilst bean definitions are being loaded.
+	 */
+	@Override
+	public Resource getResource(String location) {
+		SnapshotInputs inputs = this.snapshotInputs;
+		if (inputs != null) {
+			inputs.addLocation(location);
+		}
+		return super.getResource(location);
+	}
+
+	/**
+	 * This implementation records the given location pattern as an input of the
+	 * bean definition snapshot whilst bean definitions are being loaded.
+	 */
+	@Override
+	public Resource[] getResources(String locationPattern) throws IOException {
+		SnapshotInputs inputs = this.snapshotInputs;
+		if (inputs != null) {
+			inputs.addLocation(locationPattern);
+		}
+		return super.getResources(locationPattern);
+	}
+
 	/**
 	 * Load bean definitions into the given bean factory, typically through
 	 * delegating to one or more bean definition readers.
@@ -235,4 +680,35 @@ public abstract class AbstractRefreshableApplicationContext extends AbstractAppl
 	protected abstract void loadBeanDefinitions(DefaultListableBeanFactory beanFactory)
 			throws BeansException, IOException;
 
+
+	/**
+	 * The resource locations and Environment properties that bean definitions
+	 * have been derived from, as recorded whilst loading them for a snapshot.
+	 */
+	private static class SnapshotInputs {
+
+		private final Set<String> locations = new LinkedHashSet<String>();
+
+		private final Set<String> propertyNames = new LinkedHashSet<String>();
+
+		private String untrackedResource;
+
+		public synchronized void addLocation(String location) {
+			this.locations.add(location);
+		}
+
+		public synchronized void addResource(Resource resource) {
+			try {
+				this.locations.add(resource.getURL().toString());
+			}
+			catch (IOException ex) {
+				this.untrackedResource = resource.getDescription();
+			}
+		}
+
+		public synchronized void addPropertyName(String propertyName) {
+			this.propertyNames.add(propertyName);
+		}
+	}
+
 }
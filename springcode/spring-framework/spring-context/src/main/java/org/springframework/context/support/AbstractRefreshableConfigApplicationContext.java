@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,14 @@
 
 package org.springframework.context.support;
 
+import java.io.IOException;
+
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -122,6 +126,26 @@ public abstract class AbstractRefreshableConfigApplicationContext extends Abstra
 		return getEnvironment().resolveRequiredPlaceholders(path);
 	}
 
+	/**
+	 * This implementation additionally takes the config locations into account,
+	 * along with the size and last-modified timestamp of the resources they
+	 * resolve to.
+	 */
+	@Override
+	protected String determineBeanDefinitionSnapshotFingerprint() throws IOException {
+		StringBuilder fingerprint = new StringBuilder(super.determineBeanDefinitionSnapshotFingerprint());
+		String[] configLocations = getConfigLocations();
+		if (configLocations != null) {
+			for (String location : configLocations) {
+				fingerprint.append(';').append(location);
+				for (Resource resource : getResources(location)) {
+					appendBeanDefinitionSnapshotFingerprint(fingerprint, resource);
+				}
+			}
+		}
+		return DigestUtils.md5DigestAsHex(fingerprint.toString().getBytes("UTF-8"));
+	}
+
 
 	@Override
 	public void setId(String id) {
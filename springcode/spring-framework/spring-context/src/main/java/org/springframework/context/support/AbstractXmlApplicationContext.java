@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,11 +19,13 @@ package org.springframework.context.support;
 import java.io.IOException;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.parsing.ReaderEventListener;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.xml.ResourceEntityResolver;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.Resource;
+import org.springframework.util.DigestUtils;
 
 /**
  * Convenient base class for {@link org.springframework.context.ApplicationContext}
@@ -86,6 +88,10 @@ public abstract class AbstractXmlApplicationContext extends AbstractRefreshableC
 		beanDefinitionReader.setEnvironment(this.getEnvironment());
 		beanDefinitionReader.setResourceLoader(this);
 		beanDefinitionReader.setEntityResolver(new ResourceEntityResolver(this));
+		ReaderEventListener snapshotListener = getBeanDefinitionSnapshotListener();
+		if (snapshotListener != null) {
+			beanDefinitionReader.setEventListener(snapshotListener);
+		}
 
 		// Allow a subclass to provide custom initialization of the reader,
 		// then proceed with actually loading the bean definitions.
@@ -128,6 +134,31 @@ public abstract class AbstractXmlApplicationContext extends AbstractRefreshableC
 		}
 	}
 
+	/**
+	 * This implementation returns {@code true}: XML bean definitions
+	 * may be taken from a snapshot.
+	 */
+	@Override
+	protected boolean isBeanDefinitionSnapshotSupported() {
+		return true;
+	}
+
+	/**
+	 * This implementation additionally takes the size and last-modified timestamp
+	 * of the {@link #getConfigResources() config resources} into account.
+	 */
+	@Override
+	protected String determineBeanDefinitionSnapshotFingerprint() throws IOException {
+		StringBuilder fingerprint = new StringBuilder(super.determineBeanDefinitionSnapshotFingerprint());
+		Resource[] configResources = getConfigResources();
+		if (configResources != null) {
+			for (Resource resource : configResources) {
+				appendBeanDefinitionSnapshotFingerprint(fingerprint, resource);
+			}
+		}
+		return DigestUtils.md5DigestAsHex(fingerprint.toString().getBytes("UTF-8"));
+	}
+
 	/**
 	 * Return an array of Resource objects, referring to the XML bean definition
 	 * files that this context should be built with.
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link BoundedCacheSpec}.
+ */
+public class BoundedCacheSpecTests {
+
+	@Test
+	public void parse() {
+		BoundedCacheSpec spec = BoundedCacheSpec.parse(
+				"maximumSize=1000, expireAfterWrite=30s,expireAfterAccess=250ms,recordStats");
+		assertEquals(1000, spec.getMaximumSize());
+		assertEquals(-1, spec.getMaximumWeight());
+		assertEquals(30000, spec.getExpireAfterWrite());
+		assertEquals(250, spec.getExpireAfterAccess());
+		assertTrue(spec.isRecordStats());
+		assertEquals("maximumSize=1000,expireAfterWrite=30000ms,expireAfterAccess=250ms,recordStats", spec.toString());
+	}
+
+	@Test
+	public void parseDurationUnits() {
+		assertEquals(120000, BoundedCacheSpec.parse("expireAfterWrite=2m").getExpireAfterWrite());
+		assertEquals(7200000, BoundedCacheSpec.parse("expireAfterWrite=2h").getExpireAfterWrite());
+		assertEquals(172800000, BoundedCacheSpec.parse("expireAfterWrite=2d").getExpireAfterWrite());
+	}
+
+	@Test
+	public void parseEmpty() {
+		BoundedCacheSpec spec = BoundedCacheSpec.parse("");
+		assertEquals(-1, spec.getMaximumSize());
+		assertEquals(-1, spec.getExpireAfterWrite());
+		assertFalse(spec.isRecordStats());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parseUnknownKey() {
+		BoundedCacheSpec.parse("maximumSize=10,softValues");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parseDurationWithoutUnit() {
+		BoundedCacheSpec.parse("expireAfterWrite=10");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parseSizeAndWeight() {
+		BoundedCacheSpec.parse("maximumSize=10,maximumWeight=100");
+	}
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.concurrent;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.springframework.cache.Cache;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link BoundedConcurrentCache}.
+ */
+public class BoundedConcurrentCacheTests {
+
+	private final AtomicLong time = new AtomicLong();
+
+
+	@Test
+	public void putAndGet() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("maximumSize=10"));
+		assertEquals("test", cache.getName());
+		assertSame(cache, cache.getNativeCache());
+		assertNull(cache.get("k1"));
+
+		cache.put("k1", "v1");
+		assertEquals("v1", cache.get("k1").get());
+		assertEquals("v1", cache.get("k1", String.class));
+		cache.put("k1", null);
+		assertNull(cache.get("k1").get());
+		assertEquals(1, cache.size());
+
+		assertNull(cache.putIfAbsent("k2", "v2"));
+		assertEquals("v2", cache.putIfAbsent("k2", "v2x").get());
+		cache.evict("k2");
+		assertNull(cache.get("k2"));
+		cache.clear();
+		assertNull(cache.get("k1"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void getWithWrongType() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("maximumSize=10"));
+		cache.put("k1", "v1");
+		cache.get("k1", Integer.class);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullValueNotAllowed() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", new BoundedCacheSpec(), null, false);
+		cache.put("k1", null);
+	}
+
+	@Test
+	public void maximumSize() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("maximumSize=100,recordStats"));
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+		}
+		cache.cleanUp();
+		assertEquals(100, cache.size());
+		assertEquals(900, cache.getStats().getEvictionCount());
+	}
+
+	@Test
+	public void frequentlyUsedEntriesSurviveScan() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("maximumSize=100"));
+		for (int i = 0; i < 10; i++) {
+			cache.put("hot" + i, i);
+		}
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 10; i++) {
+				assertNotNull(cache.get("hot" + i));
+			}
+		}
+		cache.cleanUp();
+
+		for (int i = 0; i < 1000; i++) {
+			cache.put("scan" + i, i);
+		}
+		cache.cleanUp();
+		assertEquals(100, cache.size());
+		for (int i = 0; i < 10; i++) {
+			assertNotNull("Frequently used entry evicted: hot" + i, cache.get("hot" + i));
+		}
+	}
+
+	@Test
+	public void maximumWeight() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("maximumWeight=10"),
+				new CacheWeigher() {
+					@Override
+					public int weigh(Object key, Object value) {
+						return ((String) value).length();
+					}
+				}, true);
+		cache.put("k1", "aaaa");
+		cache.put("k2", "bbbb");
+		assertEquals(2, cache.size());
+		cache.put("k3", "cccc");
+		cache.cleanUp();
+		assertEquals(2, cache.size());
+		cache.put("k4", "dddddddddddd");
+		cache.cleanUp();
+		assertNull(cache.get("k4"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void maximumWeightWithoutWeigher() {
+		new BoundedConcurrentCache("test", BoundedCacheSpec.parse("maximumWeight=10"));
+	}
+
+	@Test
+	public void expireAfterWrite() {
+		BoundedConcurrentCache cache = createCacheWithTime("expireAfterWrite=10s,recordStats");
+		cache.put("k1", "v1");
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertEquals("v1", cache.get("k1").get());
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertNull(cache.get("k1"));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getStats().getEvictionCount());
+	}
+
+	@Test
+	public void expireAfterAccess() {
+		BoundedConcurrentCache cache = createCacheWithTime("expireAfterAccess=10s");
+		cache.put("k1", "v1");
+		cache.put("k2", "v2");
+		for (int i = 0; i < 3; i++) {
+			this.time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+			assertEquals("v1", cache.get("k1").get());
+		}
+		cache.cleanUp();
+		assertEquals(1, cache.size());
+		assertNull(cache.get("k2"));
+	}
+
+	@Test
+	public void putIfAbsentReplacesExpiredEntry() {
+		BoundedConcurrentCache cache = createCacheWithTime("expireAfterWrite=10s");
+		cache.put("k1", "v1");
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		assertNull(cache.putIfAbsent("k1", "v2"));
+		assertEquals("v2", cache.get("k1").get());
+	}
+
+	@Test
+	public void stats() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("recordStats"));
+		cache.get("k1");
+		cache.put("k1", "v1");
+		cache.get("k1");
+		cache.get("k1");
+		CacheStats stats = cache.getStats();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(3, stats.getRequestCount());
+		assertEquals(2.0 / 3, stats.getHitRate(), 0.001);
+	}
+
+	@Test
+	public void noStatsByDefault() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", new BoundedCacheSpec());
+		cache.get("k1");
+		assertEquals(new CacheStats(0, 0, 0, 0, 0, 0), cache.getStats());
+	}
+
+	@Test
+	public void getWithValueLoader() {
+		BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("recordStats"));
+		assertEquals("v1", cache.get("k1", new Callable<String>() {
+			@Override
+			public String call() {
+				return "v1";
+			}
+		}));
+		assertEquals("v1", cache.get("k1", new Callable<String>() {
+			@Override
+			public String call() {
+				throw new IllegalStateException("Should not be called");
+			}
+		}));
+		try {
+			cache.get("k2", new Callable<String>() {
+				@Override
+				public String call() throws IOException {
+					throw new IOException("Expected");
+				}
+			});
+			fail("Should have thrown Cache.ValueRetrievalException");
+		}
+		catch (Cache.ValueRetrievalException ex) {
+			assertTrue(ex.getCause() instanceof IOException);
+		}
+		assertNull(cache.get("k2"));
+		CacheStats stats = cache.getStats();
+		assertEquals(1, stats.getLoadSuccessCount());
+		assertEquals(1, stats.getLoadFailureCount());
+		assertTrue(stats.getTotalLoadTime() >= 0);
+	}
+
+	@Test
+	public void concurrentAccess() throws Exception {
+		final BoundedConcurrentCache cache = new BoundedConcurrentCache("test", BoundedCacheSpec.parse("maximumSize=64"));
+		final int threads = 8;
+		final int iterations = 10000;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < iterations; i++) {
+						int key = (i * 31 + offset) % 256;
+						if (cache.get(key) == null) {
+							cache.put(key, key);
+						}
+						if (i % 100 == 0) {
+							cache.evict(key + 1);
+						}
+					}
+					latch.countDown();
+				}
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		cache.cleanUp();
+		assertTrue("Unexpected size " + cache.size(), cache.size() <= 64);
+	}
+
+
+	private BoundedConcurrentCache createCacheWithTime(String specification) {
+		return new BoundedConcurrentCache("test", BoundedCacheSpec.parse(specification)) {
+			@Override
+			protected long currentTime() {
+				return time.get();
+			}
+		};
+	}
+
+}
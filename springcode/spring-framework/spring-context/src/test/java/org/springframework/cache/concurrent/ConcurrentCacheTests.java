@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,8 +16,17 @@
 
 package org.springframework.cache.concurrent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -71,7 +80,7 @@ public class ConcurrentCacheTests  {
 		assertEquals(value, cache.get(key).get());
 		assertEquals(value, cache.get(key, String.class));
 		assertEquals(value, cache.get(key, Object.class));
-		assertEquals(value, cache.get(key, null));
+		assertEquals(value, cache.get(key, (Class<?>) null));
 
 		cache.put(key, null);
 		assertNotNull(cache.get(key));
@@ -112,4 +121,93 @@ public class ConcurrentCacheTests  {
 		assertNull(cache.get("enescu"));
 	}
 
+	@Test
+	public void testCacheGetCallable() {
+		Object value = cache.get("enescu", new Callable<Object>() {
+			@Override
+			public Object call() {
+				return "george";
+			}
+		});
+		assertEquals("george", value);
+		assertEquals("george", cache.get("enescu").get());
+		assertEquals("george", cache.get("enescu", new Callable<Object>() {
+			@Override
+			public Object call() {
+				throw new IllegalStateException("Should not have been invoked");
+			}
+		}));
+	}
+
+	@Test
+	public void testCacheGetCallableFail() {
+		try {
+			cache.get("enescu", new Callable<Object>() {
+				@Override
+				public Object call() {
+					throw new UnsupportedOperationException("Expected exception");
+				}
+			});
+			fail("Should have thrown Cache.ValueRetrievalException");
+		}
+		catch (Cache.ValueRetrievalException ex) {
+			assertTrue(ex.getCause() instanceof UnsupportedOperationException);
+		}
+		assertNull(cache.get("enescu"));
+	}
+
+	@Test
+	public void testCacheGetCallableRecursive() {
+		try {
+			cache.get("enescu", new Callable<Object>() {
+				@Override
+				public Object call() {
+					return cache.get("enescu", new Callable<Object>() {
+						@Override
+						public Object call() {
+							return "george";
+						}
+					});
+				}
+			});
+			fail("Should have thrown Cache.ValueRetrievalException");
+		}
+		catch (Cache.ValueRetrievalException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+		assertNull(cache.get("enescu"));
+	}
+
+	@Test
+	public void testCacheGetSynchronized() throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Callable<Object> valueLoader = new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				latch.await(5, TimeUnit.SECONDS);
+				return counter.incrementAndGet();
+			}
+		};
+
+		int threads = 10;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < threads; i++) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					return cache.get("enescu", valueLoader);
+				}
+			}));
+		}
+		Thread.sleep(100);
+		latch.countDown();
+		for (Future<Object> result : results) {
+			assertEquals(1, result.get(5, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+		assertEquals(1, counter.get());
+	}
+
 }
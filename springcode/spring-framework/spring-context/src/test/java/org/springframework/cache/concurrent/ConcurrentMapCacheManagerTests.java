@@ -16,6 +16,8 @@
 
 package org.springframework.cache.concurrent;
 
+import java.util.Collections;
+
 import org.junit.Test;
 
 import org.springframework.cache.Cache;
@@ -120,4 +122,51 @@ public class ConcurrentMapCacheManagerTests {
 		assertNull(cache1y.get("key3"));
 	}
 
+	@Test
+	public void testCacheSpecifications() {
+		ConcurrentMapCacheManager cm = new ConcurrentMapCacheManager("c1", "c2", "c3");
+		cm.setCacheSpecification("maximumSize=100");
+		cm.setCacheSpecifications(Collections.singletonMap("c2", "maximumSize=10,recordStats"));
+		Cache cache1 = cm.getCache("c1");
+		assertTrue(cache1 instanceof BoundedConcurrentCache);
+		Cache cache2 = cm.getCache("c2");
+		assertTrue(cache2 instanceof BoundedConcurrentCache);
+
+		for (int i = 0; i < 20; i++) {
+			cache2.put(i, i);
+		}
+		BoundedConcurrentCache nativeCache2 = (BoundedConcurrentCache) cache2.getNativeCache();
+		nativeCache2.cleanUp();
+		assertEquals(10, nativeCache2.size());
+		assertEquals(10, nativeCache2.getStats().getEvictionCount());
+
+		cm.setCacheSpecification(null);
+		assertTrue(cm.getCache("c1") instanceof ConcurrentMapCache);
+		assertTrue(cm.getCache("c2") instanceof BoundedConcurrentCache);
+		assertNotSame(cache2, cm.getCache("c2"));
+	}
+
+	@Test
+	public void testCacheSpecificationBeforeCacheWeigher() {
+		ConcurrentMapCacheManager cm = new ConcurrentMapCacheManager("c1");
+		cm.setCacheSpecification("maximumWeight=10");
+		cm.setCacheWeigher(new CacheWeigher() {
+			@Override
+			public int weigh(Object key, Object value) {
+				return 5;
+			}
+		});
+		assertEquals(Collections.singleton("c1"), cm.getCacheNames());
+		Cache cache1 = cm.getCache("c1");
+		assertTrue(cache1 instanceof BoundedConcurrentCache);
+		assertNull(cm.getCache("c2"));
+
+		for (int i = 0; i < 4; i++) {
+			cache1.put(i, i);
+		}
+		BoundedConcurrentCache nativeCache1 = (BoundedConcurrentCache) cache1.getNativeCache();
+		nativeCache1.cleanUp();
+		assertEquals(2, nativeCache1.size());
+	}
+
 }
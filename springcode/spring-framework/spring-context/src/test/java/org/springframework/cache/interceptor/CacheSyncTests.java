@@ -0,0 +1,187 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cache.interceptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@code @Cacheable(sync = true)}.
+ */
+public class CacheSyncTests {
+
+	private AnnotationConfigApplicationContext context;
+
+	private SyncService service;
+
+
+	@Before
+	public void setup() {
+		this.context = new AnnotationConfigApplicationContext(Config.class);
+		this.service = this.context.getBean(SyncService.class);
+	}
+
+	@After
+	public void closeContext() {
+		this.context.close();
+	}
+
+
+	@Test
+	public void concurrentMissesInvokeMethodOnce() throws Exception {
+		int threads = 10;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < threads; i++) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return service.slowGet("key");
+				}
+			}));
+		}
+		Thread.sleep(100);
+		this.service.release();
+		for (Future<Object> result : results) {
+			assertEquals(1, result.get(5, TimeUnit.SECONDS));
+		}
+		executor.shutdown();
+		assertEquals(1, this.service.getInvocationCount());
+		assertEquals(1, this.service.slowGet("key"));
+	}
+
+	@Test
+	public void conditionNotPassing() {
+		assertEquals(1, this.service.conditionalGet(-1));
+		assertEquals(2, this.service.conditionalGet(-1));
+		assertEquals(3, this.service.conditionalGet(1));
+		assertEquals(3, this.service.conditionalGet(1));
+	}
+
+	@Test
+	public void exceptionPropagated() {
+		try {
+			this.service.failingGet("key");
+			fail("Should have thrown UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException ex) {
+			assertEquals("Expected exception", ex.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void unlessNotSupported() {
+		this.service.unlessGet("key");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void severalCachesNotSupported() {
+		this.service.severalCachesGet("key");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void combinedOperationsNotSupported() {
+		this.service.combinedGet("key");
+	}
+
+
+	@Configuration
+	@EnableCaching
+	static class Config {
+
+		@Bean
+		public CacheManager cacheManager() {
+			return new ConcurrentMapCacheManager();
+		}
+
+		@Bean
+		public SyncService syncService() {
+			return new SyncService();
+		}
+	}
+
+
+	static class SyncService {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		public void release() {
+			this.latch.countDown();
+		}
+
+		public int getInvocationCount() {
+			return this.counter.get();
+		}
+
+		@Cacheable(value = "testCache", sync = true)
+		public Object slowGet(Object key) throws InterruptedException {
+			this.latch.await(5, TimeUnit.SECONDS);
+			return this.counter.incrementAndGet();
+		}
+
+		@Cacheable(value = "testCache", sync = true, condition = "#p0 > 0")
+		public Object conditionalGet(int key) {
+			return this.counter.incrementAndGet();
+		}
+
+		@Cacheable(value = "testCache", sync = true)
+		public Object failingGet(Object key) {
+			throw new UnsupportedOperationException("Expected exception");
+		}
+
+		@Cacheable(value = "testCache", sync = true, unless = "#result > 10")
+		public Object unlessGet(Object key) {
+			return this.counter.incrementAndGet();
+		}
+
+		@Cacheable(value = {"testCache", "anotherTestCache"}, sync = true)
+		public Object severalCachesGet(Object key) {
+			return this.counter.incrementAndGet();
+		}
+
+		@Caching(cacheable = @Cacheable(value = "testCache", sync = true), evict = @CacheEvict("anotherTestCache"))
+		public Object combinedGet(Object key) {
+			return this.counter.incrementAndGet();
+		}
+	}
+
+}
@@ -16,8 +16,12 @@
 
 package org.springframework.context.annotation;
 
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -36,8 +40,10 @@ import org.aspectj.lang.annotation.Aspect;
 import org.junit.Test;
 
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.index.CandidateComponentsIndexLoader;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.core.type.filter.RegexPatternTypeFilter;
@@ -73,6 +79,60 @@ public class ClassPathScanningCandidateComponentProviderTests {
 		assertTrue(containsBeanClass(candidates, ServiceInvocationCounter.class));
 	}
 
+	@Test
+	public void testWithDefaultsAndComponentsIndex() {
+		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(true);
+		provider.setResourceLoader(new DefaultResourceLoader(new ComponentsIndexClassLoader(getClass())));
+		Set<BeanDefinition> candidates = provider.findCandidateComponents(TEST_BASE_PACKAGE);
+		// Only the indexed candidates within the base package
+		assertEquals(3, candidates.size());
+		assertTrue(containsBeanClass(candidates, NamedComponent.class));
+		assertTrue(containsBeanClass(candidates, FooServiceImpl.class));
+		assertTrue(containsBeanClass(candidates, StubFooDao.class));
+	}
+
+	@Test
+	public void testWithDefaultsAndComponentsIndexWithoutResourceLoader() {
+		Thread currentThread = Thread.currentThread();
+		ClassLoader original = currentThread.getContextClassLoader();
+		currentThread.setContextClassLoader(new ComponentsIndexClassLoader(getClass()));
+		try {
+			ClassPathScanningCandidateComponentProvider provider =
+					new ClassPathScanningCandidateComponentProvider(true, new StandardEnvironment());
+			Set<BeanDefinition> candidates = provider.findCandidateComponents(TEST_BASE_PACKAGE);
+			assertEquals(3, candidates.size());
+			assertTrue(containsBeanClass(candidates, NamedComponent.class));
+			assertTrue(containsBeanClass(candidates, FooServiceImpl.class));
+			assertTrue(containsBeanClass(candidates, StubFooDao.class));
+		}
+		finally {
+			currentThread.setContextClassLoader(original);
+		}
+	}
+
+	@Test
+	public void testWithComponentsIndexAndExcludeFilter() {
+		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(true);
+		provider.setResourceLoader(new DefaultResourceLoader(new ComponentsIndexClassLoader(getClass())));
+		provider.addExcludeFilter(new AnnotationTypeFilter(Service.class));
+		Set<BeanDefinition> candidates = provider.findCandidateComponents("example.*");
+		// Indexed candidates still subject to the exclude filter and to @Profile
+		assertEquals(2, candidates.size());
+		assertTrue(containsBeanClass(candidates, NamedComponent.class));
+		assertTrue(containsBeanClass(candidates, StubFooDao.class));
+	}
+
+	@Test
+	public void testWithComponentsIndexAndUnsupportedIncludeFilter() {
+		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
+		provider.setResourceLoader(new DefaultResourceLoader(new ComponentsIndexClassLoader(getClass())));
+		provider.addIncludeFilter(new AssignableTypeFilter(FooDao.class));
+		Set<BeanDefinition> candidates = provider.findCandidateComponents(TEST_BASE_PACKAGE);
+		// Falls back to scanning the classpath
+		assertEquals(1, candidates.size());
+		assertTrue(containsBeanClass(candidates, StubFooDao.class));
+	}
+
 	@Test1
 	public void testWithBogusBasePackage() {
 		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(true);
@@ -343,4 +403,27 @@ public class ClassPathScanningCandidateComponentProviderTests {
 	public @interface DevProfile {
 	}
 
+
+	/**
+	 * Exposes the {@code spring.components} file next to the given test class
+	 * as the index of candidate components.
+	 */
+	private static class ComponentsIndexClassLoader extends ClassLoader {
+
+		private final URL index;
+
+		public ComponentsIndexClassLoader(Class<?> testClass) {
+			super(testClass.getClassLoader());
+			this.index = testClass.getResource("spring.components");
+		}
+
+		@Override
+		public Enumeration<URL> getResources(String name) throws IOException {
+			if (CandidateComponentsIndexLoader.COMPONENTS_RESOURCE_LOCATION.equals(name)) {
+				return Collections.enumeration(Collections.singleton(this.index));
+			}
+			return super.getResources(name);
+		}
+	}
+
 }
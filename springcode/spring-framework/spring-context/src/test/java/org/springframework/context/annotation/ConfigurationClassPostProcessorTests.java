@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,15 @@
 
 package org.springframework.context.annotation;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import javax.annotation.PostConstruct;
 
 import org.junit.Before;
@@ -36,13 +41,19 @@ import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostP
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.QualifierAnnotationAutowireCandidateResolver;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.ChildBeanDefinition;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.componentscan.simple.ClassWithNestedComponents;
 import org.springframework.context.annotation.componentscan.simple.SimpleComponent;
+import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.env.StandardEnvironment;
 import org.springframework.core.io.DescriptiveResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.PersistentMetadataReaderFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.tests.sample.beans.ITestBean;
 import org.springframework.tests.sample.beans.TestBean;
@@ -505,9 +516,64 @@ public class ConfigurationClassPostProcessorTests {
 		ctx.getBean(FooFactory.class).createFoo(new BarArgument());
 	}
 
+	@Test
+	public void testSharedMetadataReaderFactoryFromParentContext() throws IOException {
+		File cacheFile = File.createTempFile("metadata", ".cache");
+		assertTrue(cacheFile.delete());
+		try {
+			GenericApplicationContext parent = new GenericApplicationContext();
+			parent.registerBeanDefinition(AnnotationConfigUtils.SHARED_METADATA_READER_FACTORY_BEAN_NAME,
+					BeanDefinitionBuilder.genericBeanDefinition(RecordingMetadataReaderFactory.class)
+							.addConstructorArgValue(cacheFile).getBeanDefinition());
+			parent.refresh();
+			RecordingMetadataReaderFactory metadataReaderFactory = parent.getBean(
+					AnnotationConfigUtils.SHARED_METADATA_READER_FACTORY_BEAN_NAME, RecordingMetadataReaderFactory.class);
+
+			AnnotationConfigApplicationContext child = new AnnotationConfigApplicationContext();
+			child.setParent(parent);
+			child.registerBeanDefinition("config", new RootBeanDefinition(SingletonBeanConfig.class.getName()));
+			child.registerBeanDefinition("scanConfig", new RootBeanDefinition(SimpleComponentScanConfig.class.getName()));
+			child.refresh();
+			assertSame(child.getBean(Foo.class), child.getBean(Bar.class).foo);
+			assertTrue(child.containsBean("simpleComponent"));
+			assertTrue(metadataReaderFactory.filenames.contains(ClassWithNestedComponents.class.getSimpleName() + ".class"));
+			int cacheSize = metadataReaderFactory.getCacheSize();
+			assertTrue(cacheSize >= metadataReaderFactory.filenames.size());
+			child.close();
+
+			parent.close();
+			assertTrue(cacheFile.isFile());
+			assertEquals(cacheSize, new PersistentMetadataReaderFactory(cacheFile).getCacheSize());
+		}
+		finally {
+			cacheFile.delete();
+		}
+	}
+
 
 	// -------------------------------------------------------------------------
 
+	public static class RecordingMetadataReaderFactory extends PersistentMetadataReaderFactory {
+
+		public final Set<String> filenames = Collections.synchronizedSet(new HashSet<String>());
+
+		public RecordingMetadataReaderFactory(File cacheFile) {
+			super(cacheFile);
+		}
+
+		@Override
+		public MetadataReader getMetadataReader(Resource resource) throws IOException {
+			this.filenames.add(resource.getFilename());
+			return super.getMetadataReader(resource);
+		}
+	}
+
+	@Configuration
+	@ComponentScan(basePackageClasses = SimpleComponent.class, useDefaultFilters = false,
+			includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, value = SimpleComponent.class))
+	static class SimpleComponentScanConfig {
+	}
+
 	@Configuration
 	static class SingletonBeanConfig {
 
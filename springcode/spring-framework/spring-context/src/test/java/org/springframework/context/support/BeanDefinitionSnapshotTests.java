@@ -0,0 +1,413 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.context.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.tests.sample.beans.TestBean;
+import org.springframework.util.FileCopyUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for bean definition snapshots, as enabled through
+ * {@link AbstractRefreshableApplicationContext#setBeanDefinitionSnapshotFile}.
+ */
+public class BeanDefinitionSnapshotTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File configFile;
+
+	private File snapshotFile;
+
+
+	@Before
+	public void setUp() throws IOException {
+		this.configFile = this.temporaryFolder.newFile("context.xml");
+		this.snapshotFile = new File(this.temporaryFolder.getRoot(), "context.snapshot");
+		writeConfig("Juergen");
+	}
+
+
+	@Test
+	public void snapshotWrittenAndUsedOnNextRefresh() {
+		CountingApplicationContext ac = createApplicationContext();
+		assertEquals(1, ac.loadCount);
+		assertTrue(this.snapshotFile.isFile());
+		assertEquals("Juergen", ac.getBean("testBean", TestBean.class).getName());
+		ac.close();
+
+		ac = createApplicationContext();
+		assertEquals(0, ac.loadCount);
+		assertEquals("Juergen", ac.getBean("testBean", TestBean.class).getName());
+		assertSame(ac.getBean("testBean"), ac.getBean("alias"));
+		assertEquals("Juergen", ac.getBean("prototype", TestBean.class).getSpouse().getName());
+		assertNotSame(ac.getBean("prototype"), ac.getBean("prototype"));
+		ac.close();
+	}
+
+	@Test
+	public void snapshotIgnoredAfterConfigChange() throws IOException {
+		createApplicationContext().close();
+		writeConfig("Juergen Hoeller");
+		assertTrue(this.configFile.setLastModified(this.configFile.lastModified() + 2000));
+
+		CountingApplicationContext ac = createApplicationContext();
+		assertEquals(1, ac.loadCount);
+		assertEquals("Juergen Hoeller", ac.getBean("testBean", TestBean.class).getName());
+		ac.close();
+
+		ac = createApplicationContext();
+		assertEquals(0, ac.loadCount);
+		assertEquals("Juergen Hoeller", ac.getBean("testBean", TestBean.class).getName());
+		ac.close();
+	}
+
+	@Test
+	public void snapshotIgnoredAfterImportedFileChange() throws IOException {
+		File importedFile = new File(this.temporaryFolder.getRoot(), "imported.xml");
+		writeBeans(importedFile, "importedBean", "Rod");
+		writeConfig("Juergen", "<import resource=\"imported.xml\"/>");
+
+		CountingApplicationContext ac = createApplicationContext();
+		assertEquals(1, ac.loadCount);
+		assertEquals("Rod", ac.getBean("importedBean", TestBean.class).getName());
+		ac.close();
+
+		ac = createApplicationContext();
+		assertEquals(0, ac.loadCount);
+		ac.close();
+
+		writeBeans(importedFile, "importedBean", "Rod Johnson");
+		assertTrue(importedFile.setLastModified(importedFile.lastModified() + 2000));
+		ac = createApplicationContext();
+		assertEquals(1, ac.loadCount);
+		assertEquals("Rod Johnson", ac.getBean("importedBean", TestBean.class).getName());
+		ac.close();
+
+		ac = createApplicationContext();
+		assertEquals(0, ac.loadCount);
+		assertEquals("Rod Johnson", ac.getBean("importedBean", TestBean.class).getName());
+		ac.close();
+	}
+
+	@Test
+	public void snapshotIgnoredAfterFileAddedToImportedPattern() throws IOException {
+		File classesDir = this.temporaryFolder.newFolder("classes");
+		File importDir = new File(classesDir, "snapshot");
+		assertTrue(importDir.mkdir());
+		writeBeans(new File(importDir, "a.xml"), "a", "A");
+		writeConfig("Juergen", "<import resource=\"classpath*:snapshot/*.xml\"/>");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, getClass().getClassLoader());
+
+		CountingApplicationContext ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(1, ac.loadCount);
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(0, ac.loadCount);
+		assertFalse(ac.containsBean("b"));
+		ac.close();
+
+		writeBeans(new File(importDir, "b.xml"), "b", "B");
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(1, ac.loadCount);
+		assertEquals("B", ac.getBean("b", TestBean.class).getName());
+		ac.close();
+	}
+
+	@Test
+	public void snapshotIgnoredAfterClassAddedToScannedDirectory() throws IOException {
+		File classesDir = this.temporaryFolder.newFolder("classes");
+		writeComponentClass(classesDir, "FirstComponent");
+		writeConfig("Juergen", "<context:component-scan base-package=\"snapshotscan\"/>");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, getClass().getClassLoader());
+
+		CountingApplicationContext ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(1, ac.loadCount);
+		assertTrue(ac.containsBean("firstComponent"));
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(0, ac.loadCount);
+		assertTrue(ac.containsBean("firstComponent"));
+		ac.close();
+
+		writeComponentClass(classesDir, "SecondComponent");
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(1, ac.loadCount);
+		assertTrue(ac.containsBean("secondComponent"));
+		ac.close();
+	}
+
+	@Test
+	public void snapshotIgnoredAfterResolvedPropertyChange() throws IOException {
+		writeBeans(new File(this.temporaryFolder.getRoot(), "a.xml"), "imported", "A");
+		writeBeans(new File(this.temporaryFolder.getRoot(), "b.xml"), "imported", "B");
+		writeConfig("Juergen", "<import resource=\"${snapshot.import}.xml\"/>");
+
+		CountingApplicationContext ac = new CountingApplicationContext(this.configFile, this.snapshotFile, null,
+				Collections.<String, Object>singletonMap("snapshot.import", "a"));
+		assertEquals(1, ac.loadCount);
+		assertEquals("A", ac.getBean("imported", TestBean.class).getName());
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, null,
+				Collections.<String, Object>singletonMap("snapshot.import", "a"));
+		assertEquals(0, ac.loadCount);
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, null,
+				Collections.<String, Object>singletonMap("snapshot.import", "b"));
+		assertEquals(1, ac.loadCount);
+		assertEquals("B", ac.getBean("imported", TestBean.class).getName());
+		ac.close();
+	}
+
+	@Test
+	public void corruptSnapshotIgnored() throws IOException {
+		FileCopyUtils.copy(new byte[] {1, 2, 3}, this.snapshotFile);
+
+		CountingApplicationContext ac = createApplicationContext();
+		assertEquals(1, ac.loadCount);
+		assertEquals("Juergen", ac.getBean("testBean", TestBean.class).getName());
+		ac.close();
+
+		ac = createApplicationContext();
+		assertEquals(0, ac.loadCount);
+		ac.close();
+	}
+
+	@Test
+	public void noSnapshotByDefault() {
+		CountingApplicationContext ac = new CountingApplicationContext(this.configFile, null);
+		assertEquals(1, ac.loadCount);
+		ac.close();
+		assertFalse(this.snapshotFile.exists());
+	}
+
+
+	@Test
+	public void snapshotWithSymbolicLinkCycleOnClasspath() throws IOException {
+		File classesDir = this.temporaryFolder.newFolder("classes");
+		FileCopyUtils.copy(new byte[] {1, 2, 3}, new File(classesDir, "Some.class"));
+		Files.createSymbolicLink(new File(classesDir, "loop").toPath(), classesDir.toPath());
+		ClassLoader classLoader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, getClass().getClassLoader());
+
+		CountingApplicationContext ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(1, ac.loadCount);
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, classLoader);
+		assertEquals(0, ac.loadCount);
+		ac.close();
+	}
+
+	@Test
+	public void snapshotInsideClasspathDirectory() throws IOException {
+		File classesDir = this.temporaryFolder.newFolder("classes");
+		FileCopyUtils.copy(new byte[] {1, 2, 3}, new File(classesDir, "Some.class"));
+		File snapshotFile = new File(classesDir, "context.snapshot");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, getClass().getClassLoader());
+		String snapshotResources = classesDir.toURI() + "**";
+
+		CountingApplicationContext ac = new CountingApplicationContext(
+				this.configFile, snapshotFile, classLoader, snapshotResources);
+		assertEquals(1, ac.loadCount);
+		assertTrue(snapshotFile.isFile());
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, snapshotFile, classLoader, snapshotResources);
+		assertEquals(0, ac.loadCount);
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, snapshotFile, classLoader);
+		assertEquals(1, ac.loadCount);
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, snapshotFile, classLoader);
+		assertEquals(0, ac.loadCount);
+		ac.close();
+	}
+
+	@Test
+	public void snapshotIgnoredAfterSnapshotResourceChange() throws IOException {
+		File classesDir = this.temporaryFolder.newFolder("classes");
+		File classFile = new File(classesDir, "Some.class");
+		FileCopyUtils.copy(new byte[] {1, 2, 3}, classFile);
+		String snapshotResources = classesDir.toURI() + "**/*.class";
+
+		CountingApplicationContext ac = new CountingApplicationContext(
+				this.configFile, this.snapshotFile, null, snapshotResources);
+		assertEquals(1, ac.loadCount);
+		ac.close();
+
+		FileCopyUtils.copy(new byte[] {1, 2, 3, 4}, classFile);
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, null, snapshotResources);
+		assertEquals(1, ac.loadCount);
+		ac.close();
+
+		ac = new CountingApplicationContext(this.configFile, this.snapshotFile, null, snapshotResources);
+		assertEquals(0, ac.loadCount);
+		ac.close();
+	}
+
+	@Test
+	public void snapshotIgnoredIfNotSupported() {
+		CountingRefreshableApplicationContext ac = new CountingRefreshableApplicationContext(this.snapshotFile);
+		assertEquals(1, ac.loadCount);
+		assertTrue(ac.containsBean("testBean"));
+		ac.close();
+		assertFalse(this.snapshotFile.exists());
+
+		ac = new CountingRefreshableApplicationContext(this.snapshotFile);
+		assertEquals(1, ac.loadCount);
+		ac.close();
+	}
+
+
+	private CountingApplicationContext createApplicationContext() {
+		return new CountingApplicationContext(this.configFile, this.snapshotFile);
+	}
+
+	private void writeConfig(String name) throws IOException {
+		writeConfig(name, "");
+	}
+
+	private void writeConfig(String name, String imports) throws IOException {
+		String config = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+				"<beans xmlns=\"http://www.springframework.org/schema/beans\"\n" +
+				"\t\txmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+				"\t\txmlns:context=\"http://www.springframework.org/schema/context\"\n" +
+				"\t\txsi:schemaLocation=\"http://www.springframework.org/schema/beans " +
+				"http://www.springframework.org/schema/beans/spring-beans.xsd " +
+				"http://www.springframework.org/schema/context " +
+				"http://www.springframework.org/schema/context/spring-context.xsd\">\n" +
+				"\t" + imports + "\n" +
+				"\t<bean id=\"testBean\" name=\"alias\" class=\"" + TestBean.class.getName() + "\">\n" +
+				"\t\t<property name=\"name\" value=\"" + name + "\"/>\n" +
+				"\t</bean>\n" +
+				"\t<bean id=\"prototype\" class=\"" + TestBean.class.getName() + "\" scope=\"prototype\">\n" +
+				"\t\t<property name=\"spouse\" ref=\"testBean\"/>\n" +
+				"\t</bean>\n" +
+				"</beans>\n";
+		FileCopyUtils.copy(config.getBytes("UTF-8"), this.configFile);
+	}
+
+	private void writeBeans(File file, String beanName, String name) throws IOException {
+		String beans = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+				"<beans xmlns=\"http://www.springframework.org/schema/beans\"\n" +
+				"\t\txmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+				"\t\txsi:schemaLocation=\"http://www.springframework.org/schema/beans " +
+				"http://www.springframework.org/schema/beans/spring-beans.xsd\">\n" +
+				"\t<bean id=\"" + beanName + "\" class=\"" + TestBean.class.getName() + "\">\n" +
+				"\t\t<property name=\"name\" value=\"" + name + "\"/>\n" +
+				"\t</bean>\n" +
+				"</beans>\n";
+		FileCopyUtils.copy(beans.getBytes("UTF-8"), file);
+	}
+
+
+	private void writeComponentClass(File classesDir, String simpleName) throws IOException {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "snapshotscan/" + simpleName, null, "java/lang/Object", null);
+		cw.visitAnnotation("Lorg/springframework/stereotype/Component;", true).visitEnd();
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+		cw.visitEnd();
+		File packageDir = new File(classesDir, "snapshotscan");
+		packageDir.mkdirs();
+		FileCopyUtils.copy(cw.toByteArray(), new File(packageDir, simpleName + ".class"));
+	}
+
+
+	private static class CountingApplicationContext extends FileSystemXmlApplicationContext {
+
+		private int loadCount;
+
+		public CountingApplicationContext(File configFile, File snapshotFile) {
+			this(configFile, snapshotFile, null);
+		}
+
+		public CountingApplicationContext(File configFile, File snapshotFile, ClassLoader classLoader,
+				String... snapshotResources) {
+
+			this(configFile, snapshotFile, classLoader, Collections.<String, Object>emptyMap(), snapshotResources);
+		}
+
+		public CountingApplicationContext(File configFile, File snapshotFile, ClassLoader classLoader,
+				Map<String, Object> properties, String... snapshotResources) {
+
+			super(new String[] {configFile.toURI().toString()}, false);
+			getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+			setBeanDefinitionSnapshotFile(snapshotFile);
+			setBeanDefinitionSnapshotResources(snapshotResources);
+			if (classLoader != null) {
+				setClassLoader(classLoader);
+			}
+			refresh();
+		}
+
+		@Override
+		protected void loadBeanDefinitions(DefaultListableBeanFactory beanFactory) throws IOException {
+			this.loadCount++;
+			super.loadBeanDefinitions(beanFactory);
+		}
+	}
+
+
+	private static class CountingRefreshableApplicationContext extends AbstractRefreshableApplicationContext {
+
+		private int loadCount;
+
+		public CountingRefreshableApplicationContext(File snapshotFile) {
+			setBeanDefinitionSnapshotFile(snapshotFile);
+			refresh();
+		}
+
+		@Override
+		protected void loadBeanDefinitions(DefaultListableBeanFactory beanFactory) {
+			this.loadCount++;
+			beanFactory.registerBeanDefinition("testBean", new RootBeanDefinition(TestBean.class));
+		}
+	}
+
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.type.classreading;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.Attribute;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.TypePath;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.Assert;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Caching {@link MetadataReaderFactory} implementation which keeps the metadata
+ * of the classes it reads in a file, for reuse across JVM restarts.
+ *
+ * <p>Cache entries are keyed by resource URL and validated against the resource's
+ * last-modified timestamp along with a checksum: for classes in jar files, the
+ * CRC and size of the jar entry as recorded in the jar's central directory,
+ * since the timestamp refers to the jar file and may be fixed by reproducible
+ * builds; for other class files, their length. A valid entry saves opening and
+ * fully parsing the original class file: the cache holds a stripped-down copy
+ * of each class file with just the declarations and annotations that the
+ * metadata is derived from.
+ *
+ * <p>Unlike {@link CachingMetadataReaderFactory}, this factory is thread-safe
+ * without global locking and is not limited in size, making a single instance
+ * suitable for sharing between several application contexts, e.g. a parent
+ * context and its children. The cache file gets written on {@link #flush()}
+ * as well as on {@link #close()}, i.e. on shutdown of a containing
+ * application context. For sharing within a context hierarchy, register it
+ * under the {@code AnnotationConfigUtils.SHARED_METADATA_READER_FACTORY_BEAN_NAME}
+ * bean name in the root context.
+ *
+ * @since 4.1.10
+ */
+public class PersistentMetadataReaderFactory extends SimpleMetadataReaderFactory implements Flushable, Closeable {
+
+	private static final int MAGIC = 0x534D5243;
+
+	private static final int VERSION = 2;
+
+
+	private static final Log logger = LogFactory.getLog(PersistentMetadataReaderFactory.class);
+
+	private final File cacheFile;
+
+	private final Map<String, CachedClass> metadataCache = new ConcurrentHashMap<String, CachedClass>(256);
+
+	private volatile boolean modified;
+
+
+	/**
+	 * Create a new PersistentMetadataReaderFactory for the default class loader.
+	 * @param cacheFile the file to keep the cached metadata in
+	 */
+	public PersistentMetadataReaderFactory(File cacheFile) {
+		super();
+		this.cacheFile = initCacheFile(cacheFile);
+	}
+
+	/**
+	 * Create a new PersistentMetadataReaderFactory for the given resource loader.
+	 * @param cacheFile the file to keep the cached metadata in
+	 * @param resourceLoader the Spring ResourceLoader to use
+	 * (also determines the ClassLoader to use)
+	 */
+	public PersistentMetadataReaderFactory(File cacheFile, ResourceLoader resourceLoader) {
+		super(resourceLoader);
+		this.cacheFile = initCacheFile(cacheFile);
+	}
+
+	/**
+	 * Create a new PersistentMetadataReaderFactory for the given class loader.
+	 * @param cacheFile the file to keep the cached metadata in
+	 * @param classLoader the ClassLoader to use
+	 */
+	public PersistentMetadataReaderFactory(File cacheFile, ClassLoader classLoader) {
+		super(classLoader);
+		this.cacheFile = initCacheFile(cacheFile);
+	}
+
+	private File initCacheFile(File cacheFile) {
+		Assert.notNull(cacheFile, "Cache file must not be null");
+		File file = cacheFile.getAbsoluteFile();
+		if (file.isFile()) {
+			try {
+				readCacheFile(file);
+			}
+			catch (IOException ex) {
+				this.metadataCache.clear();
+				logger.warn("Could not read metadata cache file [" + file + "]", ex);
+			}
+		}
+		return file;
+	}
+
+
+	/**
+	 * Return the file that the cached metadata is kept in.
+	 */
+	public File getCacheFile() {
+		return this.cacheFile;
+	}
+
+	/**
+	 * Return the number of classes currently cached.
+	 */
+	public int getCacheSize() {
+		return this.metadataCache.size();
+	}
+
+
+	@Override
+	public MetadataReader getMetadataReader(Resource resource) throws IOException {
+		String key;
+		long lastModified;
+		long checksum;
+		try {
+			URL url = resource.getURL();
+			key = url.toString();
+			lastModified = resource.lastModified();
+			checksum = determineChecksum(url, resource);
+		}
+		catch (IOException ex) {
+			// No URL or timestamp available (e.g. byte array resource) -> not cacheable
+			return super.getMetadataReader(resource);
+		}
+		if (lastModified == 0) {
+			return super.getMetadataReader(resource);
+		}
+
+		CachedClass cachedClass = this.metadataCache.get(key);
+		if (cachedClass == null || cachedClass.lastModified != lastModified || cachedClass.checksum != checksum) {
+			cachedClass = new CachedClass(lastModified, checksum, stripClass(SimpleMetadataReader.readClass(resource)));
+			this.metadataCache.put(key, cachedClass);
+			this.modified = true;
+		}
+		return cachedClass.getMetadataReader(resource, getResourceLoader().getClassLoader());
+	}
+
+	/**
+	 * Determine a checksum for the given class file resource, without reading it:
+	 * the CRC and size of the jar entry for a class in a jar file, taken from the
+	 * jar's central directory, or the content length otherwise.
+	 */
+	private static long determineChecksum(URL url, Resource resource) throws IOException {
+		if (ResourceUtils.isJarURL(url)) {
+			URLConnection con = url.openConnection();
+			if (con instanceof JarURLConnection) {
+				JarURLConnection jarCon = (JarURLConnection) con;
+				ResourceUtils.useCachesIfNecessary(jarCon);
+				try {
+					JarEntry jarEntry = jarCon.getJarEntry();
+					if (jarEntry != null) {
+						return ((jarEntry.getCrc() << 32) | (jarEntry.getSize() & 0xFFFFFFFFL));
+					}
+				}
+				finally {
+					// Close jar file, but only if not cached by the JarURLConnection
+					if (!jarCon.getUseCaches()) {
+						jarCon.getJarFile().close();
+					}
+				}
+			}
+		}
+		return resource.contentLength();
+	}
+
+	/**
+	 * Clear the entire metadata cache, removing all cached class metadata.
+	 * The cache file will be emptied on the next {@link #flush()}.
+	 */
+	public void clearCache() {
+		this.metadataCache.clear();
+		this.modified = true;
+	}
+
+	/**
+	 * Write the metadata of all classes read through this factory to the cache file,
+	 * unless the cache file is up to date already.
+	 * <p>Metadata which has been read from the cache file but not been requested
+	 * since is dropped from the cache file.
+	 */
+	@Override
+	public void flush() throws IOException {
+		Map<String, CachedClass> cachedClasses = new LinkedHashMap<String, CachedClass>(this.metadataCache.size());
+		for (Map.Entry<String, CachedClass> entry : this.metadataCache.entrySet()) {
+			if (entry.getValue().metadataReader != null) {
+				cachedClasses.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (!this.modified && cachedClasses.size() == this.metadataCache.size()) {
+			return;
+		}
+		this.modified = false;
+
+		File tempFile = File.createTempFile(this.cacheFile.getName(), ".tmp", this.cacheFile.getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(cachedClasses.size());
+				for (Map.Entry<String, CachedClass> entry : cachedClasses.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue().lastModified);
+					out.writeLong(entry.getValue().checksum);
+					out.writeInt(entry.getValue().classFile.length);
+					out.write(entry.getValue().classFile);
+				}
+			}
+			finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(this.cacheFile) &&
+					!(this.cacheFile.delete() && tempFile.renameTo(this.cacheFile))) {
+				throw new IOException("Could not rename [" + tempFile + "] to [" + this.cacheFile + "]");
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Wrote metadata of " + cachedClasses.size() + " classes to cache file [" +
+						this.cacheFile + "]");
+			}
+		}
+		catch (IOException ex) {
+			this.modified = true;
+			throw ex;
+		}
+		finally {
+			if (tempFile.exists()) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Write the cache file if necessary, as on {@link #flush()}.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+
+	private void readCacheFile(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				if (logger.isInfoEnabled()) {
+					logger.info("Ignoring metadata cache file [" + file + "] in unsupported format");
+				}
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				long lastModified = in.readLong();
+				long checksum = in.readLong();
+				byte[] classFile = new byte[in.readInt()];
+				in.readFully(classFile);
+				this.metadataCache.put(key, new CachedClass(lastModified, checksum, classFile));
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Read metadata of " + count + " classes from cache file [" + file + "]");
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Create a copy of the given class without code, fields and any other
+	 * content that is irrelevant to an {@link AnnotationMetadataReadingVisitor}.
+	 */
+	private static byte[] stripClass(ClassReader classReader) {
+		ClassWriter classWriter = new ClassWriter(0);
+		classReader.accept(new MetadataRetainingClassVisitor(classWriter),
+				ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return classWriter.toByteArray();
+	}
+
+
+	/**
+	 * Cached class file content, along with the MetadataReader derived from it.
+	 */
+	private static class CachedClass {
+
+		private final long lastModified;
+
+		private final long checksum;
+
+		private final byte[] classFile;
+
+		private volatile MetadataReader metadataReader;
+
+		public CachedClass(long lastModified, long checksum, byte[] classFile) {
+			this.lastModified = lastModified;
+			this.checksum = checksum;
+			this.classFile = classFile;
+		}
+
+		public MetadataReader getMetadataReader(Resource resource, ClassLoader classLoader) {
+			MetadataReader metadataReader = this.metadataReader;
+			if (metadataReader == null) {
+				metadataReader = new SimpleMetadataReader(resource, this.classFile, classLoader);
+				this.metadataReader = metadataReader;
+			}
+			return metadataReader;
+		}
+	}
+
+
+	/**
+	 * ClassVisitor that passes on the class declaration, inner class information
+	 * and class-level and method-level annotations only.
+	 */
+	private static class MetadataRetainingClassVisitor extends ClassVisitor {
+
+		public MetadataRetainingClassVisitor(ClassVisitor cv) {
+			super(SpringAsmInfo.ASM_VERSION, cv);
+		}
+
+		@Override
+		public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+			return null;
+		}
+
+		@Override
+		public void visitAttribute(Attribute attr) {
+		}
+
+		@Override
+		public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+			return null;
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+			if ((access & Opcodes.ACC_BRIDGE) != 0) {
+				return null;
+			}
+			MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+			return (mv != null ? new MetadataRetainingMethodVisitor(mv) : null);
+		}
+	}
+
+
+	/**
+	 * MethodVisitor that passes on method-level annotations only.
+	 */
+	private static class MetadataRetainingMethodVisitor extends MethodVisitor {
+
+		public MetadataRetainingMethodVisitor(MethodVisitor mv) {
+			super(SpringAsmInfo.ASM_VERSION, mv);
+		}
+
+		@Override
+		public void visitParameter(String name, int access) {
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotationDefault() {
+			return null;
+		}
+
+		@Override
+		public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+			return null;
+		}
+
+		@Override
+		public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+			return null;
+		}
+
+		@Override
+		public void visitAttribute(Attribute attr) {
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -47,10 +47,37 @@ final class SimpleMetadataReader implements MetadataReader {
 
 
 	SimpleMetadataReader(Resource resource, ClassLoader classLoader) throws IOException {
+		this(resource, readClass(resource), classLoader);
+	}
+
+	/**
+	 * Create a new SimpleMetadataReader for the given class file content,
+	 * e.g. as kept in a {@link PersistentMetadataReaderFactory} cache.
+	 * @since 4.1.10
+	 */
+	SimpleMetadataReader(Resource resource, byte[] classFile, ClassLoader classLoader) {
+		this(resource, new ClassReader(classFile), classLoader);
+	}
+
+	private SimpleMetadataReader(Resource resource, ClassReader classReader, ClassLoader classLoader) {
+		AnnotationMetadataReadingVisitor visitor = new AnnotationMetadataReadingVisitor(classLoader);
+		classReader.accept(visitor, ClassReader.SKIP_DEBUG);
+
+		this.annotationMetadata = visitor;
+		// (since AnnotationMetadataReadingVisitor extends ClassMetadataReadingVisitor)
+		this.classMetadata = visitor;
+		this.resource = resource;
+	}
+
+
+	/**
+	 * Create an ASM ClassReader for the class file behind the given resource.
+	 * @since 4.1.10
+	 */
+	static ClassReader readClass(Resource resource) throws IOException {
 		InputStream is = new BufferedInputStream(resource.getInputStream());
-		ClassReader classReader;
 		try {
-			classReader = new ClassReader(is);
+			return new ClassReader(is);
 		}
 		catch (IllegalArgumentException ex) {
 			throw new NestedIOException("ASM ClassReader failed to parse class file - " +
@@ -59,14 +86,6 @@ final class SimpleMetadataReader implements MetadataReader {
 		finally {
 			is.close();
 		}
-
-		AnnotationMetadataReadingVisitor visitor = new AnnotationMetadataReadingVisitor(classLoader);
-		classReader.accept(visitor, ClassReader.SKIP_DEBUG);
-
-		this.annotationMetadata = visitor;
-		// (since AnnotationMetadataReadingVisitor extends ClassMetadataReadingVisitor)
-		this.classMetadata = visitor;
-		this.resource = resource;
 	}
 
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -76,6 +76,14 @@ public class AnnotationTypeFilter extends AbstractTypeHierarchyTraversingFilter
 		this.considerMetaAnnotations = considerMetaAnnotations;
 	}
 
+	/**
+	 * Return the annotation type that this filter matches.
+	 * @since 4.1.10
+	 */
+	public final Class<? extends Annotation> getAnnotationType() {
+		return this.annotationType;
+	}
+
 
 	@Override
 	protected boolean matchSelf(MetadataReader metadataReader) {
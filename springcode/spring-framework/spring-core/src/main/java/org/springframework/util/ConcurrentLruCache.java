@@ -0,0 +1,264 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache with approximate LRU (least recently used) eviction,
+ * intended as a concurrent alternative to an access-ordered
+ * {@link java.util.LinkedHashMap} guarded by a single monitor.
+ *
+ * <p>Entries are held in a {@link ConcurrentHashMap}, so that lookups are
+ * served without locking. Instead of maintaining a strict access order, each
+ * entry carries a "recently used" flag that is set on access, and eviction
+ * follows the CLOCK (second chance) algorithm: once the size limit has been
+ * exceeded, a single evicting thread sweeps over the entries, clearing set
+ * flags and removing entries whose flag is not set. Concurrent writers never
+ * wait for an ongoing eviction, so the cache may temporarily exceed its size
+ * limit by the number of concurrent insertions.
+ *
+ * <p>Hit, miss and eviction counts are kept in striped counters, avoiding
+ * contention on a single shared counter for frequent lookups.
+ *
+ * <p>Neither keys nor values may be {@code null}.
+ *
+ * @since 4.1.10
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ConcurrentLruCache<K, V> {
+
+	private final ConcurrentMap<K, CacheEntry<V>> cache;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	/** The current position of the CLOCK hand, guarded by the eviction lock */
+	private Iterator<Map.Entry<K, CacheEntry<V>>> clockHand;
+
+	private volatile int sizeLimit;
+
+	private final StripedCounter hitCount = new StripedCounter();
+
+	private final StripedCounter missCount = new StripedCounter();
+
+	private final StripedCounter evictionCount = new StripedCounter();
+
+
+	/**
+	 * Create a new cache with the given size limit.
+	 * @param sizeLimit the maximum number of entries to keep (0 for none)
+	 */
+	public ConcurrentLruCache(int sizeLimit) {
+		Assert.isTrue(sizeLimit >= 0, "Size limit must not be negative");
+		this.cache = new ConcurrentHashMap<K, CacheEntry<V>>(Math.min(sizeLimit, 1024), 0.75f,
+				Runtime.getRuntime().availableProcessors());
+		this.sizeLimit = sizeLimit;
+	}
+
+
+	/**
+	 * Set the maximum number of entries to keep. A lower limit than before
+	 * takes effect with the next insertion.
+	 * @param sizeLimit the maximum number of entries to keep (0 for none)
+	 */
+	public void setSizeLimit(int sizeLimit) {
+		Assert.isTrue(sizeLimit >= 0, "Size limit must not be negative");
+		this.sizeLimit = sizeLimit;
+	}
+
+	/**
+	 * Return the maximum number of entries to keep.
+	 */
+	public int getSizeLimit() {
+		return this.sizeLimit;
+	}
+
+	/**
+	 * Return the cached value for the given key, marking it as recently used.
+	 * @param key the key to look up
+	 * @return the cached value, or {@code null} if none
+	 */
+	public V get(K key) {
+		CacheEntry<V> entry = this.cache.get(key);
+		if (entry == null) {
+			this.missCount.increment();
+			return null;
+		}
+		if (!entry.recentlyUsed) {
+			// Only write when necessary, not invalidating the entry for other readers
+			entry.recentlyUsed = true;
+		}
+		this.hitCount.increment();
+		return entry.value;
+	}
+
+	/**
+	 * Put the given value into the cache, evicting not recently used entries
+	 * if the size limit has been exceeded.
+	 * @param key the key to cache the value under
+	 * @param value the value to cache
+	 */
+	public void put(K key, V value) {
+		Assert.notNull(value, "Value must not be null");
+		if (this.cache.put(key, new CacheEntry<V>(value)) == null) {
+			if (this.size.incrementAndGet() > this.sizeLimit) {
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * Remove the entry for the given key, if present.
+	 * @param key the key to remove
+	 * @return the previously cached value, or {@code null} if none
+	 */
+	public V remove(K key) {
+		CacheEntry<V> entry = this.cache.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		this.size.decrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Remove all entries from the cache.
+	 */
+	public void clear() {
+		for (K key : this.cache.keySet()) {
+			remove(key);
+		}
+	}
+
+	/**
+	 * Return the current number of entries in the cache.
+	 */
+	public int size() {
+		return this.size.get();
+	}
+
+	/**
+	 * Return the number of lookups that found a cached value.
+	 */
+	public long getHitCount() {
+		return this.hitCount.sum();
+	}
+
+	/**
+	 * Return the number of lookups that did not find a cached value.
+	 */
+	public long getMissCount() {
+		return this.missCount.sum();
+	}
+
+	/**
+	 * Return the number of entries evicted because of the size limit.
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount.sum();
+	}
+
+	private void evict() {
+		if (!this.evictionLock.tryLock()) {
+			// Another thread is already evicting...
+			return;
+		}
+		try {
+			// Every entry gets a second chance at most once per sweep
+			int maxSecondChances = this.size.get();
+			int secondChances = 0;
+			while (this.size.get() > this.sizeLimit) {
+				if (this.clockHand == null || !this.clockHand.hasNext()) {
+					this.clockHand = this.cache.entrySet().iterator();
+					if (!this.clockHand.hasNext()) {
+						return;
+					}
+				}
+				Map.Entry<K, CacheEntry<V>> candidate = this.clockHand.next();
+				CacheEntry<V> entry = candidate.getValue();
+				if (entry.recentlyUsed && secondChances < maxSecondChances) {
+					entry.recentlyUsed = false;
+					secondChances++;
+				}
+				else if (this.cache.remove(candidate.getKey(), entry)) {
+					this.size.decrementAndGet();
+					this.evictionCount.increment();
+				}
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+
+	private static class CacheEntry<V> {
+
+		private final V value;
+
+		private volatile boolean recentlyUsed = true;
+
+		public CacheEntry(V value) {
+			this.value = value;
+		}
+	}
+
+
+	/**
+	 * A counter spread across padded cells, selected by the current thread's id.
+	 */
+	private static class StripedCounter {
+
+		/** Number of array slots between two cells, avoiding false sharing */
+		private static final int PADDING = 8;
+
+		private static final int STRIPES;
+
+		static {
+			int stripes = 1;
+			while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+				stripes <<= 1;
+			}
+			STRIPES = stripes;
+		}
+
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+		public void increment() {
+			int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+			this.cells.incrementAndGet(stripe * PADDING);
+		}
+
+		public long sum() {
+			long sum = 0;
+			for (int i = 0; i < STRIPES; i++) {
+				sum += this.cells.get(i * PADDING);
+			}
+			return sum;
+		}
+	}
+
+}
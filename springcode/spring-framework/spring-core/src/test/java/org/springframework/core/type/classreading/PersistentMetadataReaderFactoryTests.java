@@ -0,0 +1,269 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.type.classreading;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.util.FileCopyUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PersistentMetadataReaderFactory}.
+ */
+public class PersistentMetadataReaderFactoryTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File cacheFile;
+
+
+	@Before
+	public void setUp() {
+		this.cacheFile = new File(this.temporaryFolder.getRoot(), "metadata.cache");
+	}
+
+
+	@Test
+	public void metadataSameAsFromOriginalClassFile() throws IOException {
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		factory.getMetadataReader(AnnotatedBean.class.getName());
+		factory.close();
+
+		MetadataReader expected = new SimpleMetadataReaderFactory().getMetadataReader(AnnotatedBean.class.getName());
+		MetadataReader actual = new PersistentMetadataReaderFactory(this.cacheFile).getMetadataReader(
+				new CountingResource(AnnotatedBean.class));
+		assertSameMetadata(expected.getAnnotationMetadata(), actual.getAnnotationMetadata());
+	}
+
+	@Test
+	public void cacheFileUsedInsteadOfClassFile() throws IOException {
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		CountingResource resource = new CountingResource(AnnotatedBean.class);
+		MetadataReader metadataReader = factory.getMetadataReader(resource);
+		assertSame(metadataReader, factory.getMetadataReader(resource));
+		assertEquals(1, resource.inputStreamCount);
+		factory.close();
+		assertTrue(this.cacheFile.isFile());
+
+		factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		assertEquals(1, factory.getCacheSize());
+		resource = new CountingResource(AnnotatedBean.class);
+		metadataReader = factory.getMetadataReader(resource);
+		assertEquals(0, resource.inputStreamCount);
+		assertEquals(AnnotatedBean.class.getName(), metadataReader.getClassMetadata().getClassName());
+		assertTrue(metadataReader.getAnnotationMetadata().hasAnnotation(Marker.class.getName()));
+	}
+
+	@Test
+	public void modifiedClassFileReadAgain() throws IOException {
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		factory.getMetadataReader(new CountingResource(AnnotatedBean.class));
+		factory.close();
+
+		factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		CountingResource resource = new CountingResource(AnnotatedBean.class);
+		resource.lastModified = 1;
+		factory.getMetadataReader(resource);
+		assertEquals(1, resource.inputStreamCount);
+	}
+
+	@Test
+	public void modifiedJarEntryReadAgainDespiteSameTimestamp() throws IOException {
+		File jarFile = this.temporaryFolder.newFile("classes.jar");
+		UrlResource resource = new UrlResource("jar:" + jarFile.toURI().toURL() + "!/example/Bean.class");
+
+		writeJar(jarFile, AnnotatedBean.class);
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		assertTrue(factory.getMetadataReader(resource).getAnnotationMetadata().hasAnnotation(Marker.class.getName()));
+		factory.close();
+		closeJarFile(resource);
+
+		// Same timestamp as for reproducible builds, but different content
+		writeJar(jarFile, AnnotatedBean.Nested.class);
+		factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		assertFalse(factory.getMetadataReader(resource).getAnnotationMetadata().hasAnnotation(Marker.class.getName()));
+		closeJarFile(resource);
+	}
+
+	@Test
+	public void unusedClassesDroppedFromCacheFile() throws IOException {
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		factory.getMetadataReader(AnnotatedBean.class.getName());
+		factory.getMetadataReader(Marker.class.getName());
+		factory.close();
+
+		factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		assertEquals(2, factory.getCacheSize());
+		factory.getMetadataReader(Marker.class.getName());
+		factory.close();
+
+		assertEquals(1, new PersistentMetadataReaderFactory(this.cacheFile).getCacheSize());
+	}
+
+	@Test
+	public void cacheFileNotRewrittenIfUpToDate() throws IOException {
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		factory.getMetadataReader(AnnotatedBean.class.getName());
+		factory.close();
+		assertTrue(this.cacheFile.setLastModified(1000));
+
+		factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		factory.getMetadataReader(AnnotatedBean.class.getName());
+		factory.close();
+		assertEquals(1000, this.cacheFile.lastModified());
+	}
+
+	@Test
+	public void corruptCacheFileIgnored() throws IOException {
+		FileCopyUtils.copy(new byte[] {0x53, 0x4D, 0x52, 0x43, 0, 0}, this.cacheFile);
+		PersistentMetadataReaderFactory factory = new PersistentMetadataReaderFactory(this.cacheFile);
+		assertEquals(0, factory.getCacheSize());
+		assertEquals(AnnotatedBean.class.getName(),
+				factory.getMetadataReader(AnnotatedBean.class.getName()).getClassMetadata().getClassName());
+		factory.close();
+		assertEquals(1, new PersistentMetadataReaderFactory(this.cacheFile).getCacheSize());
+	}
+
+
+	private void writeJar(File jarFile, Class<?> clazz) throws IOException {
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile));
+		try {
+			out.putNextEntry(new JarEntry("example/Bean.class"));
+			out.write(FileCopyUtils.copyToByteArray(new CountingResource(clazz).getInputStream()));
+			out.closeEntry();
+		}
+		finally {
+			out.close();
+		}
+		assertTrue(jarFile.setLastModified(1000000));
+	}
+
+	private void closeJarFile(UrlResource resource) throws IOException {
+		((JarURLConnection) resource.getURL().openConnection()).getJarFile().close();
+	}
+
+	private void assertSameMetadata(AnnotationMetadata expected, AnnotationMetadata actual) {
+		assertEquals(expected.getClassName(), actual.getClassName());
+		assertEquals(expected.getSuperClassName(), actual.getSuperClassName());
+		assertEquals(Arrays.asList(expected.getInterfaceNames()), Arrays.asList(actual.getInterfaceNames()));
+		assertEquals(Arrays.asList(expected.getMemberClassNames()), Arrays.asList(actual.getMemberClassNames()));
+		assertEquals(expected.isIndependent(), actual.isIndependent());
+		assertEquals(expected.getEnclosingClassName(), actual.getEnclosingClassName());
+		assertEquals(expected.isAbstract(), actual.isAbstract());
+		assertEquals(expected.getAnnotationTypes(), actual.getAnnotationTypes());
+		for (String annotationType : expected.getAnnotationTypes()) {
+			assertEquals(expected.getMetaAnnotationTypes(annotationType), actual.getMetaAnnotationTypes(annotationType));
+			assertEquals(expected.getAnnotationAttributes(annotationType, true).toString(),
+					actual.getAnnotationAttributes(annotationType, true).toString());
+		}
+		assertEquals(1, actual.getAnnotatedMethods(Marker.class.getName()).size());
+		MethodMetadata expectedMethod = expected.getAnnotatedMethods(Marker.class.getName()).iterator().next();
+		MethodMetadata actualMethod = actual.getAnnotatedMethods(Marker.class.getName()).iterator().next();
+		assertEquals(expectedMethod.getMethodName(), actualMethod.getMethodName());
+		assertEquals(expectedMethod.isStatic(), actualMethod.isStatic());
+		assertEquals(expectedMethod.getAnnotationAttributes(Marker.class.getName(), true).toString(),
+				actualMethod.getAnnotationAttributes(Marker.class.getName(), true).toString());
+	}
+
+
+	@Target({ElementType.TYPE, ElementType.METHOD})
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Marker {
+
+		String value() default "";
+
+		Class<?>[] types() default {};
+
+		ElementType element() default ElementType.TYPE;
+	}
+
+
+	@Marker
+	@Target(ElementType.TYPE)
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface MetaMarker {
+	}
+
+
+	@Marker(value = "bean", types = {String.class, Integer.class}, element = ElementType.FIELD)
+	@MetaMarker
+	@SuppressWarnings("serial")
+	public static class AnnotatedBean implements Serializable {
+
+		private String name;
+
+		@Marker("method")
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+
+		public static class Nested {
+		}
+	}
+
+
+	private static class CountingResource extends ClassPathResource {
+
+		private int inputStreamCount;
+
+		private long lastModified = -1;
+
+		public CountingResource(Class<?> clazz) {
+			super(clazz.getName().replace('.', '/') + ".class");
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			this.inputStreamCount++;
+			return super.getInputStream();
+		}
+
+		@Override
+		public long lastModified() throws IOException {
+			return (this.lastModified != -1 ? this.lastModified : super.lastModified());
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ConcurrentLruCache}.
+ */
+public class ConcurrentLruCacheTests {
+
+	private final ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(2);
+
+
+	@Test
+	public void getAndPut() {
+		assertNull(this.cache.get("k1"));
+		this.cache.put("k1", "v1");
+		assertEquals("v1", this.cache.get("k1"));
+		assertEquals(1, this.cache.size());
+		assertEquals(1, this.cache.getHitCount());
+		assertEquals(1, this.cache.getMissCount());
+		assertEquals(0, this.cache.getEvictionCount());
+	}
+
+	@Test
+	public void evictsNotRecentlyUsedEntry() {
+		this.cache.put("k1", "v1");
+		this.cache.put("k2", "v2");
+		this.cache.put("k3", "v3");
+		assertEquals(2, this.cache.size());
+		assertEquals(1, this.cache.getEvictionCount());
+
+		// The eviction sweep cleared the flags of the remaining entries: mark one of them as used
+		String used = (this.cache.get("k1") != null ? "k1" : "k2");
+		this.cache.put("k4", "v4");
+
+		assertEquals(2, this.cache.size());
+		assertEquals(2, this.cache.getEvictionCount());
+		assertNotNull(this.cache.get(used));
+		assertEquals("v4", this.cache.get("k4"));
+	}
+
+	@Test
+	public void evictsEvenIfAllEntriesRecentlyUsed() {
+		this.cache.put("k1", "v1");
+		this.cache.put("k2", "v2");
+		this.cache.get("k1");
+		this.cache.get("k2");
+		this.cache.put("k3", "v3");
+
+		assertEquals(2, this.cache.size());
+		assertEquals(1, this.cache.getEvictionCount());
+	}
+
+	@Test
+	public void replaceDoesNotGrowCache() {
+		this.cache.put("k1", "v1");
+		this.cache.put("k1", "v2");
+		assertEquals(1, this.cache.size());
+		assertEquals("v2", this.cache.get("k1"));
+	}
+
+	@Test
+	public void removeAndClear() {
+		this.cache.put("k1", "v1");
+		this.cache.put("k2", "v2");
+		assertEquals("v1", this.cache.remove("k1"));
+		assertNull(this.cache.remove("k1"));
+		assertEquals(1, this.cache.size());
+		this.cache.clear();
+		assertEquals(0, this.cache.size());
+		assertNull(this.cache.get("k2"));
+	}
+
+	@Test
+	public void lowerSizeLimit() {
+		ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>(10);
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, i);
+		}
+		cache.setSizeLimit(5);
+		cache.put(10, 10);
+		assertEquals(5, cache.size());
+		assertEquals(6, cache.getEvictionCount());
+	}
+
+	@Test
+	public void zeroSizeLimit() {
+		ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(0);
+		cache.put("k1", "v1");
+		assertEquals(0, cache.size());
+		assertNull(cache.get("k1"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeSizeLimit() {
+		new ConcurrentLruCache<String, String>(-1);
+	}
+
+	@Test
+	public void concurrentAccess() throws Exception {
+		final ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>(64);
+		final int threads = 8;
+		final int iterations = 10000;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < iterations; i++) {
+						int key = (i * 31 + offset) % 256;
+						if (cache.get(key) == null) {
+							cache.put(key, key);
+						}
+					}
+					latch.countDown();
+				}
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		assertEquals(threads * iterations, cache.getHitCount() + cache.getMissCount());
+		cache.put(-1, -1);
+		assertTrue("Unexpected size " + cache.size(), cache.size() <= 64);
+	}
+
+}
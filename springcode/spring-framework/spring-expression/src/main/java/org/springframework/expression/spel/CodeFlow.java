@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -79,24 +79,63 @@ public class CodeFlow implements Opcodes {
 
 	/**
 	 * When code generation requires an intermediate variable within a method,
-	 * this method records the next available variable (variable 0 is 'this').
+	 * this method records the next available variable (variable 0 is 'this',
+	 * variables 1 and 2 are the target and the evaluation context passed to
+	 * CompiledExpression.getValue(target, context)).
 	 */
-	private int nextFreeVariableId = 1;
+	private int nextFreeVariableId = 3;
+
+	/**
+	 * The local variables holding the active context objects. The target passed to
+	 * CompiledExpression.getValue(target, context) is the root context object, nodes
+	 * like selection and projection make each element the active context object
+	 * whilst evaluating their nested expression.
+	 */
+	private final Stack<Integer> activeContextObjects;
 
 	public CodeFlow(String clazzName, ClassWriter cw) {
 		this.compilationScopes = new Stack<ArrayList<String>>();
 		this.compilationScopes.add(new ArrayList<String>());
+		this.activeContextObjects = new Stack<Integer>();
+		this.activeContextObjects.push(1);
 		this.cw = cw;
 		this.clazzName = clazzName;
 	}
 
 	/**
-	 * Push the byte code to load the target (i.e. what was passed as the first argument
-	 * to CompiledExpression.getValue(target, context))
+	 * Push the byte code to load the target (i.e. the active context object, which is
+	 * what was passed as the first argument to CompiledExpression.getValue(target, context)
+	 * unless a nested expression is being evaluated against another object)
 	 * @param mv the visitor into which the load instruction should be inserted
 	 */
 	public void loadTarget(MethodVisitor mv) {
-		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ALOAD, this.activeContextObjects.peek());
+	}
+
+	/**
+	 * Make the object held in the specified local variable the active context object,
+	 * so that {@link #loadTarget} loads it until {@link #popActiveContextObject} is called.
+	 * @param variableId the local variable holding the new active context object
+	 */
+	public void pushActiveContextObject(int variableId) {
+		this.activeContextObjects.push(variableId);
+	}
+
+	/**
+	 * Make the root context object (the target passed to getValue()) the active
+	 * context object again, for example whilst generating the code for method
+	 * arguments which are always evaluated against the root object.
+	 */
+	public void pushRootContextObject() {
+		this.activeContextObjects.push(1);
+	}
+
+	/**
+	 * Restore the active context object that was active before the most recent
+	 * {@link #pushActiveContextObject} or {@link #pushRootContextObject} call.
+	 */
+	public void popActiveContextObject() {
+		this.activeContextObjects.pop();
 	}
 
 	/**
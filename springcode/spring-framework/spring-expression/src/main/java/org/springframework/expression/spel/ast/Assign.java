@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,8 +16,12 @@
 
 package org.springframework.expression.spel.ast;
 
+import java.lang.reflect.Modifier;
+
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
 import org.springframework.expression.spel.ExpressionState;
 
 /**
@@ -40,9 +44,40 @@ public class Assign extends SpelNodeImpl {
 	public TypedValue getValueInternal(ExpressionState state) throws EvaluationException {
 		TypedValue newValue = this.children[1].getValueInternal(state);
 		getChild(0).setValue(state, newValue.getValue());
+		Object value = newValue.getValue();
+		this.exitTypeDescriptor = (value != null && Modifier.isPublic(value.getClass().getModifiers()) ?
+				CodeFlow.toDescriptorFromObject(value) : "Ljava/lang/Object");
 		return newValue;
 	}
 
+	/**
+	 * Only assignments to variables are compiled, property and indexed
+	 * assignments are left to the interpreter.
+	 */
+	@Override
+	public boolean isCompilable() {
+		SpelNodeImpl target = this.children[0];
+		return (this.exitTypeDescriptor != null && target instanceof VariableReference &&
+				((VariableReference) target).isAssignableInCompiledCode() && this.children[1].isCompilable());
+	}
+
+	@Override
+	public void generateCode(MethodVisitor mv, CodeFlow cf) {
+		cf.enterCompilationScope();
+		this.children[1].generateCode(mv, cf);
+		String valueDesc = cf.lastDescriptor();
+		cf.exitCompilationScope();
+		if ("V".equals(valueDesc)) {
+			mv.visitInsn(ACONST_NULL);
+		}
+		else {
+			CodeFlow.insertBoxIfNecessary(mv, valueDesc);
+		}
+		((VariableReference) this.children[0]).generateAssignmentCode(mv);
+		CodeFlow.insertCheckCast(mv, this.exitTypeDescriptor);
+		cf.pushDescriptor(this.exitTypeDescriptor);
+	}
+
 	@Override
 	public String toStringAST() {
 		return getChild(0).toStringAST() + "=" + getChild(1).toStringAST();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,12 @@
 
 package org.springframework.expression.spel.ast;
 
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.AccessException;
 import org.springframework.expression.BeanResolver;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
 import org.springframework.expression.spel.ExpressionState;
 import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.expression.spel.SpelMessage;
@@ -49,7 +51,10 @@ public class BeanReference extends SpelNodeImpl {
 		}
 
 		try {
-			return new TypedValue(beanResolver.resolve(state.getEvaluationContext(), this.beanName));
+			TypedValue result = new TypedValue(beanResolver.resolve(state.getEvaluationContext(), this.beanName));
+			// Beans are frequently proxies: leave any cast to the nodes that use the bean
+			this.exitTypeDescriptor = "Ljava/lang/Object";
+			return result;
 		}
 		catch (AccessException ex) {
 			throw new SpelEvaluationException(getStartPosition(), ex, SpelMessage.EXCEPTION_DURING_BEAN_RESOLUTION,
@@ -57,6 +62,23 @@ public class BeanReference extends SpelNodeImpl {
 		}
 	}
 
+	@Override
+	public boolean isCompilable() {
+		return (this.exitTypeDescriptor != null);
+	}
+
+	@Override
+	public void generateCode(MethodVisitor mv, CodeFlow cf) {
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitMethodInsn(INVOKEINTERFACE, "org/springframework/expression/EvaluationContext",
+				"getBeanResolver", "()Lorg/springframework/expression/BeanResolver;", true);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitLdcInsn(this.beanName);
+		mv.visitMethodInsn(INVOKEINTERFACE, "org/springframework/expression/BeanResolver", "resolve",
+				"(Lorg/springframework/expression/EvaluationContext;Ljava/lang/String;)Ljava/lang/Object;", true);
+		cf.pushDescriptor(this.exitTypeDescriptor);
+	}
+
 	@Override
 	public String toStringAST() {
 		StringBuilder sb = new StringBuilder("@");
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -114,10 +114,16 @@ public class CompoundExpression extends SpelNodeImpl {
 	
 	@Override
 	public boolean isCompilable() {
-		for (SpelNodeImpl child: this.children) {
+		for (int i = 0; i < this.children.length; i++) {
+			SpelNodeImpl child = this.children[i];
 			if (!child.isCompilable()) {
 				return false;
 			}
+			// The active context object of a later step is only held on the stack
+			if (i > 0 && child instanceof VariableReference &&
+					((VariableReference) child).isActiveContextObjectReference()) {
+				return false;
+			}
 		}
 		return true;
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -244,7 +244,9 @@ public class Indexer extends SpelNodeImpl {
 			}
 			SpelNodeImpl index = this.children[0];
 			cf.enterCompilationScope();
+			cf.pushRootContextObject();
 			index.generateCode(mv, cf);
+			cf.popActiveContextObject();
 			cf.exitCompilationScope();
 			mv.visitInsn(insn);
 		}
@@ -252,7 +254,9 @@ public class Indexer extends SpelNodeImpl {
 		else if (this.indexedType == IndexedType.LIST) {
 			mv.visitTypeInsn(CHECKCAST, "java/util/List");
 			cf.enterCompilationScope();
+			cf.pushRootContextObject();
 			this.children[0].generateCode(mv, cf);
+			cf.popActiveContextObject();
 			cf.exitCompilationScope();
 			mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;", true);
 		}
@@ -268,7 +272,9 @@ public class Indexer extends SpelNodeImpl {
 			}
 			else {
 				cf.enterCompilationScope();
+				cf.pushRootContextObject();
 				this.children[0].generateCode(mv, cf);
+				cf.popActiveContextObject();
 				cf.exitCompilationScope();
 			}
 			mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,8 +20,11 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
 import org.springframework.expression.spel.ExpressionState;
 import org.springframework.expression.spel.SpelNode;
 
@@ -147,6 +150,104 @@ public class InlineMap extends SpelNodeImpl {
 		return sb.toString();
 	}
 
+	@Override
+	public boolean isCompilable() {
+		if (isConstant()) {
+			return true;
+		}
+		for (int c = 0, max = getChildCount(); c < max; c++) {
+			// Unqualified keys are used as names rather than evaluated
+			if (!((c % 2) == 0 && this.children[c] instanceof PropertyOrFieldReference) &&
+					!this.children[c].isCompilable()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void generateCode(MethodVisitor mv, CodeFlow codeflow) {
+		if (!isConstant()) {
+			generateMapCode(mv, codeflow, false);
+			codeflow.pushDescriptor("Ljava/util/Map");
+			return;
+		}
+
+		final String constantFieldName = "inlineMap$" + codeflow.nextFieldId();
+		final String clazzname = codeflow.getClassname();
+
+		codeflow.registerNewField(new CodeFlow.FieldAdder() {
+			public void generateField(ClassWriter cw, CodeFlow codeflow) {
+				cw.visitField(ACC_PRIVATE|ACC_STATIC|ACC_FINAL, constantFieldName, "Ljava/util/Map;", null, null);
+			}
+		});
+
+		codeflow.registerNewClinit(new CodeFlow.ClinitAdder() {
+			public void generateCode(MethodVisitor mv, CodeFlow codeflow) {
+				generateMapCode(mv, codeflow, true);
+				mv.visitFieldInsn(PUTSTATIC, clazzname, constantFieldName, "Ljava/util/Map;");
+			}
+		});
+
+		mv.visitFieldInsn(GETSTATIC, clazzname, constantFieldName, "Ljava/util/Map;");
+		codeflow.pushDescriptor("Ljava/util/Map");
+	}
+
+	/**
+	 * Generate the code that builds the map, leaving it on the stack. Constant maps
+	 * are built once in the static initializer and wrapped to be unmodifiable, like
+	 * the interpreted constant value.
+	 */
+	private void generateMapCode(MethodVisitor mv, CodeFlow codeflow, boolean constant) {
+		mv.visitTypeInsn(NEW, "java/util/LinkedHashMap");
+		mv.visitInsn(DUP);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/util/LinkedHashMap", "<init>", "()V", false);
+		int childcount = getChildCount();
+		for (int c = 0; c < childcount; c++) {
+			mv.visitInsn(DUP);
+			SpelNodeImpl keyChild = this.children[c++];
+			if (keyChild instanceof PropertyOrFieldReference) {
+				mv.visitLdcInsn(((PropertyOrFieldReference) keyChild).getName());
+			}
+			else {
+				generateEntryCode(mv, codeflow, keyChild, constant);
+			}
+			generateEntryCode(mv, codeflow, this.children[c], constant);
+			mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "put",
+					"(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;", true);
+			mv.visitInsn(POP);
+		}
+		if (constant) {
+			mv.visitMethodInsn(INVOKESTATIC, "java/util/Collections", "unmodifiableMap",
+					"(Ljava/util/Map;)Ljava/util/Map;", false);
+		}
+	}
+
+	private void generateEntryCode(MethodVisitor mv, CodeFlow codeflow, SpelNodeImpl child, boolean constant) {
+		// Nested constant lists and maps of a constant map are built directly here: calling
+		// back into generateCode() would register another clinit adder
+		if (constant && child instanceof InlineList) {
+			((InlineList) child).generateClinitCode(null, null, mv, codeflow, true);
+			mv.visitMethodInsn(INVOKESTATIC, "java/util/Collections", "unmodifiableList",
+					"(Ljava/util/List;)Ljava/util/List;", false);
+		}
+		else if (constant && child instanceof InlineMap) {
+			((InlineMap) child).generateMapCode(mv, codeflow, true);
+		}
+		else {
+			codeflow.enterCompilationScope();
+			child.generateCode(mv, codeflow);
+			String descriptor = codeflow.lastDescriptor();
+			codeflow.exitCompilationScope();
+			if ("V".equals(descriptor)) {
+				mv.visitInsn(ACONST_NULL);
+			}
+			else {
+				CodeFlow.insertBoxIfNecessary(mv, descriptor);
+			}
+		}
+	}
+
 	/**
 	 * @return whether this list is a constant value
 	 */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -318,7 +318,10 @@ public class MethodReference extends SpelNodeImpl {
 			}
 		}
 
+		// Arguments are evaluated against the root object, see getArguments()
+		cf.pushRootContextObject();
 		generateCodeForArguments(mv, cf, method, this.children);
+		cf.popActiveContextObject();
 		mv.visitMethodInsn((isStaticMethod ? INVOKESTATIC : INVOKEVIRTUAL), classDesc, method.getName(),
 				CodeFlow.createSignatureDescriptor(method), method.getDeclaringClass().isInterface());
 		cf.pushDescriptor(this.exitTypeDescriptor);
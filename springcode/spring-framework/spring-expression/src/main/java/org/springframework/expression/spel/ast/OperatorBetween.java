@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,8 +18,11 @@ package org.springframework.expression.spel.ast;
 
 import java.util.List;
 
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.TypeComparator;
+import org.springframework.expression.spel.CodeFlow;
 import org.springframework.expression.spel.ExpressionState;
 import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.expression.spel.SpelMessage;
@@ -38,6 +41,7 @@ public class OperatorBetween extends Operator {
 
 	public OperatorBetween(int pos, SpelNodeImpl... operands) {
 		super("between", pos, operands);
+		this.exitTypeDescriptor = "Z";
 	}
 
 
@@ -71,4 +75,65 @@ public class OperatorBetween extends Operator {
 		}
 	}
 
+	/**
+	 * Only an inline list of bounds is compiled, its two elements being evaluated
+	 * directly rather than building the list.
+	 */
+	@Override
+	public boolean isCompilable() {
+		SpelNodeImpl right = getRightOperand();
+		if (!getLeftOperand().isCompilable() || !(right instanceof InlineList) || right.getChildCount() != 2) {
+			return false;
+		}
+		return (right.children[0].isCompilable() && right.children[1].isCompilable());
+	}
+
+	@Override
+	public void generateCode(MethodVisitor mv, CodeFlow cf) {
+		int comparatorVariable = cf.nextFreeVariableId();
+		int leftVariable = cf.nextFreeVariableId();
+		int lowVariable = cf.nextFreeVariableId();
+		int highVariable = cf.nextFreeVariableId();
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitMethodInsn(INVOKEINTERFACE, "org/springframework/expression/EvaluationContext",
+				"getTypeComparator", "()Lorg/springframework/expression/TypeComparator;", true);
+		mv.visitVarInsn(ASTORE, comparatorVariable);
+
+		getLeftOperand().generateCode(mv, cf);
+		CodeFlow.insertBoxIfNecessary(mv, getLeftOperand().exitTypeDescriptor);
+		mv.visitVarInsn(ASTORE, leftVariable);
+		SpelNodeImpl[] bounds = getRightOperand().children;
+		generateBoundCode(mv, cf, bounds[0], lowVariable);
+		generateBoundCode(mv, cf, bounds[1], highVariable);
+
+		Label elseTarget = new Label();
+		Label endOfIf = new Label();
+		generateCompareCode(mv, comparatorVariable, leftVariable, lowVariable);
+		mv.visitJumpInsn(IFLT, elseTarget);
+		generateCompareCode(mv, comparatorVariable, leftVariable, highVariable);
+		mv.visitJumpInsn(IFGT, elseTarget);
+		mv.visitInsn(ICONST_1);
+		mv.visitJumpInsn(GOTO, endOfIf);
+		mv.visitLabel(elseTarget);
+		mv.visitInsn(ICONST_0);
+		mv.visitLabel(endOfIf);
+		cf.pushDescriptor(this.exitTypeDescriptor);
+	}
+
+	private void generateBoundCode(MethodVisitor mv, CodeFlow cf, SpelNodeImpl bound, int variable) {
+		cf.enterCompilationScope();
+		bound.generateCode(mv, cf);
+		CodeFlow.insertBoxIfNecessary(mv, cf.lastDescriptor());
+		cf.exitCompilationScope();
+		mv.visitVarInsn(ASTORE, variable);
+	}
+
+	private void generateCompareCode(MethodVisitor mv, int comparatorVariable, int leftVariable, int boundVariable) {
+		mv.visitVarInsn(ALOAD, comparatorVariable);
+		mv.visitVarInsn(ALOAD, leftVariable);
+		mv.visitVarInsn(ALOAD, boundVariable);
+		mv.visitMethodInsn(INVOKEINTERFACE, "org/springframework/expression/TypeComparator",
+				"compare", "(Ljava/lang/Object;Ljava/lang/Object;)I", true);
+	}
+
 }
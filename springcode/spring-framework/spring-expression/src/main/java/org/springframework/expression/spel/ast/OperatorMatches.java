@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,7 +22,11 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.EvaluationException;
+import org.springframework.expression.spel.CodeFlow;
 import org.springframework.expression.spel.ExpressionState;
 import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.expression.spel.SpelMessage;
@@ -45,6 +49,7 @@ public class OperatorMatches extends Operator {
 
 	public OperatorMatches(int pos, SpelNodeImpl... operands) {
 		super("matches", pos, operands);
+		this.exitTypeDescriptor = "Z";
 	}
 
 
@@ -88,4 +93,65 @@ public class OperatorMatches extends Operator {
 		}
 	}
 
+	/**
+	 * Only a literal regex is compiled: the pattern is then compiled once, when the
+	 * generated class is initialized. The first operand has to be a String already,
+	 * since the interpreted path may convert other values to a String; a {@code null}
+	 * first operand leads to the same {@link SpelEvaluationException} as when interpreted.
+	 */
+	@Override
+	public boolean isCompilable() {
+		SpelNodeImpl left = getLeftOperand();
+		return (left.isCompilable() && "Ljava/lang/String".equals(left.exitTypeDescriptor) &&
+				getRightOperand() instanceof StringLiteral);
+	}
+
+	@Override
+	public void generateCode(MethodVisitor mv, CodeFlow cf) {
+		final String patternFieldName = "pattern$" + cf.nextFieldId();
+		final String clazzname = cf.getClassname();
+		final Object regex = ((StringLiteral) getRightOperand()).getLiteralValue().getValue();
+
+		cf.registerNewField(new CodeFlow.FieldAdder() {
+			public void generateField(ClassWriter cw, CodeFlow codeflow) {
+				cw.visitField(ACC_PRIVATE|ACC_STATIC|ACC_FINAL, patternFieldName, "Ljava/util/regex/Pattern;", null, null);
+			}
+		});
+
+		cf.registerNewClinit(new CodeFlow.ClinitAdder() {
+			public void generateCode(MethodVisitor mv, CodeFlow codeflow) {
+				mv.visitLdcInsn(regex);
+				mv.visitMethodInsn(INVOKESTATIC, "java/util/regex/Pattern", "compile",
+						"(Ljava/lang/String;)Ljava/util/regex/Pattern;", false);
+				mv.visitFieldInsn(PUTSTATIC, clazzname, patternFieldName, "Ljava/util/regex/Pattern;");
+			}
+		});
+
+		getLeftOperand().generateCode(mv, cf);
+		Label notNull = new Label();
+		mv.visitInsn(DUP);
+		mv.visitJumpInsn(IFNONNULL, notNull);
+		mv.visitTypeInsn(NEW, "org/springframework/expression/spel/SpelEvaluationException");
+		mv.visitInsn(DUP);
+		mv.visitLdcInsn(getLeftOperand().getStartPosition());
+		mv.visitFieldInsn(GETSTATIC, "org/springframework/expression/spel/SpelMessage",
+				"INVALID_FIRST_OPERAND_FOR_MATCHES_OPERATOR", "Lorg/springframework/expression/spel/SpelMessage;");
+		mv.visitInsn(ICONST_1);
+		mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+		mv.visitInsn(DUP);
+		mv.visitInsn(ICONST_0);
+		mv.visitInsn(ACONST_NULL);
+		mv.visitInsn(AASTORE);
+		mv.visitMethodInsn(INVOKESPECIAL, "org/springframework/expression/spel/SpelEvaluationException", "<init>",
+				"(ILorg/springframework/expression/spel/SpelMessage;[Ljava/lang/Object;)V", false);
+		mv.visitInsn(ATHROW);
+		mv.visitLabel(notNull);
+		mv.visitFieldInsn(GETSTATIC, clazzname, patternFieldName, "Ljava/util/regex/Pattern;");
+		mv.visitInsn(SWAP);
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/regex/Pattern", "matcher",
+				"(Ljava/lang/CharSequence;)Ljava/util/regex/Matcher;", false);
+		mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/regex/Matcher", "matches", "()Z", false);
+		cf.pushDescriptor(this.exitTypeDescriptor);
+	}
+
 }
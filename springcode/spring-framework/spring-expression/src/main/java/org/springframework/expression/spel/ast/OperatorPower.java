@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,9 +19,12 @@ package org.springframework.expression.spel.ast;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Operation;
 import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
 import org.springframework.expression.spel.ExpressionState;
 import org.springframework.util.NumberUtils;
 
@@ -60,14 +63,22 @@ public class OperatorPower extends Operator {
 				return new TypedValue(leftBigInteger.pow(rightNumber.intValue()));
 			}
 			else if (leftNumber instanceof Double || rightNumber instanceof Double) {
+				this.exitTypeDescriptor = "D";
 				return new TypedValue(Math.pow(leftNumber.doubleValue(), rightNumber.doubleValue()));
 			}
 			else if (leftNumber instanceof Float || rightNumber instanceof Float) {
+				this.exitTypeDescriptor = "D";
 				return new TypedValue(Math.pow(leftNumber.floatValue(), rightNumber.floatValue()));
 			}
 
 			double d = Math.pow(leftNumber.doubleValue(), rightNumber.doubleValue());
-			if (d > Integer.MAX_VALUE || leftNumber instanceof Long || rightNumber instanceof Long) {
+			if (leftNumber instanceof Long || rightNumber instanceof Long) {
+				this.exitTypeDescriptor = "J";
+				return new TypedValue((long) d);
+			}
+			// Integer or Long depending on the value, see generateCode()
+			this.exitTypeDescriptor = "Ljava/lang/Number";
+			if (d > Integer.MAX_VALUE) {
 				return new TypedValue((long) d);
 			}
 			else {
@@ -78,4 +89,85 @@ public class OperatorPower extends Operator {
 		return state.operate(Operation.POWER, leftOperand, rightOperand);
 	}
 
+	@Override
+	public boolean isCompilable() {
+		SpelNodeImpl left = getLeftOperand();
+		SpelNodeImpl right = getRightOperand();
+		if (!left.isCompilable() || !right.isCompilable()) {
+			return false;
+		}
+		return (this.exitTypeDescriptor != null &&
+				CodeFlow.isPrimitiveOrUnboxableSupportedNumber(left.exitTypeDescriptor) &&
+				CodeFlow.isPrimitiveOrUnboxableSupportedNumber(right.exitTypeDescriptor));
+	}
+
+	@Override
+	public void generateCode(MethodVisitor mv, CodeFlow cf) {
+		String leftDesc = getLeftOperand().exitTypeDescriptor;
+		String rightDesc = getRightOperand().exitTypeDescriptor;
+		char leftType = CodeFlow.toPrimitiveTargetDesc(leftDesc);
+		char rightType = CodeFlow.toPrimitiveTargetDesc(rightDesc);
+		// Float operands are only widened directly when no double is involved, see getValueInternal()
+		char operandType = (leftType != 'D' && rightType != 'D' && (leftType == 'F' || rightType == 'F') ? 'F' : 'D');
+
+		getLeftOperand().generateCode(mv, cf);
+		if (!CodeFlow.isPrimitive(leftDesc)) {
+			CodeFlow.insertUnboxInsns(mv, leftType, leftDesc);
+		}
+		insertConversionToDouble(mv, leftType, operandType);
+		cf.enterCompilationScope();
+		getRightOperand().generateCode(mv, cf);
+		cf.exitCompilationScope();
+		if (!CodeFlow.isPrimitive(rightDesc)) {
+			CodeFlow.insertUnboxInsns(mv, rightType, rightDesc);
+		}
+		insertConversionToDouble(mv, rightType, operandType);
+		mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", false);
+
+		if ("J".equals(this.exitTypeDescriptor)) {
+			mv.visitInsn(D2L);
+		}
+		else if (!"D".equals(this.exitTypeDescriptor)) {
+			Label intResult = new Label();
+			Label endOfIf = new Label();
+			mv.visitInsn(DUP2);
+			mv.visitLdcInsn((double) Integer.MAX_VALUE);
+			mv.visitInsn(DCMPL);
+			mv.visitJumpInsn(IFLE, intResult);
+			mv.visitInsn(D2L);
+			mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", false);
+			mv.visitJumpInsn(GOTO, endOfIf);
+			mv.visitLabel(intResult);
+			mv.visitInsn(D2I);
+			mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+			mv.visitLabel(endOfIf);
+		}
+		cf.pushDescriptor(this.exitTypeDescriptor);
+	}
+
+	/**
+	 * Convert the primitive operand on top of the stack to a double, going through
+	 * a float first if the operand type is float.
+	 */
+	private static void insertConversionToDouble(MethodVisitor mv, char type, char operandType) {
+		if (operandType == 'F') {
+			if (type == 'I') {
+				mv.visitInsn(I2F);
+			}
+			else if (type == 'J') {
+				mv.visitInsn(L2F);
+			}
+			mv.visitInsn(F2D);
+		}
+		else if (type == 'I') {
+			mv.visitInsn(I2D);
+		}
+		else if (type == 'J') {
+			mv.visitInsn(L2D);
+		}
+		else if (type == 'F') {
+			mv.visitInsn(F2D);
+		}
+	}
+
 }
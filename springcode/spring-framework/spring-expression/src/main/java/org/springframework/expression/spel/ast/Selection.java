@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,8 +24,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
 import org.springframework.expression.spel.ExpressionState;
 import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.expression.spel.SpelMessage;
@@ -77,6 +80,13 @@ public class Selection extends SpelNodeImpl {
 		Object operand = op.getValue();
 
 		SpelNodeImpl selectionCriteria = this.children[0];
+		// Only selection over a collection is compiled, see generateCode()
+		if (operand instanceof Collection) {
+			this.exitTypeDescriptor = (this.variant == ALL ? "Ljava/util/List" : "Ljava/lang/Object");
+		}
+		else {
+			this.exitTypeDescriptor = null;
+		}
 		if (operand instanceof Map) {
 			Map<?, ?> mapdata = (Map<?, ?>) operand;
 			// TODO don't lose generic info for the new map
@@ -179,6 +189,94 @@ public class Selection extends SpelNodeImpl {
 				operand.getClass().getName());
 	}
 
+	@Override
+	public boolean isCompilable() {
+		SpelNodeImpl selectionCriteria = this.children[0];
+		return (this.exitTypeDescriptor != null && selectionCriteria.isCompilable() &&
+				CodeFlow.isBooleanCompatible(selectionCriteria.exitTypeDescriptor));
+	}
+
+	@Override
+	public void generateCode(MethodVisitor mv, CodeFlow cf) {
+		if (cf.lastDescriptor() == null) {
+			// Stack is empty, select from the context object
+			cf.loadTarget(mv);
+		}
+		Label endOfSelection = new Label();
+		if (this.nullSafe) {
+			Label operandNotNull = new Label();
+			mv.visitInsn(DUP);
+			mv.visitJumpInsn(IFNONNULL, operandNotNull);
+			mv.visitInsn(POP);
+			mv.visitInsn(ACONST_NULL);
+			mv.visitJumpInsn(GOTO, endOfSelection);
+			mv.visitLabel(operandNotNull);
+		}
+		mv.visitTypeInsn(CHECKCAST, "java/util/Collection");
+		mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Collection", "iterator", "()Ljava/util/Iterator;", true);
+		int iteratorVariable = cf.nextFreeVariableId();
+		int elementVariable = cf.nextFreeVariableId();
+		int resultVariable = cf.nextFreeVariableId();
+		mv.visitVarInsn(ASTORE, iteratorVariable);
+		if (this.variant == ALL) {
+			mv.visitTypeInsn(NEW, "java/util/ArrayList");
+			mv.visitInsn(DUP);
+			mv.visitMethodInsn(INVOKESPECIAL, "java/util/ArrayList", "<init>", "()V", false);
+			mv.visitVarInsn(ASTORE, resultVariable);
+		}
+		else if (this.variant == LAST) {
+			mv.visitInsn(ACONST_NULL);
+			mv.visitVarInsn(ASTORE, resultVariable);
+		}
+
+		Label nextElement = new Label();
+		Label endOfElements = new Label();
+		mv.visitLabel(nextElement);
+		mv.visitVarInsn(ALOAD, iteratorVariable);
+		mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z", true);
+		mv.visitJumpInsn(IFEQ, endOfElements);
+		mv.visitVarInsn(ALOAD, iteratorVariable);
+		mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;", true);
+		mv.visitVarInsn(ASTORE, elementVariable);
+
+		// Evaluate the selection criteria against the element
+		cf.enterCompilationScope();
+		cf.pushActiveContextObject(elementVariable);
+		this.children[0].generateCode(mv, cf);
+		cf.unboxBooleanIfNecessary(mv);
+		cf.popActiveContextObject();
+		cf.exitCompilationScope();
+		mv.visitJumpInsn(IFEQ, nextElement);
+
+		if (this.variant == FIRST) {
+			mv.visitVarInsn(ALOAD, elementVariable);
+			mv.visitJumpInsn(GOTO, endOfSelection);
+		}
+		else {
+			if (this.variant == ALL) {
+				mv.visitVarInsn(ALOAD, resultVariable);
+				mv.visitVarInsn(ALOAD, elementVariable);
+				mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "add", "(Ljava/lang/Object;)Z", true);
+				mv.visitInsn(POP);
+			}
+			else {
+				mv.visitVarInsn(ALOAD, elementVariable);
+				mv.visitVarInsn(ASTORE, resultVariable);
+			}
+			mv.visitJumpInsn(GOTO, nextElement);
+		}
+
+		mv.visitLabel(endOfElements);
+		if (this.variant == FIRST) {
+			mv.visitInsn(ACONST_NULL);
+		}
+		else {
+			mv.visitVarInsn(ALOAD, resultVariable);
+		}
+		mv.visitLabel(endOfSelection);
+		cf.pushDescriptor(this.exitTypeDescriptor);
+	}
+
 	@Override
 	public String toStringAST() {
 		StringBuilder sb = new StringBuilder();
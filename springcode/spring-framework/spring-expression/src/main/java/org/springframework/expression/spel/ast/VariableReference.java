@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -65,7 +65,11 @@ public class VariableReference extends SpelNodeImpl {
 	@Override
 	public TypedValue getValueInternal(ExpressionState state) throws SpelEvaluationException {
 		if (this.name.equals(THIS)) {
-			return state.getActiveContextObject();
+			TypedValue result = state.getActiveContextObject();
+			Object value = result.getValue();
+			this.exitTypeDescriptor = (value != null && Modifier.isPublic(value.getClass().getModifiers()) ?
+					CodeFlow.toDescriptorFromObject(value) : "Ljava/lang/Object");
+			return result;
 		}
 		if (this.name.equals(ROOT)) {
 			TypedValue result = state.getRootContextObject();
@@ -137,6 +141,36 @@ public class VariableReference extends SpelNodeImpl {
 		}
 	}
 
+	/**
+	 * Return whether this is a reference to the active context object ({@code #this}),
+	 * which compiled code can only load if it is not the result of a preceding step
+	 * of a {@link CompoundExpression}.
+	 */
+	boolean isActiveContextObjectReference() {
+		return this.name.equals(THIS);
+	}
+
+	/**
+	 * Return whether compiled code may assign to this variable, see {@link Assign}.
+	 */
+	boolean isAssignableInCompiledCode() {
+		return !(this.name.equals(THIS) || this.name.equals(ROOT));
+	}
+
+	/**
+	 * Generate the code that assigns the (boxed) value on top of the stack to this
+	 * variable in the evaluation context, leaving the value on the stack.
+	 */
+	void generateAssignmentCode(MethodVisitor mv) {
+		mv.visitInsn(DUP);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitInsn(SWAP);
+		mv.visitLdcInsn(this.name);
+		mv.visitInsn(SWAP);
+		mv.visitMethodInsn(INVOKEINTERFACE, "org/springframework/expression/EvaluationContext", "setVariable",
+				"(Ljava/lang/String;Ljava/lang/Object;)V", true);
+	}
+
 	@Override
 	public boolean isCompilable() {
 		return this.exitTypeDescriptor!=null;
@@ -147,6 +181,9 @@ public class VariableReference extends SpelNodeImpl {
 		if (this.name.equals(ROOT)) {
 			mv.visitVarInsn(ALOAD,1);
 		}
+		else if (this.name.equals(THIS)) {
+			cf.loadTarget(mv);
+		}
 		else {
 			mv.visitVarInsn(ALOAD, 2);
 			mv.visitLdcInsn(name);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -109,8 +109,10 @@ public class SpelExpression implements Expression {
 		Object result;
 		if (this.compiledAst != null) {
 			try {
-				TypedValue contextRoot = evaluationContext == null ? null : evaluationContext.getRootObject();
-				return this.compiledAst.getValue(contextRoot == null ? null : contextRoot.getValue(), evaluationContext);
+				// Compiled code may use the context, e.g. for a type comparator or variables
+				EvaluationContext context = getEvaluationContext();
+				TypedValue contextRoot = context.getRootObject();
+				return this.compiledAst.getValue(contextRoot == null ? null : contextRoot.getValue(), context);
 			}
 			catch (Throwable ex) {
 				// If running in mixed mode, revert to interpreted
@@ -135,7 +137,7 @@ public class SpelExpression implements Expression {
 		Object result;
 		if (this.compiledAst != null) {
 			try {
-				return this.compiledAst.getValue(rootObject, evaluationContext);
+				return this.compiledAst.getValue(rootObject, getEvaluationContext());
 			}
 			catch (Throwable ex) {
 				// If running in mixed mode, revert to interpreted
@@ -160,8 +162,9 @@ public class SpelExpression implements Expression {
 	public <T> T getValue(Class<T> expectedResultType) throws EvaluationException {
 		if (this.compiledAst != null) {
 			try {
-				TypedValue contextRoot = evaluationContext == null ? null : evaluationContext.getRootObject();
-				Object result = this.compiledAst.getValue(contextRoot == null ? null : contextRoot.getValue(), evaluationContext);
+				EvaluationContext context = getEvaluationContext();
+				TypedValue contextRoot = context.getRootObject();
+				Object result = this.compiledAst.getValue(contextRoot == null ? null : contextRoot.getValue(), context);
 				if (expectedResultType == null) {
 					return (T)result;
 				}
@@ -192,7 +195,7 @@ public class SpelExpression implements Expression {
 	public <T> T getValue(Object rootObject, Class<T> expectedResultType) throws EvaluationException {
 		if (this.compiledAst != null) {
 			try {
-				Object result = this.compiledAst.getValue(rootObject, null);
+				Object result = this.compiledAst.getValue(rootObject, getEvaluationContext());
 				if (expectedResultType == null) {
 					return (T)result;
 				}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.expression.spel;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +29,7 @@ import org.junit.Test;
 
 import org.springframework.asm.MethodVisitor;
 import org.springframework.expression.AccessException;
+import org.springframework.expression.BeanResolver;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.TypedValue;
@@ -103,19 +105,20 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 	 * FunctionReference
 	 * InlineList
 	 * OpModulus
+	 * InlineMap
+	 * Selection (over a collection)
+	 * Projection (of a collection)
+	 * OpMatches (with a literal regex)
+	 * OpBetween (with an inline list of bounds)
+	 * OpPower
+	 * Assign (to a variable)
+	 * BeanReference
 	 *
 	 * Not yet compiled (some may never need to be):
-	 * Assign
-	 * BeanReference
 	 * Identifier
 	 * OpDec
-	 * OpBetween
-	 * OpMatches
-	 * OpPower
 	 * OpInc
-	 * Projection
 	 * QualifiedId
-	 * Selection
 	 */
 
 	@Test1
@@ -815,7 +818,7 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 
 		expression = parser.parseExpression("#negate(#ints.?[#this<2][0])");
 		assertEquals("-1",expression.getValue(context, Integer.class).toString());
-		// Selection isn't compilable.
+		// Selection over an array isn't compilable.
 		assertFalse(((SpelNodeImpl)((SpelExpression)expression).getAST()).isCompilable());
 	}
 
@@ -3557,6 +3560,273 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 		assertEquals(3,expression.getValue(root));
 	}
 
+	@Test
+	public void selection() throws Exception {
+		List<Integer> numbers = Arrays.asList(1, 2, 3, 4, 5);
+		expression = parse("?[#this > 2]");
+		assertEquals("[3, 4, 5]", expression.getValue(numbers).toString());
+		assertCanCompile(expression);
+		assertEquals("[3, 4, 5]", expression.getValue(numbers).toString());
+		assertEquals("[]", expression.getValue(Arrays.asList(1, 2)).toString());
+
+		expression = parse("^[#this > 2]");
+		assertEquals(3, expression.getValue(numbers));
+		assertCanCompile(expression);
+		assertEquals(3, expression.getValue(numbers));
+		assertNull(expression.getValue(Arrays.asList(1, 2)));
+
+		expression = parse("$[#this > 2]");
+		assertEquals(5, expression.getValue(numbers));
+		assertCanCompile(expression);
+		assertEquals(5, expression.getValue(numbers));
+		assertNull(expression.getValue(Arrays.asList(1, 2)));
+
+		List<PersonInOtherPackage> people = Arrays.asList(
+				new PersonInOtherPackage(25), new PersonInOtherPackage(42), new PersonInOtherPackage(67));
+		expression = parse("?[age > 40].size()");
+		assertEquals(2, expression.getValue(people));
+		assertCanCompile(expression);
+		assertEquals(2, expression.getValue(people));
+
+		// Method arguments are evaluated against the root object, not the element
+		expression = parse("values.?[#this.compareTo(threshold) > 0]");
+		assertEquals("[3, 4]", expression.getValue(new SelectionHolder()).toString());
+		assertCanCompile(expression);
+		assertEquals("[3, 4]", expression.getValue(new SelectionHolder()).toString());
+
+		expression = parse("values?.?[#this > 2]");
+		assertEquals("[3, 4]", expression.getValue(new SelectionHolder()).toString());
+		assertCanCompile(expression);
+		assertNull(expression.getValue(new SelectionHolder(null)));
+
+		Map<String, Integer> map = new HashMap<String, Integer>();
+		map.put("a", 1);
+		map.put("b", 2);
+		expression = parse("?[value > 1]");
+		assertEquals("{b=2}", expression.getValue(map).toString());
+		assertCantCompile(expression);
+	}
+
+	@Test
+	public void thisReferenceAsRightOperand() throws Exception {
+		expression = parse("'x' == #this");
+		assertTrue(expression.getValue("x", Boolean.class));
+		assertCanCompile(expression);
+		assertTrue(expression.getValue("x", Boolean.class));
+		assertFalse(expression.getValue("y", Boolean.class));
+
+		expression = parse("'x' != #this");
+		assertFalse(expression.getValue("x", Boolean.class));
+		assertCanCompile(expression);
+		assertFalse(expression.getValue("x", Boolean.class));
+		assertTrue(expression.getValue("y", Boolean.class));
+
+		List<String> letters = Arrays.asList("x", "y", "x", "z");
+		expression = parse("#this.?['x' == #this]");
+		assertEquals("[x, x]", expression.getValue(letters).toString());
+		assertCanCompile(expression);
+		assertEquals("[x, x]", expression.getValue(letters).toString());
+
+		expression = parse("?['x' != #this]");
+		assertEquals("[y, z]", expression.getValue(letters).toString());
+		assertCanCompile(expression);
+		assertEquals("[y, z]", expression.getValue(letters).toString());
+
+		// #this as a later step of a compound expression stays interpreted
+		expression = parse("toUpperCase().#this");
+		assertEquals("X", expression.getValue("x"));
+		assertCantCompile(expression);
+		assertEquals("X", expression.getValue("x"));
+	}
+
+	@Test
+	public void projection() throws Exception {
+		List<Integer> numbers = Arrays.asList(1, 2, 3);
+		expression = parse("![#this * 2]");
+		assertEquals("[2, 4, 6]", expression.getValue(numbers).toString());
+		assertCanCompile(expression);
+		assertEquals("[2, 4, 6]", expression.getValue(numbers).toString());
+		assertEquals("[]", expression.getValue(new ArrayList<Integer>()).toString());
+
+		List<PersonInOtherPackage> people = Arrays.asList(new PersonInOtherPackage(25), new PersonInOtherPackage(42));
+		expression = parse("![age]");
+		assertEquals("[25, 42]", expression.getValue(people).toString());
+		assertCanCompile(expression);
+		assertEquals("[25, 42]", expression.getValue(people).toString());
+
+		expression = parse("values?.![#this + 1]");
+		assertEquals("[2, 3, 4, 5]", expression.getValue(new SelectionHolder()).toString());
+		assertCanCompile(expression);
+		assertEquals("[2, 3, 4, 5]", expression.getValue(new SelectionHolder()).toString());
+		assertNull(expression.getValue(new SelectionHolder(null)));
+
+		expression = parse("![#this * 2]");
+		assertEquals(3, ((Object[]) expression.getValue(new Integer[] {1, 2, 3})).length);
+		assertCantCompile(expression);
+	}
+
+	@Test
+	public void inlineMap() throws Exception {
+		expression = parse("{'a':1,'b':2}");
+		assertEquals("{a=1, b=2}", expression.getValue().toString());
+		assertCanCompile(expression);
+		assertEquals("{a=1, b=2}", expression.getValue().toString());
+		assertEquals(2, expression.getValue(Map.class).size());
+
+		expression = parse("{a:1,b:{'x','y'},c:{d:true}}");
+		assertEquals("{a=1, b=[x, y], c={d=true}}", expression.getValue().toString());
+		assertCanCompile(expression);
+		assertEquals("{a=1, b=[x, y], c={d=true}}", expression.getValue().toString());
+		try {
+			expression.getValue(Map.class).put("e", 1);
+			fail();
+		}
+		catch (UnsupportedOperationException ex) {
+			// constant maps are unmodifiable
+		}
+
+		expression = parse("{age:age,'old':age > 40}");
+		assertEquals("{age=42, old=true}", expression.getValue(new PersonInOtherPackage(42)).toString());
+		assertCanCompile(expression);
+		assertEquals("{age=42, old=true}", expression.getValue(new PersonInOtherPackage(42)).toString());
+		assertEquals("{age=25, old=false}", expression.getValue(new PersonInOtherPackage(25)).toString());
+	}
+
+	@Test
+	public void opMatches() throws Exception {
+		expression = parse("'abc' matches 'a.c'");
+		assertTrue(expression.getValue(Boolean.class));
+		assertCanCompile(expression);
+		assertTrue(expression.getValue(Boolean.class));
+
+		expression = parse("s matches '[0-9]+'");
+		assertTrue(expression.getValue(new TestClass8(1, "123", 1.0d, true), Boolean.class));
+		assertCanCompile(expression);
+		assertTrue(expression.getValue(new TestClass8(1, "123", 1.0d, true), Boolean.class));
+		assertFalse(expression.getValue(new TestClass8(1, "12a", 1.0d, true), Boolean.class));
+		try {
+			expression.getValue(new TestClass8(), Boolean.class);
+			fail("Should have failed for a null first operand");
+		}
+		catch (SpelEvaluationException ex) {
+			assertEquals(SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION, ex.getMessageCode());
+			assertEquals(SpelMessage.INVALID_FIRST_OPERAND_FOR_MATCHES_OPERATOR,
+					((SpelEvaluationException) ex.getCause()).getMessageCode());
+		}
+
+		// Not statically known to be a String: may need conversion
+		expression = parse("payload matches '[0-9]+'");
+		assertTrue(expression.getValue(new GenericMessageTestHelper<String>("123"), Boolean.class));
+		assertCantCompile(expression);
+		assertTrue(expression.getValue(new GenericMessageTestHelper<Integer>(123), Boolean.class));
+
+		StandardEvaluationContext ctx = new StandardEvaluationContext();
+		ctx.setVariable("regex", "a.c");
+		expression = parse("'abc' matches #regex");
+		assertTrue(expression.getValue(ctx, Boolean.class));
+		assertCantCompile(expression);
+	}
+
+	@Test
+	public void opBetween() throws Exception {
+		expression = parse("3 between {1,5}");
+		assertTrue(expression.getValue(Boolean.class));
+		assertCanCompile(expression);
+		assertTrue(expression.getValue(Boolean.class));
+
+		expression = parse("'b' between {'a','c'}");
+		assertTrue(expression.getValue(Boolean.class));
+		assertCanCompile(expression);
+		assertTrue(expression.getValue(Boolean.class));
+
+		expression = parse("age between {18,65}");
+		assertTrue(expression.getValue(new PersonInOtherPackage(42), Boolean.class));
+		assertCanCompile(expression);
+		assertTrue(expression.getValue(new PersonInOtherPackage(18), Boolean.class));
+		assertTrue(expression.getValue(new PersonInOtherPackage(65), Boolean.class));
+		assertFalse(expression.getValue(new PersonInOtherPackage(17), Boolean.class));
+		assertFalse(expression.getValue(new PersonInOtherPackage(66), Boolean.class));
+	}
+
+	@Test
+	public void opPower() throws Exception {
+		expression = parse("2^3");
+		assertEquals(8, expression.getValue());
+		assertCanCompile(expression);
+		assertEquals(8, expression.getValue());
+
+		expression = parse("2^31");
+		assertEquals(2147483648L, expression.getValue());
+		assertCanCompile(expression);
+		assertEquals(2147483648L, expression.getValue());
+
+		expression = parse("2L^3");
+		assertEquals(8L, expression.getValue());
+		assertCanCompile(expression);
+		assertEquals(8L, expression.getValue());
+
+		expression = parse("2.0d^3");
+		assertEquals(8.0d, expression.getValue());
+		assertCanCompile(expression);
+		assertEquals(8.0d, expression.getValue());
+
+		expression = parse("1.5f^2");
+		assertEquals(2.25d, expression.getValue());
+		assertCanCompile(expression);
+		assertEquals(2.25d, expression.getValue());
+
+		expression = parse("age^2");
+		assertEquals(9, expression.getValue(new PersonInOtherPackage(3)));
+		assertCanCompile(expression);
+		assertEquals(16, expression.getValue(new PersonInOtherPackage(4)));
+
+		expression = parse("new java.math.BigInteger('2')^3");
+		assertEquals("8", expression.getValue().toString());
+		assertCantCompile(expression);
+	}
+
+	@Test
+	public void assign() throws Exception {
+		StandardEvaluationContext ctx = new StandardEvaluationContext();
+		expression = parse("#x = 42");
+		assertEquals(42, expression.getValue(ctx));
+		assertCanCompile(expression);
+		ctx.setVariable("x", 0);
+		assertEquals(42, expression.getValue(ctx));
+		assertEquals(42, ctx.lookupVariable("x"));
+
+		expression = parse("#y = 'abc'.length()");
+		assertEquals(3, expression.getValue(ctx));
+		assertCanCompile(expression);
+		assertEquals(3, expression.getValue(ctx));
+		assertEquals(3, ctx.lookupVariable("y"));
+
+		ctx = new StandardEvaluationContext(new PersonInOtherPackage(42));
+		expression = parse("age = 50");
+		assertEquals(50, expression.getValue(ctx));
+		assertCantCompile(expression);
+	}
+
+	@Test
+	public void beanReference() throws Exception {
+		StandardEvaluationContext ctx = new StandardEvaluationContext();
+		ctx.setBeanResolver(new BeanResolver() {
+			@Override
+			public Object resolve(EvaluationContext context, String beanName) {
+				return "bean:" + beanName;
+			}
+		});
+		expression = parse("@foo");
+		assertEquals("bean:foo", expression.getValue(ctx));
+		assertCanCompile(expression);
+		assertEquals("bean:foo", expression.getValue(ctx));
+
+		expression = parse("@'foo.bar'.length()");
+		assertEquals(12, expression.getValue(ctx));
+		assertCanCompile(expression);
+		assertEquals(12, expression.getValue(ctx));
+	}
+
 
 	// helper methods
 
@@ -3659,6 +3929,23 @@ public class SpelCompilationCoverageTests extends AbstractExpressionTests {
 	}
 
 	@SuppressWarnings("serial")
+	public static class SelectionHolder {
+
+		public List<Integer> values;
+
+		public SelectionHolder() {
+			this(Arrays.asList(1, 2, 3, 4));
+		}
+
+		public SelectionHolder(List<Integer> values) {
+			this.values = values;
+		}
+
+		public int getThreshold() {
+			return 2;
+		}
+	}
+
 	public static class MessageHeaders extends HashMap<String,Object> {
 	}
 
@@ -19,11 +19,13 @@ package org.springframework.jdbc.core;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.lang.UsesJava8;
 
 /**
  * Interface specifying a basic set of JDBC operations.
@@ -542,6 +544,68 @@ public interface JdbcOperations {
 	 */
 	<T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) throws DataAccessException;
 
+	/**
+	 * Query using a prepared statement, mapping each row to a Java object
+	 * via a RowMapper, with the rows being fetched lazily as the returned
+	 * Stream is consumed.
+	 * <p>The returned Stream holds on to the open ResultSet, Statement and
+	 * Connection: it must be closed once fully processed, e.g. through a
+	 * try-with-resources clause. The configured fetch size is applied to
+	 * the underlying Statement.
+	 * @param psc object that can create a PreparedStatement given a Connection
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed
+	 * @throws DataAccessException if the query fails
+	 * @since 4.1.10
+	 * @see JdbcTemplate#setFetchSize
+	 */
+	@UsesJava8
+	<T> Stream<T> queryForStream(PreparedStatementCreator psc, RowMapper<T> rowMapper) throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a
+	 * PreparedStatementSetter implementation that knows how to bind values
+	 * to the query, mapping each row to a Java object via a RowMapper,
+	 * with the rows being fetched lazily as the returned Stream is consumed.
+	 * <p>The returned Stream holds on to the open ResultSet, Statement and
+	 * Connection: it must be closed once fully processed, e.g. through a
+	 * try-with-resources clause.
+	 * @param sql SQL query to execute
+	 * @param pss object that knows how to set values on the prepared statement.
+	 * If this is {@code null}, the SQL will be assumed to contain no bind parameters.
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed
+	 * @throws DataAccessException if the query fails
+	 * @since 4.1.10
+	 */
+	@UsesJava8
+	<T> Stream<T> queryForStream(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list
+	 * of arguments to bind to the query, mapping each row to a Java object
+	 * via a RowMapper, with the rows being fetched lazily as the returned
+	 * Stream is consumed.
+	 * <p>The returned Stream holds on to the open ResultSet, Statement and
+	 * Connection: it must be closed once fully processed, e.g. through a
+	 * try-with-resources clause.
+	 * @param sql SQL query to execute
+	 * @param rowMapper object that will map one object per row
+	 * @param args arguments to bind to the query
+	 * (leaving it to the PreparedStatement to guess the corresponding SQL type);
+	 * may also contain {@link SqlParameterValue} objects which indicate not
+	 * only the argument value but also the SQL type and optionally the scale
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed
+	 * @throws DataAccessException if the query fails
+	 * @since 4.1.10
+	 */
+	@UsesJava8
+	<T> Stream<T> queryForStream(String sql, RowMapper<T> rowMapper, Object... args) throws DataAccessException;
+
 	/**
 	 * Query given SQL to create a prepared statement from SQL and a list
 	 * of arguments to bind to the query, mapping a single result row to a
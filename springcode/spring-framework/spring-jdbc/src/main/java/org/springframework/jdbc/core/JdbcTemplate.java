@@ -35,6 +35,11 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.sql.DataSource;
 
 import org.springframework.dao.DataAccessException;
@@ -48,6 +53,7 @@ import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.lang.UsesJava8;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedCaseInsensitiveMap;
 import org.springframework.util.StringUtils;
@@ -792,6 +798,103 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		return query(sql, args, new RowMapperResultSetExtractor<T>(rowMapper));
 	}
 
+	/**
+	 * Query using a prepared statement, allowing for a PreparedStatementCreator
+	 * and a PreparedStatementSetter, mapping each row to a Java object via a
+	 * RowMapper, with the rows being fetched lazily as the returned Stream is
+	 * consumed. All other {@code queryForStream} methods delegate to this method.
+	 * <p>The Connection, PreparedStatement and ResultSet remain open until the
+	 * returned Stream gets closed, at which point they are released through
+	 * {@link DataSourceUtils}, participating in Spring-managed transactions.
+	 * @param psc Callback handler that can create a PreparedStatement given a
+	 * Connection
+	 * @param pss object that knows how to set values on the prepared statement.
+	 * If this is null, the SQL will be assumed to contain no bind parameters.
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed
+	 * @throws DataAccessException if there is any problem
+	 * @since 4.1.10
+	 */
+	@UsesJava8
+	public <T> Stream<T> queryForStream(PreparedStatementCreator psc, PreparedStatementSetter pss,
+			RowMapper<T> rowMapper) throws DataAccessException {
+
+		Assert.notNull(psc, "PreparedStatementCreator must not be null");
+		Assert.notNull(rowMapper, "RowMapper must not be null");
+		if (logger.isDebugEnabled()) {
+			String sql = getSql(psc);
+			logger.debug("Executing prepared SQL streaming query" + (sql != null ? " [" + sql + "]" : ""));
+		}
+
+		Connection con = DataSourceUtils.getConnection(getDataSource());
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			Connection conToUse = con;
+			if (this.nativeJdbcExtractor != null &&
+					this.nativeJdbcExtractor.isNativeConnectionNecessaryForNativePreparedStatements()) {
+				conToUse = this.nativeJdbcExtractor.getNativeConnection(con);
+			}
+			ps = psc.createPreparedStatement(conToUse);
+			applyStatementSettings(ps);
+			PreparedStatement psToUse = ps;
+			if (this.nativeJdbcExtractor != null) {
+				psToUse = this.nativeJdbcExtractor.getNativePreparedStatement(ps);
+			}
+			if (pss != null) {
+				pss.setValues(psToUse);
+			}
+			rs = psToUse.executeQuery();
+			ResultSet rsToUse = rs;
+			if (this.nativeJdbcExtractor != null) {
+				rsToUse = this.nativeJdbcExtractor.getNativeResultSet(rs);
+			}
+			StreamResourceCloser closer = new StreamResourceCloser(con, ps, rs, psc, pss);
+			Spliterator<T> spliterator = new ResultSetSpliterator<T>(rsToUse, rowMapper, getSql(psc));
+			return StreamSupport.stream(spliterator, false).onClose(closer);
+		}
+		catch (SQLException ex) {
+			// Release Connection early, to avoid potential connection pool deadlock
+			// in the case when the exception translator hasn't been initialized yet.
+			String sql = getSql(psc);
+			new StreamResourceCloser(con, ps, rs, psc, pss).releaseResources();
+			throw getExceptionTranslator().translate("StreamingQuery", sql, ex);
+		}
+		catch (RuntimeException ex) {
+			new StreamResourceCloser(con, ps, rs, psc, pss).releaseResources();
+			throw ex;
+		}
+		catch (Error err) {
+			new StreamResourceCloser(con, ps, rs, psc, pss).releaseResources();
+			throw err;
+		}
+	}
+
+	@Override
+	@UsesJava8
+	public <T> Stream<T> queryForStream(PreparedStatementCreator psc, RowMapper<T> rowMapper)
+			throws DataAccessException {
+
+		return queryForStream(psc, null, rowMapper);
+	}
+
+	@Override
+	@UsesJava8
+	public <T> Stream<T> queryForStream(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper)
+			throws DataAccessException {
+
+		return queryForStream(new SimplePreparedStatementCreator(sql), pss, rowMapper);
+	}
+
+	@Override
+	@UsesJava8
+	public <T> Stream<T> queryForStream(String sql, RowMapper<T> rowMapper, Object... args)
+			throws DataAccessException {
+
+		return queryForStream(sql, newArgPreparedStatementSetter(args), rowMapper);
+	}
+
 	@Override
 	public <T> T queryForObject(String sql, Object[] args, int[] argTypes, RowMapper<T> rowMapper)
 			throws DataAccessException {
@@ -1610,4 +1713,96 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		}
 	}
 
+	/**
+	 * Spliterator that advances through a ResultSet row by row,
+	 * mapping each row through the given RowMapper.
+	 */
+	@UsesJava8
+	private class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+		private final ResultSet rs;
+
+		private final RowMapper<T> rowMapper;
+
+		private final String sql;
+
+		private int rowNum = 0;
+
+		public ResultSetSpliterator(ResultSet rs, RowMapper<T> rowMapper, String sql) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED);
+			this.rs = rs;
+			this.rowMapper = rowMapper;
+			this.sql = sql;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			try {
+				if (this.rs.next()) {
+					action.accept(this.rowMapper.mapRow(this.rs, this.rowNum++));
+					return true;
+				}
+				return false;
+			}
+			catch (SQLException ex) {
+				throw getExceptionTranslator().translate("StreamingQuery", this.sql, ex);
+			}
+		}
+	}
+
+
+	/**
+	 * Close callback for a Stream returned from {@code queryForStream}, releasing
+	 * the ResultSet, PreparedStatement and Connection it holds on to.
+	 */
+	private class StreamResourceCloser implements Runnable {
+
+		private final Connection con;
+
+		private final PreparedStatement ps;
+
+		private final ResultSet rs;
+
+		private final PreparedStatementCreator psc;
+
+		private final PreparedStatementSetter pss;
+
+		public StreamResourceCloser(Connection con, PreparedStatement ps, ResultSet rs,
+				PreparedStatementCreator psc, PreparedStatementSetter pss) {
+
+			this.con = con;
+			this.ps = ps;
+			this.rs = rs;
+			this.psc = psc;
+			this.pss = pss;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (this.ps != null) {
+					handleWarnings(this.ps);
+				}
+			}
+			catch (SQLException ex) {
+				throw getExceptionTranslator().translate("StreamingQuery", getSql(this.psc), ex);
+			}
+			finally {
+				releaseResources();
+			}
+		}
+
+		public void releaseResources() {
+			JdbcUtils.closeResultSet(this.rs);
+			if (this.pss instanceof ParameterDisposer) {
+				((ParameterDisposer) this.pss).cleanupParameters();
+			}
+			if (this.psc instanceof ParameterDisposer) {
+				((ParameterDisposer) this.psc).cleanupParameters();
+			}
+			JdbcUtils.closeStatement(this.ps);
+			DataSourceUtils.releaseConnection(this.con, getDataSource());
+		}
+	}
+
 }
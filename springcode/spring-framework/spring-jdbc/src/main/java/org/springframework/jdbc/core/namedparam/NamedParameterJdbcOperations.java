@@ -18,6 +18,7 @@ package org.springframework.jdbc.core.namedparam;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcOperations;
@@ -27,6 +28,7 @@ import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.lang.UsesJava8;
 
 /**
  * Interface specifying a basic set of JDBC operations allowing the use
@@ -219,6 +221,48 @@ public interface NamedParameterJdbcOperations {
 	 */
 	<T> List<T> query(String sql, RowMapper<T> rowMapper) throws DataAccessException;
 
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list
+	 * of arguments to bind to the query, mapping each row to a Java object
+	 * via a RowMapper, with the rows being fetched lazily as the returned
+	 * Stream is consumed.
+	 * <p>The returned Stream holds on to the open ResultSet, Statement and
+	 * Connection: it must be closed once fully processed, e.g. through a
+	 * try-with-resources clause.
+	 * @param sql SQL query to execute
+	 * @param paramSource container of arguments to bind to the query
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed
+	 * @throws org.springframework.dao.DataAccessException if the query fails
+	 * @since 4.1.10
+	 * @see org.springframework.jdbc.core.JdbcOperations#queryForStream(org.springframework.jdbc.core.PreparedStatementCreator, RowMapper)
+	 */
+	@UsesJava8
+	<T> Stream<T> queryForStream(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper)
+			throws DataAccessException;
+
+	/**
+	 * Query given SQL to create a prepared statement from SQL and a list
+	 * of arguments to bind to the query, mapping each row to a Java object
+	 * via a RowMapper, with the rows being fetched lazily as the returned
+	 * Stream is consumed.
+	 * <p>The returned Stream holds on to the open ResultSet, Statement and
+	 * Connection: it must be closed once fully processed, e.g. through a
+	 * try-with-resources clause.
+	 * @param sql SQL query to execute
+	 * @param paramMap map of parameters to bind to the query
+	 * (leaving it to the PreparedStatement to guess the corresponding SQL type)
+	 * @param rowMapper object that will map one object per row
+	 * @return the result Stream, containing mapped objects, needing to be
+	 * closed once fully processed
+	 * @throws org.springframework.dao.DataAccessException if the query fails
+	 * @since 4.1.10
+	 */
+	@UsesJava8
+	<T> Stream<T> queryForStream(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper)
+			throws DataAccessException;
+
 	/**
 	 * Query given SQL to create a prepared statement from SQL and a list
 	 * of arguments to bind to the query, mapping a single result row to a
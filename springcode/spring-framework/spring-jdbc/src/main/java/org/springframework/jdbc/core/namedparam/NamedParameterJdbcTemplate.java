@@ -16,9 +16,9 @@
 
 package org.springframework.jdbc.core.namedparam;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import org.springframework.dao.DataAccessException;
@@ -37,7 +37,9 @@ import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.SqlRowSetResultSetExtractor;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.lang.UsesJava8;
 import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentLruCache;
 
 /**
  * Template class with a basic set of JDBC operations, allowing the use
@@ -72,14 +74,8 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 	private volatile int cacheLimit = DEFAULT_CACHE_LIMIT;
 
 	/** Cache of original SQL String to ParsedSql representation */
-	@SuppressWarnings("serial")
-	private final Map<String, ParsedSql> parsedSqlCache =
-			new LinkedHashMap<String, ParsedSql>(DEFAULT_CACHE_LIMIT, 0.75f, true) {
-				@Override
-				protected boolean removeEldestEntry(Map.Entry<String, ParsedSql> eldest) {
-					return size() > getCacheLimit();
-				}
-			};
+	private final ConcurrentLruCache<String, ParsedSql> parsedSqlCache =
+			new ConcurrentLruCache<String, ParsedSql>(DEFAULT_CACHE_LIMIT);
 
 
 	/**
@@ -118,6 +114,7 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 	 */
 	public void setCacheLimit(int cacheLimit) {
 		this.cacheLimit = cacheLimit;
+		this.parsedSqlCache.setSizeLimit(Math.max(cacheLimit, 0));
 	}
 
 	/**
@@ -127,6 +124,31 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 		return this.cacheLimit;
 	}
 
+	/**
+	 * Return the number of SQL cache lookups that found a parsed statement.
+	 * @since 4.1.10
+	 */
+	public long getCacheHitCount() {
+		return this.parsedSqlCache.getHitCount();
+	}
+
+	/**
+	 * Return the number of SQL cache lookups that had to parse the statement.
+	 * @since 4.1.10
+	 */
+	public long getCacheMissCount() {
+		return this.parsedSqlCache.getMissCount();
+	}
+
+	/**
+	 * Return the number of parsed statements evicted from the SQL cache
+	 * because of the {@link #setCacheLimit cache limit}.
+	 * @since 4.1.10
+	 */
+	public long getCacheEvictionCount() {
+		return this.parsedSqlCache.getEvictionCount();
+	}
+
 
 	@Override
 	public <T> T execute(String sql, SqlParameterSource paramSource, PreparedStatementCallback<T> action)
@@ -204,6 +226,22 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 		return query(sql, EmptySqlParameterSource.INSTANCE, rowMapper);
 	}
 
+	@Override
+	@UsesJava8
+	public <T> Stream<T> queryForStream(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper)
+			throws DataAccessException {
+
+		return getJdbcOperations().queryForStream(getPreparedStatementCreator(sql, paramSource), rowMapper);
+	}
+
+	@Override
+	@UsesJava8
+	public <T> Stream<T> queryForStream(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper)
+			throws DataAccessException {
+
+		return queryForStream(sql, new MapSqlParameterSource(paramMap), rowMapper);
+	}
+
 	@Override
 	public <T> T queryForObject(String sql, SqlParameterSource paramSource, RowMapper<T> rowMapper)
 			throws DataAccessException {
@@ -388,14 +426,12 @@ public class NamedParameterJdbcTemplate implements NamedParameterJdbcOperations
 		if (getCacheLimit() <= 0) {
 			return NamedParameterUtils.parseSqlStatement(sql);
 		}
-		synchronized (this.parsedSqlCache) {
-			ParsedSql parsedSql = this.parsedSqlCache.get(sql);
-			if (parsedSql == null) {
-				parsedSql = NamedParameterUtils.parseSqlStatement(sql);
-				this.parsedSqlCache.put(sql, parsedSql);
-			}
-			return parsedSql;
+		ParsedSql parsedSql = this.parsedSqlCache.get(sql);
+		if (parsedSql == null) {
+			parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+			this.parsedSqlCache.put(sql, parsedSql);
 		}
+		return parsedSql;
 	}
 
 }
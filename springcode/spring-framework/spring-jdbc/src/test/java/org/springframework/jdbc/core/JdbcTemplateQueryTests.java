@@ -26,6 +26,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import org.junit.Before;
@@ -34,6 +36,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
 
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
@@ -360,4 +364,58 @@ public class JdbcTemplateQueryTests {
 		verify(this.preparedStatement).close();
 	}
 
+	@Test
+	public void testQueryForStreamWithArgs() throws Exception {
+		String sql = "SELECT AGE FROM CUSTMR WHERE ID < ?";
+		given(this.resultSet.next()).willReturn(true, true, false);
+		given(this.resultSet.getInt(1)).willReturn(11, 12);
+		this.template.setFetchSize(100);
+		List<Integer> ages;
+		try (Stream<Integer> stream = this.template.queryForStream(sql, new SingleColumnRowMapper<Integer>(Integer.class), 3)) {
+			verify(this.resultSet, never()).next();
+			ages = stream.collect(Collectors.toList());
+			verify(this.resultSet, never()).close();
+			verify(this.connection, never()).close();
+		}
+		assertEquals(2, ages.size());
+		assertEquals(11, ages.get(0).intValue());
+		assertEquals(12, ages.get(1).intValue());
+		verify(this.preparedStatement).setFetchSize(100);
+		verify(this.preparedStatement).setObject(1, 3);
+		verify(this.resultSet).close();
+		verify(this.preparedStatement).close();
+		verify(this.connection).close();
+	}
+
+	@Test
+	public void testQueryForStreamReleasesResourcesOnlyOnce() throws Exception {
+		String sql = "SELECT AGE FROM CUSTMR";
+		given(this.resultSet.next()).willReturn(true, true, false);
+		given(this.resultSet.getInt(1)).willReturn(11, 12);
+		Stream<Integer> stream = this.template.queryForStream(sql, new SingleColumnRowMapper<Integer>(Integer.class));
+		assertEquals(Integer.valueOf(11), stream.findFirst().get());
+		stream.close();
+		stream.close();
+		verify(this.resultSet, times(1)).next();
+		verify(this.resultSet).close();
+		verify(this.preparedStatement).close();
+		verify(this.connection).close();
+	}
+
+	@Test
+	public void testQueryForStreamReleasesResourcesOnQueryFailure() throws Exception {
+		String sql = "SELECT AGE FROM CUSTMR";
+		given(this.preparedStatement.executeQuery()).willThrow(new SQLException("bad grammar", "42000"));
+		this.template.setExceptionTranslator(new SQLStateSQLExceptionTranslator());
+		try {
+			this.template.queryForStream(sql, new SingleColumnRowMapper<Integer>(Integer.class));
+			fail("Should have thrown BadSqlGrammarException");
+		}
+		catch (BadSqlGrammarException ex) {
+			assertEquals(sql, ex.getSql());
+		}
+		verify(this.preparedStatement).close();
+		verify(this.connection).close();
+	}
+
 }
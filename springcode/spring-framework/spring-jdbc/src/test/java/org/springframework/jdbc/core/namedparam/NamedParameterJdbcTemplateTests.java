@@ -27,6 +27,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import org.junit.Before;
@@ -107,6 +109,27 @@ public class NamedParameterJdbcTemplateTests {
 		new NamedParameterJdbcTemplate((JdbcOperations) null);
 	}
 
+	@Test
+	public void testParsedSqlCache() throws Exception {
+		namedParameterTemplate.setCacheLimit(1);
+		ParsedSql parsedSql = namedParameterTemplate.getParsedSql(SELECT_NAMED_PARAMETERS);
+		assertSame(parsedSql, namedParameterTemplate.getParsedSql(SELECT_NAMED_PARAMETERS));
+		assertEquals(1, namedParameterTemplate.getCacheHitCount());
+		assertEquals(1, namedParameterTemplate.getCacheMissCount());
+
+		namedParameterTemplate.getParsedSql(UPDATE_NAMED_PARAMETERS);
+		assertEquals(2, namedParameterTemplate.getCacheMissCount());
+		assertEquals(1, namedParameterTemplate.getCacheEvictionCount());
+	}
+
+	@Test
+	public void testParsedSqlCacheDisabled() throws Exception {
+		namedParameterTemplate.setCacheLimit(0);
+		ParsedSql parsedSql = namedParameterTemplate.getParsedSql(SELECT_NAMED_PARAMETERS);
+		assertNotSame(parsedSql, namedParameterTemplate.getParsedSql(SELECT_NAMED_PARAMETERS));
+		assertEquals(0, namedParameterTemplate.getCacheHitCount());
+	}
+
 	@Test1
 	public void testExecute() throws SQLException {
 		given(preparedStatement.executeUpdate()).willReturn(1);
@@ -316,6 +339,40 @@ public class NamedParameterJdbcTemplateTests {
 		verify(connection).close();
 	}
 
+	@Test
+	public void testQueryForStreamWithRowMapper() throws SQLException {
+		given(resultSet.next()).willReturn(true, true, false);
+		given(resultSet.getInt("id")).willReturn(1, 2);
+		given(resultSet.getString("forename")).willReturn("rod", "juergen");
+
+		params.put("id", new SqlParameterValue(Types.DECIMAL, 1));
+		params.put("country", "UK");
+		List<Customer> customers;
+		try (Stream<Customer> stream = namedParameterTemplate.queryForStream(SELECT_NAMED_PARAMETERS, params,
+				new RowMapper<Customer>() {
+					@Override
+					public Customer mapRow(ResultSet rs, int rownum) throws SQLException {
+						Customer cust = new Customer();
+						cust.setId(rs.getInt(COLUMN_NAMES[0]));
+						cust.setForename(rs.getString(COLUMN_NAMES[1]));
+						return cust;
+					}
+				})) {
+			customers = stream.collect(Collectors.toList());
+			verify(connection, never()).close();
+		}
+
+		assertEquals(2, customers.size());
+		assertEquals("rod", customers.get(0).getForename());
+		assertEquals("juergen", customers.get(1).getForename());
+		verify(connection).prepareStatement(SELECT_NAMED_PARAMETERS_PARSED);
+		verify(preparedStatement).setObject(1, 1, Types.DECIMAL);
+		verify(preparedStatement).setString(2, "UK");
+		verify(resultSet).close();
+		verify(preparedStatement).close();
+		verify(connection).close();
+	}
+
 	@Test1
 	public void testQueryWithRowMapperNoParameters() throws SQLException {
 		given(resultSet.next()).willReturn(true, false);
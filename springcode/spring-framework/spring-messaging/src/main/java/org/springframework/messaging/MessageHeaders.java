@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,12 +20,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
 
@@ -43,6 +47,11 @@ import org.springframework.util.IdGenerator;
  * {@link UnsupportedOperationException}.
  * <p>Subclasses do have access to the raw headers, however, via {@link #getRawHeaders()}.
  *
+ * <p>Since instances are immutable, headers created from another
+ * {@code MessageHeaders} instance share its header values and only hold the
+ * headers added, changed or removed on top of them. This keeps copying headers
+ * cheap, e.g. when a message is broadcast to many subscribers.
+ *
  * <p>One way to create message headers is to use the
  * {@link org.springframework.messaging.support.MessageBuilder MessageBuilder}:
  * <pre class="code">
@@ -117,7 +126,7 @@ public class MessageHeaders implements Map<String, Object>, Serializable {
 	 * @param timestamp the {@link #TIMESTAMP} header value
 	 */
 	protected MessageHeaders(Map<String, Object> headers, UUID id, Long timestamp) {
-		this.headers = (headers != null ? new HashMap<String, Object>(headers) : new HashMap<String, Object>());
+		this.headers = (headers != null ? copyHeaders(headers) : new HashMap<String, Object>());
 
 		if (id == null) {
 			this.headers.put(ID, getIdGenerator().generateId());
@@ -141,10 +150,36 @@ public class MessageHeaders implements Map<String, Object>, Serializable {
 	}
 
 
+	private static Map<String, Object> copyHeaders(Map<String, Object> headers) {
+		if (headers instanceof MessageHeaders) {
+			MessageHeaders other = (MessageHeaders) headers;
+			if (other.headers instanceof LayeredHeaderMap) {
+				// The shared layer never changes, even if the other headers are still mutable
+				return ((LayeredHeaderMap) other.headers).copy();
+			}
+			if (other.isImmutable()) {
+				return new LayeredHeaderMap(other.headers);
+			}
+		}
+		return new HashMap<String, Object>(headers);
+	}
+
 	protected Map<String, Object> getRawHeaders() {
 		return this.headers;
 	}
 
+	/**
+	 * Whether the {@link #getRawHeaders() raw headers} of this instance are
+	 * guaranteed not to change anymore, allowing headers created from this
+	 * instance to share them instead of copying them.
+	 * <p>This implementation returns {@code true} for plain {@code MessageHeaders}
+	 * and {@code false} for subclasses, which may modify their raw headers.
+	 * @since 4.1.10
+	 */
+	protected boolean isImmutable() {
+		return (getClass() == MessageHeaders.class);
+	}
+
 	protected static IdGenerator getIdGenerator() {
 		return (idGenerator != null ? idGenerator : defaultIdGenerator);
 	}
@@ -253,21 +288,23 @@ public class MessageHeaders implements Map<String, Object>, Serializable {
 	// Serialization methods
 
 	private void writeObject(ObjectOutputStream out) throws IOException {
+		// Never modify the headers themselves: they may be shared with other instances
+		Map<String, Object> serializableHeaders = new HashMap<String, Object>(this.headers.size());
 		List<String> keysToRemove = new ArrayList<String>();
 		for (Map.Entry<String, Object> entry : this.headers.entrySet()) {
-			if (!(entry.getValue() instanceof Serializable)) {
+			if (entry.getValue() instanceof Serializable) {
+				serializableHeaders.put(entry.getKey(), entry.getValue());
+			}
+			else {
 				keysToRemove.add(entry.getKey());
 			}
 		}
-		if (!keysToRemove.isEmpty()) {
-			if (logger.isDebugEnabled()) {
-				logger.debug("Removing non-serializable message headers: " + keysToRemove);
-			}
-			for (String key : keysToRemove) {
-				this.headers.remove(key);
-			}
+		if (!keysToRemove.isEmpty() && logger.isDebugEnabled()) {
+			logger.debug("Removing non-serializable message headers: " + keysToRemove);
 		}
-		out.defaultWriteObject();
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("headers", serializableHeaders);
+		out.writeFields();
 	}
 
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
@@ -293,4 +330,173 @@ public class MessageHeaders implements Map<String, Object>, Serializable {
 		return this.headers.toString();
 	}
 
+
+	/**
+	 * A map of headers on top of a shared map that is never modified. Changes are
+	 * kept in a separate, usually small, map of their own, with removed entries of
+	 * the shared map marked as such. Copies share the same underlying map, so the
+	 * depth is always one, and the headers are merged into a single map once the
+	 * changes outnumber the shared entries.
+	 */
+	@SuppressWarnings("serial")
+	private static class LayeredHeaderMap extends AbstractMap<String, Object> implements Serializable {
+
+		private static final Object REMOVED = new Object();
+
+		private final Map<String, Object> shared;
+
+		private final Map<String, Object> changes;
+
+		private int size;
+
+		public LayeredHeaderMap(Map<String, Object> shared) {
+			this(shared, new HashMap<String, Object>(8), shared.size());
+		}
+
+		private LayeredHeaderMap(Map<String, Object> shared, Map<String, Object> changes, int size) {
+			this.shared = shared;
+			this.changes = changes;
+			this.size = size;
+		}
+
+		/**
+		 * Return a copy of this map, sharing the same underlying map unless the
+		 * changes outnumber its entries, in which case a plain map is returned.
+		 */
+		public Map<String, Object> copy() {
+			if (this.changes.size() > Math.max(this.shared.size(), 8)) {
+				return new HashMap<String, Object>(this);
+			}
+			return new LayeredHeaderMap(this.shared, new HashMap<String, Object>(this.changes), this.size);
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			Object value = this.changes.get(key);
+			if (value != null || this.changes.containsKey(key)) {
+				return (value != REMOVED);
+			}
+			return this.shared.containsKey(key);
+		}
+
+		@Override
+		public Object get(Object key) {
+			Object value = this.changes.get(key);
+			if (value != null || this.changes.containsKey(key)) {
+				return (value != REMOVED ? value : null);
+			}
+			return this.shared.get(key);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			boolean existing = containsKey(key);
+			Object previous = get(key);
+			this.changes.put(key, value);
+			if (!existing) {
+				this.size++;
+			}
+			return previous;
+		}
+
+		@Override
+		public Object remove(Object key) {
+			if (!containsKey(key)) {
+				return null;
+			}
+			Object previous = get(key);
+			if (this.shared.containsKey(key)) {
+				this.changes.put((String) key, REMOVED);
+			}
+			else {
+				this.changes.remove(key);
+			}
+			this.size--;
+			return previous;
+		}
+
+		@Override
+		public void clear() {
+			this.changes.clear();
+			for (String key : this.shared.keySet()) {
+				this.changes.put(key, REMOVED);
+			}
+			this.size = 0;
+		}
+
+		@Override
+		public Set<Map.Entry<String, Object>> entrySet() {
+			return new AbstractSet<Map.Entry<String, Object>>() {
+				@Override
+				public Iterator<Map.Entry<String, Object>> iterator() {
+					return new LayeredIterator();
+				}
+				@Override
+				public int size() {
+					return LayeredHeaderMap.this.size;
+				}
+			};
+		}
+
+		private Object writeReplace() {
+			return new HashMap<String, Object>(this);
+		}
+
+
+		/**
+		 * Iterates over the changed entries first, then over the unchanged
+		 * entries of the shared map.
+		 */
+		private class LayeredIterator implements Iterator<Map.Entry<String, Object>> {
+
+			private final Iterator<Map.Entry<String, Object>> changesIterator = changes.entrySet().iterator();
+
+			private final Iterator<Map.Entry<String, Object>> sharedIterator = shared.entrySet().iterator();
+
+			private Map.Entry<String, Object> next;
+
+			@Override
+			public boolean hasNext() {
+				while (this.next == null) {
+					if (this.changesIterator.hasNext()) {
+						Map.Entry<String, Object> entry = this.changesIterator.next();
+						if (entry.getValue() != REMOVED) {
+							this.next = entry;
+						}
+					}
+					else if (this.sharedIterator.hasNext()) {
+						Map.Entry<String, Object> entry = this.sharedIterator.next();
+						if (!changes.containsKey(entry.getKey())) {
+							this.next = entry;
+						}
+					}
+					else {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public Map.Entry<String, Object> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Map.Entry<String, Object> entry = this.next;
+				this.next = null;
+				return new AbstractMap.SimpleImmutableEntry<String, Object>(entry);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -44,6 +44,7 @@ import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentLruCache;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.ReflectionUtils;
@@ -85,6 +86,8 @@ public abstract class AbstractMethodMessageHandler<T>
 	private final Map<Class<?>, AbstractExceptionHandlerMethodResolver> exceptionHandlerCache =
 			new ConcurrentHashMap<Class<?>, AbstractExceptionHandlerMethodResolver>(64);
 
+	private final ConcurrentLruCache<Object, Match> matchCache = new ConcurrentLruCache<Object, Match>(1024);
+
 
 	/**
 	 * When this property is configured only messages to destinations matching
@@ -183,6 +186,43 @@ public abstract class AbstractMethodMessageHandler<T>
 		return this.returnValueHandlers.getReturnValueHandlers();
 	}
 
+	/**
+	 * Configure the maximum number of resolved handler method matches to cache,
+	 * avoiding matching every registered mapping against messages to destinations
+	 * that have been seen before. Only applies to messages for which
+	 * {@link #getMatchCacheKey} returns a key.
+	 * <p>By default this is set to 1024. Set it to 0 to disable caching.
+	 * @since 4.1.10
+	 */
+	public void setMatchCacheLimit(int matchCacheLimit) {
+		this.matchCache.setSizeLimit(matchCacheLimit);
+	}
+
+	/**
+	 * Return the configured maximum number of cached handler method matches.
+	 * @since 4.1.10
+	 */
+	public int getMatchCacheLimit() {
+		return this.matchCache.getSizeLimit();
+	}
+
+	/**
+	 * Return the number of messages for which a cached handler method match was used.
+	 * @since 4.1.10
+	 */
+	public long getMatchCacheHitCount() {
+		return this.matchCache.getHitCount();
+	}
+
+	/**
+	 * Return the number of messages for which no cached handler method match
+	 * was found, including messages without any matching handler method.
+	 * @since 4.1.10
+	 */
+	public long getMatchCacheMissCount() {
+		return this.matchCache.getMissCount();
+	}
+
 	/**
 	 * Return a map with all handler methods and their mappings.
 	 */
@@ -298,6 +338,8 @@ public abstract class AbstractMethodMessageHandler<T>
 		for (String pattern : getDirectLookupDestinations(mapping)) {
 			this.destinationLookup.add(pattern, mapping);
 		}
+
+		this.matchCache.clear();
 	}
 
 	/**
@@ -372,6 +414,15 @@ public abstract class AbstractMethodMessageHandler<T>
 	}
 
 	protected void handleMessageInternal(Message<?> message, String lookupDestination) {
+		Object cacheKey = (this.matchCache.getSizeLimit() > 0 ? getMatchCacheKey(lookupDestination, message) : null);
+		if (cacheKey != null) {
+			Match cachedMatch = this.matchCache.get(cacheKey);
+			if (cachedMatch != null) {
+				handleMatch(cachedMatch.mapping, cachedMatch.handlerMethod, lookupDestination, message);
+				return;
+			}
+		}
+
 		List<Match> matches = new ArrayList<Match>();
 
 		List<T> mappingsByUrl = this.destinationLookup.get(lookupDestination);
@@ -405,6 +456,9 @@ public abstract class AbstractMethodMessageHandler<T>
 			}
 		}
 
+		if (cacheKey != null) {
+			this.matchCache.put(cacheKey, bestMatch);
+		}
 		handleMatch(bestMatch.mapping, bestMatch.handlerMethod, lookupDestination, message);
 	}
 
@@ -427,6 +481,21 @@ public abstract class AbstractMethodMessageHandler<T>
 	 */
 	protected abstract T getMatchingMapping(T mapping, Message<?> message);
 
+	/**
+	 * Return a key under which the best handler method match for the given message
+	 * may be cached and reused for subsequent messages with an equal key.
+	 * <p>The key must reflect everything {@link #getMatchingMapping} and
+	 * {@link #getMappingComparator} take into account for the given message.
+	 * The default implementation returns {@code null}, i.e. matches are not cached.
+	 * @param lookupDestination the destination used for mapping purposes
+	 * @param message the message being handled
+	 * @return the cache key, or {@code null} if the match should not be cached
+	 * @since 4.1.10
+	 */
+	protected Object getMatchCacheKey(String lookupDestination, Message<?> message) {
+		return null;
+	}
+
 	/**
 	 * Return a comparator for sorting matching mappings.
 	 * The returned comparator should sort 'better' matches higher.
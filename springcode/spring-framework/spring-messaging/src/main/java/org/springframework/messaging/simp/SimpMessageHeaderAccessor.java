@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.messaging.simp;
 
 import java.security.Principal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -55,6 +56,8 @@ public class SimpMessageHeaderAccessor extends NativeMessageHeaderAccessor {
 
 	public static final String DESTINATION_HEADER = "simpDestination";
 
+	public static final String HEART_BEAT_HEADER = "simpHeartbeat";
+
 	public static final String MESSAGE_TYPE_HEADER = "simpMessageType";
 
 	public static final String SESSION_ID_HEADER = "simpSessionId";
@@ -74,6 +77,15 @@ public class SimpMessageHeaderAccessor extends NativeMessageHeaderAccessor {
 	 */
 	public static final String ORIGINAL_DESTINATION = "simpOrigDestination";
 
+	/**
+	 * For internal use.
+	 * <p>The names of the users to send a message with a user destination without
+	 * a user name to, resolving the destination for all of them at once.
+	 * @since 4.1.10
+	 * @see SimpMessagingTemplate#convertAndSendToUsers(Collection, String, Object)
+	 */
+	public static final String TARGET_USERS_HEADER = "simpTargetUsers";
+
 
 	/**
 	 * A constructor for creating new message headers.
@@ -262,4 +274,26 @@ public class SimpMessageHeaderAccessor extends NativeMessageHeaderAccessor {
 		return (Principal) headers.get(USER_HEADER);
 	}
 
+	/**
+	 * Return the heartbeat intervals negotiable by the sender of a CONNECT message,
+	 * or by the broker in a CONNECT_ACK message, i.e. the interval at which the
+	 * sender can send heartbeats and the interval at which it would like to receive
+	 * heartbeats, in milliseconds.
+	 * @return the heartbeat intervals, or {@code null} if none
+	 * @since 4.1.10
+	 */
+	public static long[] getHeartbeat(Map<String, Object> headers) {
+		return (long[]) headers.get(HEART_BEAT_HEADER);
+	}
+
+	/**
+	 * Return the names of the users a message with a user destination is sent to.
+	 * @return the user names, or {@code null} if none
+	 * @since 4.1.10
+	 */
+	@SuppressWarnings("unchecked")
+	public static Collection<String> getTargetUsers(Map<String, Object> headers) {
+		return (Collection<String>) headers.get(TARGET_USERS_HEADER);
+	}
+
 }
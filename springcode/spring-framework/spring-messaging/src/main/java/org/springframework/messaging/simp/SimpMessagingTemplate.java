@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.messaging.simp;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Map;
 
 import org.springframework.messaging.Message;
@@ -224,6 +226,55 @@ public class SimpMessagingTemplate extends AbstractMessageSendingTemplate<String
 		super.convertAndSend(this.destinationPrefix + user + destination, payload, headers, postProcessor);
 	}
 
+	/**
+	 * Send a message to the given users, converting the payload only once.
+	 * <p>Rather than a message per user, a single message to the user destination
+	 * without a user name, e.g. "/user/queue/position-updates", is sent with the
+	 * user names in a header. The
+	 * {@link org.springframework.messaging.simp.user.DefaultUserDestinationResolver
+	 * DefaultUserDestinationResolver} then resolves the destinations of all their
+	 * sessions in a single pass.
+	 * @param users the names of the users to send the message to
+	 * @param destination the user destination, e.g. "/queue/position-updates"
+	 * @param payload the payload to send
+	 * @since 4.1.10
+	 */
+	public void convertAndSendToUsers(Collection<String> users, String destination, Object payload)
+			throws MessagingException {
+
+		convertAndSendToUsers(users, destination, payload, null);
+	}
+
+	/**
+	 * Variant of {@link #convertAndSendToUsers(Collection, String, Object)} with
+	 * headers to send along with the message.
+	 * @param users the names of the users to send the message to
+	 * @param destination the user destination, e.g. "/queue/position-updates"
+	 * @param payload the payload to send
+	 * @param headers the headers to send, may be {@code null}
+	 * @since 4.1.10
+	 */
+	public void convertAndSendToUsers(Collection<String> users, String destination, Object payload,
+			Map<String, Object> headers) throws MessagingException {
+
+		Assert.notNull(users, "Users must not be null");
+		Assert.notNull(destination, "Destination must not be null");
+		if (users.isEmpty()) {
+			return;
+		}
+		Message<?> message = doConvert(payload, headers, null);
+		SimpMessageHeaderAccessor simpAccessor =
+				MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+		if (simpAccessor == null || !simpAccessor.isMutable()) {
+			simpAccessor = SimpMessageHeaderAccessor.wrap(message);
+			simpAccessor.setLeaveMutable(true);
+			message = MessageBuilder.createMessage(message.getPayload(), simpAccessor.getMessageHeaders());
+		}
+		simpAccessor.setHeader(SimpMessageHeaderAccessor.TARGET_USERS_HEADER, new LinkedHashSet<String>(users));
+		String prefix = this.destinationPrefix.substring(0, this.destinationPrefix.length() - 1);
+		send(prefix + (destination.startsWith("/") ? destination : "/" + destination), message);
+	}
+
 
 	/**
 	 * Creates a new map and puts the given headers under the key
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -56,6 +56,7 @@ import org.springframework.messaging.simp.SimpAttributesContextHolder;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageMappingInfo;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessageTypeMessageCondition;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
@@ -427,6 +428,18 @@ public class SimpAnnotationMethodMessageHandler extends AbstractMethodMessageHan
 
 	}
 
+	/**
+	 * Mappings created by this class match on the message type and destination
+	 * only, so matches are cached by both of these.
+	 * <p>Subclasses that map to additional, custom conditions should override
+	 * this method accordingly, or return {@code null} to not cache matches.
+	 */
+	@Override
+	protected Object getMatchCacheKey(String lookupDestination, Message<?> message) {
+		SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+		return (messageType != null ? messageType.name() + ':' + lookupDestination : null);
+	}
+
 	@Override
 	protected Comparator<SimpMessageMappingInfo> getMappingComparator(final Message<?> message) {
 		return new Comparator<SimpMessageMappingInfo>() {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,20 +16,26 @@
 
 package org.springframework.messaging.simp.broker;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.springframework.messaging.Message;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentLruCache;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.PathMatcher;
@@ -37,6 +43,28 @@ import org.springframework.util.PathMatcher;
 /**
  * A default, simple in-memory implementation of {@link SubscriptionRegistry}.
  *
+ * <p>Subscriptions are indexed by destination, so that the cost of a lookup
+ * depends on the number of matching subscriptions rather than on the total
+ * number of subscriptions: subscriptions to plain destinations are held in a
+ * hash map, whereas subscriptions to destination patterns are held in a trie
+ * keyed by the segments of the literal prefix of each pattern (the part before
+ * the first wildcard), with both "/" and "." treated as segment separators.
+ * A lookup only visits the patterns along the path of the given destination
+ * and confirms them via the configured {@link PathMatcher}, remembering the
+ * matching patterns per destination in a bounded cache.
+ *
+ * <p>Lookups do not lock, while registrations and removals lock on a stripe
+ * for their destination only. The map returned from a lookup may reflect
+ * subsequent changes to the subscriptions but is safe to iterate.
+ *
+ * <p>As required by the STOMP protocol, a subscription id identifies a single
+ * subscription within a session: registering a subscription with the id of an
+ * existing subscription of the same session replaces that subscription.
+ *
+ * <p>The literal prefix and plain destination shortcuts are applied for an
+ * {@link AntPathMatcher} only; any other {@code PathMatcher} is consulted for
+ * every pattern and every subscribed destination.
+ *
  * @author Rossen Stoyanchev
  * @author Sebastien Deleuze
  * @author Juergen Hoeller
@@ -47,37 +75,44 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 	/** Default maximum number of entries for the destination cache: 1024 */
 	public static final int DEFAULT_CACHE_LIMIT = 1024;
 
+	private static final MultiValueMap<String, String> NO_SUBSCRIPTIONS =
+			CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<String, String>(0));
 
-	/** The maximum number of entries in the cache */
-	private volatile int cacheLimit = DEFAULT_CACHE_LIMIT;
 
 	private PathMatcher pathMatcher = new AntPathMatcher();
 
-	private final DestinationCache destinationCache = new DestinationCache();
+	private final SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
 
 	private final SessionSubscriptionRegistry subscriptionRegistry = new SessionSubscriptionRegistry();
 
+	/** Sequence for the registration order of subscriptions across destinations */
+	private final AtomicLong subscriptionSequence = new AtomicLong();
+
 
 	/**
 	 * Specify the maximum number of entries for the resolved destination cache.
 	 * Default is 1024.
 	 */
 	public void setCacheLimit(int cacheLimit) {
-		this.cacheLimit = cacheLimit;
+		this.subscriptionIndex.patternMatchCache.setSizeLimit(cacheLimit);
 	}
 
 	/**
 	 * Return the maximum number of entries for the resolved destination cache.
 	 */
 	public int getCacheLimit() {
-		return this.cacheLimit;
+		return this.subscriptionIndex.patternMatchCache.getSizeLimit();
 	}
 
 	/**
 	 * Specify the {@link PathMatcher} to use.
+	 * <p>Subscriptions are indexed according to the {@code PathMatcher} in use
+	 * at the time of their registration, so this should be set before any
+	 * subscriptions are registered.
 	 */
 	public void setPathMatcher(PathMatcher pathMatcher) {
 		this.pathMatcher = pathMatcher;
+		this.subscriptionIndex.patternMatchCache.clear();
 	}
 
 	/**
@@ -90,17 +125,22 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 
 	@Override
 	protected void addSubscriptionInternal(String sessionId, String subsId, String destination, Message<?> message) {
-		this.subscriptionRegistry.addSubscription(sessionId, subsId, destination);
-		this.destinationCache.updateAfterNewSubscription(destination, sessionId, subsId);
+		SessionSubscriptionInfo info = this.subscriptionRegistry.getOrCreateSubscriptions(sessionId);
+		Subscription previous = info.addSubscription(
+				subsId, new Subscription(destination, this.subscriptionSequence.incrementAndGet()));
+		if (previous != null) {
+			this.subscriptionIndex.removeSubscription(previous.getDestination(), sessionId, subsId);
+		}
+		this.subscriptionIndex.addSubscription(destination, sessionId, subsId);
 	}
 
 	@Override
 	protected void removeSubscriptionInternal(String sessionId, String subsId, Message<?> message) {
 		SessionSubscriptionInfo info = this.subscriptionRegistry.getSubscriptions(sessionId);
 		if (info != null) {
-			String destination = info.removeSubscription(subsId);
-			if (destination != null) {
-				this.destinationCache.updateAfterRemovedSubscription(sessionId, subsId);
+			Subscription subscription = info.removeSubscription(subsId);
+			if (subscription != null) {
+				this.subscriptionIndex.removeSubscription(subscription.getDestination(), sessionId, subsId);
 			}
 		}
 	}
@@ -109,144 +149,492 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 	public void unregisterAllSubscriptions(String sessionId) {
 		SessionSubscriptionInfo info = this.subscriptionRegistry.removeSubscriptions(sessionId);
 		if (info != null) {
-			this.destinationCache.updateAfterRemovedSession(info);
+			for (Map.Entry<String, Subscription> entry : info.getSubscriptions().entrySet()) {
+				this.subscriptionIndex.removeSubscription(entry.getValue().getDestination(), sessionId, entry.getKey());
+			}
 		}
 	}
 
 	@Override
 	protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
-		return this.destinationCache.getSubscriptions(destination, message);
+		return this.subscriptionIndex.findSubscriptions(destination);
 	}
 
 	@Override
 	public String toString() {
-		return "DefaultSubscriptionRegistry[" + this.destinationCache + ", " + this.subscriptionRegistry + "]";
+		return "DefaultSubscriptionRegistry[" + this.subscriptionIndex + ", " + this.subscriptionRegistry + "]";
 	}
 
 
 	/**
-	 * A cache for destinations previously resolved via
-	 * {@link DefaultSubscriptionRegistry#findSubscriptionsInternal(String, Message)}
+	 * Whether the PathMatcher is a plain AntPathMatcher, whose matching rules
+	 * the destination map and the pattern trie rely on. A subclass may override
+	 * {@code match} or {@code isPattern} and is therefore consulted for every
+	 * subscription instead.
 	 */
-	private class DestinationCache {
-
-		/** Map from destination -> <sessionId, subscriptionId> for fast look-ups */
-		private final Map<String, MultiValueMap<String, String>> accessCache =
-				new ConcurrentHashMap<String, MultiValueMap<String, String>>(DEFAULT_CACHE_LIMIT);
-
-		/** Map from destination -> <sessionId, subscriptionId> with locking */
-		@SuppressWarnings("serial")
-		private final Map<String, MultiValueMap<String, String>> updateCache =
-				new LinkedHashMap<String, MultiValueMap<String, String>>(DEFAULT_CACHE_LIMIT, 0.75f, true) {
-					@Override
-					protected boolean removeEldestEntry(Map.Entry<String, MultiValueMap<String, String>> eldest) {
-						if (size() > getCacheLimit()) {
-							accessCache.remove(eldest.getKey());
-							return true;
-						}
-						else {
-							return false;
-						}
+	private boolean isAntPathMatcher() {
+		return (this.pathMatcher.getClass() == AntPathMatcher.class);
+	}
+
+	/**
+	 * Whether the given destination, or destination prefix, can be compared
+	 * literally: that is, it contains neither empty segments nor whitespace,
+	 * both of which an {@link AntPathMatcher} ignores when matching.
+	 */
+	private static boolean isNormalized(String destination) {
+		char previous = 0;
+		for (int i = 0; i < destination.length(); i++) {
+			char c = destination.charAt(i);
+			if (Character.isWhitespace(c) || (isSeparator(c) && isSeparator(previous))) {
+				return false;
+			}
+			previous = c;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the index of the first {@link AntPathMatcher} wildcard or URI
+	 * template variable in the given destination, or -1 if none.
+	 */
+	private static int getWildcardIndex(String destination) {
+		for (int i = 0; i < destination.length(); i++) {
+			char c = destination.charAt(i);
+			if (c == '*' || c == '?' || c == '{') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isSeparator(char c) {
+		return (c == '/' || c == '.');
+	}
+
+	/**
+	 * Return the end index (exclusive) of the segment starting at the given
+	 * offset, including its trailing separator, if any.
+	 */
+	private static int getSegmentEnd(String destination, int offset) {
+		for (int i = offset; i < destination.length(); i++) {
+			if (isSeparator(destination.charAt(i))) {
+				return i + 1;
+			}
+		}
+		return destination.length();
+	}
+
+
+	/**
+	 * Index of subscriptions by plain destination and by destination pattern.
+	 */
+	private class SubscriptionIndex {
+
+		/** Map from plain destination -> subscriptions */
+		private final ConcurrentMap<String, DestinationSubscriptions> destinations =
+				new ConcurrentHashMap<String, DestinationSubscriptions>();
+
+		/** Trie of destination patterns by literal prefix segments */
+		private final PatternNode patterns = new PatternNode();
+
+		/** Read lock for adding trie nodes, write lock for pruning them */
+		private final ReadWriteLock patternLock = new ReentrantReadWriteLock();
+
+		private final Object[] stripes = new Object[32];
+
+		private final AtomicInteger patternCount = new AtomicInteger();
+
+		/** Incremented whenever a pattern is added to or removed from the trie */
+		private final AtomicLong patternVersion = new AtomicLong();
+
+		/** Map from destination -> patterns matching it */
+		private final ConcurrentLruCache<String, PatternMatches> patternMatchCache =
+				new ConcurrentLruCache<String, PatternMatches>(DEFAULT_CACHE_LIMIT);
+
+		public SubscriptionIndex() {
+			for (int i = 0; i < this.stripes.length; i++) {
+				this.stripes[i] = new Object();
+			}
+		}
+
+		public void addSubscription(String destination, String sessionId, String subsId) {
+			synchronized (getStripe(destination)) {
+				DestinationSubscriptions subscriptions;
+				if (isPlainDestination(destination)) {
+					subscriptions = this.destinations.get(destination);
+					if (subscriptions == null) {
+						subscriptions = new DestinationSubscriptions(destination, null);
+						this.destinations.put(destination, subscriptions);
 					}
-				};
-
-
-		public MultiValueMap<String, String> getSubscriptions(String destination, Message<?> message) {
-			MultiValueMap<String, String> result = this.accessCache.get(destination);
-			if (result == null) {
-				synchronized (this.updateCache) {
-					result = new LinkedMultiValueMap<String, String>();
-					for (SessionSubscriptionInfo info : subscriptionRegistry.getAllSubscriptions()) {
-						for (String destinationPattern : info.getDestinations()) {
-							if (getPathMatcher().match(destinationPattern, destination)) {
-								for (String subscriptionId : info.getSubscriptions(destinationPattern)) {
-									result.add(info.sessionId, subscriptionId);
-								}
-							}
+				}
+				else {
+					subscriptions = getOrCreatePatternSubscriptions(destination);
+				}
+				subscriptions.addSubscription(sessionId, subsId);
+			}
+		}
+
+		public void removeSubscription(String destination, String sessionId, String subsId) {
+			synchronized (getStripe(destination)) {
+				if (isPlainDestination(destination)) {
+					DestinationSubscriptions subscriptions = this.destinations.get(destination);
+					if (subscriptions != null && subscriptions.removeSubscription(sessionId, subsId) &&
+							subscriptions.isEmpty()) {
+						this.destinations.remove(destination);
+					}
+				}
+				else {
+					List<PatternNode> path = getPatternPath(destination, false);
+					if (path != null) {
+						PatternNode node = path.get(path.size() - 1);
+						DestinationSubscriptions subscriptions = node.subscriptions.get(destination);
+						if (subscriptions != null && subscriptions.removeSubscription(sessionId, subsId) &&
+								subscriptions.isEmpty()) {
+							node.subscriptions.remove(destination);
+							this.patternCount.decrementAndGet();
+							this.patternVersion.incrementAndGet();
+							prunePatternPath(path);
 						}
 					}
-					if (!result.isEmpty()) {
-						this.updateCache.put(destination, deepCopy(result));
-						this.accessCache.put(destination, result);
+				}
+			}
+		}
+
+		public MultiValueMap<String, String> findSubscriptions(String destination) {
+			List<DestinationSubscriptions> matches = new ArrayList<DestinationSubscriptions>(4);
+			if (isAntPathMatcher() && isNormalized(destination)) {
+				DestinationSubscriptions subscriptions = this.destinations.get(destination);
+				if (subscriptions != null) {
+					matches.add(subscriptions);
+				}
+				Collections.addAll(matches, getPatternMatches(destination));
+			}
+			else {
+				for (DestinationSubscriptions subscriptions : this.destinations.values()) {
+					if (getPathMatcher().match(subscriptions.getDestination(), destination)) {
+						matches.add(subscriptions);
 					}
 				}
+				collectAllPatternMatches(this.patterns, destination, matches);
 			}
-			return result;
+			return mergeSubscriptions(matches);
+		}
+
+		/**
+		 * Whether the given subscribed destination is held in the plain destination
+		 * map rather than in the pattern trie: this is the case for a destination
+		 * without wildcards which an {@code AntPathMatcher} only matches literally.
+		 */
+		private boolean isPlainDestination(String destination) {
+			return (isAntPathMatcher() && getWildcardIndex(destination) == -1 && isNormalized(destination));
+		}
+
+		private Object getStripe(String destination) {
+			int hash = destination.hashCode();
+			hash ^= (hash >>> 16);
+			return this.stripes[hash & (this.stripes.length - 1)];
+		}
+
+		/**
+		 * Return the literal prefix of the given pattern by which it is placed
+		 * in the trie, or an empty String to place it at the root.
+		 */
+		private String getLiteralPrefix(String pattern) {
+			if (!isAntPathMatcher()) {
+				return "";
+			}
+			int wildcardIndex = getWildcardIndex(pattern);
+			String prefix = (wildcardIndex != -1 ? pattern.substring(0, wildcardIndex) : pattern);
+			return (isNormalized(prefix) ? prefix : "");
 		}
 
-		public void updateAfterNewSubscription(String destination, String sessionId, String subsId) {
-			synchronized (this.updateCache) {
-				for (Map.Entry<String, MultiValueMap<String, String>> entry : this.updateCache.entrySet()) {
-					String cachedDestination = entry.getKey();
-					if (getPathMatcher().match(destination, cachedDestination)) {
-						MultiValueMap<String, String> subs = entry.getValue();
-						subs.add(sessionId, subsId);
-						this.accessCache.put(cachedDestination, deepCopy(subs));
+		/**
+		 * Return the trie nodes along the literal prefix of the given pattern,
+		 * starting with the root node.
+		 * @param create whether to create missing nodes
+		 * @return the nodes, or {@code null} if not created and missing
+		 */
+		private List<PatternNode> getPatternPath(String pattern, boolean create) {
+			String prefix = getLiteralPrefix(pattern);
+			List<PatternNode> path = new ArrayList<PatternNode>();
+			PatternNode node = this.patterns;
+			path.add(node);
+			int offset = 0;
+			int end;
+			while ((end = getSegmentEnd(prefix, offset)) > offset && isSeparator(prefix.charAt(end - 1))) {
+				String segment = prefix.substring(offset, end);
+				PatternNode child = node.children.get(segment);
+				if (child == null) {
+					if (!create) {
+						return null;
+					}
+					child = new PatternNode();
+					PatternNode existing = node.children.putIfAbsent(segment, child);
+					if (existing != null) {
+						child = existing;
 					}
 				}
+				node = child;
+				path.add(node);
+				offset = end;
 			}
+			return path;
 		}
 
-		public void updateAfterRemovedSubscription(String sessionId, String subsId) {
-			synchronized (this.updateCache) {
-				Set<String> destinationsToRemove = new HashSet<String>();
-				for (Map.Entry<String, MultiValueMap<String, String>> entry : this.updateCache.entrySet()) {
-					String destination = entry.getKey();
-					MultiValueMap<String, String> sessionMap = entry.getValue();
-					List<String> subscriptions = sessionMap.get(sessionId);
-					if (subscriptions != null) {
-						subscriptions.remove(subsId);
-						if (subscriptions.isEmpty()) {
-							sessionMap.remove(sessionId);
-						}
-						if (sessionMap.isEmpty()) {
-							destinationsToRemove.add(destination);
-						}
-						else {
-							this.accessCache.put(destination, deepCopy(sessionMap));
+		private DestinationSubscriptions getOrCreatePatternSubscriptions(String pattern) {
+			this.patternLock.readLock().lock();
+			try {
+				List<PatternNode> path = getPatternPath(pattern, true);
+				PatternNode node = path.get(path.size() - 1);
+				DestinationSubscriptions subscriptions = node.subscriptions.get(pattern);
+				if (subscriptions == null) {
+					String prefix = getLiteralPrefix(pattern);
+					int tailStart = prefix.length();
+					while (tailStart > 0 && !isSeparator(prefix.charAt(tailStart - 1))) {
+						tailStart--;
+					}
+					subscriptions = new DestinationSubscriptions(pattern, prefix.substring(tailStart));
+					node.subscriptions.put(pattern, subscriptions);
+					this.patternCount.incrementAndGet();
+					this.patternVersion.incrementAndGet();
+				}
+				return subscriptions;
+			}
+			finally {
+				this.patternLock.readLock().unlock();
+			}
+		}
+
+		private void prunePatternPath(List<PatternNode> path) {
+			this.patternLock.writeLock().lock();
+			try {
+				for (int i = path.size() - 1; i > 0; i--) {
+					PatternNode node = path.get(i);
+					if (!node.isEmpty()) {
+						return;
+					}
+					PatternNode parent = path.get(i - 1);
+					for (Map.Entry<String, PatternNode> entry : parent.children.entrySet()) {
+						if (entry.getValue() == node) {
+							parent.children.remove(entry.getKey(), node);
+							break;
 						}
 					}
 				}
-				for (String destination : destinationsToRemove) {
-					this.updateCache.remove(destination);
-					this.accessCache.remove(destination);
+			}
+			finally {
+				this.patternLock.writeLock().unlock();
+			}
+		}
+
+		private DestinationSubscriptions[] getPatternMatches(String destination) {
+			long version = this.patternVersion.get();
+			PatternMatches cached = this.patternMatchCache.get(destination);
+			if (cached != null && cached.version == version) {
+				return cached.matches;
+			}
+			List<DestinationSubscriptions> matches = new ArrayList<DestinationSubscriptions>(2);
+			PatternNode node = this.patterns;
+			int offset = 0;
+			while (node != null) {
+				addPatternMatches(node, destination, offset, matches);
+				if (offset == destination.length()) {
+					break;
+				}
+				int end = getSegmentEnd(destination, offset);
+				String segment = destination.substring(offset, end);
+				if (end == destination.length() && !isSeparator(destination.charAt(end - 1))) {
+					// Patterns such as "/topic/**" may match "/topic" without a trailing segment
+					addPatternMatches(node.children.get(segment + '/'), destination, end, matches);
+					addPatternMatches(node.children.get(segment + '.'), destination, end, matches);
 				}
+				node = node.children.get(segment);
+				offset = end;
 			}
+			DestinationSubscriptions[] result = matches.toArray(new DestinationSubscriptions[matches.size()]);
+			this.patternMatchCache.put(destination, new PatternMatches(version, result));
+			return result;
 		}
 
-		public void updateAfterRemovedSession(SessionSubscriptionInfo info) {
-			synchronized (this.updateCache) {
-				Set<String> destinationsToRemove = new HashSet<String>();
-				for (Map.Entry<String, MultiValueMap<String, String>> entry : this.updateCache.entrySet()) {
-					String destination = entry.getKey();
-					MultiValueMap<String, String> sessionMap = entry.getValue();
-					if (sessionMap.remove(info.getSessionId()) != null) {
-						if (sessionMap.isEmpty()) {
-							destinationsToRemove.add(destination);
-						}
-						else {
-							this.accessCache.put(destination, deepCopy(sessionMap));
+		private void addPatternMatches(PatternNode node, String destination, int offset,
+				List<DestinationSubscriptions> matches) {
+
+			if (node != null) {
+				for (DestinationSubscriptions candidate : node.subscriptions.values()) {
+					if (destination.startsWith(candidate.literalTail, offset) &&
+							getPathMatcher().match(candidate.getDestination(), destination)) {
+						matches.add(candidate);
+					}
+				}
+			}
+		}
+
+		private void collectAllPatternMatches(PatternNode node, String destination,
+				List<DestinationSubscriptions> matches) {
+
+			for (DestinationSubscriptions candidate : node.subscriptions.values()) {
+				if (getPathMatcher().match(candidate.getDestination(), destination)) {
+					matches.add(candidate);
+				}
+			}
+			for (PatternNode child : node.children.values()) {
+				collectAllPatternMatches(child, destination, matches);
+			}
+		}
+
+		private MultiValueMap<String, String> mergeSubscriptions(List<DestinationSubscriptions> matches) {
+			MultiValueMap<String, String> single = null;
+			int count = 0;
+			for (DestinationSubscriptions subscriptions : matches) {
+				if (!subscriptions.isEmpty()) {
+					single = subscriptions.getSubscriptions();
+					count++;
+				}
+			}
+			if (count == 0) {
+				return NO_SUBSCRIPTIONS;
+			}
+			if (count == 1) {
+				return single;
+			}
+			MultiValueMap<String, String> result = new LinkedMultiValueMap<String, String>();
+			Set<String> mergedSessionIds = null;
+			for (DestinationSubscriptions subscriptions : matches) {
+				for (Map.Entry<String, List<String>> entry : subscriptions.getSubscriptions().entrySet()) {
+					String sessionId = entry.getKey();
+					List<String> subsIds = result.get(sessionId);
+					if (subsIds == null) {
+						result.put(sessionId, new ArrayList<String>(entry.getValue()));
+					}
+					else {
+						subsIds.addAll(entry.getValue());
+						if (mergedSessionIds == null) {
+							mergedSessionIds = new LinkedHashSet<String>();
 						}
+						mergedSessionIds.add(sessionId);
 					}
 				}
-				for (String destination : destinationsToRemove) {
-					this.updateCache.remove(destination);
-					this.accessCache.remove(destination);
+			}
+			if (mergedSessionIds != null) {
+				for (String sessionId : mergedSessionIds) {
+					sortByRegistrationOrder(sessionId, result.get(sessionId));
 				}
 			}
+			return result;
 		}
 
-		private <K, V> LinkedMultiValueMap<K, V> deepCopy(Map<K, List<V>> map) {
-			LinkedMultiValueMap<K, V> copy = new LinkedMultiValueMap<K, V>();
-			for (Map.Entry<K, List<V>> entry : map.entrySet()) {
-				copy.put(entry.getKey(), new LinkedList<V>(entry.getValue()));
+		private void sortByRegistrationOrder(String sessionId, List<String> subsIds) {
+			final SessionSubscriptionInfo info = subscriptionRegistry.getSubscriptions(sessionId);
+			if (info == null) {
+				return;
 			}
-			return copy;
+			Collections.sort(subsIds, new Comparator<String>() {
+				@Override
+				public int compare(String subsId1, String subsId2) {
+					long order1 = info.getOrder(subsId1);
+					long order2 = info.getOrder(subsId2);
+					return (order1 < order2 ? -1 : (order1 > order2 ? 1 : 0));
+				}
+			});
 		}
 
 		@Override
 		public String toString() {
-			return "cache[" + this.accessCache.size() + " destination(s)]";
+			return "index[" + this.destinations.size() + " destination(s), " +
+					this.patternCount.get() + " pattern(s)]";
+		}
+	}
+
+
+	/**
+	 * A node in the trie of destination patterns.
+	 */
+	private static class PatternNode {
+
+		// literal segment -> child node
+		private final ConcurrentMap<String, PatternNode> children = new ConcurrentHashMap<String, PatternNode>(4);
+
+		// destination pattern -> subscriptions
+		private final ConcurrentMap<String, DestinationSubscriptions> subscriptions =
+				new ConcurrentHashMap<String, DestinationSubscriptions>(4);
+
+		public boolean isEmpty() {
+			return (this.children.isEmpty() && this.subscriptions.isEmpty());
+		}
+	}
+
+
+	/**
+	 * Hold the subscriptions for a destination or destination pattern.
+	 */
+	private static class DestinationSubscriptions {
+
+		private final String destination;
+
+		/** The literal part of a pattern following its position in the trie */
+		private final String literalTail;
+
+		// sessionId -> subscriptionIds
+		private final ConcurrentMap<String, List<String>> sessions = new ConcurrentHashMap<String, List<String>>(4);
+
+		private final MultiValueMap<String, String> view = CollectionUtils.toMultiValueMap(this.sessions);
+
+		public DestinationSubscriptions(String destination, String literalTail) {
+			this.destination = destination;
+			this.literalTail = literalTail;
+		}
+
+		public String getDestination() {
+			return this.destination;
+		}
+
+		/**
+		 * Return a live view of the subscriptions, safe to iterate.
+		 */
+		public MultiValueMap<String, String> getSubscriptions() {
+			return this.view;
+		}
+
+		public boolean isEmpty() {
+			return this.sessions.isEmpty();
+		}
+
+		// Modifications are guarded by the stripe lock of the destination
+
+		public void addSubscription(String sessionId, String subsId) {
+			List<String> subsIds = this.sessions.get(sessionId);
+			if (subsIds == null) {
+				subsIds = new CopyOnWriteArrayList<String>();
+				this.sessions.put(sessionId, subsIds);
+			}
+			subsIds.add(subsId);
+		}
+
+		public boolean removeSubscription(String sessionId, String subsId) {
+			List<String> subsIds = this.sessions.get(sessionId);
+			if (subsIds == null || !subsIds.remove(subsId)) {
+				return false;
+			}
+			if (subsIds.isEmpty()) {
+				this.sessions.remove(sessionId);
+			}
+			return true;
+		}
+	}
+
+
+	/**
+	 * The patterns matching a destination, as of a given version of the trie.
+	 */
+	private static class PatternMatches {
+
+		private final long version;
+
+		private final DestinationSubscriptions[] matches;
+
+		public PatternMatches(long version, DestinationSubscriptions[] matches) {
+			this.version = version;
+			this.matches = matches;
 		}
 	}
 
@@ -264,11 +652,7 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 			return this.sessions.get(sessionId);
 		}
 
-		public Collection<SessionSubscriptionInfo> getAllSubscriptions() {
-			return this.sessions.values();
-		}
-
-		public SessionSubscriptionInfo addSubscription(String sessionId, String subscriptionId, String destination) {
+		public SessionSubscriptionInfo getOrCreateSubscriptions(String sessionId) {
 			SessionSubscriptionInfo info = this.sessions.get(sessionId);
 			if (info == null) {
 				info = new SessionSubscriptionInfo(sessionId);
@@ -277,7 +661,6 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 					info = value;
 				}
 			}
-			info.addSubscription(destination, subscriptionId);
 			return info;
 		}
 
@@ -299,8 +682,9 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 
 		private final String sessionId;
 
-		// destination -> subscriptionIds
-		private final Map<String, Set<String>> subscriptions = new ConcurrentHashMap<String, Set<String>>(4);
+		// subscriptionId -> subscription
+		private final ConcurrentMap<String, Subscription> subscriptions =
+				new ConcurrentHashMap<String, Subscription>(4);
 
 		public SessionSubscriptionInfo(String sessionId) {
 			Assert.notNull(sessionId, "sessionId must not be null");
@@ -311,43 +695,21 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 			return this.sessionId;
 		}
 
-		public Set<String> getDestinations() {
-			return this.subscriptions.keySet();
+		public Map<String, Subscription> getSubscriptions() {
+			return this.subscriptions;
 		}
 
-		public Set<String> getSubscriptions(String destination) {
-			return this.subscriptions.get(destination);
+		public long getOrder(String subscriptionId) {
+			Subscription subscription = this.subscriptions.get(subscriptionId);
+			return (subscription != null ? subscription.getOrder() : Long.MAX_VALUE);
 		}
 
-		public void addSubscription(String destination, String subscriptionId) {
-			Set<String> subs = this.subscriptions.get(destination);
-			if (subs == null) {
-				synchronized (this.subscriptions) {
-					subs = this.subscriptions.get(destination);
-					if (subs == null) {
-						subs = new CopyOnWriteArraySet<String>();
-						this.subscriptions.put(destination, subs);
-					}
-				}
-			}
-			subs.add(subscriptionId);
-		}
-
-		public String removeSubscription(String subscriptionId) {
-			for (String destination : this.subscriptions.keySet()) {
-				Set<String> subscriptionIds = this.subscriptions.get(destination);
-				if (subscriptionIds != null) {
-					if (subscriptionIds.remove(subscriptionId)) {
-						synchronized (this.subscriptions) {
-							if (subscriptionIds.isEmpty()) {
-								this.subscriptions.remove(destination);
-							}
-						}
-						return destination;
-					}
-				}
-			}
-			return null;
+		public Subscription addSubscription(String subscriptionId, Subscription subscription) {
+			return this.subscriptions.put(subscriptionId, subscription);
+		}
+
+		public Subscription removeSubscription(String subscriptionId) {
+			return this.subscriptions.remove(subscriptionId);
 		}
 
 		@Override
@@ -356,4 +718,33 @@ public class DefaultSubscriptionRegistry extends AbstractSubscriptionRegistry {
 		}
 	}
 
+
+	/**
+	 * A subscription of a session: its destination and registration order.
+	 */
+	private static class Subscription {
+
+		private final String destination;
+
+		private final long order;
+
+		public Subscription(String destination, long order) {
+			this.destination = destination;
+			this.order = order;
+		}
+
+		public String getDestination() {
+			return this.destination;
+		}
+
+		public long getOrder() {
+			return this.order;
+		}
+
+		@Override
+		public String toString() {
+			return this.destination;
+		}
+	}
+
 }
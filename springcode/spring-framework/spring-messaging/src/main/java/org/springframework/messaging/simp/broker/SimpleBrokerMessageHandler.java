@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,16 @@
 
 package org.springframework.messaging.simp.broker;
 
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
 
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -27,6 +36,7 @@ import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.messaging.support.MessageHeaderInitializer;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.PathMatcher;
@@ -36,6 +46,13 @@ import org.springframework.util.PathMatcher;
  * {@link SimpMessageType}, keeps track of subscriptions with the help of a
  * {@link SubscriptionRegistry} and sends messages to subscribers.
  *
+ * <p>When configured with a {@link TaskScheduler}, the broker also sends
+ * heartbeats to clients and closes sessions from which nothing was received
+ * for too long, as negotiated with each client on CONNECT. Rather than one
+ * scheduled task per session, all sessions are tracked in a single hashed
+ * timer wheel that is advanced by one periodic task, and reads and writes
+ * merely record a timestamp that is checked once the session comes due.
+ *
  * @author Rossen Stoyanchev
  * @since 4.0
  */
@@ -43,12 +60,33 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 
 	private static final byte[] EMPTY_PAYLOAD = new byte[0];
 
+	private static final long[] NO_HEARTBEAT = new long[] {0, 0};
+
+	/** The factor applied to the negotiated read interval before closing a session */
+	private static final long HEARTBEAT_MULTIPLIER = 3;
+
+	/** The number of buckets in the timer wheel, a power of 2 */
+	private static final int TIMER_WHEEL_SIZE = 512;
+
+	private static final long MIN_TIMER_TICK = 10;
+
+
 	private SubscriptionRegistry subscriptionRegistry;
 
 	private PathMatcher pathMatcher;
 
 	private MessageHeaderInitializer headerInitializer;
 
+	private TaskScheduler taskScheduler;
+
+	private long[] heartbeatValue;
+
+	private final ConcurrentMap<String, SessionInfo> sessions = new ConcurrentHashMap<String, SessionInfo>();
+
+	private volatile HeartbeatTask heartbeatTask;
+
+	private ScheduledFuture<?> heartbeatFuture;
+
 
 	/**
 	 * Create a SimpleBrokerMessageHandler instance with the given message channels
@@ -116,15 +154,83 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		return this.headerInitializer;
 	}
 
+	/**
+	 * Configure the {@link TaskScheduler} to use for sending heartbeats to
+	 * clients and for detecting inactive sessions.
+	 * <p>By default this property is not set, in which case heartbeats are not
+	 * supported. When set, the {@link #setHeartbeatValue heartbeat value}
+	 * defaults to "10000, 10000".
+	 * @since 4.1.10
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+		if (taskScheduler != null && this.heartbeatValue == null) {
+			this.heartbeatValue = new long[] {10000, 10000};
+		}
+	}
+
+	/**
+	 * Return the configured TaskScheduler.
+	 * @since 4.1.10
+	 */
+	public TaskScheduler getTaskScheduler() {
+		return this.taskScheduler;
+	}
+
+	/**
+	 * Configure the value for the heartbeat settings. The first number
+	 * represents how often the server will write or send a heartbeat.
+	 * The second is how often the client should write. 0 means no heartbeats.
+	 * <p>By default this is set to "0, 0" unless the {@link #setTaskScheduler
+	 * taskScheduler} is set, in which case the default becomes "10000, 10000"
+	 * (in milliseconds).
+	 * @since 4.1.10
+	 */
+	public void setHeartbeatValue(long[] heartbeat) {
+		Assert.isTrue(heartbeat == null || (heartbeat.length == 2 && heartbeat[0] >= 0 && heartbeat[1] >= 0),
+				"Invalid heartbeat setting: two non-negative values expected");
+		this.heartbeatValue = heartbeat;
+	}
+
+	/**
+	 * Return the configured heartbeat value.
+	 * @since 4.1.10
+	 */
+	public long[] getHeartbeatValue() {
+		return this.heartbeatValue;
+	}
+
 
 	@Override
 	public void startInternal() {
+		if (this.taskScheduler != null && this.heartbeatValue != null &&
+				(this.heartbeatValue[0] > 0 || this.heartbeatValue[1] > 0)) {
+			long tick = Math.max(getMinHeartbeatInterval() / 4, MIN_TIMER_TICK);
+			this.heartbeatTask = new HeartbeatTask(tick);
+			this.heartbeatFuture = this.taskScheduler.scheduleWithFixedDelay(this.heartbeatTask, tick);
+		}
 		publishBrokerAvailableEvent();
 	}
 
+	private long getMinHeartbeatInterval() {
+		long min = Long.MAX_VALUE;
+		for (long value : this.heartbeatValue) {
+			if (value > 0) {
+				min = Math.min(min, value);
+			}
+		}
+		return min;
+	}
+
 	@Override
 	public void stopInternal() {
 		publishBrokerUnavailableEvent();
+		if (this.heartbeatFuture != null) {
+			this.heartbeatFuture.cancel(true);
+			this.heartbeatFuture = null;
+		}
+		this.heartbeatTask = null;
+		this.sessions.clear();
 	}
 
 	@Override
@@ -134,6 +240,8 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		String destination = SimpMessageHeaderAccessor.getDestination(headers);
 		String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
 
+		updateSessionReadTime(sessionId);
+
 		if (!checkDestinationPrefix(destination)) {
 			return;
 		}
@@ -150,16 +258,22 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		}
 		else if (SimpMessageType.CONNECT.equals(messageType)) {
 			logMessage(message);
+			long[] heartbeat = registerSession(sessionId, SimpMessageHeaderAccessor.getUser(headers),
+					SimpMessageHeaderAccessor.getHeartbeat(headers));
 			SimpMessageHeaderAccessor connectAck = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
 			initHeaders(connectAck);
 			connectAck.setSessionId(sessionId);
 			connectAck.setUser(SimpMessageHeaderAccessor.getUser(headers));
 			connectAck.setHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER, message);
+			connectAck.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER, heartbeat);
 			Message<byte[]> messageOut = MessageBuilder.createMessage(EMPTY_PAYLOAD, connectAck.getMessageHeaders());
 			getClientOutboundChannel().send(messageOut);
 		}
 		else if (SimpMessageType.DISCONNECT.equals(messageType)) {
 			logMessage(message);
+			if (sessionId != null) {
+				this.sessions.remove(sessionId);
+			}
 			this.subscriptionRegistry.unregisterAllSubscriptions(sessionId);
 			SimpMessageHeaderAccessor disconnectAck = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
 			initHeaders(disconnectAck);
@@ -178,6 +292,39 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		}
 	}
 
+	/**
+	 * Negotiate heartbeats with a connecting client and, if any, start tracking
+	 * the session in the timer wheel.
+	 * @return the heartbeat values of the broker to report to the client
+	 */
+	private long[] registerSession(String sessionId, Principal user, long[] clientHeartbeat) {
+		HeartbeatTask task = this.heartbeatTask;
+		if (task == null || sessionId == null) {
+			return NO_HEARTBEAT;
+		}
+		long[] serverHeartbeat = this.heartbeatValue;
+		long[] client = (clientHeartbeat != null ? clientHeartbeat : NO_HEARTBEAT);
+		long writeInterval = (serverHeartbeat[0] > 0 && client[1] > 0 ?
+				Math.max(serverHeartbeat[0], client[1]) : 0);
+		long readInterval = (client[0] > 0 && serverHeartbeat[1] > 0 ?
+				Math.max(client[0], serverHeartbeat[1]) * HEARTBEAT_MULTIPLIER : 0);
+		if (writeInterval > 0 || readInterval > 0) {
+			SessionInfo info = new SessionInfo(sessionId, user, readInterval, writeInterval);
+			this.sessions.put(sessionId, info);
+			task.schedule(info, info.getNextDeadline(task.getTick()));
+		}
+		return serverHeartbeat;
+	}
+
+	private void updateSessionReadTime(String sessionId) {
+		if (sessionId != null && !this.sessions.isEmpty()) {
+			SessionInfo info = this.sessions.get(sessionId);
+			if (info != null) {
+				info.lastReadTime = System.currentTimeMillis();
+			}
+		}
+	}
+
 	private void logMessage(Message<?> message) {
 		if (logger.isDebugEnabled()) {
 			SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
@@ -197,13 +344,21 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		if (!subscriptions.isEmpty() && logger.isDebugEnabled()) {
 			logger.debug("Broadcasting to " + subscriptions.size() + " sessions.");
 		}
+		boolean trackWrites = !this.sessions.isEmpty();
+		long now = (trackWrites ? System.currentTimeMillis() : 0);
 		for (String sessionId : subscriptions.keySet()) {
+			if (trackWrites) {
+				SessionInfo info = this.sessions.get(sessionId);
+				if (info != null) {
+					info.lastWriteTime = now;
+				}
+			}
 			for (String subscriptionId : subscriptions.get(sessionId)) {
-				SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+				// Shares the unchanged headers of the message across subscribers
+				SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.wrap(message);
 				initHeaders(headerAccessor);
 				headerAccessor.setSessionId(sessionId);
 				headerAccessor.setSubscriptionId(subscriptionId);
-				headerAccessor.copyHeadersIfAbsent(message.getHeaders());
 				Object payload = message.getPayload();
 				Message<?> reply = MessageBuilder.createMessage(payload, headerAccessor.getMessageHeaders());
 				try {
@@ -216,9 +371,177 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		}
 	}
 
+	private void sendHeartbeat(SessionInfo info) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.HEARTBEAT);
+		initHeaders(accessor);
+		accessor.setSessionId(info.sessionId);
+		accessor.setUser(info.user);
+		getClientOutboundChannel().send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+	}
+
+	private void closeInactiveSession(SessionInfo info) {
+		if (!this.sessions.remove(info.sessionId, info)) {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("No messages received after " + info.readInterval + " ms. " +
+					"Closing session " + info.sessionId + ".");
+		}
+		this.subscriptionRegistry.unregisterAllSubscriptions(info.sessionId);
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
+		initHeaders(accessor);
+		accessor.setSessionId(info.sessionId);
+		accessor.setUser(info.user);
+		getClientOutboundChannel().send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+	}
+
 	@Override
 	public String toString() {
 		return "SimpleBroker[" + this.subscriptionRegistry + "]";
 	}
 
+
+	/**
+	 * Heartbeat state of a connected session. Read and write times are updated
+	 * without rescheduling the session; they are only evaluated once the
+	 * session comes due in the timer wheel.
+	 */
+	private static class SessionInfo {
+
+		private final String sessionId;
+
+		private final Principal user;
+
+		private final long readInterval;
+
+		private final long writeInterval;
+
+		private volatile long lastReadTime;
+
+		private volatile long lastWriteTime;
+
+		/** The timer wheel tick at which the session is to be checked next */
+		private volatile long scheduledTick;
+
+		public SessionInfo(String sessionId, Principal user, long readInterval, long writeInterval) {
+			this.sessionId = sessionId;
+			this.user = user;
+			this.readInterval = readInterval;
+			this.writeInterval = writeInterval;
+			this.lastReadTime = this.lastWriteTime = System.currentTimeMillis();
+		}
+
+		/**
+		 * Return the time at which the session needs to be checked next, i.e.
+		 * when the read interval expires or a heartbeat is due to be sent.
+		 * Heartbeats are sent up to one tick early rather than late.
+		 */
+		public long getNextDeadline(long tick) {
+			long deadline = Long.MAX_VALUE;
+			if (this.readInterval > 0) {
+				deadline = this.lastReadTime + this.readInterval + 1;
+			}
+			if (this.writeInterval > 0) {
+				deadline = Math.min(deadline, this.lastWriteTime + this.writeInterval - tick);
+			}
+			return deadline;
+		}
+
+		public boolean isReadExpired(long now) {
+			return (this.readInterval > 0 && now - this.lastReadTime > this.readInterval);
+		}
+
+		public boolean isHeartbeatDue(long now, long tick) {
+			return (this.writeInterval > 0 && now - this.lastWriteTime + tick >= this.writeInterval);
+		}
+	}
+
+
+	/**
+	 * A hashed timer wheel for all sessions with heartbeats, advanced by a
+	 * single task running once per tick. Each bucket holds the sessions due in
+	 * any tick that maps to it; sessions due in a later revolution of the
+	 * wheel are simply put back when their bucket comes up.
+	 */
+	private class HeartbeatTask implements Runnable {
+
+		private final long tick;
+
+		private final long startTime = System.currentTimeMillis();
+
+		/** Buckets of sessions by due tick, guarded by this list */
+		private final List<Queue<SessionInfo>> buckets = new ArrayList<Queue<SessionInfo>>(TIMER_WHEEL_SIZE);
+
+		/** The last tick processed so far, guarded by the buckets */
+		private long lastTick;
+
+		public HeartbeatTask(long tick) {
+			this.tick = tick;
+			for (int i = 0; i < TIMER_WHEEL_SIZE; i++) {
+				this.buckets.add(new ArrayDeque<SessionInfo>());
+			}
+		}
+
+		public long getTick() {
+			return this.tick;
+		}
+
+		public void schedule(SessionInfo info, long deadline) {
+			synchronized (this.buckets) {
+				// Never target a bucket which run() has drained for the current revolution
+				long targetTick = Math.max((deadline - this.startTime) / this.tick, this.lastTick + 1);
+				info.scheduledTick = targetTick;
+				this.buckets.get((int) (targetTick & (TIMER_WHEEL_SIZE - 1))).add(info);
+			}
+		}
+
+		@Override
+		public void run() {
+			long now = System.currentTimeMillis();
+			long currentTick = (now - this.startTime) / this.tick;
+			List<SessionInfo> dueSessions = new ArrayList<SessionInfo>();
+			synchronized (this.buckets) {
+				// After a long pause, a single pass over all buckets is enough to catch up
+				long firstTick = Math.max(this.lastTick + 1, currentTick - TIMER_WHEEL_SIZE + 1);
+				for (long t = firstTick; t <= currentTick; t++) {
+					Queue<SessionInfo> bucket = this.buckets.get((int) (t & (TIMER_WHEEL_SIZE - 1)));
+					for (Iterator<SessionInfo> it = bucket.iterator(); it.hasNext();) {
+						SessionInfo info = it.next();
+						if (sessions.get(info.sessionId) != info) {
+							// Disconnected or replaced in the meantime
+							it.remove();
+						}
+						else if (info.scheduledTick <= currentTick) {
+							dueSessions.add(info);
+							it.remove();
+						}
+					}
+				}
+				if (currentTick > this.lastTick) {
+					this.lastTick = currentTick;
+				}
+			}
+			for (SessionInfo info : dueSessions) {
+				try {
+					check(info, now);
+				}
+				catch (Throwable ex) {
+					logger.error("Failed to process heartbeat for session " + info.sessionId, ex);
+				}
+			}
+		}
+
+		private void check(SessionInfo info, long now) {
+			if (info.isReadExpired(now)) {
+				closeInactiveSession(info);
+				return;
+			}
+			if (info.isHeartbeatDue(now, this.tick)) {
+				info.lastWriteTime = now;
+				sendHeartbeat(info);
+			}
+			schedule(info, info.getNextDeadline(this.tick));
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,6 +33,7 @@ import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.converter.StringMessageConverter;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 import org.springframework.messaging.handler.invocation.HandlerMethodReturnValueHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
 import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
@@ -114,6 +115,7 @@ public abstract class AbstractMessageBrokerConfiguration implements ApplicationC
 		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(clientInboundChannelExecutor());
 		ChannelRegistration reg = getClientInboundChannelRegistration();
 		channel.setInterceptors(reg.getInterceptors());
+		initOrderedDispatch(channel, reg);
 		return channel;
 	}
 
@@ -147,6 +149,7 @@ public abstract class AbstractMessageBrokerConfiguration implements ApplicationC
 		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(clientOutboundChannelExecutor());
 		ChannelRegistration reg = getClientOutboundChannelRegistration();
 		channel.setInterceptors(reg.getInterceptors());
+		initOrderedDispatch(channel, reg);
 		return channel;
 	}
 
@@ -182,6 +185,7 @@ public abstract class AbstractMessageBrokerConfiguration implements ApplicationC
 				new ExecutorSubscribableChannel(brokerChannelExecutor()) : new ExecutorSubscribableChannel();
 		reg.setInterceptors(new ImmutableMessageChannelInterceptor());
 		channel.setInterceptors(reg.getInterceptors());
+		initOrderedDispatch(channel, reg);
 		return channel;
 	}
 
@@ -203,6 +207,12 @@ public abstract class AbstractMessageBrokerConfiguration implements ApplicationC
 		return executor;
 	}
 
+	private void initOrderedDispatch(ExecutorSubscribableChannel channel, ChannelRegistration registration) {
+		if (registration.isPreserveSessionOrder()) {
+			channel.setOrderedDispatchHeader(SimpMessageHeaderAccessor.SESSION_ID_HEADER);
+		}
+	}
+
 	/**
 	 * An accessor for the {@link MessageBrokerRegistry} that ensures its one-time creation
 	 * and initialization through {@link #configureMessageBroker(MessageBrokerRegistry)}.
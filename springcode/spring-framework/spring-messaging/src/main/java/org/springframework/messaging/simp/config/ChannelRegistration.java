@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -36,6 +36,8 @@ public class ChannelRegistration {
 
 	private final List<ChannelInterceptor> interceptors = new ArrayList<ChannelInterceptor>();
 
+	private boolean preserveSessionOrder;
+
 
 	/**
 	 * Configure the thread pool backing this message channel.
@@ -68,6 +70,20 @@ public class ChannelRegistration {
 		return this;
 	}
 
+	/**
+	 * Whether to handle messages for the same session one at a time, in the order
+	 * they were sent to the message channel, rather than handing off each message
+	 * to the thread pool independently. Messages for different sessions are still
+	 * handled concurrently.
+	 * <p>By default this is set to {@code false}.
+	 * @since 4.1.10
+	 * @see org.springframework.messaging.support.ExecutorSubscribableChannel#setOrderedDispatchHeader
+	 */
+	public ChannelRegistration setPreserveSessionOrder(boolean preserveSessionOrder) {
+		this.preserveSessionOrder = preserveSessionOrder;
+		return this;
+	}
+
 
 	protected boolean hasTaskExecutor() {
 		return (this.registration != null);
@@ -88,4 +104,8 @@ public class ChannelRegistration {
 	protected List<ChannelInterceptor> getInterceptors() {
 		return this.interceptors;
 	}
+
+	protected boolean isPreserveSessionOrder() {
+		return this.preserveSessionOrder;
+	}
 }
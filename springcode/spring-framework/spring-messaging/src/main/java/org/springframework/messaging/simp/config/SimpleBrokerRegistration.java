@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.messaging.simp.config;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.scheduling.TaskScheduler;
 
 /**
  * Registration class for configuring a {@link SimpleBrokerMessageHandler}.
@@ -28,14 +29,53 @@ import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
  */
 public class SimpleBrokerRegistration extends AbstractBrokerRegistration {
 
+	private TaskScheduler taskScheduler;
+
+	private long[] heartbeat;
+
+
 	public SimpleBrokerRegistration(SubscribableChannel inChannel, MessageChannel outChannel, String[] prefixes) {
 		super(inChannel, outChannel, prefixes);
 	}
 
+
+	/**
+	 * Configure the {@link TaskScheduler} to use for sending heartbeats to
+	 * clients and for closing inactive sessions.
+	 * <p>By default this is not set, in which case heartbeats are not supported.
+	 * @since 4.1.10
+	 */
+	public SimpleBrokerRegistration setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+		return this;
+	}
+
+	/**
+	 * Configure the value for the heartbeat settings. The first number
+	 * represents how often the server will write or send a heartbeat.
+	 * The second is how often the client should write. 0 means no heartbeats.
+	 * <p>By default this is set to "0, 0" unless the {@link #setTaskScheduler
+	 * taskScheduler} is set, in which case the default becomes "10000, 10000"
+	 * (in milliseconds).
+	 * @since 4.1.10
+	 */
+	public SimpleBrokerRegistration setHeartbeatValue(long[] heartbeat) {
+		this.heartbeat = heartbeat;
+		return this;
+	}
+
+
 	@Override
 	protected SimpleBrokerMessageHandler getMessageHandler(SubscribableChannel brokerChannel) {
-		return new SimpleBrokerMessageHandler(getClientInboundChannel(),
+		SimpleBrokerMessageHandler handler = new SimpleBrokerMessageHandler(getClientInboundChannel(),
 				getClientOutboundChannel(), brokerChannel, getDestinationPrefixes());
+		if (this.taskScheduler != null) {
+			handler.setTaskScheduler(this.taskScheduler);
+		}
+		if (this.heartbeat != null) {
+			handler.setHeartbeatValue(this.heartbeat);
+		}
+		return handler;
 	}
 
 }
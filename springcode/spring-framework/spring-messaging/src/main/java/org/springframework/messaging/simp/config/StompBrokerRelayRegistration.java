@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -47,6 +47,10 @@ public class StompBrokerRelayRegistration extends AbstractBrokerRegistration {
 
 	private String virtualHost;
 
+	private Integer systemConnectionCount;
+
+	private Integer clientConnectionPoolSize;
+
 	private boolean autoStartup = true;
 
 
@@ -156,6 +160,29 @@ public class StompBrokerRelayRegistration extends AbstractBrokerRegistration {
 		return this;
 	}
 
+	/**
+	 * Set the number of "system" connections to open to the STOMP broker, across
+	 * which messages from within the application are partitioned by destination.
+	 * <p>The default value is 1.
+	 * @since 4.1.10
+	 */
+	public StompBrokerRelayRegistration setSystemConnectionCount(int systemConnectionCount) {
+		this.systemConnectionCount = systemConnectionCount;
+		return this;
+	}
+
+	/**
+	 * Set the number of shared connections to multiplex client sessions over,
+	 * instead of opening one connection to the STOMP broker per client session.
+	 * <p>By default this property is not set.
+	 * @since 4.1.10
+	 * @see StompBrokerRelayMessageHandler#setClientConnectionPoolSize(int)
+	 */
+	public StompBrokerRelayRegistration setClientConnectionPoolSize(int clientConnectionPoolSize) {
+		this.clientConnectionPoolSize = clientConnectionPoolSize;
+		return this;
+	}
+
 	/**
 	 * Configure whether the {@link StompBrokerRelayMessageHandler} should start
 	 * automatically when the Spring ApplicationContext is refreshed.
@@ -189,6 +216,12 @@ public class StompBrokerRelayRegistration extends AbstractBrokerRegistration {
 		if (this.virtualHost != null) {
 			handler.setVirtualHost(this.virtualHost);
 		}
+		if (this.systemConnectionCount != null) {
+			handler.setSystemConnectionCount(this.systemConnectionCount);
+		}
+		if (this.clientConnectionPoolSize != null) {
+			handler.setClientConnectionPoolSize(this.clientConnectionPoolSize);
+		}
 
 		handler.setAutoStartup(this.autoStartup);
 
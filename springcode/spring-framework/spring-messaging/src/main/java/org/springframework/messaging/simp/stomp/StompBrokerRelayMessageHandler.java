@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,18 @@
 
 package org.springframework.messaging.simp.stomp;
 
+import java.security.Principal;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -68,6 +74,19 @@ import org.springframework.util.concurrent.ListenableFutureTask;
  * <li>{@link #setSystemHeartbeatReceiveInterval(long)}</li>
  * </ul>
  *
+ * <p>For a large number of clients, two further options reduce the number of TCP
+ * connections to the broker and spread the load across several connections:
+ * <ul>
+ * <li>{@link #setSystemConnectionCount(int)} opens several "system" connections and
+ * partitions messages from the application across them by destination, preserving
+ * the order of messages per destination.</li>
+ * <li>{@link #setClientConnectionPoolSize(int)} multiplexes client sessions over a
+ * fixed pool of shared connections instead of opening one connection per client.
+ * Subscription and receipt ids are rewritten so that frames from the broker can be
+ * routed back to the client session they belong to, and STOMP CONNECTED frames are
+ * sent to clients directly by the relay.</li>
+ * </ul>
+ *
  * @author Rossen Stoyanchev
  * @author Andy Wilkinson
  * @since 4.0
@@ -76,6 +95,10 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 	public static final String SYSTEM_SESSION_ID = "_system_";
 
+	private static final String SHARED_SESSION_ID_PREFIX = "_shared_";
+
+	private static final String STOMP_TRANSACTION_HEADER = "transaction";
+
 	private static final byte[] EMPTY_PAYLOAD = new byte[0];
 
 	private static final ListenableFutureTask<Void> EMPTY_TASK = new ListenableFutureTask<Void>(new VoidCallable());
@@ -109,6 +132,10 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 	private long systemHeartbeatReceiveInterval = 10000;
 
+	private int systemConnectionCount = 1;
+
+	private int clientConnectionPoolSize = 0;
+
 	private String virtualHost;
 
 	private TcpOperations<byte[]> tcpClient;
@@ -118,6 +145,16 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 	private final Map<String, StompConnectionHandler> connectionHandlers =
 			new ConcurrentHashMap<String, StompConnectionHandler>();
 
+	private volatile SystemStompConnectionHandler[] systemConnectionHandlers;
+
+	private final AtomicInteger connectedSystemConnectionCount = new AtomicInteger();
+
+	private volatile SharedStompConnectionHandler[] sharedConnectionHandlers;
+
+	/** Client sessions multiplexed over the shared connections, by session id */
+	private final Map<String, SharedClientSession> sharedClientSessions =
+			new ConcurrentHashMap<String, SharedClientSession>();
+
 	private final Stats stats = new Stats();
 
 
@@ -205,6 +242,61 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		return this.systemHeartbeatReceiveInterval;
 	}
 
+	/**
+	 * Set the number of "system" connections to open to the STOMP broker.
+	 * Messages from within the application are partitioned across them by
+	 * destination, so that messages to the same destination are still sent
+	 * over the same connection and in order.
+	 * <p>The default value is 1.
+	 * @since 4.1.10
+	 */
+	public void setSystemConnectionCount(int systemConnectionCount) {
+		Assert.isTrue(systemConnectionCount > 0, "systemConnectionCount must be greater than 0");
+		this.systemConnectionCount = systemConnectionCount;
+	}
+
+	/**
+	 * Return the number of "system" connections to the STOMP broker.
+	 * @since 4.1.10
+	 */
+	public int getSystemConnectionCount() {
+		return this.systemConnectionCount;
+	}
+
+	/**
+	 * Set the number of shared connections to multiplex client sessions over.
+	 * When set, client sessions are assigned to one of a fixed pool of
+	 * connections opened on startup with the {@link #setClientLogin client login}
+	 * and passcode, rather than each opening its own connection to the broker.
+	 * The relay then replies to a client's STOMP CONNECT frame itself, without
+	 * heartbeats for the client, and tracks the subscriptions of each session in
+	 * order to route messages from the broker back to their client session.
+	 * A client session is assigned to a connection by its session id, or to any
+	 * other connected one while that connection is down. Client sessions of a
+	 * connection that gets lost receive an ERROR frame.
+	 * <p>Clients are told the STOMP version negotiated by the shared connection.
+	 * A client that does not accept that version may still connect, but gets an
+	 * ERROR frame for subscriptions with client acknowledgement, since its ACK and
+	 * NACK frames would not match what the broker expects. Note that the broker
+	 * closes a shared connection after any ERROR, e.g. in response to an invalid
+	 * frame from a single client, which affects all client sessions on it.
+	 * <p>The default value is 0, i.e. one connection per client session.
+	 * @since 4.1.10
+	 */
+	public void setClientConnectionPoolSize(int clientConnectionPoolSize) {
+		Assert.isTrue(clientConnectionPoolSize >= 0, "clientConnectionPoolSize must not be negative");
+		this.clientConnectionPoolSize = clientConnectionPoolSize;
+	}
+
+	/**
+	 * Return the number of shared connections to multiplex client sessions over,
+	 * or 0 if each client session has its own connection.
+	 * @since 4.1.10
+	 */
+	public int getClientConnectionPoolSize() {
+		return this.clientConnectionPoolSize;
+	}
+
 	/**
 	 * Set the login to use when creating connections to the STOMP broker on
 	 * behalf of connected clients.
@@ -361,22 +453,50 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			logger.info("Connecting \"system\" session to " + this.relayHost + ":" + this.relayPort);
 		}
 
+		SystemStompConnectionHandler[] systemHandlers = new SystemStompConnectionHandler[this.systemConnectionCount];
+		for (int i = 0; i < systemHandlers.length; i++) {
+			String sessionId = (i == 0 ? SYSTEM_SESSION_ID : SYSTEM_SESSION_ID + i);
+			StompHeaderAccessor accessor = createConnectHeaders(sessionId, this.systemLogin, this.systemPasscode);
+			systemHandlers[i] = new SystemStompConnectionHandler(sessionId, accessor);
+		}
+		this.systemConnectionHandlers = systemHandlers;
+
+		SharedStompConnectionHandler[] sharedHandlers = null;
+		if (this.clientConnectionPoolSize > 0) {
+			sharedHandlers = new SharedStompConnectionHandler[this.clientConnectionPoolSize];
+			for (int i = 0; i < sharedHandlers.length; i++) {
+				String sessionId = SHARED_SESSION_ID_PREFIX + i;
+				StompHeaderAccessor accessor = createConnectHeaders(sessionId, this.clientLogin, this.clientPasscode);
+				sharedHandlers[i] = new SharedStompConnectionHandler(sessionId, accessor);
+			}
+		}
+		this.sharedConnectionHandlers = sharedHandlers;
+
+		for (SystemStompConnectionHandler handler : systemHandlers) {
+			this.connectionHandlers.put(handler.getSessionId(), handler);
+			this.stats.incrementConnectCount();
+			this.tcpClient.connect(handler, new FixedIntervalReconnectStrategy(5000));
+		}
+		if (sharedHandlers != null) {
+			for (SharedStompConnectionHandler handler : sharedHandlers) {
+				this.connectionHandlers.put(handler.getSessionId(), handler);
+				this.tcpClient.connect(handler, new FixedIntervalReconnectStrategy(5000));
+			}
+		}
+	}
+
+	private StompHeaderAccessor createConnectHeaders(String sessionId, String login, String passcode) {
 		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
 		accessor.setAcceptVersion("1.1,1.2");
-		accessor.setLogin(this.systemLogin);
-		accessor.setPasscode(this.systemPasscode);
+		accessor.setLogin(login);
+		accessor.setPasscode(passcode);
 		accessor.setHeartbeat(this.systemHeartbeatSendInterval, this.systemHeartbeatReceiveInterval);
 		accessor.setHost(getVirtualHost());
-		accessor.setSessionId(SYSTEM_SESSION_ID);
+		accessor.setSessionId(sessionId);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Forwarding " + accessor.getShortLogMessage(EMPTY_PAYLOAD));
 		}
-
-		SystemStompConnectionHandler handler = new SystemStompConnectionHandler(accessor);
-		this.connectionHandlers.put(handler.getSessionId(), handler);
-
-		this.stats.incrementConnectCount();
-		this.tcpClient.connect(handler, new FixedIntervalReconnectStrategy(5000));
+		return accessor;
 	}
 
 	@Override
@@ -388,6 +508,7 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		catch (Throwable ex) {
 			logger.error("Error in shutdown of TCP client", ex);
 		}
+		this.sharedClientSessions.clear();
 	}
 
 	@Override
@@ -449,7 +570,13 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			return;
 		}
 
-		if (StompCommand.CONNECT.equals(command)) {
+		if (SYSTEM_SESSION_ID.equals(sessionId)) {
+			getSystemConnectionHandler(destination).forward(message, stompAccessor);
+		}
+		else if (this.sharedConnectionHandlers != null) {
+			handleSharedClientSessionMessage(sessionId, command, message, stompAccessor);
+		}
+		else if (StompCommand.CONNECT.equals(command)) {
 			if (logger.isDebugEnabled()) {
 				logger.debug(stompAccessor.getShortLogMessage(EMPTY_PAYLOAD));
 			}
@@ -487,6 +614,94 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		}
 	}
 
+	/**
+	 * Select the "system" connection for the given destination, falling back on
+	 * any other connected one if the selected connection is not connected.
+	 */
+	private StompConnectionHandler getSystemConnectionHandler(String destination) {
+		SystemStompConnectionHandler[] handlers = this.systemConnectionHandlers;
+		if (handlers.length == 1) {
+			return handlers[0];
+		}
+		int index = (destination != null ? (destination.hashCode() & Integer.MAX_VALUE) % handlers.length : 0);
+		if (!handlers[index].isStompConnected()) {
+			for (SystemStompConnectionHandler handler : handlers) {
+				if (handler.isStompConnected()) {
+					return handler;
+				}
+			}
+		}
+		return handlers[index];
+	}
+
+	private void handleSharedClientSessionMessage(String sessionId, StompCommand command,
+			Message<?> message, StompHeaderAccessor stompAccessor) {
+
+		if (StompCommand.CONNECT.equals(command)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug(stompAccessor.getShortLogMessage(EMPTY_PAYLOAD));
+			}
+			this.stats.incrementConnectCount();
+			SharedStompConnectionHandler handler = getSharedConnectionHandler(sessionId);
+			if (handler == null) {
+				sendStompErrorFrame(sessionId, stompAccessor.getUser(), "Connection to broker not available.");
+				return;
+			}
+			SharedClientSession session = new SharedClientSession(sessionId, stompAccessor.getUser(), handler);
+			this.sharedClientSessions.put(sessionId, session);
+			this.stats.incrementConnectedCount();
+			session.sendConnected(stompAccessor);
+			return;
+		}
+
+		SharedClientSession session = this.sharedClientSessions.get(sessionId);
+		if (session == null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("No shared TCP connection for session " + sessionId + " in " + message);
+			}
+			return;
+		}
+		if (StompCommand.DISCONNECT.equals(command)) {
+			this.stats.incrementDisconnectCount();
+			if (this.sharedClientSessions.remove(sessionId) != null) {
+				session.disconnect(stompAccessor.getReceipt());
+			}
+		}
+		else {
+			session.forward(message, stompAccessor);
+		}
+	}
+
+	/**
+	 * Select the shared connection for the given client session by session id,
+	 * or any other connected one if that is not connected.
+	 * @return the connection handler, or {@code null} if none is connected
+	 */
+	private SharedStompConnectionHandler getSharedConnectionHandler(String sessionId) {
+		SharedStompConnectionHandler[] handlers = this.sharedConnectionHandlers;
+		int index = (sessionId.hashCode() & Integer.MAX_VALUE) % handlers.length;
+		for (int i = 0; i < handlers.length; i++) {
+			SharedStompConnectionHandler handler = handlers[(index + i) % handlers.length];
+			if (handler.isStompConnected()) {
+				return handler;
+			}
+		}
+		return null;
+	}
+
+	private void sendStompErrorFrame(String sessionId, Principal user, String errorText) {
+		StompHeaderAccessor headerAccessor = StompHeaderAccessor.create(StompCommand.ERROR);
+		if (getHeaderInitializer() != null) {
+			getHeaderInitializer().initHeaders(headerAccessor);
+		}
+		headerAccessor.setSessionId(sessionId);
+		headerAccessor.setUser(user);
+		headerAccessor.setMessage(errorText);
+		Message<?> errorMessage = MessageBuilder.createMessage(EMPTY_PAYLOAD, headerAccessor.getMessageHeaders());
+		headerAccessor.setImmutable();
+		getClientOutboundChannel().send(errorMessage);
+	}
+
 	@Override
 	public String toString() {
 		return "StompBrokerRelay[" + this.relayHost + ":" + this.relayPort + "]";
@@ -505,6 +720,10 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 		private volatile boolean isStompConnected;
 
+		private final AtomicLong forwardedCount = new AtomicLong();
+
+		private final AtomicLong receivedCount = new AtomicLong();
+
 
 		private StompConnectionHandler(String sessionId, StompHeaderAccessor connectHeaders) {
 			this(sessionId, connectHeaders, true);
@@ -522,6 +741,22 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			return this.sessionId;
 		}
 
+		public boolean isStompConnected() {
+			return this.isStompConnected;
+		}
+
+		/**
+		 * Return the number of frames received from and forwarded to the broker.
+		 */
+		public String getThroughputInfo() {
+			return this.sessionId + "[received=" + this.receivedCount.get() +
+					", forwarded=" + this.forwardedCount.get() + "]";
+		}
+
+		protected void incrementReceivedCount() {
+			this.receivedCount.incrementAndGet();
+		}
+
 		@Override
 		public void afterConnected(TcpConnection<byte[]> connection) {
 			if (logger.isDebugEnabled()) {
@@ -561,16 +796,7 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 		private void sendStompErrorFrameToClient(String errorText) {
 			if (this.isRemoteClientSession) {
-				StompHeaderAccessor headerAccessor = StompHeaderAccessor.create(StompCommand.ERROR);
-				if (getHeaderInitializer() != null) {
-					getHeaderInitializer().initHeaders(headerAccessor);
-				}
-				headerAccessor.setSessionId(this.sessionId);
-				headerAccessor.setUser(this.connectHeaders.getUser());
-				headerAccessor.setMessage(errorText);
-				Message<?> errorMessage = MessageBuilder.createMessage(EMPTY_PAYLOAD, headerAccessor.getMessageHeaders());
-				headerAccessor.setImmutable();
-				sendMessageToClient(errorMessage);
+				sendStompErrorFrame(this.sessionId, this.connectHeaders.getUser(), errorText);
 			}
 		}
 
@@ -582,6 +808,7 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 		@Override
 		public void handleMessage(Message<byte[]> message) {
+			this.receivedCount.incrementAndGet();
 			StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
 			accessor.setSessionId(this.sessionId);
 			accessor.setUser(this.connectHeaders.getUser());
@@ -741,6 +968,7 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 				logger.trace("Forwarding " + accessor.getDetailedLogMessage(message.getPayload()));
 			}
 
+			this.forwardedCount.incrementAndGet();
 			ListenableFuture<Void> future = conn.send((Message<byte[]>) messageToSend);
 			future.addCallback(new ListenableFutureCallback<Void>() {
 				@Override
@@ -818,29 +1046,48 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 	private class SystemStompConnectionHandler extends StompConnectionHandler {
 
-		public SystemStompConnectionHandler(StompHeaderAccessor connectHeaders) {
-			super(SYSTEM_SESSION_ID, connectHeaders, false);
+		/** Whether this connection is counted as connected towards broker availability */
+		private final AtomicBoolean available = new AtomicBoolean();
+
+		public SystemStompConnectionHandler(String sessionId, StompHeaderAccessor connectHeaders) {
+			super(sessionId, connectHeaders, false);
 		}
 
 		@Override
 		protected void afterStompConnected(StompHeaderAccessor connectedHeaders) {
 			if (logger.isInfoEnabled()) {
-				logger.info("\"System\" session connected.");
+				logger.info("\"System\" session " + getSessionId() + " connected.");
 			}
 			super.afterStompConnected(connectedHeaders);
+			if (this.available.compareAndSet(false, true)) {
+				connectedSystemConnectionCount.incrementAndGet();
+			}
 			publishBrokerAvailableEvent();
 		}
 
 		@Override
 		protected void handleTcpConnectionFailure(String errorMessage, Throwable ex) {
 			super.handleTcpConnectionFailure(errorMessage, ex);
-			publishBrokerUnavailableEvent();
+			afterUnavailable();
 		}
 
 		@Override
 		public void afterConnectionClosed() {
 			super.afterConnectionClosed();
-			publishBrokerUnavailableEvent();
+			afterUnavailable();
+		}
+
+		/**
+		 * The broker is only unavailable once none of the "system" connections
+		 * is connected; until then messages are sent over the remaining ones.
+		 */
+		private void afterUnavailable() {
+			if (this.available.compareAndSet(true, false)) {
+				connectedSystemConnectionCount.decrementAndGet();
+			}
+			if (connectedSystemConnectionCount.get() == 0) {
+				publishBrokerUnavailableEvent();
+			}
 		}
 
 		@Override
@@ -857,6 +1104,360 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 	}
 
 
+	/**
+	 * A connection to the broker shared by many client sessions. Subscription and
+	 * receipt ids of client frames are replaced with ids unique to the connection,
+	 * which are mapped back when the broker sends MESSAGE and RECEIPT frames.
+	 * Transaction ids are prefixed with an id unique to the client session.
+	 */
+	private class SharedStompConnectionHandler extends StompConnectionHandler {
+
+		private final AtomicLong idCounter = new AtomicLong();
+
+		/** Client session and original subscription id by relayed subscription id */
+		private final ConcurrentMap<String, RelayedId> subscriptions = new ConcurrentHashMap<String, RelayedId>();
+
+		/** Client session and original receipt by relayed receipt */
+		private final ConcurrentMap<String, RelayedId> receipts = new ConcurrentHashMap<String, RelayedId>();
+
+		/** The STOMP version negotiated with the broker, if any */
+		private volatile String version;
+
+		public SharedStompConnectionHandler(String sessionId, StompHeaderAccessor connectHeaders) {
+			super(sessionId, connectHeaders, false);
+		}
+
+		public String getVersion() {
+			return this.version;
+		}
+
+		@Override
+		protected void afterStompConnected(StompHeaderAccessor connectedHeaders) {
+			this.version = connectedHeaders.getVersion();
+			super.afterStompConnected(connectedHeaders);
+		}
+
+		public String relaySubscription(SharedClientSession session, String subscriptionId) {
+			String relayedId = nextId();
+			this.subscriptions.put(relayedId, new RelayedId(session, subscriptionId));
+			return relayedId;
+		}
+
+		public void removeSubscription(String relayedId) {
+			this.subscriptions.remove(relayedId);
+		}
+
+		public String relayReceipt(SharedClientSession session, String receipt) {
+			String relayedReceipt = nextId();
+			this.receipts.put(relayedReceipt, new RelayedId(session, receipt));
+			return relayedReceipt;
+		}
+
+		private String nextId() {
+			return getSessionId() + "-" + this.idCounter.getAndIncrement();
+		}
+
+		@Override
+		public void handleMessage(Message<byte[]> message) {
+			StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+			StompCommand command = accessor.getCommand();
+			if (StompCommand.CONNECTED.equals(command)) {
+				super.handleMessage(message);
+				return;
+			}
+			incrementReceivedCount();
+			RelayedId target = null;
+			if (StompCommand.MESSAGE.equals(command)) {
+				target = this.subscriptions.get(accessor.getSubscriptionId());
+				if (target != null) {
+					accessor.setSubscriptionId(target.id);
+				}
+			}
+			else if (StompCommand.RECEIPT.equals(command)) {
+				target = this.receipts.remove(accessor.getReceiptId());
+				if (target != null) {
+					accessor.setReceiptId(target.id);
+				}
+			}
+			else if (StompCommand.ERROR.equals(command)) {
+				if (logger.isErrorEnabled()) {
+					logger.error("Received " + accessor.getShortLogMessage(message.getPayload()) +
+							" in shared session " + getSessionId());
+				}
+				String receipt = accessor.getReceiptId();
+				target = (receipt != null ? this.receipts.remove(receipt) : null);
+				if (target != null) {
+					accessor.setReceiptId(target.id);
+				}
+			}
+			if (target == null) {
+				if (logger.isTraceEnabled()) {
+					logger.trace("No client session for " + accessor.getShortLogMessage(message.getPayload()));
+				}
+				return;
+			}
+			accessor.setSessionId(target.session.getSessionId());
+			accessor.setUser(target.session.getUser());
+			accessor.setImmutable();
+			getClientOutboundChannel().send(message);
+		}
+
+		@Override
+		public ListenableFuture<Void> forward(Message<?> message, StompHeaderAccessor accessor) {
+			if (!isStompConnected()) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Shared TCP connection " + getSessionId() + " not connected, ignoring " +
+							accessor.getShortLogMessage(message.getPayload()));
+				}
+				return EMPTY_TASK;
+			}
+			return super.forward(message, accessor);
+		}
+
+		@Override
+		protected void handleTcpConnectionFailure(String error, Throwable ex) {
+			try {
+				super.handleTcpConnectionFailure(error, ex);
+			}
+			finally {
+				closeClientSessions(error);
+			}
+		}
+
+		@Override
+		public void afterConnectionClosed() {
+			try {
+				super.afterConnectionClosed();
+			}
+			finally {
+				closeClientSessions("Connection to broker closed.");
+			}
+		}
+
+		/**
+		 * Send an ERROR frame to all client sessions of this connection, since their
+		 * subscriptions are gone along with the connection.
+		 */
+		private void closeClientSessions(String errorText) {
+			this.subscriptions.clear();
+			this.receipts.clear();
+			for (SharedClientSession session : sharedClientSessions.values()) {
+				if (session.getConnectionHandler() == this &&
+						sharedClientSessions.remove(session.getSessionId()) != null) {
+					sendStompErrorFrame(session.getSessionId(), session.getUser(), errorText);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "SharedStompConnectionHandler[sessionId=" + getSessionId() + "]";
+		}
+	}
+
+
+	/**
+	 * A client session multiplexed over a {@link SharedStompConnectionHandler}.
+	 */
+	private class SharedClientSession {
+
+		private final String sessionId;
+
+		private final Principal user;
+
+		private final SharedStompConnectionHandler connectionHandler;
+
+		/** Relayed subscription id by the client's subscription id */
+		private final Map<String, String> subscriptions = new ConcurrentHashMap<String, String>();
+
+		/** Prefix for the client's transaction ids, unique to the session */
+		private final String transactionPrefix;
+
+		/** Relayed ids of the transactions begun but not yet committed or aborted */
+		private final Set<String> transactions =
+				Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+		/** Whether the client uses the STOMP version negotiated with the broker */
+		private volatile boolean brokerVersion;
+
+		public SharedClientSession(String sessionId, Principal user, SharedStompConnectionHandler handler) {
+			this.sessionId = sessionId;
+			this.user = user;
+			this.connectionHandler = handler;
+			this.transactionPrefix = handler.nextId() + "-";
+		}
+
+		public String getSessionId() {
+			return this.sessionId;
+		}
+
+		public Principal getUser() {
+			return this.user;
+		}
+
+		public SharedStompConnectionHandler getConnectionHandler() {
+			return this.connectionHandler;
+		}
+
+		/**
+		 * Reply with the STOMP version negotiated by the shared connection, if
+		 * accepted by the client, or otherwise with the client's best version.
+		 */
+		public void sendConnected(StompHeaderAccessor connectHeaders) {
+			Set<String> acceptVersions = connectHeaders.getAcceptVersion();
+			String version = this.connectionHandler.getVersion();
+			this.brokerVersion = (version != null && acceptVersions.contains(version));
+			if (!this.brokerVersion) {
+				version = (acceptVersions.contains("1.2") ? "1.2" : "1.1");
+			}
+			StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+			if (getHeaderInitializer() != null) {
+				getHeaderInitializer().initHeaders(accessor);
+			}
+			accessor.setVersion(version);
+			accessor.setHeartbeat(0, 0);
+			accessor.setSessionId(this.sessionId);
+			accessor.setUser(this.user);
+			Message<byte[]> message = MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders());
+			accessor.setImmutable();
+			getClientOutboundChannel().send(message);
+		}
+
+		/**
+		 * Forward a frame of the client session, replacing its subscription ids,
+		 * receipt and transaction with the ones relayed over the shared connection.
+		 * <p>STOMP 1.1 ACK and NACK frames refer to a subscription, and get the
+		 * relayed subscription id, while the "id" header of STOMP 1.2 ACK and NACK
+		 * frames refers to the "ack" header of a MESSAGE frame from the broker,
+		 * which is passed on to the client unchanged.
+		 */
+		public void forward(Message<?> message, StompHeaderAccessor accessor) {
+			StompCommand command = accessor.getCommand();
+			String transaction = accessor.getFirstNativeHeader(STOMP_TRANSACTION_HEADER);
+			String ackSubscriptionId = (StompCommand.ACK.equals(command) || StompCommand.NACK.equals(command) ?
+					accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER) : null);
+			if (StompCommand.SUBSCRIBE.equals(command) || StompCommand.UNSUBSCRIBE.equals(command) ||
+					accessor.getReceipt() != null || transaction != null || ackSubscriptionId != null) {
+				accessor = (accessor.isMutable() ? accessor : StompHeaderAccessor.wrap(message));
+			}
+			if (StompCommand.SUBSCRIBE.equals(command)) {
+				if (!this.brokerVersion && isClientAck(accessor)) {
+					rejectClientAck();
+					return;
+				}
+				String relayedId = this.connectionHandler.relaySubscription(this, accessor.getSubscriptionId());
+				String previous = this.subscriptions.put(accessor.getSubscriptionId(), relayedId);
+				if (previous != null) {
+					this.connectionHandler.removeSubscription(previous);
+				}
+				accessor.setSubscriptionId(relayedId);
+			}
+			else if (StompCommand.UNSUBSCRIBE.equals(command)) {
+				String relayedId = this.subscriptions.remove(accessor.getSubscriptionId());
+				if (relayedId == null) {
+					return;
+				}
+				this.connectionHandler.removeSubscription(relayedId);
+				accessor.setSubscriptionId(relayedId);
+			}
+			else if (ackSubscriptionId != null) {
+				String relayedId = this.subscriptions.get(ackSubscriptionId);
+				if (relayedId == null) {
+					// Unknown to the broker, which would reply with an ERROR frame
+					if (logger.isDebugEnabled()) {
+						logger.debug("Ignoring " + accessor.getShortLogMessage(EMPTY_PAYLOAD) +
+								" for unknown subscription in session " + this.sessionId);
+					}
+					return;
+				}
+				accessor.setNativeHeader(StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, relayedId);
+			}
+			if (transaction != null) {
+				String relayedTransaction = this.transactionPrefix + transaction;
+				if (StompCommand.BEGIN.equals(command)) {
+					this.transactions.add(relayedTransaction);
+				}
+				else if (StompCommand.COMMIT.equals(command) || StompCommand.ABORT.equals(command)) {
+					this.transactions.remove(relayedTransaction);
+				}
+				accessor.setNativeHeader(STOMP_TRANSACTION_HEADER, relayedTransaction);
+			}
+			if (accessor.getReceipt() != null) {
+				accessor.setReceipt(this.connectionHandler.relayReceipt(this, accessor.getReceipt()));
+			}
+			this.connectionHandler.forward(message, accessor);
+		}
+
+		private boolean isClientAck(StompHeaderAccessor accessor) {
+			String ack = accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_ACK_HEADER);
+			return ("client".equals(ack) || "client-individual".equals(ack));
+		}
+
+		/**
+		 * Send an ERROR frame for a subscription with client acknowledgement and
+		 * end the session, since the client does not use the STOMP version that
+		 * its ACK and NACK frames would have to follow.
+		 */
+		private void rejectClientAck() {
+			if (sharedClientSessions.remove(this.sessionId) != null) {
+				disconnect(null);
+			}
+			sendStompErrorFrame(this.sessionId, this.user, "Client acknowledgement requires the STOMP version " +
+					"of the shared connection to the broker (" + this.connectionHandler.getVersion() + ").");
+		}
+
+		/**
+		 * Abort all pending transactions and remove all subscriptions of the session
+		 * from the broker, rather than sending the DISCONNECT frame that would close
+		 * the shared connection.
+		 */
+		public void disconnect(String receipt) {
+			for (String relayedTransaction : this.transactions) {
+				StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ABORT);
+				accessor.setNativeHeader(STOMP_TRANSACTION_HEADER, relayedTransaction);
+				accessor.setSessionId(this.sessionId);
+				Message<byte[]> message = MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders());
+				this.connectionHandler.forward(message, accessor);
+			}
+			this.transactions.clear();
+			for (String relayedId : this.subscriptions.values()) {
+				this.connectionHandler.removeSubscription(relayedId);
+				StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+				accessor.setSubscriptionId(relayedId);
+				accessor.setSessionId(this.sessionId);
+				Message<byte[]> message = MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders());
+				this.connectionHandler.forward(message, accessor);
+			}
+			this.subscriptions.clear();
+			if (receipt != null) {
+				StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.RECEIPT);
+				if (getHeaderInitializer() != null) {
+					getHeaderInitializer().initHeaders(accessor);
+				}
+				accessor.setReceiptId(receipt);
+				accessor.setSessionId(this.sessionId);
+				accessor.setUser(this.user);
+				Message<byte[]> message = MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders());
+				accessor.setImmutable();
+				getClientOutboundChannel().send(message);
+			}
+		}
+	}
+
+
+	private static class RelayedId {
+
+		private final SharedClientSession session;
+
+		private final String id;
+
+		public RelayedId(SharedClientSession session, String id) {
+			this.session = session;
+			this.id = id;
+		}
+	}
+
+
 	private static class StompTcpClientFactory {
 
 		public TcpOperations<byte[]> create(String relayHost, int relayPort, Reactor11StompCodec codec) {
@@ -895,10 +1496,23 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		}
 
 		public String toString() {
-			return connectionHandlers.size() + " sessions, " + relayHost + ":" + relayPort +
-					(isBrokerAvailable() ? " (available)" : " (not available)") +
-					", processed CONNECT(" + this.connect.get() + ")-CONNECTED(" +
-					this.connected.get() + ")-DISCONNECT(" + this.disconnect.get() + ")";
+			StringBuilder sb = new StringBuilder();
+			sb.append(connectionHandlers.size() + sharedClientSessions.size()).append(" sessions, ");
+			sb.append(relayHost).append(":").append(relayPort);
+			sb.append(isBrokerAvailable() ? " (available)" : " (not available)");
+			sb.append(", processed CONNECT(").append(this.connect.get()).append(")-CONNECTED(");
+			sb.append(this.connected.get()).append(")-DISCONNECT(").append(this.disconnect.get()).append(")");
+			appendThroughputInfo(sb, systemConnectionHandlers);
+			appendThroughputInfo(sb, sharedConnectionHandlers);
+			return sb.toString();
+		}
+
+		private void appendThroughputInfo(StringBuilder sb, StompConnectionHandler[] handlers) {
+			if (handlers != null) {
+				for (StompConnectionHandler handler : handlers) {
+					sb.append(", ").append(handler.getThroughputInfo());
+				}
+			}
 		}
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -206,8 +206,9 @@ public class StompDecoder {
 	}
 
 	private void readHeaders(ByteBuffer buffer, StompHeaderAccessor headerAccessor) {
+		ByteArrayOutputStream headerStream = new ByteArrayOutputStream(256);
 		while (true) {
-			ByteArrayOutputStream headerStream = new ByteArrayOutputStream(256);
+			headerStream.reset();
 			boolean headerComplete = false;
 			while (buffer.hasRemaining()) {
 				if (tryConsumeEndOfLine(buffer)) {
@@ -249,9 +250,12 @@ public class StompDecoder {
 	 * <a href="http://stomp.github.io/stomp-specification-1.2.html#Value_Encoding">"Value Encoding"</a>.
 	 */
 	private String unescape(String inString) {
+		int index = inString.indexOf('\\');
+		if (index == -1) {
+			return inString;
+		}
 		StringBuilder sb = new StringBuilder(inString.length());
 		int pos = 0;  // position in the old string
-		int index = inString.indexOf("\\");
 
 		while (index >= 0) {
 			sb.append(inString.substring(pos, index));
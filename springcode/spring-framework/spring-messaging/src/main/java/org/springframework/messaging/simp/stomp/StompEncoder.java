@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,12 @@
 
 package org.springframework.messaging.simp.stomp;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -32,22 +34,47 @@ import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.NativeMessageHeaderAccessor;
 import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentLruCache;
 
 /**
  * An encoder for STOMP frames.
  *
+ * <p>A frame is assembled from its encoded parts into a single byte array of
+ * the exact frame size, with the encoded bytes of header names cached across
+ * frames. For a message sent to many subscribers, see {@link #prepare}.
+ *
  * @author Andy Wilkinson
  * @author Rossen Stoyanchev
  * @since 4.0
  */
 public final class StompEncoder  {
 
-	private static final byte LF = '\n';
+	private static final byte[] LF = new byte[] {'\n'};
+
+	private static final byte[] COLON = new byte[] {':'};
+
+	private static final byte[] NULL_OCTET = new byte[] {0};
+
+	private static final byte[] CONTENT_LENGTH = "content-length:".getBytes(StompDecoder.UTF8_CHARSET);
+
+	private static final int HEADER_KEY_CACHE_LIMIT = 64;
+
+	/** Map from STOMP command -> encoded command line */
+	private static final Map<StompCommand, byte[]> commandLines = new EnumMap<StompCommand, byte[]>(StompCommand.class);
+
+	static {
+		for (StompCommand command : StompCommand.values()) {
+			commandLines.put(command, (command.toString() + "\n").getBytes(StompDecoder.UTF8_CHARSET));
+		}
+	}
 
-	private static final byte COLON = ':';
 
 	private final Log logger = LogFactory.getLog(StompEncoder.class);
 
+	/** Map from header name -> escaped and encoded header name */
+	private final ConcurrentLruCache<String, byte[]> headerKeyCache =
+			new ConcurrentLruCache<String, byte[]>(HEADER_KEY_CACHE_LIMIT);
+
 
 	/**
 	 * Encodes the given STOMP {@code message} into a {@code byte[]}
@@ -68,41 +95,54 @@ public final class StompEncoder  {
 		Assert.notNull(headers, "'headers' is required");
 		Assert.notNull(payload, "'payload' is required");
 
-		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream(128 + payload.length);
-			DataOutputStream output = new DataOutputStream(baos);
-
-			if (SimpMessageType.HEARTBEAT.equals(SimpMessageHeaderAccessor.getMessageType(headers))) {
-				output.write(StompDecoder.HEARTBEAT_PAYLOAD);
-			}
-			else {
-				StompCommand command = StompHeaderAccessor.getCommand(headers);
-				Assert.notNull(command, "Missing STOMP command: " + headers);
-				output.write(command.toString().getBytes(StompDecoder.UTF8_CHARSET));
-				output.write(LF);
-				writeHeaders(command, headers, payload, output);
-				output.write(LF);
-				writeBody(payload, output);
-				output.write((byte) 0);
-			}
-
-			return baos.toByteArray();
+		if (SimpMessageType.HEARTBEAT.equals(SimpMessageHeaderAccessor.getMessageType(headers))) {
+			return StompDecoder.HEARTBEAT_PAYLOAD.clone();
 		}
-		catch (IOException ex) {
-			throw new StompConversionException("Failed to encode STOMP frame, headers=" + headers,  ex);
+
+		StompCommand command = StompHeaderAccessor.getCommand(headers);
+		Assert.notNull(command, "Missing STOMP command: " + headers);
+		Map<String, List<String>> nativeHeaders = getNativeHeaders(headers);
+		if (logger.isTraceEnabled()) {
+			logger.trace("Encoding STOMP " + command + ", headers=" + nativeHeaders);
 		}
+
+		FrameParts frame = new FrameParts();
+		frame.add(commandLines.get(command));
+		writeHeaders(command, headers, nativeHeaders, Collections.<String>emptySet(), frame);
+		writeBody(command, payload, frame);
+		return frame.toByteArray();
 	}
 
-	private void writeHeaders(StompCommand command, Map<String, Object> headers, byte[] payload, DataOutputStream output)
-			throws IOException {
+	/**
+	 * Prepare the given headers and payload for encoding into several frames
+	 * that differ only in the values of the given headers, e.g. a message sent
+	 * to many subscriptions, which differ in their "subscription" and
+	 * "message-id" headers.
+	 * <p>The returned frame encodes the command, the remaining headers, and
+	 * the payload once, and then merely inserts the variable headers of each
+	 * frame. Preparing a frame therefore only pays off if it is reused.
+	 * @param headers the headers, including the native headers
+	 * @param payload the payload
+	 * @param variableHeaderNames the names of the native headers whose values
+	 * are to be provided for each encoded frame
+	 * @return the prepared frame
+	 * @since 4.1.10
+	 */
+	public PreparedFrame prepare(Map<String, Object> headers, byte[] payload, String... variableHeaderNames) {
+		Assert.notNull(headers, "'headers' is required");
+		Assert.notNull(payload, "'payload' is required");
+		StompCommand command = StompHeaderAccessor.getCommand(headers);
+		Assert.notNull(command, "Missing STOMP command: " + headers);
+		return new PreparedFrame(command, headers, payload, Arrays.asList(variableHeaderNames));
+	}
 
-		@SuppressWarnings("unchecked")
-		Map<String,List<String>> nativeHeaders =
-				(Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+	@SuppressWarnings("unchecked")
+	private static Map<String, List<String>> getNativeHeaders(Map<String, Object> headers) {
+		return (Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+	}
 
-		if (logger.isTraceEnabled()) {
-			logger.trace("Encoding STOMP " + command + ", headers=" + nativeHeaders);
-		}
+	private void writeHeaders(StompCommand command, Map<String, Object> headers,
+			Map<String, List<String>> nativeHeaders, Collection<String> excludedHeaders, FrameParts frame) {
 
 		if (nativeHeaders == null) {
 			return;
@@ -111,28 +151,52 @@ public final class StompEncoder  {
 		boolean shouldEscape = (command != StompCommand.CONNECT && command != StompCommand.CONNECTED);
 
 		for (Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
-			byte[] key = encodeHeaderString(entry.getKey(), shouldEscape);
 			if (command.requiresContentLength() && "content-length".equals(entry.getKey())) {
 				continue;
 			}
+			if (excludedHeaders.contains(entry.getKey())) {
+				continue;
+			}
 			List<String> values = entry.getValue();
 			if (StompCommand.CONNECT.equals(command) &&
 					StompHeaderAccessor.STOMP_PASSCODE_HEADER.equals(entry.getKey())) {
 				values = Arrays.asList(StompHeaderAccessor.getPasscode(headers));
 			}
-			for (String value : values) {
-				output.write(key);
-				output.write(COLON);
-				output.write(encodeHeaderString(value, shouldEscape));
-				output.write(LF);
-			}
+			writeHeader(entry.getKey(), values, shouldEscape, frame);
 		}
+	}
+
+	private void writeHeader(String name, List<String> values, boolean shouldEscape, FrameParts frame) {
+		byte[] key = encodeHeaderKey(name, shouldEscape);
+		for (String value : values) {
+			frame.add(key);
+			frame.add(COLON);
+			frame.add(encodeHeaderString(value, shouldEscape));
+			frame.add(LF);
+		}
+	}
+
+	private void writeBody(StompCommand command, byte[] payload, FrameParts frame) {
 		if (command.requiresContentLength()) {
-			int contentLength = payload.length;
-			output.write("content-length:".getBytes(StompDecoder.UTF8_CHARSET));
-			output.write(Integer.toString(contentLength).getBytes(StompDecoder.UTF8_CHARSET));
-			output.write(LF);
+			frame.add(CONTENT_LENGTH);
+			frame.add(Integer.toString(payload.length).getBytes(StompDecoder.UTF8_CHARSET));
+			frame.add(LF);
+		}
+		frame.add(LF);
+		frame.add(payload);
+		frame.add(NULL_OCTET);
+	}
+
+	private byte[] encodeHeaderKey(String input, boolean escape) {
+		if (!escape) {
+			return encodeHeaderString(input, false);
+		}
+		byte[] bytes = this.headerKeyCache.get(input);
+		if (bytes == null) {
+			bytes = encodeHeaderString(input, true);
+			this.headerKeyCache.put(input, bytes);
 		}
+		return bytes;
 	}
 
 	private byte[] encodeHeaderString(String input, boolean escape) {
@@ -145,30 +209,178 @@ public final class StompEncoder  {
 	 * <a href="http://stomp.github.io/stomp-specification-1.2.html#Value_Encoding">"Value Encoding"</a>.
 	 */
 	private String escape(String inString) {
-		StringBuilder sb = new StringBuilder(inString.length());
+		StringBuilder sb = null;
 		for (int i = 0; i < inString.length(); i++) {
 			char c = inString.charAt(i);
 			if (c == '\\') {
+				sb = getStringBuilder(sb, inString, i);
 				sb.append("\\\\");
 			}
 			else if (c == ':') {
+				sb = getStringBuilder(sb, inString, i);
 				sb.append("\\c");
 			}
 			else if (c == '\n') {
-				 sb.append("\\n");
+				sb = getStringBuilder(sb, inString, i);
+				sb.append("\\n");
 			}
 			else if (c == '\r') {
+				sb = getStringBuilder(sb, inString, i);
 				sb.append("\\r");
 			}
-			else {
+			else if (sb != null) {
 				sb.append(c);
 			}
 		}
-		return sb.toString();
+		return (sb != null ? sb.toString() : inString);
 	}
 
-	private void writeBody(byte[] payload, DataOutputStream output) throws IOException {
-		output.write(payload);
+	private StringBuilder getStringBuilder(StringBuilder sb, String inString, int i) {
+		if (sb == null) {
+			sb = new StringBuilder(inString.length() + 8);
+			sb.append(inString, 0, i);
+		}
+		return sb;
+	}
+
+
+	/**
+	 * A STOMP frame prepared for encoding several times, with different values
+	 * for a given set of headers.
+	 * @since 4.1.10
+	 * @see StompEncoder#prepare
+	 */
+	public final class PreparedFrame {
+
+		private final StompCommand command;
+
+		private final Map<String, List<String>> fixedNativeHeaders;
+
+		private final List<String> variableHeaderNames;
+
+		/** The encoded parts before and after the variable headers */
+		private final byte[][] encodedParts;
+
+		/** The offset of the payload within the encoded part after the variable headers */
+		private final int payloadOffset;
+
+		private PreparedFrame(StompCommand command, Map<String, Object> headers, byte[] payload,
+				List<String> variableHeaderNames) {
+
+			this.command = command;
+			this.variableHeaderNames = variableHeaderNames;
+			this.fixedNativeHeaders = new LinkedHashMap<String, List<String>>();
+			Map<String, List<String>> nativeHeaders = getNativeHeaders(headers);
+			if (nativeHeaders != null) {
+				for (Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
+					if (!variableHeaderNames.contains(entry.getKey())) {
+						this.fixedNativeHeaders.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+					}
+				}
+			}
+			FrameParts prefix = new FrameParts();
+			prefix.add(commandLines.get(command));
+			writeHeaders(command, headers, this.fixedNativeHeaders, variableHeaderNames, prefix);
+			FrameParts suffix = new FrameParts();
+			writeBody(command, payload, suffix);
+			this.encodedParts = new byte[][] {prefix.toByteArray(), suffix.toByteArray()};
+			this.payloadOffset = this.encodedParts[1].length - payload.length - NULL_OCTET.length;
+		}
+
+		/**
+		 * Whether a frame with the given headers and payload can be encoded from
+		 * this prepared frame: that is, the payload has the same content as when
+		 * the frame was prepared, and the command and all native headers other
+		 * than the variable ones are equal.
+		 */
+		public boolean matches(Map<String, Object> headers, byte[] payload) {
+			if (this.command != StompHeaderAccessor.getCommand(headers) ||
+					SimpMessageType.HEARTBEAT.equals(SimpMessageHeaderAccessor.getMessageType(headers))) {
+				return false;
+			}
+			Map<String, List<String>> nativeHeaders = getNativeHeaders(headers);
+			if (nativeHeaders == null) {
+				return (this.fixedNativeHeaders.isEmpty() && hasPayload(payload));
+			}
+			int count = 0;
+			for (Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
+				if (this.variableHeaderNames.contains(entry.getKey())) {
+					continue;
+				}
+				if (!entry.getValue().equals(this.fixedNativeHeaders.get(entry.getKey()))) {
+					return false;
+				}
+				count++;
+			}
+			return (count == this.fixedNativeHeaders.size() && hasPayload(payload));
+		}
+
+		/**
+		 * Compare against the encoded payload rather than the original array,
+		 * which the caller may have reused for another message.
+		 */
+		private boolean hasPayload(byte[] payload) {
+			byte[] encoded = this.encodedParts[1];
+			if (payload.length != encoded.length - this.payloadOffset - NULL_OCTET.length) {
+				return false;
+			}
+			for (int i = 0; i < payload.length; i++) {
+				if (payload[i] != encoded[this.payloadOffset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Encode a frame, taking the values of the variable headers from the
+		 * native headers within the given headers.
+		 * @param headers the headers to take the values of the variable headers from
+		 * @return the encoded frame
+		 */
+		public byte[] encode(Map<String, Object> headers) {
+			boolean shouldEscape = (this.command != StompCommand.CONNECT && this.command != StompCommand.CONNECTED);
+			FrameParts frame = new FrameParts();
+			frame.add(this.encodedParts[0]);
+			Map<String, List<String>> nativeHeaders = getNativeHeaders(headers);
+			if (nativeHeaders != null) {
+				for (String name : this.variableHeaderNames) {
+					List<String> values = nativeHeaders.get(name);
+					if (values != null) {
+						writeHeader(name, values, shouldEscape, frame);
+					}
+				}
+			}
+			frame.add(this.encodedParts[1]);
+			return frame.toByteArray();
+		}
+	}
+
+
+	/**
+	 * Collects the encoded parts of a frame, for copying them into a single
+	 * array of the exact frame size.
+	 */
+	private static class FrameParts {
+
+		private final List<byte[]> parts = new ArrayList<byte[]>(32);
+
+		private int size;
+
+		public void add(byte[] part) {
+			this.parts.add(part);
+			this.size += part.length;
+		}
+
+		public byte[] toByteArray() {
+			byte[] result = new byte[this.size];
+			int position = 0;
+			for (byte[] part : this.parts) {
+				System.arraycopy(part, 0, result, position, part.length);
+				position += part.length;
+			}
+			return result;
+		}
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.messaging.simp.user;
 
 import java.security.Principal;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -48,6 +49,10 @@ import org.springframework.util.StringUtils;
  * removed and the suffix added, resulting in something like
  * "/queue/position-updates-useri9oqdfzo".
  *
+ * <p>A message sent to "/user/queue/position-updates" with the names of several
+ * users in the {@link SimpMessageHeaderAccessor#TARGET_USERS_HEADER} header is
+ * resolved to the destinations of all sessions of those users in a single pass.
+ *
  * @author Rossen Stoyanchev
  * @author Brian Clozel
  * @since 4.0
@@ -104,6 +109,11 @@ public class DefaultUserDestinationResolver implements UserDestinationResolver {
 	@Override
 	public UserDestinationResult resolveDestination(Message<?> message) {
 		String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+		Collection<String> targetUsers = SimpMessageHeaderAccessor.getTargetUsers(message.getHeaders());
+		if (targetUsers != null && destination != null && checkDestination(destination, this.destinationPrefix) &&
+				SimpMessageType.MESSAGE.equals(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()))) {
+			return resolveDestination(destination, targetUsers);
+		}
 		DestinationInfo info = parseUserDestination(message);
 		if (info == null) {
 			return null;
@@ -119,6 +129,24 @@ public class DefaultUserDestinationResolver implements UserDestinationResolver {
 		return new UserDestinationResult(destination, resolved, info.getSubscribeDestination(), info.getUser());
 	}
 
+	/**
+	 * Resolve a destination without a user name, e.g. "/user/queue/position-updates",
+	 * for all sessions of the given users.
+	 */
+	private UserDestinationResult resolveDestination(String destination, Collection<String> users) {
+		String destinationWithoutPrefix = destination.substring(this.destinationPrefix.length() - 1);
+		Set<String> resolved = new HashSet<String>(users.size() * 2);
+		for (String user : users) {
+			for (String sessionId : this.userSessionRegistry.getSessionIds(user)) {
+				String targetDestination = getTargetDestination(destination, destinationWithoutPrefix, sessionId, user);
+				if (targetDestination != null) {
+					resolved.add(targetDestination);
+				}
+			}
+		}
+		return new UserDestinationResult(destination, resolved, destination, null);
+	}
+
 	private DestinationInfo parseUserDestination(Message<?> message) {
 		MessageHeaders headers = message.getHeaders();
 		SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
@@ -157,7 +185,7 @@ public class DefaultUserDestinationResolver implements UserDestinationResolver {
 				user = null;
 				sessionIds = Collections.singleton(sessionId);
 			}
-			else if (this.userSessionRegistry.getSessionIds(user).contains(sessionId)) {
+			else if (sessionId != null && this.userSessionRegistry.getSessionIds(user).contains(sessionId)) {
 				sessionIds = Collections.singleton(sessionId);
 			}
 			else {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,13 +20,16 @@ import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.springframework.util.Assert;
 
 /**
  * A default thread-safe implementation of {@link UserSessionRegistry}.
  *
+ * <p>Registrations do not synchronize on a global lock: the session ids of each
+ * user are held in a concurrent set that is added with {@code putIfAbsent} and
+ * removed once empty, re-registering any session id added concurrently.
+ *
  * @author Rossen Stoyanchev
  * @since 4.0
  */
@@ -35,8 +38,6 @@ public class DefaultUserSessionRegistry implements UserSessionRegistry {
 	// userId -> sessionId
 	private final ConcurrentMap<String, Set<String>> userSessionIds = new ConcurrentHashMap<String, Set<String>>();
 
-	private final Object lock = new Object();
-
 
 	@Override
 	public Set<String> getSessionIds(String user) {
@@ -48,13 +49,20 @@ public class DefaultUserSessionRegistry implements UserSessionRegistry {
 	public void registerSessionId(String user, String sessionId) {
 		Assert.notNull(user, "User must not be null");
 		Assert.notNull(sessionId, "Session ID must not be null");
-		synchronized (this.lock) {
+		while (true) {
 			Set<String> set = this.userSessionIds.get(user);
 			if (set == null) {
-				set = new CopyOnWriteArraySet<String>();
-				this.userSessionIds.put(user, set);
+				set = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(4));
+				Set<String> existing = this.userSessionIds.putIfAbsent(user, set);
+				if (existing != null) {
+					set = existing;
+				}
 			}
 			set.add(sessionId);
+			if (this.userSessionIds.get(user) == set) {
+				return;
+			}
+			// The set was removed as empty in the meantime: register in a new one
 		}
 	}
 
@@ -62,11 +70,12 @@ public class DefaultUserSessionRegistry implements UserSessionRegistry {
 	public void unregisterSessionId(String userName, String sessionId) {
 		Assert.notNull(userName, "User Name must not be null");
 		Assert.notNull(sessionId, "Session ID must not be null");
-		synchronized (lock) {
-			Set<String> set = this.userSessionIds.get(userName);
-			if (set != null) {
-				if (set.remove(sessionId) && set.isEmpty()) {
-					this.userSessionIds.remove(userName);
+		Set<String> set = this.userSessionIds.get(userName);
+		if (set != null && set.remove(sessionId) && set.isEmpty()) {
+			if (this.userSessionIds.remove(userName, set)) {
+				// Re-register session ids added after the isEmpty check
+				for (String remainingId : set) {
+					registerSessionId(userName, remainingId);
 				}
 			}
 		}
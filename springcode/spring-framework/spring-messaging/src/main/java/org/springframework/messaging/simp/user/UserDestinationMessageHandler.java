@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -181,6 +181,7 @@ public class UserDestinationMessageHandler implements MessageHandler, SmartLifec
 			initHeaders(headerAccessor);
 			String header = SimpMessageHeaderAccessor.ORIGINAL_DESTINATION;
 			headerAccessor.setNativeHeader(header, result.getSubscribeDestination());
+			headerAccessor.removeHeader(SimpMessageHeaderAccessor.TARGET_USERS_HEADER);
 			message = MessageBuilder.createMessage(message.getPayload(), headerAccessor.getMessageHeaders());
 		}
 		if (logger.isDebugEnabled()) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,8 +16,12 @@
 
 package org.springframework.messaging.support;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 
 import org.springframework.messaging.Message;
@@ -25,20 +29,40 @@ import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.SubscribableChannel;
+import org.springframework.util.Assert;
 
 /**
  * A {@link SubscribableChannel} that sends messages to each of its subscribers.
  *
+ * <p>By default, with an {@link Executor}, each message is handed off to the
+ * executor separately for each subscriber, so messages may be handled in a
+ * different order than they were sent. Alternatively, messages may be dispatched
+ * in order per value of a given header (e.g. per session id, see
+ * {@link #setOrderedDispatchHeader}): such messages are appended to a queue
+ * for their header value, drained in batches by one task at a time.
+ *
  * @author Phillip Webb
  * @author Rossen Stoyanchev
  * @since 4.0
  */
 public class ExecutorSubscribableChannel extends AbstractSubscribableChannel {
 
+	/** Default maximum number of messages handled per ordered dispatch task: 64 */
+	public static final int DEFAULT_DISPATCH_BATCH_SIZE = 64;
+
+
 	private final Executor executor;
 
 	private final List<ExecutorChannelInterceptor> executorInterceptors = new ArrayList<ExecutorChannelInterceptor>(4);
 
+	private String orderedDispatchHeader;
+
+	private int dispatchBatchSize = DEFAULT_DISPATCH_BATCH_SIZE;
+
+	/** Map from header value -> pending messages, for ordered dispatch */
+	private final ConcurrentMap<Object, OrderedDispatchQueue> dispatchQueues =
+			new ConcurrentHashMap<Object, OrderedDispatchQueue>();
+
 
 	/**
 	 * Create a new {@link ExecutorSubscribableChannel} instance
@@ -63,6 +87,54 @@ public class ExecutorSubscribableChannel extends AbstractSubscribableChannel {
 		return this.executor;
 	}
 
+	/**
+	 * Specify the name of a message header whose value determines the order in
+	 * which messages are dispatched to subscribers when using an {@link Executor}.
+	 * Messages with the same value for this header (e.g. the same session id) are
+	 * handled one at a time, in the order they were sent, with the subscribers of
+	 * a message invoked in turn; messages with different values are handled
+	 * concurrently. Messages without this header are dispatched as usual.
+	 * <p>If the executor rejects a task, the message being sent fails and any
+	 * other messages pending for the same header value are dropped.
+	 * <p>By default this is not set, i.e. messages are dispatched independently.
+	 * @param headerName the name of the header to order messages by
+	 * @since 4.1.10
+	 * @see #setDispatchBatchSize
+	 */
+	public void setOrderedDispatchHeader(String headerName) {
+		this.orderedDispatchHeader = headerName;
+	}
+
+	/**
+	 * Return the name of the header to order messages by, if any.
+	 * @since 4.1.10
+	 */
+	public String getOrderedDispatchHeader() {
+		return this.orderedDispatchHeader;
+	}
+
+	/**
+	 * Specify the maximum number of messages with the same ordered dispatch header
+	 * value to handle within a single executor task, before handing off the rest
+	 * to a new task in order to let other tasks proceed.
+	 * <p>Default is 64.
+	 * @since 4.1.10
+	 * @see #setOrderedDispatchHeader
+	 */
+	public void setDispatchBatchSize(int dispatchBatchSize) {
+		Assert.isTrue(dispatchBatchSize > 0, "Dispatch batch size must be greater than 0");
+		this.dispatchBatchSize = dispatchBatchSize;
+	}
+
+	/**
+	 * Return the maximum number of messages to handle within a single ordered
+	 * dispatch task.
+	 * @since 4.1.10
+	 */
+	public int getDispatchBatchSize() {
+		return this.dispatchBatchSize;
+	}
+
 	@Override
 	public void setInterceptors(List<ChannelInterceptor> interceptors) {
 		super.setInterceptors(interceptors);
@@ -85,6 +157,13 @@ public class ExecutorSubscribableChannel extends AbstractSubscribableChannel {
 
 	@Override
 	public boolean sendInternal(Message<?> message, long timeout) {
+		if (this.executor != null && this.orderedDispatchHeader != null) {
+			Object key = message.getHeaders().get(this.orderedDispatchHeader);
+			if (key != null) {
+				dispatchInOrder(key, message);
+				return true;
+			}
+		}
 		for (MessageHandler handler : getSubscribers()) {
 			SendTask sendTask = new SendTask(message, handler);
 			if (this.executor == null) {
@@ -97,6 +176,139 @@ public class ExecutorSubscribableChannel extends AbstractSubscribableChannel {
 		return true;
 	}
 
+	private void dispatchInOrder(Object key, Message<?> message) {
+		while (true) {
+			OrderedDispatchQueue queue = this.dispatchQueues.get(key);
+			if (queue == null) {
+				queue = new OrderedDispatchQueue(key);
+				OrderedDispatchQueue existing = this.dispatchQueues.putIfAbsent(key, queue);
+				if (existing != null) {
+					queue = existing;
+				}
+			}
+			if (queue.add(message)) {
+				return;
+			}
+			// Queue drained and retired concurrently: try again with a new one
+		}
+	}
+
+
+	/**
+	 * Pending messages for a value of the ordered dispatch header, handled by
+	 * at most one executor task at a time. Once drained, the queue retires
+	 * itself from the map of queues.
+	 */
+	private class OrderedDispatchQueue implements Runnable {
+
+		private final Object key;
+
+		private final Queue<Message<?>> messages = new ArrayDeque<Message<?>>(4);
+
+		/** Whether a task for this queue has been submitted, guarded by this */
+		private boolean scheduled;
+
+		/** Whether this queue has been removed from the map, guarded by this */
+		private boolean retired;
+
+		public OrderedDispatchQueue(Object key) {
+			this.key = key;
+		}
+
+		/**
+		 * Add the given message, submitting a task to handle it if necessary.
+		 * @return {@code false} if the queue has been retired
+		 */
+		public boolean add(Message<?> message) {
+			synchronized (this) {
+				if (this.retired) {
+					return false;
+				}
+				this.messages.add(message);
+				if (this.scheduled) {
+					return true;
+				}
+				this.scheduled = true;
+			}
+			try {
+				executor.execute(this);
+			}
+			catch (RuntimeException ex) {
+				synchronized (this) {
+					// The message is reported as not sent: do not dispatch it later on.
+					this.messages.remove(message);
+					discardPendingMessages(ex);
+				}
+				throw ex;
+			}
+			return true;
+		}
+
+
+		@Override
+		public void run() {
+			List<Message<?>> batch;
+			synchronized (this) {
+				int size = Math.min(this.messages.size(), dispatchBatchSize);
+				batch = new ArrayList<Message<?>>(size);
+				for (int i = 0; i < size; i++) {
+					batch.add(this.messages.poll());
+				}
+			}
+			try {
+				for (Message<?> message : batch) {
+					for (MessageHandler handler : getSubscribers()) {
+						try {
+							new SendTask(message, handler).run();
+						}
+						catch (MessagingException ex) {
+							logger.error("Failed to handle " + message + " in " + handler, ex);
+						}
+					}
+				}
+			}
+			finally {
+				boolean resubmit = false;
+				synchronized (this) {
+					if (this.messages.isEmpty()) {
+						this.retired = true;
+						dispatchQueues.remove(this.key, this);
+					}
+					else {
+						resubmit = true;
+					}
+				}
+				if (resubmit) {
+					try {
+						executor.execute(this);
+					}
+					catch (RuntimeException ex) {
+						synchronized (this) {
+							discardPendingMessages(ex);
+						}
+						throw ex;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Drop the messages still pending after the executor rejected the task
+		 * for them, since no task would pick them up, and retire this queue.
+		 * To be called while holding the lock on this queue.
+		 */
+		private void discardPendingMessages(RuntimeException ex) {
+			if (!this.messages.isEmpty()) {
+				logger.error("Dropping " + this.messages.size() + " pending message(s) for '" + this.key +
+						"' since the executor rejected their dispatch", ex);
+				this.messages.clear();
+			}
+			this.scheduled = false;
+			this.retired = true;
+			dispatchQueues.remove(this.key, this);
+		}
+	}
+
 
 	/**
 	 * Invoke a MessageHandler with ExecutorChannelInterceptor's.
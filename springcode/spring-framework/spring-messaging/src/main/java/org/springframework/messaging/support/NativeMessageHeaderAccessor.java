@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -50,6 +50,10 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 	public static final String NATIVE_HEADERS = "nativeHeaders";
 
 
+	/** The unmodifiable native headers of the copied message, if not copied yet */
+	private Map<String, List<String>> sharedNativeHeaders;
+
+
 	/**
 	 * A protected constructor to create new headers.
 	 */
@@ -76,9 +80,16 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 			@SuppressWarnings("unchecked")
 			Map<String, List<String>> map = (Map<String, List<String>>) getHeader(NATIVE_HEADERS);
 			if (map != null) {
-				// Force removal since setHeader checks for equality
-				removeHeader(NATIVE_HEADERS);
-				setHeader(NATIVE_HEADERS, new LinkedMultiValueMap<String, String>(map));
+				MessageHeaderAccessor accessor = getAccessor(message, MessageHeaderAccessor.class);
+				if (accessor instanceof NativeMessageHeaderAccessor && !accessor.isMutable()) {
+					// Unmodifiable native headers: only copy them once modified
+					this.sharedNativeHeaders = map;
+				}
+				else {
+					// Force removal since setHeader checks for equality
+					removeHeader(NATIVE_HEADERS);
+					setHeader(NATIVE_HEADERS, new LinkedMultiValueMap<String, String>(map));
+				}
 			}
 		}
 	}
@@ -88,6 +99,18 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 		return (Map<String, List<String>>) getHeader(NATIVE_HEADERS);
 	}
 
+	private Map<String, List<String>> getNativeHeadersForUpdate() {
+		Map<String, List<String>> map = getNativeHeaders();
+		if (map != null && map == this.sharedNativeHeaders) {
+			map = new LinkedMultiValueMap<String, String>(map);
+			// Force removal since setHeader checks for equality
+			removeHeader(NATIVE_HEADERS);
+			setHeader(NATIVE_HEADERS, map);
+			this.sharedNativeHeaders = null;
+		}
+		return map;
+	}
+
 	/**
 	 * Return a copy of the native header values or an empty map.
 	 */
@@ -100,7 +123,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 	public void setImmutable() {
 		if (isMutable()) {
 			Map<String, List<String>> map = getNativeHeaders();
-			if (map != null) {
+			if (map != null && map != this.sharedNativeHeaders) {
 				// Force removal since setHeader checks for equality
 				removeHeader(NATIVE_HEADERS);
 				setHeader(NATIVE_HEADERS, Collections.<String, List<String>>unmodifiableMap(map));
@@ -148,7 +171,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 		if (value == null) {
 			if (map != null && map.get(name) != null) {
 				setModified(true);
-				map.remove(name);
+				getNativeHeadersForUpdate().remove(name);
 			}
 			return;
 		}
@@ -160,7 +183,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 		values.add(value);
 		if (!ObjectUtils.nullSafeEquals(values, getHeader(name))) {
 			setModified(true);
-			map.put(name, values);
+			getNativeHeadersForUpdate().put(name, values);
 		}
 	}
 
@@ -172,7 +195,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 		if (value == null) {
 			return;
 		}
-		Map<String, List<String>> nativeHeaders = getNativeHeaders();
+		Map<String, List<String>> nativeHeaders = getNativeHeadersForUpdate();
 		if (nativeHeaders == null) {
 			nativeHeaders = new LinkedMultiValueMap<String, String>(4);
 			setHeader(NATIVE_HEADERS, nativeHeaders);
@@ -188,7 +211,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 
 	public List<String> removeNativeHeader(String name) {
 		Assert.state(isMutable(), "Already immutable");
-		Map<String, List<String>> nativeHeaders = getNativeHeaders();
+		Map<String, List<String>> nativeHeaders = getNativeHeadersForUpdate();
 		if (nativeHeaders == null) {
 			return null;
 		}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,8 +20,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -29,6 +31,9 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
 
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
 import static org.junit.Assert.*;
 
 /**
@@ -197,6 +202,47 @@ public class MessageHeadersTests {
 		assertEquals(1, headers.size());
 	}
 
+	@Test
+	public void copiedHeadersShareValues() throws Exception {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "joe");
+		map.put("age", 42);
+		MessageHeaders source = new MessageHeaders(map);
+		MessageHeaders copy = new MessageHeaders(source);
+
+		assertEquals(4, copy.size());
+		assertEquals("joe", copy.get("name"));
+		assertEquals(42, copy.get("age"));
+		assertNotEquals(source.getId(), copy.getId());
+		assertEquals(copy, new MessageHeaders(copy, copy.getId(), copy.getTimestamp()));
+		assertEquals(new HashMap<String, Object>(copy), serializeAndDeserialize(copy));
+	}
+
+	@Test
+	public void copiedHeadersModifiedByAccessor() {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "joe");
+		map.put("age", 42);
+		Message<String> message = new GenericMessage<String>("payload", map);
+
+		MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+		accessor.setHeader("name", "jane");
+		accessor.removeHeader("age");
+		accessor.setHeader("city", "Paris");
+		MessageHeaders headers = accessor.toMessageHeaders();
+
+		assertEquals("jane", headers.get("name"));
+		assertFalse(headers.containsKey("age"));
+		assertEquals("Paris", headers.get("city"));
+		assertEquals(4, headers.size());
+		assertEquals(new HashSet<String>(Arrays.asList("name", "city", MessageHeaders.ID, MessageHeaders.TIMESTAMP)),
+				headers.keySet());
+
+		assertEquals("joe", message.getHeaders().get("name"));
+		assertEquals(42, message.getHeaders().get("age"));
+		assertFalse(message.getHeaders().containsKey("city"));
+	}
+
 	private static Object serializeAndDeserialize(Object object) throws Exception {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		ObjectOutputStream out = new ObjectOutputStream(baos);
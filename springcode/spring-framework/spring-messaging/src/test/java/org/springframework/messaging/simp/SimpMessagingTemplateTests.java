@@ -16,6 +16,7 @@
 
 package org.springframework.messaging.simp;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -86,6 +87,25 @@ public class SimpMessagingTemplateTests {
 		assertEquals("/user/http:%2F%2Fjoe.openid.example.org%2F/queue/foo", headerAccessor.getDestination());
 	}
 
+	@Test
+	public void convertAndSendToUsers() {
+		Map<String, Object> headers = Collections.<String, Object>singletonMap("key", "value");
+		this.messagingTemplate.convertAndSendToUsers(Arrays.asList("joe", "anna"), "/queue/foo", "data", headers);
+		List<Message<byte[]>> messages = this.messageChannel.getMessages();
+
+		assertEquals(1, messages.size());
+
+		SimpMessageHeaderAccessor headerAccessor =
+				MessageHeaderAccessor.getAccessor(messages.get(0), SimpMessageHeaderAccessor.class);
+
+		assertNotNull(headerAccessor);
+		assertEquals(SimpMessageType.MESSAGE, headerAccessor.getMessageType());
+		assertEquals("/user/queue/foo", headerAccessor.getDestination());
+		assertEquals("value", headerAccessor.getFirstNativeHeader("key"));
+		assertEquals(Arrays.asList("joe", "anna"),
+				new ArrayList<>(SimpMessageHeaderAccessor.getTargetUsers(headerAccessor.toMap())));
+	}
+
 	@Test1
 	public void convertAndSendWithCustomHeader() {
 		Map<String, Object> headers = Collections.<String, Object>singletonMap("key", "value");
@@ -159,6 +159,39 @@ public class SimpAnnotationMethodMessageHandlerTests {
 		assertEquals("value", this.testController.arguments.get("name"));
 	}
 
+	@Test
+	public void cachedMatchByDestinationAndMessageType() {
+		this.messageHandler.handleMessage(createMessage(SimpMessageType.MESSAGE, "/pre/message/bar/value"));
+		this.messageHandler.handleMessage(createMessage(SimpMessageType.MESSAGE, "/pre/message/bar/value"));
+		assertEquals("messageMappingDestinationVariable", this.testController.method);
+		assertEquals(1, this.messageHandler.getMatchCacheHitCount());
+		assertEquals(1, this.messageHandler.getMatchCacheMissCount());
+
+		this.messageHandler.handleMessage(createMessage(SimpMessageType.SUBSCRIBE, "/pre/message/bar/value"));
+		assertEquals(1, this.messageHandler.getMatchCacheHitCount());
+		assertEquals(2, this.messageHandler.getMatchCacheMissCount());
+
+		this.messageHandler.handleMessage(createMessage(SimpMessageType.MESSAGE, "/pre/message/baz/other"));
+		assertEquals("baz", this.testController.arguments.get("foo"));
+		assertEquals("other", this.testController.arguments.get("name"));
+		assertEquals(3, this.messageHandler.getMatchCacheMissCount());
+
+		this.messageHandler.registerHandler(new DotPathSeparatorController());
+		this.messageHandler.handleMessage(createMessage(SimpMessageType.MESSAGE, "/pre/message/bar/value"));
+		assertEquals(1, this.messageHandler.getMatchCacheHitCount());
+		assertEquals(4, this.messageHandler.getMatchCacheMissCount());
+	}
+
+	@Test
+	public void matchCacheDisabled() {
+		this.messageHandler.setMatchCacheLimit(0);
+		this.messageHandler.handleMessage(createMessage(SimpMessageType.MESSAGE, "/pre/message/bar/value"));
+		this.messageHandler.handleMessage(createMessage(SimpMessageType.MESSAGE, "/pre/message/bar/value"));
+		assertEquals("messageMappingDestinationVariable", this.testController.method);
+		assertEquals(0, this.messageHandler.getMatchCacheHitCount());
+		assertEquals(0, this.messageHandler.getMatchCacheMissCount());
+	}
+
 	@Test1
 	public void simpleBinding() {
 		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
@@ -226,6 +259,15 @@ public class SimpAnnotationMethodMessageHandlerTests {
 	}
 
 
+	private Message<?> createMessage(SimpMessageType messageType, String destination) {
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(messageType);
+		headers.setSessionId("session1");
+		headers.setSessionAttributes(new ConcurrentHashMap<>());
+		headers.setDestination(destination);
+		return MessageBuilder.withPayload(new byte[0]).setHeaders(headers).build();
+	}
+
+
 	private static class TestSimpAnnotationMethodMessageHandler extends SimpAnnotationMethodMessageHandler {
 
 		public TestSimpAnnotationMethodMessageHandler(SimpMessageSendingOperations brokerTemplate,
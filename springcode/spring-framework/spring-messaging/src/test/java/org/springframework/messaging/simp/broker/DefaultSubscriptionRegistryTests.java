@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.MultiValueMap;
 
 import static org.junit.Assert.*;
@@ -362,6 +363,119 @@ public class DefaultSubscriptionRegistryTests {
 	}
 
 
+	@Test
+	public void registerSubscriptionsWithNestedDestinationPatterns() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/topic/**"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "/topic/PRICE.STOCK.*"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs3", "/topic/PRICE.STOCK.IBM"));
+		this.registry.registerSubscription(subscribeMessage("sess2", "subs1", "/**"));
+		this.registry.registerSubscription(subscribeMessage("sess2", "subs2", "/queue/*"));
+
+		MultiValueMap<String, String> actual = this.registry.findSubscriptions(message("/topic/PRICE.STOCK.IBM"));
+		assertEquals(2, actual.size());
+		assertEquals(Arrays.asList("subs1", "subs2", "subs3"), actual.get("sess1"));
+		assertEquals(Collections.singletonList("subs1"), actual.get("sess2"));
+
+		actual = this.registry.findSubscriptions(message("/topic/PRICE.BOND"));
+		assertEquals(2, actual.size());
+		assertEquals(Collections.singletonList("subs1"), actual.get("sess1"));
+
+		actual = this.registry.findSubscriptions(message("/queue/foo"));
+		assertEquals(1, actual.size());
+		assertEquals(Arrays.asList("subs1", "subs2"), actual.get("sess2"));
+	}
+
+	@Test
+	public void registerSubscriptionWithPatternMatchingWithoutTrailingSegment() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/topic/**"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "/topic/*"));
+
+		MultiValueMap<String, String> actual = this.registry.findSubscriptions(message("/topic"));
+		assertEquals(Collections.singletonList("subs1"), actual.get("sess1"));
+
+		actual = this.registry.findSubscriptions(message("/topic/foo"));
+		assertEquals(Arrays.asList("subs1", "subs2"), actual.get("sess1"));
+	}
+
+	@Test
+	public void registerSubscriptionWithDotSeparatedDestinationPatterns() {
+		this.registry.setPathMatcher(new AntPathMatcher("."));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "price.stock.*"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "price.**"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs3", "price.stock.nasdaq"));
+
+		MultiValueMap<String, String> actual = this.registry.findSubscriptions(message("price.stock.nasdaq"));
+		assertEquals(Arrays.asList("subs1", "subs2", "subs3"), actual.get("sess1"));
+
+		actual = this.registry.findSubscriptions(message("price.stock.nasdaq.ibm"));
+		assertEquals(Collections.singletonList("subs2"), actual.get("sess1"));
+
+		actual = this.registry.findSubscriptions(message("price.stocks"));
+		assertEquals(Collections.singletonList("subs2"), actual.get("sess1"));
+
+		actual = this.registry.findSubscriptions(message("price"));
+		assertEquals(Collections.singletonList("subs2"), actual.get("sess1"));
+	}
+
+	@Test
+	public void findSubscriptionsWithCustomAntPathMatcher() {
+		this.registry.setPathMatcher(new AntPathMatcher() {
+			@Override
+			public boolean match(String pattern, String path) {
+				return super.match(pattern.toLowerCase(), path.toLowerCase());
+			}
+		});
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/topic/Foo"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "/topic/Foo/*"));
+
+		MultiValueMap<String, String> actual = this.registry.findSubscriptions(message("/topic/foo"));
+		assertEquals(Collections.singletonList("subs1"), actual.get("sess1"));
+
+		actual = this.registry.findSubscriptions(message("/topic/foo/bar"));
+		assertEquals(Collections.singletonList("subs2"), actual.get("sess1"));
+	}
+
+	@Test
+	public void unregisterSubscriptionsWithDestinationPatterns() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/topic/a/*"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "/topic/a/b*"));
+		assertEquals(Arrays.asList("subs1", "subs2"), this.registry.findSubscriptions(message("/topic/a/bc")).get("sess1"));
+
+		this.registry.unregisterSubscription(unsubscribeMessage("sess1", "subs2"));
+		assertEquals(Collections.singletonList("subs1"), this.registry.findSubscriptions(message("/topic/a/bc")).get("sess1"));
+
+		this.registry.unregisterSubscription(unsubscribeMessage("sess1", "subs1"));
+		assertEquals(0, this.registry.findSubscriptions(message("/topic/a/bc")).size());
+
+		this.registry.registerSubscription(subscribeMessage("sess2", "subs1", "/topic/a/b*"));
+		assertEquals(Collections.singletonList("subs1"), this.registry.findSubscriptions(message("/topic/a/bc")).get("sess2"));
+	}
+
+	@Test
+	public void findSubscriptionsWithEmptyDestinationSegments() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/topic/foo"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs2", "/topic/f*"));
+
+		MultiValueMap<String, String> actual = this.registry.findSubscriptions(message("/topic//foo"));
+		assertEquals(Arrays.asList("subs1", "subs2"), actual.get("sess1"));
+	}
+
+	@Test
+	public void resubscribeWithSameSubscriptionId() {
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/foo"));
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/bar"));
+
+		assertEquals(0, this.registry.findSubscriptions(message("/foo")).size());
+		assertEquals(Collections.singletonList("subs1"), this.registry.findSubscriptions(message("/bar")).get("sess1"));
+
+		this.registry.registerSubscription(subscribeMessage("sess1", "subs1", "/foo/*"));
+		assertEquals(0, this.registry.findSubscriptions(message("/bar")).size());
+		assertEquals(Collections.singletonList("subs1"), this.registry.findSubscriptions(message("/foo/a")).get("sess1"));
+
+		this.registry.unregisterSubscription(unsubscribeMessage("sess1", "subs1"));
+		assertEquals(0, this.registry.findSubscriptions(message("/foo/a")).size());
+	}
+
 	private Message<?> subscribeMessage(String sessionId, String subscriptionId, String destination) {
 		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
 		headers.setSessionId(sessionId);
@@ -16,12 +16,20 @@
 
 package org.springframework.messaging.simp.broker;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -29,6 +37,8 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.SubscribableChannel;
@@ -36,6 +46,7 @@ import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.TestPrincipal;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.TaskScheduler;
 
 /**
  * Unit tests for SimpleBrokerMessageHandler.
@@ -147,8 +158,109 @@ public class SimpleBrokerMessageHandlerTests {
 		assertEquals(connectMessage, connectAckHeaders.getHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER));
 		assertEquals(sess1, connectAckHeaders.getSessionId());
 		assertEquals("joe", connectAckHeaders.getUser().getName());
+		assertArrayEquals(new long[] {0, 0}, SimpMessageHeaderAccessor.getHeartbeat(connectAckMessage.getHeaders()));
 	}
 
+	@Test
+	public void heartbeatSentToClient() throws Exception {
+		Runnable heartbeatTask = startWithHeartbeat(20, 20);
+
+		Message<String> connectMessage = createConnectMessage("sess1", new long[] {0, 20});
+		this.messageHandler.handleMessage(connectMessage);
+
+		Thread.sleep(50);
+		heartbeatTask.run();
+
+		verify(this.clientOutboundChannel, times(2)).send(this.messageCaptor.capture());
+		Message<?> connectAck = this.messageCaptor.getAllValues().get(0);
+		assertArrayEquals(new long[] {20, 20}, SimpMessageHeaderAccessor.getHeartbeat(connectAck.getHeaders()));
+		Message<?> heartbeat = this.messageCaptor.getAllValues().get(1);
+		assertEquals(SimpMessageType.HEARTBEAT, SimpMessageHeaderAccessor.getMessageType(heartbeat.getHeaders()));
+		assertEquals("sess1", SimpMessageHeaderAccessor.getSessionId(heartbeat.getHeaders()));
+		assertEquals("joe", SimpMessageHeaderAccessor.getUser(heartbeat.getHeaders()).getName());
+	}
+
+	@Test
+	public void heartbeatSentToSessionConnectedDuringTick() throws Exception {
+		final Runnable heartbeatTask = startWithHeartbeat(20, 20);
+		final AtomicBoolean connected = new AtomicBoolean();
+		given(this.clientOutboundChannel.send(any(Message.class))).willAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(InvocationOnMock invocation) {
+				Message<?> message = (Message<?>) invocation.getArguments()[0];
+				if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.HEARTBEAT &&
+						connected.compareAndSet(false, true)) {
+					// Connect another session while the heartbeat task processes a tick
+					messageHandler.handleMessage(createConnectMessage("sess2", new long[] {0, 20}));
+				}
+				return true;
+			}
+		});
+
+		this.messageHandler.handleMessage(createConnectMessage("sess1", new long[] {0, 20}));
+		Thread.sleep(50);
+		heartbeatTask.run();
+		assertTrue(connected.get());
+
+		Thread.sleep(50);
+		heartbeatTask.run();
+
+		verify(this.clientOutboundChannel, times(5)).send(this.messageCaptor.capture());
+		List<String> heartbeatSessionIds = new ArrayList<String>();
+		for (Message<?> message : this.messageCaptor.getAllValues()) {
+			if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.HEARTBEAT) {
+				heartbeatSessionIds.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+			}
+		}
+		assertTrue(heartbeatSessionIds.contains("sess2"));
+	}
+
+	@Test
+	public void inactiveSessionClosed() throws Exception {
+		Runnable heartbeatTask = startWithHeartbeat(20, 20);
+
+		this.messageHandler.handleMessage(createConnectMessage("sess1", new long[] {20, 0}));
+		this.messageHandler.handleMessage(createSubscriptionMessage("sess1", "sub1", "/foo"));
+
+		Thread.sleep(100);
+		heartbeatTask.run();
+		this.messageHandler.handleMessage(createMessage("/foo", "message1"));
+
+		verify(this.clientOutboundChannel, times(2)).send(this.messageCaptor.capture());
+		Message<?> disconnectAck = this.messageCaptor.getAllValues().get(1);
+		assertEquals(SimpMessageType.DISCONNECT_ACK, SimpMessageHeaderAccessor.getMessageType(disconnectAck.getHeaders()));
+		assertEquals("sess1", SimpMessageHeaderAccessor.getSessionId(disconnectAck.getHeaders()));
+	}
+
+	@Test
+	public void activeSessionNotClosed() throws Exception {
+		Runnable heartbeatTask = startWithHeartbeat(20, 20);
+
+		this.messageHandler.handleMessage(createConnectMessage("sess1", new long[] {20, 0}));
+		for (int i = 0; i < 10; i++) {
+			Thread.sleep(10);
+			SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.HEARTBEAT);
+			headers.setSessionId("sess1");
+			this.messageHandler.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+			heartbeatTask.run();
+		}
+
+		verify(this.clientOutboundChannel, times(1)).send(this.messageCaptor.capture());
+		assertEquals(SimpMessageType.CONNECT_ACK,
+				SimpMessageHeaderAccessor.getMessageType(this.messageCaptor.getValue().getHeaders()));
+	}
+
+
+	private Runnable startWithHeartbeat(long sendInterval, long receiveInterval) {
+		TaskScheduler scheduler = mock(TaskScheduler.class);
+		this.messageHandler.setTaskScheduler(scheduler);
+		this.messageHandler.setHeartbeatValue(new long[] {sendInterval, receiveInterval});
+		this.messageHandler.start();
+
+		ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+		verify(scheduler).scheduleWithFixedDelay(taskCaptor.capture(), eq(10L));
+		return taskCaptor.getValue();
+	}
 
 	private Message<String> createSubscriptionMessage(String sessionId, String subcriptionId, String destination) {
 		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
@@ -159,9 +271,14 @@ public class SimpleBrokerMessageHandlerTests {
 	}
 
 	private Message<String> createConnectMessage(String sessionId) {
+		return createConnectMessage(sessionId, null);
+	}
+
+	private Message<String> createConnectMessage(String sessionId, long[] heartbeat) {
 		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
 		headers.setSessionId(sessionId);
 		headers.setUser(new TestPrincipal("joe"));
+		headers.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER, heartbeat);
 		return MessageBuilder.createMessage("", headers.getMessageHeaders());
 	}
 
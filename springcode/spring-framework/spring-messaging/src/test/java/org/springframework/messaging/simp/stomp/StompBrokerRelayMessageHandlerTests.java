@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -170,6 +170,289 @@ public class StompBrokerRelayMessageHandlerTests {
 		assertEquals("joe", actualHeaders.getUser().getName());
 	}
 
+	@Test
+	public void testSystemConnectionsPartitionedByDestination() throws Exception {
+
+		this.brokerRelay.setSystemConnectionCount(2);
+		this.brokerRelay.start();
+
+		assertEquals(2, this.tcpClient.connectionHandlers.size());
+		for (TcpConnectionHandler<byte[]> handler : this.tcpClient.connectionHandlers) {
+			handler.handleMessage(createConnectedMessage());
+		}
+
+		for (int i = 0; i < 3; i++) {
+			for (String destination : Arrays.asList("/topic/a", "/topic/b", "/topic/c", "/topic/d")) {
+				SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+				headers.setDestination(destination);
+				this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+			}
+		}
+
+		List<String> destinations1 = getSentDestinations(this.tcpClient.connections.get(0));
+		List<String> destinations2 = getSentDestinations(this.tcpClient.connections.get(1));
+		assertEquals(12, destinations1.size() + destinations2.size());
+		for (String destination : destinations1) {
+			assertFalse(destinations2.contains(destination));
+		}
+		assertTrue(this.brokerRelay.getStatsInfo().contains("_system_1[received=1"));
+	}
+
+	@Test
+	public void testClientSessionsMultiplexed() throws Exception {
+
+		this.brokerRelay.setClientConnectionPoolSize(1);
+		this.brokerRelay.start();
+
+		assertEquals(2, this.tcpClient.connectionHandlers.size());
+		for (TcpConnectionHandler<byte[]> handler : this.tcpClient.connectionHandlers) {
+			handler.handleMessage(createConnectedMessage());
+		}
+
+		for (String sessionId : Arrays.asList("sess1", "sess2")) {
+			StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+			headers.setSessionId(sessionId);
+			headers.setAcceptVersion("1.1,1.2");
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+			headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+			headers.setSessionId(sessionId);
+			headers.setSubscriptionId("0");
+			headers.setDestination("/topic/foo");
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+		}
+
+		assertEquals(2, this.outboundChannel.getMessages().size());
+		StompHeaderAccessor connected = StompHeaderAccessor.wrap(this.outboundChannel.getMessages().get(1));
+		assertEquals(StompCommand.CONNECTED, connected.getCommand());
+		assertEquals("sess2", connected.getSessionId());
+		assertEquals("1.2", connected.getVersion());
+
+		// Only the CONNECT frame of the shared connection, no client CONNECT frames
+		List<Message<byte[]>> sent = this.tcpClient.connections.get(1).messages;
+		assertEquals(3, sent.size());
+		assertEquals(StompCommand.CONNECT, StompHeaderAccessor.wrap(sent.get(0)).getCommand());
+		String subscriptionId1 = StompHeaderAccessor.wrap(sent.get(1)).getSubscriptionId();
+		String subscriptionId2 = StompHeaderAccessor.wrap(sent.get(2)).getSubscriptionId();
+		assertNotEquals(subscriptionId1, subscriptionId2);
+
+		StompHeaderAccessor responseHeaders = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		responseHeaders.setSubscriptionId(subscriptionId2);
+		responseHeaders.setDestination("/topic/foo");
+		responseHeaders.setLeaveMutable(true);
+		Message<byte[]> response = MessageBuilder.createMessage(new byte[0], responseHeaders.getMessageHeaders());
+		this.tcpClient.connectionHandlers.get(1).handleMessage(response);
+
+		assertEquals(3, this.outboundChannel.getMessages().size());
+		StompHeaderAccessor actualHeaders = StompHeaderAccessor.wrap(this.outboundChannel.getMessages().get(2));
+		assertEquals(StompCommand.MESSAGE, actualHeaders.getCommand());
+		assertEquals("sess2", actualHeaders.getSessionId());
+		assertEquals("0", actualHeaders.getSubscriptionId());
+
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+		headers.setSessionId("sess2");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		assertEquals(4, sent.size());
+		StompHeaderAccessor unsubscribe = StompHeaderAccessor.wrap(sent.get(3));
+		assertEquals(StompCommand.UNSUBSCRIBE, unsubscribe.getCommand());
+		assertEquals(subscriptionId2, unsubscribe.getSubscriptionId());
+
+		// No longer routed to the disconnected session
+		this.tcpClient.connectionHandlers.get(1).handleMessage(
+				MessageBuilder.createMessage(new byte[0], responseHeaders.getMessageHeaders()));
+		assertEquals(3, this.outboundChannel.getMessages().size());
+	}
+
+	@Test
+	public void testClientSessionTransactionsRelayed() throws Exception {
+
+		this.brokerRelay.setClientConnectionPoolSize(1);
+		this.brokerRelay.start();
+		for (TcpConnectionHandler<byte[]> handler : this.tcpClient.connectionHandlers) {
+			handler.handleMessage(createConnectedMessage());
+		}
+
+		for (String sessionId : Arrays.asList("sess1", "sess2")) {
+			StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+			headers.setSessionId(sessionId);
+			headers.setAcceptVersion("1.2");
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+			headers = StompHeaderAccessor.create(StompCommand.BEGIN);
+			headers.setSessionId(sessionId);
+			headers.setNativeHeader("transaction", "tx1");
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+		}
+
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+		headers.setSessionId("sess1");
+		headers.setDestination("/topic/foo");
+		headers.setNativeHeader("transaction", "tx1");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		headers = StompHeaderAccessor.create(StompCommand.COMMIT);
+		headers.setSessionId("sess1");
+		headers.setNativeHeader("transaction", "tx1");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		List<Message<byte[]>> sent = this.tcpClient.connections.get(1).messages;
+		assertEquals(5, sent.size());
+		String transaction1 = StompHeaderAccessor.wrap(sent.get(1)).getFirstNativeHeader("transaction");
+		String transaction2 = StompHeaderAccessor.wrap(sent.get(2)).getFirstNativeHeader("transaction");
+		assertNotEquals(transaction1, transaction2);
+		assertTrue(transaction1.endsWith("tx1"));
+		assertEquals(transaction1, StompHeaderAccessor.wrap(sent.get(3)).getFirstNativeHeader("transaction"));
+		assertEquals(transaction1, StompHeaderAccessor.wrap(sent.get(4)).getFirstNativeHeader("transaction"));
+
+		// Pending transaction of a disconnecting session gets aborted
+		for (String sessionId : Arrays.asList("sess1", "sess2")) {
+			headers = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+			headers.setSessionId(sessionId);
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+		}
+		assertEquals(6, sent.size());
+		StompHeaderAccessor abort = StompHeaderAccessor.wrap(sent.get(5));
+		assertEquals(StompCommand.ABORT, abort.getCommand());
+		assertEquals(transaction2, abort.getFirstNativeHeader("transaction"));
+	}
+
+	@Test
+	public void testClientSessionAckRelayed() throws Exception {
+
+		this.brokerRelay.setClientConnectionPoolSize(1);
+		this.brokerRelay.start();
+		for (TcpConnectionHandler<byte[]> handler : this.tcpClient.connectionHandlers) {
+			handler.handleMessage(createConnectedMessage("1.1"));
+		}
+
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+		headers.setSessionId("sess1");
+		headers.setAcceptVersion("1.1,1.2");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		headers.setSessionId("sess1");
+		headers.setSubscriptionId("0");
+		headers.setDestination("/topic/foo");
+		headers.setNativeHeader("ack", "client");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		for (String subscriptionId : Arrays.asList("0", "1")) {
+			headers = StompHeaderAccessor.create(StompCommand.ACK);
+			headers.setSessionId("sess1");
+			headers.setNativeHeader("subscription", subscriptionId);
+			headers.setNativeHeader("message-id", "m1");
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+		}
+
+		StompHeaderAccessor connected = StompHeaderAccessor.wrap(this.outboundChannel.getMessages().get(0));
+		assertEquals(StompCommand.CONNECTED, connected.getCommand());
+		assertEquals("1.1", connected.getVersion());
+
+		// ACK for the unknown subscription not forwarded
+		List<Message<byte[]>> sent = this.tcpClient.connections.get(1).messages;
+		assertEquals(3, sent.size());
+		String subscriptionId = StompHeaderAccessor.wrap(sent.get(1)).getSubscriptionId();
+		StompHeaderAccessor ack = StompHeaderAccessor.wrap(sent.get(2));
+		assertEquals(StompCommand.ACK, ack.getCommand());
+		assertEquals(subscriptionId, ack.getFirstNativeHeader("subscription"));
+		assertEquals("m1", ack.getFirstNativeHeader("message-id"));
+	}
+
+	@Test
+	public void testClientSessionClientAckRejectedForOtherVersion() throws Exception {
+
+		this.brokerRelay.setClientConnectionPoolSize(1);
+		this.brokerRelay.start();
+		for (TcpConnectionHandler<byte[]> handler : this.tcpClient.connectionHandlers) {
+			handler.handleMessage(createConnectedMessage("1.2"));
+		}
+
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+		headers.setSessionId("sess1");
+		headers.setAcceptVersion("1.1,1.0");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		headers.setSessionId("sess1");
+		headers.setSubscriptionId("0");
+		headers.setDestination("/topic/foo");
+		headers.setNativeHeader("ack", "client-individual");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		assertEquals(2, this.outboundChannel.getMessages().size());
+		StompHeaderAccessor connected = StompHeaderAccessor.wrap(this.outboundChannel.getMessages().get(0));
+		assertEquals("1.1", connected.getVersion());
+		StompHeaderAccessor error = StompHeaderAccessor.wrap(this.outboundChannel.getMessages().get(1));
+		assertEquals(StompCommand.ERROR, error.getCommand());
+		assertEquals("sess1", error.getSessionId());
+
+		// No SUBSCRIBE frame forwarded, and the session is gone
+		headers = StompHeaderAccessor.create(StompCommand.SEND);
+		headers.setSessionId("sess1");
+		headers.setDestination("/topic/foo");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+		assertEquals(1, this.tcpClient.connections.get(1).messages.size());
+	}
+
+	@Test
+	public void testClientSessionsUseOtherSharedConnectionWhileDown() throws Exception {
+
+		this.brokerRelay.setClientConnectionPoolSize(2);
+		this.brokerRelay.start();
+
+		assertEquals(3, this.tcpClient.connectionHandlers.size());
+		this.tcpClient.connectionHandlers.get(0).handleMessage(createConnectedMessage());
+		this.tcpClient.connectionHandlers.get(2).handleMessage(createConnectedMessage());
+
+		List<String> sessionIds = Arrays.asList("sess1", "sess2", "sess3", "sess4");
+		for (String sessionId : sessionIds) {
+			StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+			headers.setSessionId(sessionId);
+			headers.setAcceptVersion("1.2");
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+			headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+			headers.setSessionId(sessionId);
+			headers.setSubscriptionId("0");
+			headers.setDestination("/topic/foo");
+			this.brokerRelay.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+		}
+
+		assertEquals(sessionIds.size(), this.outboundChannel.getMessages().size());
+		for (Message<byte[]> message : this.outboundChannel.getMessages()) {
+			assertEquals(StompCommand.CONNECTED, StompHeaderAccessor.wrap(message).getCommand());
+		}
+		// CONNECT frame of the shared connection plus all SUBSCRIBE frames
+		assertEquals(1 + sessionIds.size(), this.tcpClient.connections.get(2).messages.size());
+	}
+
+
+	private static Message<byte[]> createConnectedMessage() {
+		return createConnectedMessage(null);
+	}
+
+	private static Message<byte[]> createConnectedMessage(String version) {
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECTED);
+		if (version != null) {
+			headers.setVersion(version);
+		}
+		headers.setLeaveMutable(true);
+		return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+	}
+
+	private static List<String> getSentDestinations(StubTcpConnection connection) {
+		List<String> destinations = new ArrayList<>();
+		for (Message<byte[]> message : connection.messages) {
+			StompHeaderAccessor headers = StompHeaderAccessor.wrap(message);
+			if (StompCommand.SEND.equals(headers.getCommand())) {
+				destinations.add(headers.getDestination());
+			}
+		}
+		return destinations;
+	}
+
 
 	private static ListenableFutureTask<Void> getVoidFuture() {
 		ListenableFutureTask<Void> futureTask = new ListenableFutureTask<>(new Callable<Void>() {
@@ -196,23 +479,29 @@ public class StompBrokerRelayMessageHandlerTests {
 
 	private static class StubTcpOperations implements TcpOperations<byte[]> {
 
-		private StubTcpConnection connection = new StubTcpConnection();
+		/** Records the messages sent over all connections */
+		private StubTcpConnection connection = new StubTcpConnection(null);
 
 		private TcpConnectionHandler<byte[]> connectionHandler;
 
+		private final List<TcpConnectionHandler<byte[]>> connectionHandlers = new ArrayList<>();
+
+		private final List<StubTcpConnection> connections = new ArrayList<>();
+
 
 		@Override
 		public ListenableFuture<Void> connect(TcpConnectionHandler<byte[]> connectionHandler) {
+			StubTcpConnection connection = new StubTcpConnection(this.connection);
 			this.connectionHandler = connectionHandler;
-			connectionHandler.afterConnected(this.connection);
+			this.connectionHandlers.add(connectionHandler);
+			this.connections.add(connection);
+			connectionHandler.afterConnected(connection);
 			return getVoidFuture();
 		}
 
 		@Override
 		public ListenableFuture<Void> connect(TcpConnectionHandler<byte[]> connectionHandler, ReconnectStrategy reconnectStrategy) {
-			this.connectionHandler = connectionHandler;
-			connectionHandler.afterConnected(this.connection);
-			return getVoidFuture();
+			return connect(connectionHandler);
 		}
 
 		@Override
@@ -226,10 +515,20 @@ public class StompBrokerRelayMessageHandlerTests {
 
 		private final List<Message<byte[]>> messages = new ArrayList<>();
 
+		private final StubTcpConnection parent;
+
+
+		public StubTcpConnection(StubTcpConnection parent) {
+			this.parent = parent;
+		}
+
 
 		@Override
 		public ListenableFuture<Void> send(Message<byte[]> message) {
 			this.messages.add(message);
+			if (this.parent != null) {
+				this.parent.send(message);
+			}
 			return getVoidFuture();
 		}
 
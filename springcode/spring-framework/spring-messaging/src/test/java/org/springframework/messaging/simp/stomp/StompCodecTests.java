@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,7 @@ import reactor.function.Function;
 import reactor.io.Buffer;
 
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.InvalidMimeTypeException;
@@ -301,6 +302,62 @@ public class StompCodecTests {
 				new Reactor11StompCodec().encoder().apply(frame).asString());
 	}
 
+	@Test
+	public void encodePreparedFrame() {
+		StompEncoder encoder = new StompEncoder();
+		byte[] payload = "Message body".getBytes();
+		MessageHeaders headers1 = messageHeaders("/topic/foo", "sub-1", "msg-1");
+		MessageHeaders headers2 = messageHeaders("/topic/foo", "sub:2", "msg-2");
+
+		StompEncoder.PreparedFrame frame = encoder.prepare(headers1, payload,
+				StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER);
+		assertTrue(frame.matches(headers2, payload));
+
+		assertEquals("MESSAGE\ndestination:/topic/foo\nsubscription:sub-1\nmessage-id:msg-1\n" +
+				"content-length:12\n\nMessage body\0", new String(frame.encode(headers1)));
+		assertEquals("MESSAGE\ndestination:/topic/foo\nsubscription:sub\\c2\nmessage-id:msg-2\n" +
+				"content-length:12\n\nMessage body\0", new String(frame.encode(headers2)));
+	}
+
+	@Test
+	public void preparedFrameDoesNotMatchOtherMessage() {
+		StompEncoder encoder = new StompEncoder();
+		byte[] payload = "Message body".getBytes();
+		MessageHeaders headers = messageHeaders("/topic/foo", "sub-1", "msg-1");
+		StompEncoder.PreparedFrame frame = encoder.prepare(headers, payload,
+				StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER);
+
+		assertTrue(frame.matches(headers, "Message body".getBytes()));
+		assertFalse(frame.matches(headers, "Other body".getBytes()));
+		assertFalse(frame.matches(messageHeaders("/topic/bar", "sub-1", "msg-1"), payload));
+
+		StompHeaderAccessor accessor = StompHeaderAccessor.wrap(MessageBuilder.createMessage(payload, headers));
+		accessor.setNativeHeader("custom", "value");
+		assertFalse(frame.matches(accessor.getMessageHeaders(), payload));
+	}
+
+	@Test
+	public void preparedFrameDoesNotMatchReusedPayload() {
+		StompEncoder encoder = new StompEncoder();
+		byte[] payload = "Message body".getBytes();
+		MessageHeaders headers = messageHeaders("/topic/foo", "sub-1", "msg-1");
+		StompEncoder.PreparedFrame frame = encoder.prepare(headers, payload,
+				StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER);
+
+		payload[0] = 'm';
+		assertFalse(frame.matches(headers, payload));
+		assertEquals("MESSAGE\ndestination:/topic/foo\nsubscription:sub-1\nmessage-id:msg-1\n" +
+				"content-length:12\n\nMessage body\0", new String(frame.encode(headers)));
+	}
+
+	private MessageHeaders messageHeaders(String destination, String subscriptionId, String messageId) {
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		headers.setDestination(destination);
+		headers.setSubscriptionId(subscriptionId);
+		headers.setMessageId(messageId);
+		return headers.getMessageHeaders();
+	}
+
 	private void assertIncompleteDecode(String partialFrame) {
 		Buffer buffer = Buffer.wrap(partialFrame);
 		assertNull(decode(buffer));
@@ -16,6 +16,9 @@
 
 package org.springframework.messaging.simp.user;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -162,6 +165,25 @@ public class DefaultUserDestinationResolverTests {
 		assertNull(actual.getUser());
 	}
 
+	@Test
+	public void handleMessageToUsers() {
+		this.registry.registerSessionId("joe", "456");
+		this.registry.registerSessionId("anna", "789");
+
+		String sourceDestination = "/user/queue/foo";
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		headers.setDestination(sourceDestination);
+		headers.setHeader(SimpMessageHeaderAccessor.TARGET_USERS_HEADER, Arrays.asList("joe", "anna", "jane"));
+		Message<?> message = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+		UserDestinationResult actual = this.resolver.resolveDestination(message);
+
+		assertEquals(sourceDestination, actual.getSourceDestination());
+		assertEquals(new HashSet<>(Arrays.asList("/queue/foo-user123", "/queue/foo-user456", "/queue/foo-user789")),
+				actual.getTargetDestinations());
+		assertEquals(sourceDestination, actual.getSubscribeDestination());
+		assertNull(actual.getUser());
+	}
+
 	@Test1
 	public void ignoreMessage() {
 
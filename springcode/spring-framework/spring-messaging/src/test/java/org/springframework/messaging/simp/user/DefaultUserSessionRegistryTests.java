@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -79,4 +83,33 @@ public class DefaultUserSessionRegistryTests {
 		assertSame(Collections.emptySet(), resolver.getSessionIds(user));
 	}
 
+	@Test
+	public void concurrentRegistrations() throws Exception {
+
+		final DefaultUserSessionRegistry registry = new DefaultUserSessionRegistry();
+		final int threads = 8;
+		final int iterations = 2000;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			final String sessionId = "sess" + t;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < iterations; i++) {
+						registry.registerSessionId(user, sessionId);
+						assertTrue(registry.getSessionIds(user).contains(sessionId));
+						registry.unregisterSessionId(user, sessionId);
+					}
+					registry.registerSessionId(user, sessionId);
+					latch.countDown();
+				}
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		assertEquals(threads, registry.getSessionIds(user).size());
+	}
+
 }
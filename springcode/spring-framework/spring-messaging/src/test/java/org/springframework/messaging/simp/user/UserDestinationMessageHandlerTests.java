@@ -16,6 +16,10 @@
 
 package org.springframework.messaging.simp.user;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -97,6 +101,32 @@ public class UserDestinationMessageHandlerTests {
 		assertEquals("/user/queue/foo", accessor.getFirstNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION));
 	}
 
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void handleMessageToUsers() {
+		this.registry.registerSessionId("joe", "123");
+		this.registry.registerSessionId("anna", "456");
+		given(this.brokerChannel.send(Mockito.any(Message.class))).willReturn(true);
+
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		headers.setDestination("/user/queue/foo");
+		headers.setHeader(SimpMessageHeaderAccessor.TARGET_USERS_HEADER, Arrays.asList("joe", "anna"));
+		this.messageHandler.handleMessage(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+
+		ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+		Mockito.verify(this.brokerChannel, Mockito.times(2)).send(captor.capture());
+
+		List<Message> messages = captor.getAllValues();
+		HashSet<String> destinations = new HashSet<>();
+		for (Message message : messages) {
+			SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+			destinations.add(accessor.getDestination());
+			assertEquals("/user/queue/foo", accessor.getFirstNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION));
+			assertNull(accessor.getHeader(SimpMessageHeaderAccessor.TARGET_USERS_HEADER));
+		}
+		assertEquals(new HashSet<>(Arrays.asList("/queue/foo-user123", "/queue/foo-user456")), destinations);
+	}
+
 
 	@Test1
 	public void ignoreMessage() {
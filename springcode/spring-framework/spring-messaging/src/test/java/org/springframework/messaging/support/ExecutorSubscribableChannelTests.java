@@ -16,6 +16,17 @@
 
 package org.springframework.messaging.support;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
@@ -27,6 +38,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -186,6 +198,181 @@ public class ExecutorSubscribableChannelTests {
 	}
 
 
+	@Test
+	public void orderedDispatchInBatches() throws Exception {
+		QueueingExecutor executor = new QueueingExecutor();
+		List<Runnable> tasks = executor.tasks;
+		ExecutorSubscribableChannel testChannel = new ExecutorSubscribableChannel(executor);
+		testChannel.setOrderedDispatchHeader("sessionId");
+		testChannel.setDispatchBatchSize(2);
+		testChannel.subscribe(this.handler);
+
+		Message<?> message1 = MessageBuilder.withPayload("1").setHeader("sessionId", "s1").build();
+		Message<?> message2 = MessageBuilder.withPayload("2").setHeader("sessionId", "s1").build();
+		Message<?> message3 = MessageBuilder.withPayload("3").setHeader("sessionId", "s1").build();
+		testChannel.send(message1);
+		testChannel.send(message2);
+		testChannel.send(message3);
+		assertEquals(1, tasks.size());
+
+		tasks.remove(0).run();
+		verify(this.handler).handleMessage(message1);
+		verify(this.handler).handleMessage(message2);
+		verify(this.handler, never()).handleMessage(message3);
+		assertEquals(1, tasks.size());
+
+		tasks.remove(0).run();
+		verify(this.handler).handleMessage(message3);
+		assertEquals(0, tasks.size());
+
+		testChannel.send(this.message);
+		testChannel.send(message1);
+		assertEquals(2, tasks.size());
+	}
+
+	@Test
+	public void orderedDispatchPreservesOrderPerHeaderValue() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		ExecutorSubscribableChannel testChannel = new ExecutorSubscribableChannel(executor);
+		testChannel.setOrderedDispatchHeader("sessionId");
+		int sessionCount = 8;
+		int messageCount = 500;
+		final CountDownLatch latch = new CountDownLatch(sessionCount * messageCount);
+		final ConcurrentMap<Object, List<Object>> received = new ConcurrentHashMap<Object, List<Object>>();
+		testChannel.subscribe(new MessageHandler() {
+			@Override
+			public void handleMessage(Message<?> message) {
+				Object sessionId = message.getHeaders().get("sessionId");
+				List<Object> payloads = received.get(sessionId);
+				if (payloads == null) {
+					payloads = new ArrayList<Object>();
+					List<Object> existing = received.putIfAbsent(sessionId, payloads);
+					if (existing != null) {
+						payloads = existing;
+					}
+				}
+				payloads.add(message.getPayload());
+				latch.countDown();
+			}
+		});
+
+		for (int i = 0; i < messageCount; i++) {
+			for (int j = 0; j < sessionCount; j++) {
+				testChannel.send(MessageBuilder.withPayload(i).setHeader("sessionId", "s" + j).build());
+			}
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		assertEquals(sessionCount, received.size());
+		for (List<Object> payloads : received.values()) {
+			assertEquals(messageCount, payloads.size());
+			for (int i = 0; i < messageCount; i++) {
+				assertEquals(i, payloads.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void orderedDispatchFailureDoesNotStopDispatch() throws Exception {
+		QueueingExecutor executor = new QueueingExecutor();
+		List<Runnable> tasks = executor.tasks;
+		ExecutorSubscribableChannel testChannel = new ExecutorSubscribableChannel(executor);
+		testChannel.setOrderedDispatchHeader("sessionId");
+		Message<?> message1 = MessageBuilder.withPayload("1").setHeader("sessionId", "s1").build();
+		Message<?> message2 = MessageBuilder.withPayload("2").setHeader("sessionId", "s1").build();
+		willThrow(new IllegalStateException()).given(this.handler).handleMessage(message1);
+		testChannel.subscribe(this.handler);
+
+		testChannel.send(message1);
+		testChannel.send(message2);
+		tasks.remove(0).run();
+		verify(this.handler).handleMessage(message2);
+	}
+
+	@Test
+	public void orderedDispatchWithRejectedExecution() throws Exception {
+		QueueingExecutor executor = new QueueingExecutor();
+		ExecutorSubscribableChannel testChannel = new ExecutorSubscribableChannel(executor);
+		testChannel.setOrderedDispatchHeader("sessionId");
+		testChannel.subscribe(this.handler);
+		Message<?> message1 = MessageBuilder.withPayload("1").setHeader("sessionId", "s1").build();
+		Message<?> message2 = MessageBuilder.withPayload("2").setHeader("sessionId", "s1").build();
+
+		executor.reject = true;
+		try {
+			testChannel.send(message1);
+			fail("Should have thrown MessageDeliveryException");
+		}
+		catch (MessageDeliveryException ex) {
+			assertTrue(ex.getCause() instanceof RejectedExecutionException);
+		}
+
+		executor.reject = false;
+		testChannel.send(message2);
+		assertEquals(1, executor.tasks.size());
+		executor.tasks.remove(0).run();
+		verify(this.handler).handleMessage(message2);
+		verify(this.handler, never()).handleMessage(message1);
+		assertEquals(0, executor.tasks.size());
+	}
+
+	@Test
+	public void orderedDispatchWithRejectedResubmission() throws Exception {
+		QueueingExecutor executor = new QueueingExecutor();
+		ExecutorSubscribableChannel testChannel = new ExecutorSubscribableChannel(executor);
+		testChannel.setOrderedDispatchHeader("sessionId");
+		testChannel.setDispatchBatchSize(1);
+		testChannel.subscribe(this.handler);
+		Message<?> message1 = MessageBuilder.withPayload("1").setHeader("sessionId", "s1").build();
+		Message<?> message2 = MessageBuilder.withPayload("2").setHeader("sessionId", "s1").build();
+		Message<?> message3 = MessageBuilder.withPayload("3").setHeader("sessionId", "s1").build();
+		Message<?> message4 = MessageBuilder.withPayload("4").setHeader("sessionId", "s1").build();
+
+		testChannel.send(message1);
+		testChannel.send(message2);
+		testChannel.send(message3);
+		assertEquals(1, executor.tasks.size());
+
+		executor.reject = true;
+		try {
+			executor.tasks.remove(0).run();
+			fail("Should have thrown RejectedExecutionException");
+		}
+		catch (RejectedExecutionException ex) {
+			// expected
+		}
+		verify(this.handler).handleMessage(message1);
+		Map<?, ?> dispatchQueues = (Map<?, ?>) new DirectFieldAccessor(testChannel).getPropertyValue("dispatchQueues");
+		assertTrue(dispatchQueues.isEmpty());
+
+		executor.reject = false;
+		testChannel.send(message4);
+		assertEquals(1, executor.tasks.size());
+		executor.tasks.remove(0).run();
+		verify(this.handler).handleMessage(message4);
+		verify(this.handler, never()).handleMessage(message2);
+		verify(this.handler, never()).handleMessage(message3);
+		assertEquals(0, executor.tasks.size());
+		assertTrue(dispatchQueues.isEmpty());
+	}
+
+	private static class QueueingExecutor implements Executor {
+
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		private boolean reject;
+
+		@Override
+		public void execute(Runnable task) {
+			if (this.reject) {
+				throw new RejectedExecutionException();
+			}
+			this.tasks.add(task);
+		}
+	}
+
+
 	private abstract static class AbstractTestInterceptor extends ChannelInterceptorAdapter
 			implements ExecutorChannelInterceptor {
 
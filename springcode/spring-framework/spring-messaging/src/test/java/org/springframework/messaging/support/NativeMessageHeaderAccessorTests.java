@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -121,6 +121,25 @@ public class NativeMessageHeaderAccessorTests {
 		assertEquals(Arrays.asList("baz"), actualNativeHeaders.get("bar"));
 	}
 
+	@Test
+	public void createFromImmutableMessageAndModify() {
+		NativeMessageHeaderAccessor sourceAccessor = new NativeMessageHeaderAccessor();
+		sourceAccessor.setNativeHeader("foo", "bar");
+		Message<String> message = MessageBuilder.createMessage("p", sourceAccessor.getMessageHeaders());
+
+		NativeMessageHeaderAccessor headerAccessor = new NativeMessageHeaderAccessor(message);
+		assertEquals("bar", headerAccessor.getFirstNativeHeader("foo"));
+
+		headerAccessor.setNativeHeader("foo", "BAR");
+		headerAccessor.addNativeHeader("bar", "baz");
+		headerAccessor.setImmutable();
+
+		assertEquals(Arrays.asList("BAR"), headerAccessor.getNativeHeader("foo"));
+		assertEquals(Arrays.asList("baz"), headerAccessor.getNativeHeader("bar"));
+		assertEquals(Arrays.asList("bar"), sourceAccessor.getNativeHeader("foo"));
+		assertNull(sourceAccessor.getNativeHeader("bar"));
+	}
+
 	@Test1
 	public void setNativeHeader() {
 		MultiValueMap<String, String> nativeHeaders = new LinkedMultiValueMap<>();
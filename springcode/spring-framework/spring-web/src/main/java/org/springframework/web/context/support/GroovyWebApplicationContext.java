@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -135,6 +135,15 @@ public class GroovyWebApplicationContext extends AbstractRefreshableWebApplicati
 		}
 	}
 
+	/**
+	 * This implementation returns {@code true}: Groovy bean definitions
+	 * may be taken from a snapshot.
+	 */
+	@Override
+	protected boolean isBeanDefinitionSnapshotSupported() {
+		return true;
+	}
+
 	/**
 	 * The default location for the root context is "/WEB-INF/applicationContext.groovy",
 	 * and "/WEB-INF/test-servlet.groovy" for a context with the namespace "test-servlet"
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.web.context.support;
 import java.io.IOException;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.parsing.ReaderEventListener;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.xml.ResourceEntityResolver;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
@@ -87,6 +88,10 @@ public class XmlWebApplicationContext extends AbstractRefreshableWebApplicationC
 		beanDefinitionReader.setEnvironment(getEnvironment());
 		beanDefinitionReader.setResourceLoader(this);
 		beanDefinitionReader.setEntityResolver(new ResourceEntityResolver(this));
+		ReaderEventListener snapshotListener = getBeanDefinitionSnapshotListener();
+		if (snapshotListener != null) {
+			beanDefinitionReader.setEventListener(snapshotListener);
+		}
 
 		// Allow a subclass to provide custom initialization of the reader,
 		// then proceed with actually loading the bean definitions.
@@ -127,6 +132,15 @@ public class XmlWebApplicationContext extends AbstractRefreshableWebApplicationC
 		}
 	}
 
+	/**
+	 * This implementation returns {@code true}: XML bean definitions
+	 * may be taken from a snapshot.
+	 */
+	@Override
+	protected boolean isBeanDefinitionSnapshotSupported() {
+		return true;
+	}
+
 	/**
 	 * The default location for the root context is "/WEB-INF/applicationContext.xml",
 	 * and "/WEB-INF/test-servlet.xml" for a context with the namespace "test-servlet"
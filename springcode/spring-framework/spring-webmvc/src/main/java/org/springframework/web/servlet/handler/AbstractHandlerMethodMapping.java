@@ -21,8 +21,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,10 +33,12 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.BeanFactoryUtils;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.ReflectionUtils.MethodFilter;
+import org.springframework.util.StringUtils;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.method.HandlerMethodSelector;
 import org.springframework.web.servlet.HandlerMapping;
@@ -78,6 +82,8 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 
 	private final MultiValueMap<String, HandlerMethod> nameMap = new LinkedMultiValueMap<String, HandlerMethod>();
 
+	private PathPatternIndex pathPatternIndex;
+
 
 	/**
 	 * Whether to detect handler methods in beans in ancestor ApplicationContexts.
@@ -99,6 +105,24 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 		this.namingStrategy = namingStrategy;
 	}
 
+	/**
+	 * Whether registered mappings should be indexed by the literal leading
+	 * segments of their path patterns, so that a lookup path which has no
+	 * direct match is only checked against mappings sharing its literal
+	 * prefix rather than against all registered mappings.
+	 * <p>The default implementation returns {@code false}. Subclasses may
+	 * enable the index if the patterns returned from
+	 * {@link #getMappingPathPatterns} are "/"-separated. The index is only
+	 * applied if the {@link #getPathMatcher() PathMatcher} is a plain
+	 * {@link AntPathMatcher} (not a subclass) and ignored otherwise; since the
+	 * matcher's path separator and trimming settings cannot be introspected,
+	 * it must not be enabled for an AntPathMatcher with a custom separator.
+	 * @since 4.1.10
+	 */
+	protected boolean usePathPatternIndex() {
+		return false;
+	}
+
 	/**
 	 * Return a map with all handler methods and their mappings.
 	 */
@@ -225,6 +249,13 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 			}
 		}
 
+		if (usePathPatternIndex() && getPathMatcher().getClass() == AntPathMatcher.class) {
+			if (this.pathPatternIndex == null) {
+				this.pathPatternIndex = new PathPatternIndex();
+			}
+			this.pathPatternIndex.add(mapping, patterns);
+		}
+
 		if (this.namingStrategy != null) {
 			String name = this.namingStrategy.getName(newHandlerMethod, mapping);
 			updateNameMap(name, newHandlerMethod);
@@ -322,8 +353,14 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 			addMatchingMappings(directPathMatches, matches, request);
 		}
 		if (matches.isEmpty()) {
-			// No choice but to go through all mappings...
-			addMatchingMappings(this.handlerMethods.keySet(), matches, request);
+			if (this.pathPatternIndex != null) {
+				// Go through mappings sharing the literal path prefix only...
+				addMatchingMappings(this.pathPatternIndex.getCandidates(lookupPath), matches, request);
+			}
+			else {
+				// No choice but to go through all mappings...
+				addMatchingMappings(this.handlerMethods.keySet(), matches, request);
+			}
 		}
 
 		if (!matches.isEmpty()) {
@@ -437,4 +474,77 @@ public abstract class AbstractHandlerMethodMapping<T> extends AbstractHandlerMap
 		}
 	}
 
+
+	/**
+	 * A prefix tree of the literal leading path segments of registered patterns.
+	 * <p>Each mapping is stored at the node reached by the segments of its
+	 * patterns that precede the first wildcard or URI variable segment. The
+	 * last segment of a pattern is never used as a key, since suffix pattern
+	 * and registered extension matching may still append to it. A mapping
+	 * without patterns is stored at the root and is thus always a candidate.
+	 */
+	private class PathPatternIndex {
+
+		private final PathPatternIndexNode root = new PathPatternIndexNode();
+
+		public void add(T mapping, Set<String> patterns) {
+			if (patterns.isEmpty()) {
+				this.root.addMapping(mapping);
+				return;
+			}
+			for (String pattern : patterns) {
+				String[] segments = StringUtils.tokenizeToStringArray(pattern, "/");
+				PathPatternIndexNode node = this.root;
+				for (int i = 0; i < segments.length - 1; i++) {
+					if (!isLiteral(segments[i])) {
+						break;
+					}
+					node = node.getOrCreateChild(segments[i]);
+				}
+				node.addMapping(mapping);
+			}
+		}
+
+		public Collection<T> getCandidates(String lookupPath) {
+			Set<T> candidates = new LinkedHashSet<T>();
+			String[] segments = StringUtils.tokenizeToStringArray(lookupPath, "/");
+			PathPatternIndexNode node = this.root;
+			int i = 0;
+			while (node != null) {
+				candidates.addAll(node.mappings);
+				node = (i < segments.length ? node.getChild(segments[i++]) : null);
+			}
+			return candidates;
+		}
+
+		private boolean isLiteral(String segment) {
+			return (segment.indexOf('*') == -1 && segment.indexOf('?') == -1 && segment.indexOf('{') == -1);
+		}
+	}
+
+
+	private class PathPatternIndexNode {
+
+		private final Map<String, PathPatternIndexNode> children = new HashMap<String, PathPatternIndexNode>(4);
+
+		private final Set<T> mappings = new LinkedHashSet<T>(2);
+
+		public PathPatternIndexNode getChild(String segment) {
+			return this.children.get(segment);
+		}
+
+		public PathPatternIndexNode getOrCreateChild(String segment) {
+			PathPatternIndexNode child = this.children.get(segment);
+			if (child == null) {
+				child = new PathPatternIndexNode();
+				this.children.put(segment, child);
+			}
+			return child;
+		}
+
+		public void addMapping(T mapping) {
+			this.mappings.add(mapping);
+		}
+	}
+
 }
@@ -57,6 +57,8 @@ public class RequestMappingHandlerMapping extends RequestMappingInfoHandlerMappi
 
 	private boolean useTrailingSlashMatch = true;
 
+	private boolean usePathPatternIndex = false;
+
 	private ContentNegotiationManager contentNegotiationManager = new ContentNegotiationManager();
 
 	private final List<String> fileExtensions = new ArrayList<String>();
@@ -104,6 +106,26 @@ public class RequestMappingHandlerMapping extends RequestMappingInfoHandlerMappi
 		this.useTrailingSlashMatch = useTrailingSlashMatch;
 	}
 
+	/**
+	 * Whether to index request mappings by the literal leading segments of
+	 * their URL patterns. If enabled, a request whose path has no direct match
+	 * is only checked against mappings sharing its literal path prefix, e.g.
+	 * "/api/{tenant}/orders" is not considered for "/admin/users", instead of
+	 * being checked against every request mapping in turn.
+	 * <p>This is worth enabling for applications with many pattern-based
+	 * mappings. The index is only applied with a plain
+	 * {@link org.springframework.util.AntPathMatcher}; it is ignored for any other
+	 * {@link org.springframework.util.PathMatcher}, including AntPathMatcher
+	 * subclasses. It assumes the default "/" path separator and token trimming,
+	 * which are not checked, so do not enable it for an AntPathMatcher configured
+	 * with different settings.
+	 * <p>The default value is {@code false}.
+	 * @since 4.1.10
+	 */
+	public void setUsePathPatternIndex(boolean usePathPatternIndex) {
+		this.usePathPatternIndex = usePathPatternIndex;
+	}
+
 	/**
 	 * Set the {@link ContentNegotiationManager} to use to determine requested media types.
 	 * If not set, the default constructor is used.
@@ -148,6 +170,14 @@ public class RequestMappingHandlerMapping extends RequestMappingInfoHandlerMappi
 		return this.useTrailingSlashMatch;
 	}
 
+	/**
+	 * Whether to index request mappings by the literal leading segments of their URL patterns.
+	 */
+	@Override
+	public boolean usePathPatternIndex() {
+		return this.usePathPatternIndex;
+	}
+
 	/**
 	 * Return the configured {@link ContentNegotiationManager}.
 	 */
@@ -27,12 +27,16 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.test.MockHttpServletRequest;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.StringValueResolver;
 import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.accept.PathExtensionContentNegotiationStrategy;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 
 import static org.junit.Assert.*;
@@ -131,6 +135,65 @@ public class RequestMappingHandlerMappingTests {
 		assertArrayEquals(new String[] { "/foo", "/foo/bar" }, result);
 	}
 
+	@Test
+	public void usePathPatternIndex() throws Exception {
+		assertFalse(this.handlerMapping.usePathPatternIndex());
+
+		StaticWebApplicationContext wac = new StaticWebApplicationContext();
+		wac.registerSingleton("tenantController", TenantController.class);
+		wac.refresh();
+
+		RequestMappingHandlerMapping indexed = new RequestMappingHandlerMapping();
+		indexed.setUsePathPatternIndex(true);
+		indexed.setApplicationContext(wac);
+		indexed.afterPropertiesSet();
+		assertTrue(indexed.usePathPatternIndex());
+
+		RequestMappingHandlerMapping scanning = new RequestMappingHandlerMapping();
+		scanning.setApplicationContext(wac);
+		scanning.afterPropertiesSet();
+
+		String[] paths = new String[] {"/api/acme/orders", "/api/acme/orders/42", "/api/acme/orders/42.json",
+				"/api/acme/orders/42/", "/api/acme/orders.json", "/api/acme/users/jdoe", "/api/acme/users/jdoe/x/y",
+				"/admin/users", "/admin/users.json", "/acme/status", "/other", "/api/orders"};
+
+		for (String path : paths) {
+			assertEquals(path, getHandlerMethodName(scanning, path), getHandlerMethodName(indexed, path));
+		}
+		assertEquals("orders", getHandlerMethodName(indexed, "/api/acme/orders"));
+		assertEquals("order", getHandlerMethodName(indexed, "/api/acme/orders/42.json"));
+		assertEquals("users", getHandlerMethodName(indexed, "/admin/users.json"));
+		assertEquals("status", getHandlerMethodName(indexed, "/acme/status"));
+		assertEquals("userPath", getHandlerMethodName(indexed, "/api/acme/users/jdoe/x/y"));
+		assertNull(getHandlerMethodName(indexed, "/api/orders"));
+	}
+
+	@Test
+	public void usePathPatternIndexIgnoredForAntPathMatcherSubclass() throws Exception {
+		StaticWebApplicationContext wac = new StaticWebApplicationContext();
+		wac.registerSingleton("tenantController", TenantController.class);
+		wac.refresh();
+
+		RequestMappingHandlerMapping indexed = new RequestMappingHandlerMapping();
+		indexed.setUsePathPatternIndex(true);
+		indexed.setPathMatcher(new AntPathMatcher() {
+			@Override
+			protected boolean doMatch(String pattern, String path, boolean fullMatch, Map<String, String> uriTemplateVariables) {
+				return super.doMatch(pattern.toLowerCase(), path.toLowerCase(), fullMatch, uriTemplateVariables);
+			}
+		});
+		indexed.setApplicationContext(wac);
+		indexed.afterPropertiesSet();
+
+		assertEquals("orders", getHandlerMethodName(indexed, "/API/acme/orders"));
+		assertEquals("users", getHandlerMethodName(indexed, "/ADMIN/users"));
+	}
+
+	private String getHandlerMethodName(RequestMappingHandlerMapping mapping, String path) throws Exception {
+		HandlerExecutionChain chain = mapping.getHandler(new MockHttpServletRequest("GET", path));
+		return (chain != null ? ((HandlerMethod) chain.getHandler()).getMethod().getName() : null);
+	}
+
 
 	@Controller
 	static class TestController {
@@ -140,4 +203,37 @@ public class RequestMappingHandlerMappingTests {
 		}
 	}
 
+
+	@Controller
+	static class TenantController {
+
+		@RequestMapping("/api/{tenant}/orders")
+		public void orders() {
+		}
+
+		@RequestMapping("/api/{tenant}/orders/{id}")
+		public void order() {
+		}
+
+		@RequestMapping("/api/{tenant}/users/**")
+		public void userPath() {
+		}
+
+		@RequestMapping("/api/{tenant}/users/{name}")
+		public void user() {
+		}
+
+		@RequestMapping("/admin/users")
+		public void users() {
+		}
+
+		@RequestMapping("/{tenant}/status")
+		public void status() {
+		}
+
+		@RequestMapping("/*")
+		public void root() {
+		}
+	}
+
 }
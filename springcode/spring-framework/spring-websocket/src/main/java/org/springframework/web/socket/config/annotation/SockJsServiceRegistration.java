@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -54,6 +54,10 @@ public class SockJsServiceRegistration {
 
 	private Integer httpMessageCacheSize;
 
+	private Long messageBatchDelay;
+
+	private Integer messageBatchSizeLimit;
+
 	private Boolean webSocketEnabled;
 
 	private final List<TransportHandler> transportHandlers = new ArrayList<TransportHandler>();
@@ -158,6 +162,30 @@ public class SockJsServiceRegistration {
 		return this;
 	}
 
+	/**
+	 * The maximum amount of time in milliseconds that HTTP transports hold back
+	 * messages in order to write them together as a single message frame, with
+	 * a single flush of the response.
+	 * <p>The default value is 0, i.e. messages are written immediately.
+	 * @since 4.1.10
+	 */
+	public SockJsServiceRegistration setMessageBatchDelay(long messageBatchDelay) {
+		this.messageBatchDelay = messageBatchDelay;
+		return this;
+	}
+
+	/**
+	 * The amount of buffered message content (number of characters) at which
+	 * messages held back for batching are written without waiting for the
+	 * batch delay to expire.
+	 * <p>The default value is 16K (i.e. 16 * 1024).
+	 * @since 4.1.10
+	 */
+	public SockJsServiceRegistration setMessageBatchSizeLimit(int messageBatchSizeLimit) {
+		this.messageBatchSizeLimit = messageBatchSizeLimit;
+		return this;
+	}
+
 	/**
 	 * The number of server-to-client messages that a session can cache while waiting for
 	 * the next HTTP polling request from the client. All HTTP transports use this
@@ -261,6 +289,12 @@ public class SockJsServiceRegistration {
 		if (this.httpMessageCacheSize != null) {
 			service.setHttpMessageCacheSize(this.httpMessageCacheSize);
 		}
+		if (this.messageBatchDelay != null) {
+			service.setMessageBatchDelay(this.messageBatchDelay);
+		}
+		if (this.messageBatchSizeLimit != null) {
+			service.setMessageBatchSizeLimit(this.messageBatchSizeLimit);
+		}
 		if (this.webSocketEnabled != null) {
 			service.setWebSocketEnabled(this.webSocketEnabled);
 		}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
 
 /**
@@ -36,6 +37,8 @@ public class WebSocketTransportRegistration {
 
 	private Integer sendBufferSizeLimit;
 
+	private ConcurrentWebSocketSessionDecorator.OverflowStrategy sendBufferOverflowStrategy;
+
 	private final List<WebSocketHandlerDecoratorFactory> decoratorFactories =
 			new ArrayList<WebSocketHandlerDecoratorFactory>(2);
 
@@ -157,6 +160,29 @@ public class WebSocketTransportRegistration {
 		return this.sendBufferSizeLimit;
 	}
 
+	/**
+	 * Configure what to do when the {@code sendBufferSizeLimit} is exceeded:
+	 * close the session, or keep it open and drop or coalesce buffered
+	 * messages instead, e.g. for clients of a high-rate feed that only need
+	 * the latest value per destination.
+	 * <p>By default the session is closed.
+	 * @since 4.1.10
+	 * @see ConcurrentWebSocketSessionDecorator.OverflowStrategy
+	 */
+	public WebSocketTransportRegistration setSendBufferOverflowStrategy(
+			ConcurrentWebSocketSessionDecorator.OverflowStrategy overflowStrategy) {
+
+		this.sendBufferOverflowStrategy = overflowStrategy;
+		return this;
+	}
+
+	/**
+	 * Protected accessor for internal use.
+	 */
+	protected ConcurrentWebSocketSessionDecorator.OverflowStrategy getSendBufferOverflowStrategy() {
+		return this.sendBufferOverflowStrategy;
+	}
+
 	/**
 	 * Configure one or more factories to decorate the handler used to process
 	 * WebSocket messages. This may be useful in some advanced use cases, for
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,14 +18,20 @@ package org.springframework.web.socket.handler;
 
 import java.io.IOException;
 import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.util.Assert;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
@@ -35,9 +41,14 @@ import org.springframework.web.socket.WebSocketSession;
  * only one thread can send messages at a time.
  *
  * <p>If a send is slow, subsequent attempts to send more messages from a different
- * thread will fail to acquire the flush lock and the messages will be buffered
+ * thread will find a send in progress and the messages will be buffered
  * instead: At that time, the specified buffer-size limit and send-time limit will
- * be checked and the session closed if the limits are exceeded.
+ * be checked. Exceeding the send-time limit always closes the session, while
+ * exceeding the buffer-size limit is handled according to the configured
+ * {@link OverflowStrategy}.
+ *
+ * <p>Sending threads never block on one another: the buffer is a lock-free
+ * queue and the thread that finds no send in progress takes over flushing it.
  *
  * @author Rossen Stoyanchev
  * @since 4.0.3
@@ -47,12 +58,25 @@ public class ConcurrentWebSocketSessionDecorator extends WebSocketSessionDecorat
 	private static final Log logger = LogFactory.getLog(ConcurrentWebSocketSessionDecorator.class);
 
 
-	private final Queue<WebSocketMessage<?>> buffer = new LinkedBlockingQueue<WebSocketMessage<?>>();
+	private final Queue<AtomicReference<BufferedMessage>> buffer =
+			new ConcurrentLinkedQueue<AtomicReference<BufferedMessage>>();
+
+	/** Buffered messages by coalescing key, for the COALESCE overflow strategy */
+	private final ConcurrentMap<String, AtomicReference<BufferedMessage>> coalescingIndex =
+			new ConcurrentHashMap<String, AtomicReference<BufferedMessage>>();
 
 	private final AtomicInteger bufferSize = new AtomicInteger();
 
+	private final AtomicInteger bufferedMessageCount = new AtomicInteger();
+
 	private final int bufferSizeLimit;
 
+	private final OverflowStrategy overflowStrategy;
+
+	private final AtomicLong droppedMessageCount = new AtomicLong();
+
+	private final AtomicLong coalescedMessageCount = new AtomicLong();
+
 
 	private volatile long sendStartTime;
 
@@ -64,28 +88,82 @@ public class ConcurrentWebSocketSessionDecorator extends WebSocketSessionDecorat
 	private volatile boolean shutdownInProgress;
 
 
-	private final Lock flushLock = new ReentrantLock();
+	private final AtomicBoolean flushInProgress = new AtomicBoolean();
 
 	private final Lock closeLock = new ReentrantLock();
 
 
 	/**
-	 * Create a new {@code ConcurrentWebSocketSessionDecorator}.
+	 * Create a new {@code ConcurrentWebSocketSessionDecorator} that closes the
+	 * session when the buffer-size limit is exceeded.
 	 * @param delegate the {@code WebSocketSession} to delegate to
 	 * @param sendTimeLimit the send-time limit (milliseconds)
 	 * @param bufferSizeLimit the buffer-size limit (number of bytes)
 	 */
 	public ConcurrentWebSocketSessionDecorator(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit) {
+		this(delegate, sendTimeLimit, bufferSizeLimit, OverflowStrategy.TERMINATE);
+	}
+
+	/**
+	 * Create a new {@code ConcurrentWebSocketSessionDecorator}.
+	 * @param delegate the {@code WebSocketSession} to delegate to
+	 * @param sendTimeLimit the send-time limit (milliseconds)
+	 * @param bufferSizeLimit the buffer-size limit (number of bytes)
+	 * @param overflowStrategy what to do when the buffer-size limit is exceeded
+	 * @since 4.1.10
+	 */
+	public ConcurrentWebSocketSessionDecorator(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+			OverflowStrategy overflowStrategy) {
+
 		super(delegate);
+		Assert.notNull(overflowStrategy, "OverflowStrategy must not be null");
 		this.sendTimeLimit = sendTimeLimit;
 		this.bufferSizeLimit = bufferSizeLimit;
+		this.overflowStrategy = overflowStrategy;
 	}
 
 
+	/**
+	 * Return the configured strategy for exceeding the buffer-size limit.
+	 * @since 4.1.10
+	 */
+	public OverflowStrategy getOverflowStrategy() {
+		return this.overflowStrategy;
+	}
+
+	/**
+	 * Return the number of bytes currently buffered.
+	 */
 	public int getBufferSize() {
 		return this.bufferSize.get();
 	}
 
+	/**
+	 * Return the number of messages currently buffered.
+	 * @since 4.1.10
+	 */
+	public int getBufferedMessageCount() {
+		return this.bufferedMessageCount.get();
+	}
+
+	/**
+	 * Return the number of messages dropped so far because the buffer-size
+	 * limit was exceeded.
+	 * @since 4.1.10
+	 */
+	public long getDroppedMessageCount() {
+		return this.droppedMessageCount.get();
+	}
+
+	/**
+	 * Return the number of buffered messages replaced so far by a later
+	 * message with the same coalescing key.
+	 * @since 4.1.10
+	 */
+	public long getCoalescedMessageCount() {
+		return this.coalescedMessageCount.get();
+	}
+
 	public long getTimeSinceSendStarted() {
 		long start = this.sendStartTime;
 		return (start > 0 ? (System.currentTimeMillis() - start) : 0);
@@ -93,12 +171,44 @@ public class ConcurrentWebSocketSessionDecorator extends WebSocketSessionDecorat
 
 
 	public void sendMessage(WebSocketMessage<?> message) throws IOException {
+		sendMessage(message, null);
+	}
+
+	/**
+	 * Send the given message, with a key identifying the stream of values it
+	 * belongs to, e.g. a subscription to a destination. With the
+	 * {@link OverflowStrategy#COALESCE COALESCE} strategy, a message that is
+	 * still buffered is replaced by a later message with the same key.
+	 * The key is ignored with any other strategy.
+	 * @param message the message to send
+	 * @param coalescingKey the coalescing key, or {@code null} if none
+	 * @since 4.1.10
+	 */
+	public void sendMessage(WebSocketMessage<?> message, String coalescingKey) throws IOException {
 		if (isDisabled()) {
 			return;
 		}
 
-		this.buffer.add(message);
-		this.bufferSize.addAndGet(message.getPayloadLength());
+		int length = message.getPayloadLength();
+		if (this.overflowStrategy == OverflowStrategy.DROP_NEWEST) {
+			if (!reserveBufferSize(length)) {
+				this.droppedMessageCount.incrementAndGet();
+				if (logger.isTraceEnabled()) {
+					logger.trace("Dropping message for session id '" + getId() + "', buffer size " +
+							this.bufferSize + " bytes");
+				}
+				checkSessionLimits();
+				return;
+			}
+			enqueueBufferedMessage(new BufferedMessage(message, length, null));
+		}
+		else {
+			String key = (this.overflowStrategy == OverflowStrategy.COALESCE ? coalescingKey : null);
+			if (key == null || !replaceBufferedMessage(key, message, length)) {
+				this.bufferSize.addAndGet(length);
+				enqueueBufferedMessage(new BufferedMessage(message, length, key));
+			}
+		}
 
 		do {
 			if (!tryFlushMessageBuffer()) {
@@ -118,23 +228,86 @@ public class ConcurrentWebSocketSessionDecorator extends WebSocketSessionDecorat
 		return (this.limitExceeded || this.shutdownInProgress);
 	}
 
+	/**
+	 * Add the given length to the buffer size unless a send is in progress
+	 * and the buffer-size limit would be exceeded, as one atomic step.
+	 * @return whether the buffer size has been increased
+	 */
+	private boolean reserveBufferSize(int length) {
+		while (true) {
+			int size = this.bufferSize.get();
+			if (size + length > this.bufferSizeLimit && this.flushInProgress.get()) {
+				return false;
+			}
+			if (this.bufferSize.compareAndSet(size, size + length)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Add the given message to the buffer, with its length already
+	 * accounted for in the buffer size.
+	 */
+	private void enqueueBufferedMessage(BufferedMessage message) {
+		AtomicReference<BufferedMessage> slot = new AtomicReference<BufferedMessage>(message);
+		if (message.coalescingKey != null) {
+			this.coalescingIndex.put(message.coalescingKey, slot);
+		}
+		this.bufferedMessageCount.incrementAndGet();
+		this.buffer.add(slot);
+	}
+
+	private boolean replaceBufferedMessage(String key, WebSocketMessage<?> message, int length) {
+		AtomicReference<BufferedMessage> slot = this.coalescingIndex.get(key);
+		if (slot == null) {
+			return false;
+		}
+		BufferedMessage replacement = new BufferedMessage(message, length, key);
+		while (true) {
+			BufferedMessage current = slot.get();
+			if (current == null) {
+				// Already taken from the buffer
+				return false;
+			}
+			if (slot.compareAndSet(current, replacement)) {
+				this.bufferSize.addAndGet(length - current.length);
+				this.coalescedMessageCount.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	private BufferedMessage pollBufferedMessage() {
+		AtomicReference<BufferedMessage> slot = this.buffer.poll();
+		if (slot == null) {
+			return null;
+		}
+		BufferedMessage message = slot.getAndSet(null);
+		if (message.coalescingKey != null) {
+			this.coalescingIndex.remove(message.coalescingKey, slot);
+		}
+		this.bufferSize.addAndGet(message.length * -1);
+		this.bufferedMessageCount.decrementAndGet();
+		return message;
+	}
+
 	private boolean tryFlushMessageBuffer() throws IOException {
-		if (this.flushLock.tryLock()) {
+		if (this.flushInProgress.compareAndSet(false, true)) {
 			try {
-				while (true) {
-					WebSocketMessage<?> messageToSend = this.buffer.poll();
-					if (messageToSend == null || isDisabled()) {
+				while (!isDisabled()) {
+					BufferedMessage messageToSend = pollBufferedMessage();
+					if (messageToSend == null) {
 						break;
 					}
-					this.bufferSize.addAndGet(messageToSend.getPayloadLength() * -1);
 					this.sendStartTime = System.currentTimeMillis();
-					getDelegate().sendMessage(messageToSend);
+					getDelegate().sendMessage(messageToSend.message);
 					this.sendStartTime = 0;
 				}
 			}
 			finally {
 				this.sendStartTime = 0;
-				flushLock.unlock();
+				this.flushInProgress.set(false);
 			}
 			return true;
 		}
@@ -150,10 +323,16 @@ public class ConcurrentWebSocketSessionDecorator extends WebSocketSessionDecorat
 					sessionLimitReached(errorMessage, CloseStatus.SESSION_NOT_RELIABLE);
 				}
 				else if (this.bufferSize.get() > this.bufferSizeLimit) {
-					String errorMessage = "The send buffer size " + this.bufferSize.get() + " bytes for " +
-							"session '" + getId() + " exceeded the allowed limit " + this.bufferSizeLimit;
-					sessionLimitReached(errorMessage,
-							(getTimeSinceSendStarted() >= 10000 ? CloseStatus.SESSION_NOT_RELIABLE : null));
+					if (this.overflowStrategy == OverflowStrategy.TERMINATE) {
+						String errorMessage = "The send buffer size " + this.bufferSize.get() + " bytes for " +
+								"session '" + getId() + " exceeded the allowed limit " + this.bufferSizeLimit;
+						sessionLimitReached(errorMessage,
+								(getTimeSinceSendStarted() >= 10000 ? CloseStatus.SESSION_NOT_RELIABLE : null));
+					}
+					else if (this.overflowStrategy != OverflowStrategy.DROP_NEWEST) {
+						// With DROP_NEWEST, new messages are dropped before being buffered
+						dropOldestMessages();
+					}
 				}
 			}
 			finally {
@@ -162,6 +341,18 @@ public class ConcurrentWebSocketSessionDecorator extends WebSocketSessionDecorat
 		}
 	}
 
+	private void dropOldestMessages() {
+		int count = 0;
+		while (this.bufferSize.get() > this.bufferSizeLimit && pollBufferedMessage() != null) {
+			count++;
+		}
+		this.droppedMessageCount.addAndGet(count);
+		if (count > 0 && logger.isDebugEnabled()) {
+			logger.debug("Dropped " + count + " buffered message(s) for session id '" + getId() +
+					"', the send buffer exceeded the allowed limit " + this.bufferSizeLimit);
+		}
+	}
+
 	private void sessionLimitReached(String reason, CloseStatus status) {
 		this.limitExceeded = true;
 		throw new SessionLimitExceededException(reason, status);
@@ -179,4 +370,54 @@ public class ConcurrentWebSocketSessionDecorator extends WebSocketSessionDecorat
 		return getDelegate().toString();
 	}
 
+
+	/**
+	 * Enum for options of what to do when the buffer-size limit is exceeded.
+	 * @since 4.1.10
+	 */
+	public enum OverflowStrategy {
+
+		/**
+		 * Throw {@link SessionLimitExceededException} that will result in the
+		 * session being terminated.
+		 */
+		TERMINATE,
+
+		/**
+		 * Drop the oldest buffered messages until the buffer is back within
+		 * the limit.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Drop messages that would exceed the limit while a send is in progress,
+		 * keeping the messages buffered so far.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Replace a buffered message with a later message for the same
+		 * coalescing key, e.g. keeping only the latest value per destination,
+		 * and drop the oldest buffered messages if that is not sufficient.
+		 * @see ConcurrentWebSocketSessionDecorator#sendMessage(WebSocketMessage, String)
+		 */
+		COALESCE
+	}
+
+
+	private static class BufferedMessage {
+
+		private final WebSocketMessage<?> message;
+
+		private final int length;
+
+		private final String coalescingKey;
+
+		public BufferedMessage(WebSocketMessage<?> message, int length, String coalescingKey) {
+			this.message = message;
+			this.length = length;
+			this.coalescingKey = coalescingKey;
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -52,12 +52,14 @@ import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.messaging.support.MessageHeaderInitializer;
 import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentLruCache;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.handler.WebSocketSessionDecorator;
 import org.springframework.web.socket.sockjs.transport.SockJsSession;
@@ -90,6 +92,8 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 
 	private static final byte[] EMPTY_PAYLOAD = new byte[0];
 
+	private static final int BROADCAST_FRAME_CACHE_LIMIT = 256;
+
 
 	private int messageSizeLimit = 64 * 1024;
 
@@ -99,6 +103,10 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 
 	private final StompDecoder stompDecoder = new StompDecoder();
 
+	/** Map from destination -> last MESSAGE frame to it, reused for the same message to other subscriptions */
+	private final ConcurrentLruCache<String, BroadcastFrame> broadcastFrameCache =
+			new ConcurrentLruCache<String, BroadcastFrame>(BROADCAST_FRAME_CACHE_LIMIT);
+
 	private final Map<String, BufferingStompDecoder> decoders = new ConcurrentHashMap<String, BufferingStompDecoder>();
 
 	private MessageHeaderInitializer headerInitializer;
@@ -354,16 +362,19 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 		}
 		try {
 			byte[] payload = (byte[]) message.getPayload();
-			byte[] bytes = this.stompEncoder.encode(stompAccessor.getMessageHeaders(), payload);
+			byte[] bytes = (StompCommand.MESSAGE.equals(command) ? encodeMessageFrame(stompAccessor, payload) :
+					this.stompEncoder.encode(stompAccessor.getMessageHeaders(), payload));
 
 			boolean useBinary = (payload.length > 0 && !(session instanceof SockJsSession) &&
 					MimeTypeUtils.APPLICATION_OCTET_STREAM.isCompatibleWith(stompAccessor.getContentType()));
 
-			if (useBinary) {
-				session.sendMessage(new BinaryMessage(bytes));
+			WebSocketMessage<?> webSocketMessage = (useBinary ? new BinaryMessage(bytes) : new TextMessage(bytes));
+			if (StompCommand.MESSAGE.equals(command) && isCoalescing(session)) {
+				String coalescingKey = stompAccessor.getSubscriptionId() + ":" + stompAccessor.getDestination();
+				((ConcurrentWebSocketSessionDecorator) session).sendMessage(webSocketMessage, coalescingKey);
 			}
 			else {
-				session.sendMessage(new TextMessage(bytes));
+				session.sendMessage(webSocketMessage);
 			}
 		}
 		catch (SessionLimitExceededException ex) {
@@ -387,6 +398,43 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 		}
 	}
 
+	private boolean isCoalescing(WebSocketSession session) {
+		return (session instanceof ConcurrentWebSocketSessionDecorator &&
+				((ConcurrentWebSocketSessionDecorator) session).getOverflowStrategy() ==
+						ConcurrentWebSocketSessionDecorator.OverflowStrategy.COALESCE);
+	}
+
+	/**
+	 * Encode a MESSAGE frame, reusing the encoded headers and payload of the
+	 * previous frame to the same destination if that was for the same message,
+	 * i.e. for a message broadcast to several subscriptions.
+	 * <p>A frame is only prepared for reuse once a second frame with the same
+	 * payload is sent to the destination, so frames to unique destinations
+	 * are encoded as usual.
+	 */
+	private byte[] encodeMessageFrame(StompHeaderAccessor stompAccessor, byte[] payload) {
+		Map<String, Object> headers = stompAccessor.getMessageHeaders();
+		String destination = stompAccessor.getDestination();
+		if (destination == null || payload.length == 0) {
+			return this.stompEncoder.encode(headers, payload);
+		}
+		BroadcastFrame broadcastFrame = this.broadcastFrameCache.get(destination);
+		if (broadcastFrame != null && broadcastFrame.payload == payload) {
+			StompEncoder.PreparedFrame frame = broadcastFrame.preparedFrame;
+			if (frame == null) {
+				frame = this.stompEncoder.prepare(headers, payload,
+						StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER);
+				broadcastFrame.preparedFrame = frame;
+				return frame.encode(headers);
+			}
+			if (frame.matches(headers, payload)) {
+				return frame.encode(headers);
+			}
+		}
+		this.broadcastFrameCache.put(destination, new BroadcastFrame(payload));
+		return this.stompEncoder.encode(headers, payload);
+	}
+
 	private  StompHeaderAccessor getStompHeaderAccessor(Message<?> message) {
 		MessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, MessageHeaderAccessor.class);
 		if (accessor == null) {
@@ -406,6 +454,9 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 				stompAccessor = StompHeaderAccessor.create(StompCommand.ERROR);
 				stompAccessor.setMessage("Session closed.");
 			}
+			else if (SimpMessageType.HEARTBEAT.equals(stompAccessor.getMessageType())) {
+				stompAccessor = StompHeaderAccessor.createForHeartbeat();
+			}
 			else if (stompAccessor.getCommand() == null || StompCommand.SEND.equals(stompAccessor.getCommand())) {
 				stompAccessor.updateStompCommandAsServerMessage();
 			}
@@ -443,7 +494,13 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 		}
 		StompHeaderAccessor connectedHeaders = StompHeaderAccessor.create(StompCommand.CONNECTED);
 		connectedHeaders.setVersion(version);
-		connectedHeaders.setHeartbeat(0, 0); // not supported
+		long[] heartbeat = (long[]) connectAckHeaders.getHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER);
+		if (heartbeat != null) {
+			connectedHeaders.setHeartbeat(heartbeat[0], heartbeat[1]);
+		}
+		else {
+			connectedHeaders.setHeartbeat(0, 0);
+		}
 		return connectedHeaders;
 	}
 
@@ -564,4 +621,20 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 		}
 	}
 
+
+	/**
+	 * The last payload sent to a destination, along with the frame prepared
+	 * for it once it has been sent a second time.
+	 */
+	private static class BroadcastFrame {
+
+		private final byte[] payload;
+
+		private volatile StompEncoder.PreparedFrame preparedFrame;
+
+		public BroadcastFrame(byte[] payload) {
+			this.payload = payload;
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -96,6 +96,9 @@ public class SubProtocolWebSocketHandler
 
 	private int sendBufferSizeLimit = 512 * 1024;
 
+	private ConcurrentWebSocketSessionDecorator.OverflowStrategy sendBufferOverflowStrategy =
+			ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE;
+
 	private volatile long lastSessionCheckTime = System.currentTimeMillis();
 
 	private final ReentrantLock sessionCheckLock = new ReentrantLock();
@@ -221,6 +224,25 @@ public class SubProtocolWebSocketHandler
 		return this.sendBufferSizeLimit;
 	}
 
+	/**
+	 * Specify what to do when the buffer-size limit is exceeded.
+	 * <p>By default the session is closed.
+	 * @since 4.1.10
+	 * @see ConcurrentWebSocketSessionDecorator.OverflowStrategy
+	 */
+	public void setSendBufferOverflowStrategy(ConcurrentWebSocketSessionDecorator.OverflowStrategy overflowStrategy) {
+		Assert.notNull(overflowStrategy, "OverflowStrategy must not be null");
+		this.sendBufferOverflowStrategy = overflowStrategy;
+	}
+
+	/**
+	 * Return the strategy for exceeding the buffer-size limit.
+	 * @since 4.1.10
+	 */
+	public ConcurrentWebSocketSessionDecorator.OverflowStrategy getSendBufferOverflowStrategy() {
+		return this.sendBufferOverflowStrategy;
+	}
+
 	/**
 	 * Return a String describing internal state and counters.
 	 */
@@ -285,7 +307,8 @@ public class SubProtocolWebSocketHandler
 	@Override
 	public void afterConnectionEstablished(WebSocketSession session) throws Exception {
 		this.stats.incrementSessionCount(session);
-		session = new ConcurrentWebSocketSessionDecorator(session, getSendTimeLimit(), getSendBufferSizeLimit());
+		session = new ConcurrentWebSocketSessionDecorator(session, getSendTimeLimit(), getSendBufferSizeLimit(),
+				getSendBufferOverflowStrategy());
 		this.sessions.put(session.getId(), new WebSocketSessionHolder(session));
 		findProtocolHandler(session).afterSessionStarted(session, this.clientInboundChannel);
 	}
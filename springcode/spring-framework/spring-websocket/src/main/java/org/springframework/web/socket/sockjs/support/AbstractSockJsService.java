@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -91,6 +91,10 @@ public abstract class AbstractSockJsService implements SockJsService {
 
 	private int httpMessageCacheSize = 100;
 
+	private long messageBatchDelay = 0;
+
+	private int messageBatchSizeLimit = 16 * 1024;
+
 	private boolean webSocketEnabled = true;
 
 	private boolean suppressCors = false;
@@ -257,6 +261,46 @@ public abstract class AbstractSockJsService implements SockJsService {
 		return this.httpMessageCacheSize;
 	}
 
+	/**
+	 * The maximum amount of time in milliseconds that HTTP transports hold back
+	 * messages in order to write them together as a single message frame, with
+	 * a single flush of the response, rather than one frame and flush per
+	 * message. This trades a little latency for fewer writes when sending many
+	 * small messages over HTTP streaming and polling transports.
+	 * <p>The default value is 0, i.e. messages are written immediately.
+	 * @since 4.1.10
+	 */
+	public void setMessageBatchDelay(long messageBatchDelay) {
+		this.messageBatchDelay = messageBatchDelay;
+	}
+
+	/**
+	 * Return the maximum amount of time in milliseconds to hold back messages.
+	 * @since 4.1.10
+	 */
+	public long getMessageBatchDelay() {
+		return this.messageBatchDelay;
+	}
+
+	/**
+	 * The amount of buffered message content (number of characters) at which
+	 * messages held back for batching are written without waiting for the
+	 * {@link #setMessageBatchDelay(long) batch delay} to expire.
+	 * <p>The default value is 16K (i.e. 16 * 1024).
+	 * @since 4.1.10
+	 */
+	public void setMessageBatchSizeLimit(int messageBatchSizeLimit) {
+		this.messageBatchSizeLimit = messageBatchSizeLimit;
+	}
+
+	/**
+	 * Return the amount of buffered message content at which to write a batch.
+	 * @since 4.1.10
+	 */
+	public int getMessageBatchSizeLimit() {
+		return this.messageBatchSizeLimit;
+	}
+
 	/**
 	 * Some load balancers do not support WebSocket. This option can be used to
 	 * disable the WebSocket transport on the server side.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,12 +19,18 @@ package org.springframework.web.socket.sockjs.transport.session;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.security.Principal;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.ServerHttpAsyncRequestControl;
@@ -37,11 +43,19 @@ import org.springframework.web.socket.sockjs.SockJsException;
 import org.springframework.web.socket.sockjs.SockJsTransportFailureException;
 import org.springframework.web.socket.sockjs.frame.SockJsFrame;
 import org.springframework.web.socket.sockjs.frame.SockJsFrameFormat;
+import org.springframework.web.socket.sockjs.frame.SockJsFrameType;
+import org.springframework.web.socket.sockjs.support.AbstractSockJsService;
 import org.springframework.web.socket.sockjs.transport.SockJsServiceConfig;
 
 /**
  * An abstract base class for use with HTTP transport SockJS sessions.
  *
+ * <p>If the {@link SockJsServiceConfig} is an {@link AbstractSockJsService} with a
+ * {@link AbstractSockJsService#setMessageBatchDelay message batch delay}, messages
+ * are held back until the delay has expired or the
+ * {@link AbstractSockJsService#setMessageBatchSizeLimit batch size limit} has
+ * been reached, and then written together as a single message frame.
+ *
  * @author Rossen Stoyanchev
  * @since 4.0
  */
@@ -75,6 +89,16 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 
 	private final Queue<String> messageCache;
 
+	/** The number of characters of messages held back for batching, guarded by the response lock */
+	private int batchedMessageLength;
+
+	private ScheduledFuture<?> batchFlushTask;
+
+	/** Encoder and buffer reused across frame writes when batching, guarded by the response lock */
+	private CharsetEncoder frameEncoder;
+
+	private ByteBuffer frameBuffer;
+
 
 	public AbstractHttpSockJsSession(String id, SockJsServiceConfig config,
 			WebSocketHandler wsHandler, Map<String, Object> attributes) {
@@ -274,6 +298,29 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 	}
 
 
+	/**
+	 * Whether messages are held back in order to write them in batches.
+	 * @since 4.1.10
+	 * @see AbstractSockJsService#setMessageBatchDelay
+	 */
+	protected boolean isMessageBatchingEnabled() {
+		return (getMessageBatchDelay() > 0);
+	}
+
+	/**
+	 * Return the message batch delay of the {@link AbstractSockJsService} serving
+	 * this session, or 0 for any other {@link SockJsServiceConfig}.
+	 */
+	private long getMessageBatchDelay() {
+		SockJsServiceConfig config = getSockJsServiceConfig();
+		return (config instanceof AbstractSockJsService ? ((AbstractSockJsService) config).getMessageBatchDelay() : 0);
+	}
+
+	private int getMessageBatchSizeLimit() {
+		SockJsServiceConfig config = getSockJsServiceConfig();
+		return (config instanceof AbstractSockJsService ? ((AbstractSockJsService) config).getMessageBatchSizeLimit() : 0);
+	}
+
 	@Override
 	protected final void sendMessageInternal(String message) throws SockJsTransportFailureException {
 		synchronized (this.responseLock) {
@@ -282,6 +329,10 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 				logger.trace(this.messageCache.size() + " message(s) to flush in session " + this.getId());
 			}
 			if (isActive() && this.readyToSend) {
+				if (isMessageBatchingEnabled() && !isBatchComplete(message)) {
+					scheduleBatchFlush();
+					return;
+				}
 				if (logger.isTraceEnabled()) {
 					logger.trace("Session is active, ready to flush.");
 				}
@@ -298,14 +349,97 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 		}
 	}
 
+	private boolean isBatchComplete(String message) {
+		this.batchedMessageLength += message.length();
+		return (this.batchedMessageLength >= getMessageBatchSizeLimit() ||
+				this.messageCache.size() >= getSockJsServiceConfig().getHttpMessageCacheSize());
+	}
+
+	private void scheduleBatchFlush() {
+		if (this.batchFlushTask != null) {
+			return;
+		}
+		Date time = new Date(System.currentTimeMillis() + getMessageBatchDelay());
+		this.batchFlushTask = getSockJsServiceConfig().getTaskScheduler().schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (responseLock) {
+					batchFlushTask = null;
+					if (isActive() && readyToSend && !messageCache.isEmpty()) {
+						try {
+							cancelHeartbeat();
+							flushCache();
+						}
+						catch (Throwable ex) {
+							logger.debug("Failed to flush batched messages in session " + getId(), ex);
+						}
+					}
+				}
+			}
+		}, time);
+	}
+
+	private void cancelBatchFlush() {
+		this.batchedMessageLength = 0;
+		ScheduledFuture<?> task = this.batchFlushTask;
+		this.batchFlushTask = null;
+		if (task != null && !task.isDone()) {
+			task.cancel(false);
+		}
+	}
+
 	/**
 	 * Called when the connection is active and ready to write to the response.
 	 * Subclasses should implement but never call this method directly.
+	 * <p>Implementations are expected to write all or most of the cached
+	 * messages, typically via {@link #pollMessageCache(boolean)}.
 	 */
 	protected abstract void flushCache() throws SockJsTransportFailureException;
 
+	/**
+	 * Take messages from the {@link #getMessageCache() message cache} for
+	 * writing them as a single message frame.
+	 * @param all whether to take all cached messages or only the next one
+	 * @return the messages taken from the cache
+	 * @since 4.1.10
+	 */
+	protected String[] pollMessageCache(boolean all) {
+		cancelBatchFlush();
+		if (!all) {
+			return new String[] {this.messageCache.poll()};
+		}
+		String[] messages = new String[this.messageCache.size()];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = this.messageCache.poll();
+		}
+		return messages;
+	}
+
+	/**
+	 * Write the messages held back for a batch, if any, and cancel the scheduled
+	 * flush, e.g. ahead of a close frame that would otherwise overtake them.
+	 */
+	private void flushMessageBatch() {
+		synchronized (this.responseLock) {
+			boolean batchPending = (this.batchFlushTask != null);
+			cancelBatchFlush();
+			if (batchPending && isActive() && this.readyToSend && !this.messageCache.isEmpty()) {
+				try {
+					cancelHeartbeat();
+					flushCache();
+				}
+				catch (Throwable ex) {
+					logger.debug("Failed to flush batched messages in session " + getId(), ex);
+				}
+			}
+		}
+	}
+
 	@Override
 	protected void disconnect(CloseStatus status) {
+		synchronized (this.responseLock) {
+			cancelBatchFlush();
+		}
 		resetRequest();
 	}
 
@@ -316,6 +450,7 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 			this.asyncRequestControl = null;
 			this.readyToSend = false;
 			this.response = null;
+			this.frameBuffer = null;
 
 			updateLastActiveTime();
 
@@ -333,21 +468,58 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 		}
 	}
 
+	/**
+	 * This implementation writes under the response lock, since heartbeat and
+	 * close frames are written by other threads than the ones sending messages.
+	 */
 	@Override
 	protected void writeFrameInternal(SockJsFrame frame) throws IOException {
-		if (isActive()) {
-			String formattedFrame = this.frameFormat.format(frame);
-			if (logger.isTraceEnabled()) {
-				logger.trace("Writing to HTTP response: " + formattedFrame);
-			}
-			this.response.getBody().write(formattedFrame.getBytes(SockJsFrame.CHARSET));
-			if (isStreaming()) {
-				this.response.flush();
+		synchronized (this.responseLock) {
+			if (frame.getType() == SockJsFrameType.CLOSE) {
+				flushMessageBatch();
 			}
-			else {
-				resetRequest();
+			if (isActive()) {
+				String formattedFrame = this.frameFormat.format(frame);
+				if (logger.isTraceEnabled()) {
+					logger.trace("Writing to HTTP response: " + formattedFrame);
+				}
+				if (isMessageBatchingEnabled()) {
+					writeFormattedFrame(formattedFrame);
+				}
+				else {
+					this.response.getBody().write(formattedFrame.getBytes(SockJsFrame.CHARSET));
+				}
+				if (isStreaming()) {
+					this.response.flush();
+				}
+				else {
+					resetRequest();
+				}
 			}
 		}
 	}
 
+	/**
+	 * Encode the given frame into a buffer that is reused across the writes to
+	 * the current response, rather than allocating a new byte array per frame.
+	 */
+	private void writeFormattedFrame(String formattedFrame) throws IOException {
+		if (this.frameEncoder == null) {
+			this.frameEncoder = SockJsFrame.CHARSET.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		int maxLength = (int) Math.ceil(formattedFrame.length() * (double) this.frameEncoder.maxBytesPerChar());
+		ByteBuffer buffer = this.frameBuffer;
+		if (buffer == null || buffer.capacity() < maxLength) {
+			buffer = ByteBuffer.allocate(maxLength);
+			this.frameBuffer = buffer;
+		}
+		buffer.clear();
+		this.frameEncoder.reset();
+		this.frameEncoder.encode(CharBuffer.wrap(formattedFrame), buffer, true);
+		this.frameEncoder.flush(buffer);
+		this.response.getBody().write(buffer.array(), 0, buffer.position());
+	}
+
 }
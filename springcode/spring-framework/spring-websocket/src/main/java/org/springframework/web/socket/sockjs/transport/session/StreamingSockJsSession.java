@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -50,9 +50,9 @@ public class StreamingSockJsSession extends AbstractHttpSockJsSession {
 	@Override
 	protected void flushCache() throws SockJsTransportFailureException {
 		while (!getMessageCache().isEmpty()) {
-			String message = getMessageCache().poll();
+			String[] messages = pollMessageCache(isMessageBatchingEnabled());
 			SockJsMessageCodec messageCodec = getSockJsServiceConfig().getMessageCodec();
-			SockJsFrame frame = SockJsFrame.messageFrame(messageCodec, message);
+			SockJsFrame frame = SockJsFrame.messageFrame(messageCodec, messages);
 			writeFrame(frame);
 
 			this.byteCount += frame.getContentBytes().length + 1;
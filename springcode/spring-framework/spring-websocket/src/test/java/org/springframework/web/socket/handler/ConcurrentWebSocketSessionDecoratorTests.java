@@ -187,12 +187,132 @@ public class ConcurrentWebSocketSessionDecoratorTests {
 	}
 
 
+	@Test
+	public void sendBufferSizeExceededDropOldest() throws Exception {
+		BlockingSession blockingSession = new BlockingSession();
+		ConcurrentWebSocketSessionDecorator concurrentSession = startBlockedSend(blockingSession,
+				ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP_OLDEST);
+
+		for (int i = 0; i < 5; i++) {
+			concurrentSession.sendMessage(new TextMessage("message" + i));
+		}
+
+		assertEquals(2, concurrentSession.getBufferedMessageCount());
+		assertEquals(16, concurrentSession.getBufferSize());
+		assertEquals(3, concurrentSession.getDroppedMessageCount());
+		assertTrue(blockingSession.isOpen());
+
+		blockingSession.setBlocking(false);
+		blockingSession.release();
+		assertSentMessages(blockingSession, "slow message", "message3", "message4");
+	}
+
+	@Test
+	public void sendBufferSizeExceededDropNewest() throws Exception {
+		BlockingSession blockingSession = new BlockingSession();
+		ConcurrentWebSocketSessionDecorator concurrentSession = startBlockedSend(blockingSession,
+				ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP_NEWEST);
+
+		for (int i = 0; i < 5; i++) {
+			concurrentSession.sendMessage(new TextMessage("message" + i));
+		}
+
+		assertEquals(2, concurrentSession.getBufferedMessageCount());
+		assertEquals(3, concurrentSession.getDroppedMessageCount());
+		assertTrue(blockingSession.isOpen());
+
+		blockingSession.setBlocking(false);
+		blockingSession.release();
+		assertSentMessages(blockingSession, "slow message", "message0", "message1");
+	}
+
+	@Test
+	public void sendBufferSizeExceededDropNewestKeepsBuffer() throws Exception {
+		BlockingSession blockingSession = new BlockingSession();
+		ConcurrentWebSocketSessionDecorator concurrentSession = startBlockedSend(blockingSession,
+				ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP_NEWEST);
+
+		concurrentSession.sendMessage(new TextMessage("message0"));
+		concurrentSession.sendMessage(new TextMessage("message1"));
+		concurrentSession.sendMessage(new TextMessage("message2"));
+		concurrentSession.sendMessage(new TextMessage("m3"));
+
+		assertEquals(3, concurrentSession.getBufferedMessageCount());
+		assertEquals(18, concurrentSession.getBufferSize());
+		assertEquals(1, concurrentSession.getDroppedMessageCount());
+
+		concurrentSession.sendMessage(new TextMessage("message4"));
+		assertEquals(3, concurrentSession.getBufferedMessageCount());
+		assertEquals(18, concurrentSession.getBufferSize());
+		assertEquals(2, concurrentSession.getDroppedMessageCount());
+		assertTrue(blockingSession.isOpen());
+
+		blockingSession.setBlocking(false);
+		blockingSession.release();
+		assertSentMessages(blockingSession, "slow message", "message0", "message1", "m3");
+	}
+
+	@Test
+	public void sendWithCoalescing() throws Exception {
+		BlockingSession blockingSession = new BlockingSession();
+		ConcurrentWebSocketSessionDecorator concurrentSession = startBlockedSend(blockingSession,
+				ConcurrentWebSocketSessionDecorator.OverflowStrategy.COALESCE);
+
+		concurrentSession.sendMessage(new TextMessage("a:1"), "a");
+		concurrentSession.sendMessage(new TextMessage("b:1"), "b");
+		concurrentSession.sendMessage(new TextMessage("a:2"), "a");
+		concurrentSession.sendMessage(new TextMessage("a:3"), "a");
+
+		assertEquals(2, concurrentSession.getBufferedMessageCount());
+		assertEquals(6, concurrentSession.getBufferSize());
+		assertEquals(2, concurrentSession.getCoalescedMessageCount());
+		assertEquals(0, concurrentSession.getDroppedMessageCount());
+
+		blockingSession.setBlocking(false);
+		blockingSession.release();
+		assertSentMessages(blockingSession, "slow message", "a:3", "b:1");
+	}
+
+	private ConcurrentWebSocketSessionDecorator startBlockedSend(BlockingSession blockingSession,
+			ConcurrentWebSocketSessionDecorator.OverflowStrategy overflowStrategy) throws InterruptedException {
+
+		blockingSession.setOpen(true);
+		CountDownLatch sentMessageLatch = blockingSession.getSentMessageLatch();
+		ConcurrentWebSocketSessionDecorator concurrentSession =
+				new ConcurrentWebSocketSessionDecorator(blockingSession, 10 * 1000, 20, overflowStrategy);
+
+		Executors.newSingleThreadExecutor().submit(() -> {
+			try {
+				concurrentSession.sendMessage(new TextMessage("slow message"));
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+
+		assertTrue(sentMessageLatch.await(5, TimeUnit.SECONDS));
+		return concurrentSession;
+	}
+
+	private void assertSentMessages(TestWebSocketSession session, String... expected) throws InterruptedException {
+		for (int i = 0; i < 50 && session.getSentMessages().size() < expected.length; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected.length, session.getSentMessages().size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], session.getSentMessages().get(i).getPayload());
+		}
+	}
+
+
 	private static class BlockingSession extends TestWebSocketSession {
 
 		private AtomicReference<CountDownLatch> nextMessageLatch = new AtomicReference<>();
 
 		private AtomicReference<CountDownLatch> releaseLatch = new AtomicReference<>();
 
+		private volatile boolean blocking = true;
+
 
 		public CountDownLatch getSentMessageLatch() {
 			this.nextMessageLatch.set(new CountDownLatch(1));
@@ -205,7 +325,13 @@ public class ConcurrentWebSocketSessionDecoratorTests {
 			if (this.nextMessageLatch != null) {
 				this.nextMessageLatch.get().countDown();
 			}
-			block();
+			if (this.blocking) {
+				block();
+			}
+		}
+
+		public void setBlocking(boolean blocking) {
+			this.blocking = blocking;
 		}
 
 		private void block() {
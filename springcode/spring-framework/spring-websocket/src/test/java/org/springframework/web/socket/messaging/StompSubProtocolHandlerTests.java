@@ -182,6 +182,39 @@ public class StompSubProtocolHandlerTests {
 		assertEquals("joe", replyHeaders.getNativeHeader("user-name").get(0));
 	}
 
+	@Test
+	public void handleMessageToClientConnectAckWithHeartbeat() {
+		StompHeaderAccessor connectHeaders = StompHeaderAccessor.create(StompCommand.CONNECT);
+		connectHeaders.setHeartbeat(10000, 10000);
+		connectHeaders.setAcceptVersion("1.0,1.1");
+		Message<?> connectMessage = MessageBuilder.createMessage(EMPTY_PAYLOAD, connectHeaders.getMessageHeaders());
+
+		SimpMessageHeaderAccessor connectAckHeaders = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+		connectAckHeaders.setHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER, connectMessage);
+		connectAckHeaders.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER, new long[] {15000, 20000});
+		Message<byte[]> connectAckMessage = MessageBuilder.createMessage(EMPTY_PAYLOAD, connectAckHeaders.getMessageHeaders());
+		this.protocolHandler.handleMessageToClient(this.session, connectAckMessage);
+
+		assertEquals(1, this.session.getSentMessages().size());
+		TextMessage textMessage = (TextMessage) this.session.getSentMessages().get(0);
+		List<Message<byte[]>> messages = new StompDecoder().decode(ByteBuffer.wrap(textMessage.getPayload().getBytes()));
+		StompHeaderAccessor replyHeaders = StompHeaderAccessor.wrap(messages.get(0));
+		assertEquals(StompCommand.CONNECTED, replyHeaders.getCommand());
+		assertArrayEquals(new long[] {15000, 20000}, replyHeaders.getHeartbeat());
+	}
+
+	@Test
+	public void handleMessageToClientHeartbeat() {
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.HEARTBEAT);
+		headers.setSessionId("s1");
+		Message<byte[]> message = MessageBuilder.createMessage(EMPTY_PAYLOAD, headers.getMessageHeaders());
+		this.protocolHandler.handleMessageToClient(this.session, message);
+
+		assertEquals(1, this.session.getSentMessages().size());
+		TextMessage textMessage = (TextMessage) this.session.getSentMessages().get(0);
+		assertEquals("\n", textMessage.getPayload());
+	}
+
 	@Test1
 	public void eventPublication() {
 
@@ -310,6 +343,51 @@ public class StompSubProtocolHandlerTests {
 		assertTrue(webSocketMessage instanceof TextMessage);
 	}
 
+	@Test
+	public void handleMessageToClientBroadcast() {
+		byte[] payload = "body".getBytes();
+		TestWebSocketSession session2 = new TestWebSocketSession();
+		session2.setId("s2");
+
+		for (TestWebSocketSession session : Arrays.asList(this.session, session2)) {
+			SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+			headers.setSessionId(session.getId());
+			headers.setSubscriptionId("sub-" + session.getId());
+			headers.setDestination("/topic/foo");
+			Message<byte[]> message = MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+			this.protocolHandler.handleMessageToClient(session, message);
+		}
+
+		String frame1 = (String) this.session.getSentMessages().get(0).getPayload();
+		String frame2 = (String) session2.getSentMessages().get(0).getPayload();
+		assertTrue(frame1.startsWith("MESSAGE\ndestination:/topic/foo\n"));
+		assertTrue(frame1.contains("\nsubscription:sub-s1\n"));
+		assertTrue(frame1.contains("\nmessage-id:s1-"));
+		assertTrue(frame1.endsWith("\ncontent-length:4\n\nbody\0"));
+		assertTrue(frame2.startsWith("MESSAGE\ndestination:/topic/foo\n"));
+		assertTrue(frame2.contains("\nsubscription:sub-s2\n"));
+		assertTrue(frame2.contains("\nmessage-id:s2-"));
+		assertTrue(frame2.endsWith("\ncontent-length:4\n\nbody\0"));
+	}
+
+	@Test
+	public void handleMessageToClientWithReusedPayload() {
+		byte[] payload = "body".getBytes();
+		for (String body : Arrays.asList("body", "body", "BODY")) {
+			System.arraycopy(body.getBytes(), 0, payload, 0, payload.length);
+			SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+			headers.setSessionId(this.session.getId());
+			headers.setSubscriptionId("sub-1");
+			headers.setDestination("/topic/foo");
+			Message<byte[]> message = MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+			this.protocolHandler.handleMessageToClient(this.session, message);
+		}
+
+		assertEquals(3, this.session.getSentMessages().size());
+		assertTrue(((String) this.session.getSentMessages().get(1).getPayload()).endsWith("\n\nbody\0"));
+		assertTrue(((String) this.session.getSentMessages().get(2).getPayload()).endsWith("\n\nBODY\0"));
+	}
+
 	@Test1
 	public void handleMessageFromClient() {
 
@@ -17,10 +17,19 @@
 package org.springframework.web.socket.sockjs.transport.session;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
@@ -28,11 +37,14 @@ import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.mock.web.test.MockHttpServletRequest;
 import org.springframework.mock.web.test.MockHttpServletResponse;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.sockjs.frame.DefaultSockJsFrameFormat;
 import org.springframework.web.socket.sockjs.frame.SockJsFrame;
 import org.springframework.web.socket.sockjs.frame.SockJsFrameFormat;
 import org.springframework.web.socket.sockjs.transport.SockJsServiceConfig;
+import org.springframework.web.socket.sockjs.transport.TransportHandlingSockJsService;
 import org.springframework.web.socket.sockjs.transport.session.HttpSockJsSessionTests.TestAbstractHttpSockJsSession;
 
 import static org.junit.Assert.*;
@@ -101,6 +113,130 @@ public class HttpSockJsSessionTests extends AbstractSockJsSessionTests<TestAbstr
 		verifyNoMoreInteractions(this.webSocketHandler);
 	}
 
+	@Test
+	public void sendMessagesBatched() throws Exception {
+		StreamingSockJsSession session = new StreamingSockJsSession(
+				"1", createBatchingSockJsService(), this.webSocketHandler, null);
+		session.handleInitialRequest(this.request, this.response, this.frameFormat);
+
+		session.sendMessage(new TextMessage("x"));
+		session.sendMessage(new TextMessage("y"));
+		assertEquals("o", this.servletResponse.getContentAsString());
+
+		ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+		verify(this.taskScheduler, atLeastOnce()).schedule(taskCaptor.capture(), any(Date.class));
+		List<Runnable> tasks = taskCaptor.getAllValues();
+		tasks.get(tasks.size() - 1).run();
+
+		assertEquals("oa[\"x\",\"y\"]", this.servletResponse.getContentAsString());
+	}
+
+	@Test
+	public void sendMessagesNotBatchedWithPlainServiceConfig() throws Exception {
+		StreamingSockJsSession session = new StreamingSockJsSession("1", this.sockJsConfig, this.webSocketHandler, null);
+		session.handleInitialRequest(this.request, this.response, this.frameFormat);
+		assertFalse(session.isMessageBatchingEnabled());
+
+		session.sendMessage(new TextMessage("x"));
+		assertEquals("oa[\"x\"]", this.servletResponse.getContentAsString());
+	}
+
+	@Test
+	public void sendMessagesBatchedBeforeClose() throws Exception {
+		StreamingSockJsSession session = new StreamingSockJsSession(
+				"1", createBatchingSockJsService(), this.webSocketHandler, null);
+		session.handleInitialRequest(this.request, this.response, this.frameFormat);
+
+		// The next task scheduled is the batch flush
+		ScheduledFuture<?> batchFlushTask = mock(ScheduledFuture.class);
+		doReturn(batchFlushTask).doReturn(null).when(this.taskScheduler).schedule(any(Runnable.class), any(Date.class));
+		session.sendMessage(new TextMessage("x"));
+		assertEquals("o", this.servletResponse.getContentAsString());
+		session.close(new CloseStatus(1011, "error"));
+
+		assertEquals("oa[\"x\"]c[1011,\"error\"]", this.servletResponse.getContentAsString());
+		verify(batchFlushTask).cancel(false);
+	}
+
+	@Test
+	public void sendMessagesBatchedUpToSizeLimit() throws Exception {
+		TransportHandlingSockJsService sockJsService = createBatchingSockJsService();
+		sockJsService.setMessageBatchSizeLimit(2);
+		StreamingSockJsSession session = new StreamingSockJsSession("1", sockJsService, this.webSocketHandler, null);
+		session.handleInitialRequest(this.request, this.response, this.frameFormat);
+
+		session.sendMessage(new TextMessage("x"));
+		session.sendMessage(new TextMessage("y"));
+		session.sendMessage(new TextMessage("z"));
+
+		assertEquals("oa[\"x\",\"y\"]", this.servletResponse.getContentAsString());
+		assertEquals(1, session.getMessageCache().size());
+	}
+
+	@Test
+	public void sendHeartbeatDuringMessageBatchFlush() throws Exception {
+		final AtomicBoolean blockNextWrite = new AtomicBoolean();
+		final CountDownLatch writeBlocked = new CountDownLatch(1);
+		final AtomicInteger activeWrites = new AtomicInteger();
+		final AtomicBoolean concurrentWrite = new AtomicBoolean();
+		ServletServerHttpResponse response = new ServletServerHttpResponse(this.servletResponse) {
+			@Override
+			public OutputStream getBody() throws IOException {
+				final OutputStream body = super.getBody();
+				return new OutputStream() {
+					@Override
+					public void write(int b) throws IOException {
+						write(new byte[] {(byte) b}, 0, 1);
+					}
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						if (activeWrites.incrementAndGet() > 1) {
+							concurrentWrite.set(true);
+						}
+						try {
+							if (blockNextWrite.compareAndSet(true, false)) {
+								writeBlocked.countDown();
+								Thread.sleep(200);
+							}
+							body.write(b, off, len);
+						}
+						catch (InterruptedException ex) {
+							throw new IOException(ex);
+						}
+						finally {
+							activeWrites.decrementAndGet();
+						}
+					}
+				};
+			}
+		};
+
+		StreamingSockJsSession session = new StreamingSockJsSession(
+				"1", createBatchingSockJsService(), this.webSocketHandler, null);
+		session.handleInitialRequest(this.request, response, this.frameFormat);
+		session.sendMessage(new TextMessage("x"));
+
+		ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+		verify(this.taskScheduler, atLeastOnce()).schedule(taskCaptor.capture(), any(Date.class));
+		List<Runnable> tasks = taskCaptor.getAllValues();
+		blockNextWrite.set(true);
+		Thread flushThread = new Thread(tasks.get(tasks.size() - 1));
+		flushThread.start();
+		assertTrue(writeBlocked.await(5, TimeUnit.SECONDS));
+		session.sendHeartbeat();
+		flushThread.join();
+
+		assertFalse(concurrentWrite.get());
+		assertEquals("oa[\"x\"]h", this.servletResponse.getContentAsString());
+	}
+
+
+	private TransportHandlingSockJsService createBatchingSockJsService() {
+		TransportHandlingSockJsService sockJsService = new TransportHandlingSockJsService(this.taskScheduler);
+		sockJsService.setMessageBatchDelay(100);
+		return sockJsService;
+	}
+
 
 	static class TestAbstractHttpSockJsSession extends AbstractHttpSockJsSession {
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link BeanWrapperImpl} property access: simple and nested
+ * reads and writes, including String-to-int type conversion on write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BeanWrapperBenchmark {
+
+	private BeanWrapper beanWrapper;
+
+
+	@Setup
+	public void setup() {
+		Person person = new Person();
+		person.setName("Juergen");
+		person.setAddress(new Address());
+		person.getAddress().setCity("Linz");
+		this.beanWrapper = new BeanWrapperImpl(person);
+	}
+
+
+	@Benchmark
+	public Object getSimpleProperty() {
+		return this.beanWrapper.getPropertyValue("name");
+	}
+
+	@Benchmark
+	public Object getNestedProperty() {
+		return this.beanWrapper.getPropertyValue("address.city");
+	}
+
+	@Benchmark
+	public void setSimpleProperty() {
+		this.beanWrapper.setPropertyValue("name", "Rossen");
+	}
+
+	@Benchmark
+	public void setPropertyWithConversion() {
+		this.beanWrapper.setPropertyValue("age", "42");
+	}
+
+	@Benchmark
+	public void setNestedProperty() {
+		this.beanWrapper.setPropertyValue("address.city", "Vienna");
+	}
+
+	@Benchmark
+	public Object newBeanWrapperAndGetProperty() {
+		return new BeanWrapperImpl(this.beanWrapper.getWrappedInstance()).getPropertyValue("name");
+	}
+
+
+	public static class Person {
+
+		private String name;
+
+		private int age;
+
+		private Address address;
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+		public Address getAddress() {
+			return this.address;
+		}
+
+		public void setAddress(Address address) {
+			this.address = address;
+		}
+	}
+
+
+	public static class Address {
+
+		private String city;
+
+		public String getCity() {
+			return this.city;
+		}
+
+		public void setCity(String city) {
+			this.city = city;
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.beans.factory.support;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+
+/**
+ * Benchmarks for {@link DefaultListableBeanFactory#getBean} lookups of
+ * singleton and prototype beans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DefaultListableBeanFactoryBenchmark {
+
+	private DefaultListableBeanFactory beanFactory;
+
+
+	@Setup
+	public void setup() {
+		this.beanFactory = new DefaultListableBeanFactory();
+
+		RootBeanDefinition singleton = new RootBeanDefinition(TestBean.class);
+		singleton.getPropertyValues().add("name", "singleton");
+		this.beanFactory.registerBeanDefinition("singleton", singleton);
+
+		RootBeanDefinition prototype = new RootBeanDefinition(TestBean.class);
+		prototype.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+		prototype.getPropertyValues().add("name", "prototype");
+		prototype.getPropertyValues().add("age", 42);
+		this.beanFactory.registerBeanDefinition("prototype", prototype);
+
+		this.beanFactory.preInstantiateSingletons();
+	}
+
+
+	@Benchmark
+	public Object getSingletonByName() {
+		return this.beanFactory.getBean("singleton");
+	}
+
+	@Benchmark
+	public Object getSingletonByNameAndType() {
+		return this.beanFactory.getBean("singleton", TestBean.class);
+	}
+
+	@Benchmark
+	public Object getPrototypeByName() {
+		return this.beanFactory.getBean("prototype");
+	}
+
+	@Benchmark
+	public Object getPrototypeByNameAndType() {
+		return this.beanFactory.getBean("prototype", TestBean.class);
+	}
+
+
+	public static class TestBean {
+
+		private String name;
+
+		private int age;
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.convert.support;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.core.convert.TypeDescriptor;
+
+/**
+ * Benchmarks for {@link GenericConversionService#convert}, as configured by
+ * {@link DefaultConversionService}, for scalar, enum and collection conversions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GenericConversionServiceBenchmark {
+
+	private GenericConversionService conversionService;
+
+	private List<String> source;
+
+	private TypeDescriptor sourceType;
+
+	private TypeDescriptor targetType;
+
+
+	@Setup
+	public void setup() throws Exception {
+		this.conversionService = new DefaultConversionService();
+		this.source = Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10");
+		this.sourceType = TypeDescriptor.valueOf(List.class);
+		this.targetType = new TypeDescriptor(GenericConversionServiceBenchmark.class.getField("integers"));
+	}
+
+
+	@Benchmark
+	public Object convertStringToInteger() {
+		return this.conversionService.convert("42", Integer.class);
+	}
+
+	@Benchmark
+	public Object convertIntegerToString() {
+		return this.conversionService.convert(42, String.class);
+	}
+
+	@Benchmark
+	public Object convertStringToEnum() {
+		return this.conversionService.convert("MILLISECONDS", TimeUnit.class);
+	}
+
+	@Benchmark
+	public Object convertListOfStringToListOfInteger() {
+		return this.conversionService.convert(this.source, this.sourceType, this.targetType);
+	}
+
+	@Benchmark
+	public Object convertSameType() {
+		return this.conversionService.convert("42", String.class);
+	}
+
+
+	/** Target field for the collection conversion's generic type */
+	public List<Integer> integers;
+
+}
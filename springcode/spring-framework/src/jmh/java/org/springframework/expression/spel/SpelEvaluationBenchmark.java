@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.expression.spel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * Benchmarks for SpEL expression evaluation, in interpreted mode and
+ * compiled mode (see {@link SpelCompilerMode}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SpelEvaluationBenchmark {
+
+	@Param({"OFF", "IMMEDIATE"})
+	public SpelCompilerMode compilerMode;
+
+	private StandardEvaluationContext context;
+
+	private Expression propertyAccess;
+
+	private Expression methodInvocation;
+
+	private Expression arithmeticAndComparison;
+
+
+	@Setup
+	public void setup() {
+		SpelExpressionParser parser = new SpelExpressionParser(
+				new SpelParserConfiguration(this.compilerMode, SpelEvaluationBenchmark.class.getClassLoader()));
+		this.context = new StandardEvaluationContext(new Order("ACME", 3, 25));
+		this.propertyAccess = parser.parseExpression("customer");
+		this.methodInvocation = parser.parseExpression("customer.toUpperCase()");
+		this.arithmeticAndComparison = parser.parseExpression("quantity * price > 50 and quantity < 10");
+	}
+
+
+	@Benchmark
+	public Object propertyAccess() {
+		return this.propertyAccess.getValue(this.context);
+	}
+
+	@Benchmark
+	public Object methodInvocation() {
+		return this.methodInvocation.getValue(this.context);
+	}
+
+	@Benchmark
+	public Object arithmeticAndComparison() {
+		return this.arithmeticAndComparison.getValue(this.context);
+	}
+
+
+	public static class Order {
+
+		private final String customer;
+
+		private final int quantity;
+
+		private final int price;
+
+		public Order(String customer, int quantity, int price) {
+			this.customer = customer;
+			this.quantity = quantity;
+			this.price = price;
+		}
+
+		public String getCustomer() {
+			return this.customer;
+		}
+
+		public int getQuantity() {
+			return this.quantity;
+		}
+
+		public int getPrice() {
+			return this.price;
+		}
+	}
+
+}
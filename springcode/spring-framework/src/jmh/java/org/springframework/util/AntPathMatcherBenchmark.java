@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link AntPathMatcher#match} with literal, wildcard,
+ * URI template variable and double-wildcard patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AntPathMatcherBenchmark {
+
+	private AntPathMatcher pathMatcher;
+
+
+	@Setup
+	public void setup() {
+		this.pathMatcher = new AntPathMatcher();
+	}
+
+
+	@Benchmark
+	public boolean matchLiteral() {
+		return this.pathMatcher.match("/api/orders/list", "/api/orders/list");
+	}
+
+	@Benchmark
+	public boolean matchWildcard() {
+		return this.pathMatcher.match("/api/*/list", "/api/orders/list");
+	}
+
+	@Benchmark
+	public boolean matchUriTemplate() {
+		return this.pathMatcher.match("/api/orders/{orderId}/items/{itemId}", "/api/orders/1234/items/5678");
+	}
+
+	@Benchmark
+	public boolean matchDoubleWildcard() {
+		return this.pathMatcher.match("/static/**/*.css", "/static/css/theme/main.css");
+	}
+
+	@Benchmark
+	public boolean mismatchFirstSegment() {
+		return this.pathMatcher.match("/admin/{section}/**", "/api/orders/1234/items/5678");
+	}
+
+}
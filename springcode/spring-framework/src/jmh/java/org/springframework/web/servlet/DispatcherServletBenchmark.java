@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.*;
+
+/**
+ * Benchmarks for request dispatch through the {@link DispatcherServlet},
+ * driven by {@link MockMvc} against annotated controller methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DispatcherServletBenchmark {
+
+	private MockMvc mockMvc;
+
+
+	@Setup
+	public void setup() {
+		this.mockMvc = standaloneSetup(new OrderController()).build();
+	}
+
+
+	@Benchmark
+	public MvcResult dispatchLiteralPath() throws Exception {
+		return this.mockMvc.perform(get("/orders")).andReturn();
+	}
+
+	@Benchmark
+	public MvcResult dispatchPathVariable() throws Exception {
+		return this.mockMvc.perform(get("/orders/{id}", 42)).andReturn();
+	}
+
+	@Benchmark
+	public MvcResult dispatchRequestParam() throws Exception {
+		return this.mockMvc.perform(get("/orders/search").param("customer", "ACME")).andReturn();
+	}
+
+
+	@Controller
+	@RequestMapping("/orders")
+	private static class OrderController {
+
+		@RequestMapping
+		@ResponseBody
+		public String list() {
+			return "orders";
+		}
+
+		@RequestMapping("/{id}")
+		@ResponseBody
+		public String show(@PathVariable long id) {
+			return "order " + id;
+		}
+
+		@RequestMapping("/search")
+		@ResponseBody
+		public String search(@RequestParam String customer) {
+			return "orders for " + customer;
+		}
+	}
+
+}
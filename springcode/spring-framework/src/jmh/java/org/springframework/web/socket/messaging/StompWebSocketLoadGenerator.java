@@ -0,0 +1,743 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.socket.messaging;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+/**
+ * Generates STOMP over WebSocket load in-process, driving a
+ * {@link SubProtocolWebSocketHandler} with a {@link StompSubProtocolHandler},
+ * a {@link SimpleBrokerMessageHandler} and executor-backed client inbound and
+ * outbound channels, with simulated WebSocket sessions in place of a network
+ * transport.
+ *
+ * <p>Each session subscribes to one of a number of topic destinations. The
+ * configured number of messages is then sent to these destinations by all
+ * sessions in turn, each message carrying its send time so that the end-to-end
+ * latency can be recorded once it is written to a subscribed session. The
+ * resulting {@link Report} includes the delivery rate, latency percentiles and
+ * the heap allocation rate across all threads, where supported by the JVM.
+ *
+ * <p>Run through the {@code stompLoad} task of the build, or {@link #main}.
+ *
+ * @since 4.1.10
+ */
+public class StompWebSocketLoadGenerator {
+
+	private static final String DESTINATION_PREFIX = "/topic/load.";
+
+
+	private int sessionCount = 1000;
+
+	private int destinationCount = 10;
+
+	private int messageCount = 10000;
+
+	private int publisherThreads = Runtime.getRuntime().availableProcessors();
+
+	private int inboundPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+	private int outboundPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+	private int sendTimeLimit = 10 * 1000;
+
+	private int sendBufferSizeLimit = 512 * 1024;
+
+	private ConcurrentWebSocketSessionDecorator.OverflowStrategy overflowStrategy =
+			ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE;
+
+	private int subscriptionCacheLimit = DefaultSubscriptionRegistry.DEFAULT_CACHE_LIMIT;
+
+	private long timeout = 60 * 1000;
+
+
+	/**
+	 * The number of simulated WebSocket sessions (1000 by default).
+	 */
+	public void setSessionCount(int sessionCount) {
+		this.sessionCount = sessionCount;
+	}
+
+	/**
+	 * The number of topic destinations the sessions subscribe to (10 by default).
+	 */
+	public void setDestinationCount(int destinationCount) {
+		this.destinationCount = destinationCount;
+	}
+
+	/**
+	 * The number of messages to send, each of which is delivered to all sessions
+	 * subscribed to its destination (10000 by default).
+	 */
+	public void setMessageCount(int messageCount) {
+		this.messageCount = messageCount;
+	}
+
+	/**
+	 * The number of threads handling messages from the simulated sessions,
+	 * by default the number of available processors.
+	 */
+	public void setPublisherThreads(int publisherThreads) {
+		this.publisherThreads = publisherThreads;
+	}
+
+	/**
+	 * The pool size of the client inbound channel executor.
+	 */
+	public void setInboundPoolSize(int inboundPoolSize) {
+		this.inboundPoolSize = inboundPoolSize;
+	}
+
+	/**
+	 * The pool size of the client outbound channel executor.
+	 */
+	public void setOutboundPoolSize(int outboundPoolSize) {
+		this.outboundPoolSize = outboundPoolSize;
+	}
+
+	/**
+	 * @see SubProtocolWebSocketHandler#setSendTimeLimit
+	 */
+	public void setSendTimeLimit(int sendTimeLimit) {
+		this.sendTimeLimit = sendTimeLimit;
+	}
+
+	/**
+	 * @see SubProtocolWebSocketHandler#setSendBufferSizeLimit
+	 */
+	public void setSendBufferSizeLimit(int sendBufferSizeLimit) {
+		this.sendBufferSizeLimit = sendBufferSizeLimit;
+	}
+
+	/**
+	 * @see SubProtocolWebSocketHandler#setSendBufferOverflowStrategy
+	 */
+	public void setSendBufferOverflowStrategy(ConcurrentWebSocketSessionDecorator.OverflowStrategy strategy) {
+		this.overflowStrategy = strategy;
+	}
+
+	/**
+	 * @see DefaultSubscriptionRegistry#setCacheLimit
+	 */
+	public void setSubscriptionCacheLimit(int subscriptionCacheLimit) {
+		this.subscriptionCacheLimit = subscriptionCacheLimit;
+	}
+
+	/**
+	 * The maximum time in milliseconds to wait for sessions to be connected
+	 * and for all messages to be delivered (60 seconds by default).
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+
+	/**
+	 * Run the load generator and print its report.
+	 * @param args optional session, destination and message counts
+	 * (2000, 20 and 10000 by default)
+	 */
+	public static void main(String[] args) throws Exception {
+		StompWebSocketLoadGenerator generator = new StompWebSocketLoadGenerator();
+		generator.setSessionCount(args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+		generator.setDestinationCount(args.length > 1 ? Integer.parseInt(args[1]) : 20);
+		generator.setMessageCount(args.length > 2 ? Integer.parseInt(args[2]) : 10000);
+
+		Report report = generator.run();
+		System.out.println(report);
+		if (!report.isCompleted() || report.getErrorCount() > 0) {
+			System.exit(1);
+		}
+	}
+
+
+	/**
+	 * Set up the messaging stack, connect and subscribe all sessions, send the
+	 * configured number of messages and wait for them to be delivered.
+	 * @return the report for the run
+	 */
+	public Report run() throws Exception {
+		ThreadPoolTaskExecutor inboundExecutor = createExecutor("loadInbound-", this.inboundPoolSize);
+		ThreadPoolTaskExecutor outboundExecutor = createExecutor("loadOutbound-", this.outboundPoolSize);
+		int publisherThreads = Math.min(this.publisherThreads, this.sessionCount);
+		ExecutorService publisherExecutor = Executors.newFixedThreadPool(publisherThreads);
+
+		ExecutorSubscribableChannel clientInboundChannel = new ExecutorSubscribableChannel(inboundExecutor);
+		ExecutorSubscribableChannel clientOutboundChannel = new ExecutorSubscribableChannel(outboundExecutor);
+		ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+
+		SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(clientInboundChannel,
+				clientOutboundChannel, brokerChannel, Collections.singletonList("/topic"));
+		SubscriptionRegistry registry = broker.getSubscriptionRegistry();
+		if (registry instanceof DefaultSubscriptionRegistry) {
+			((DefaultSubscriptionRegistry) registry).setCacheLimit(this.subscriptionCacheLimit);
+		}
+
+		SubProtocolWebSocketHandler webSocketHandler =
+				new SubProtocolWebSocketHandler(clientInboundChannel, clientOutboundChannel);
+		webSocketHandler.setDefaultProtocolHandler(new StompSubProtocolHandler());
+		webSocketHandler.setSendTimeLimit(this.sendTimeLimit);
+		webSocketHandler.setSendBufferSizeLimit(this.sendBufferSizeLimit);
+		webSocketHandler.setSendBufferOverflowStrategy(this.overflowStrategy);
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		AtomicLong connectedCount = new AtomicLong();
+		AtomicLong errorCount = new AtomicLong();
+
+		broker.start();
+		webSocketHandler.start();
+		try {
+			List<LoadTestWebSocketSession> sessions = connect(webSocketHandler, histogram, connectedCount, errorCount);
+			awaitSubscriptions(registry);
+
+			long expectedDeliveries = 0;
+			for (int i = 0; i < this.messageCount; i++) {
+				expectedDeliveries += getSubscriberCount(i % this.destinationCount);
+			}
+
+			long allocatedBytesBefore = getAllocatedBytes();
+			long startTime = System.nanoTime();
+
+			List<Future<?>> futures = new ArrayList<Future<?>>(publisherThreads);
+			for (int i = 0; i < publisherThreads; i++) {
+				futures.add(publisherExecutor.submit(new Publisher(webSocketHandler, sessions, i, publisherThreads)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			boolean completed = awaitDeliveries(histogram, expectedDeliveries);
+
+			long elapsed = System.nanoTime() - startTime;
+			long allocatedBytesAfter = getAllocatedBytes();
+
+			long allocatedBytes = (allocatedBytesBefore != -1 && allocatedBytesAfter != -1 ?
+					allocatedBytesAfter - allocatedBytesBefore : -1);
+			return new Report(this.sessionCount, this.destinationCount, this.messageCount, expectedDeliveries,
+					histogram, errorCount.get(), completed, elapsed, allocatedBytes, webSocketHandler.getStatsInfo());
+		}
+		finally {
+			webSocketHandler.stop();
+			broker.stop();
+			publisherExecutor.shutdownNow();
+			inboundExecutor.shutdown();
+			outboundExecutor.shutdown();
+		}
+	}
+
+	private ThreadPoolTaskExecutor createExecutor(String threadNamePrefix, int poolSize) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix(threadNamePrefix);
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setDaemon(true);
+		executor.afterPropertiesSet();
+		return executor;
+	}
+
+	private static TextMessage createFrame(StompCommand command, String body, String... headerLines) {
+		StringBuilder sb = new StringBuilder(command.name()).append('\n');
+		for (String line : headerLines) {
+			sb.append(line).append('\n');
+		}
+		sb.append('\n');
+		if (body != null) {
+			sb.append(body);
+		}
+		sb.append('\u0000');
+		return new TextMessage(sb.toString());
+	}
+
+	private List<LoadTestWebSocketSession> connect(SubProtocolWebSocketHandler webSocketHandler,
+			LatencyHistogram histogram, AtomicLong connectedCount, AtomicLong errorCount) throws Exception {
+
+		List<LoadTestWebSocketSession> sessions = new ArrayList<LoadTestWebSocketSession>(this.sessionCount);
+		for (int i = 0; i < this.sessionCount; i++) {
+			LoadTestWebSocketSession session =
+					new LoadTestWebSocketSession("load" + i, histogram, connectedCount, errorCount);
+			webSocketHandler.afterConnectionEstablished(session);
+			webSocketHandler.handleMessage(session, createFrame(StompCommand.CONNECT, null,
+					"accept-version:1.1,1.2", "host:localhost", "heart-beat:0,0"));
+			webSocketHandler.handleMessage(session, createFrame(StompCommand.SUBSCRIBE, null,
+					"id:sub0", "destination:" + DESTINATION_PREFIX + (i % this.destinationCount)));
+			sessions.add(session);
+		}
+		if (!awaitCount(connectedCount, this.sessionCount)) {
+			throw new IllegalStateException("Only " + connectedCount.get() + " of " +
+					this.sessionCount + " sessions connected within " + this.timeout + " ms");
+		}
+		return sessions;
+	}
+
+	private void awaitSubscriptions(SubscriptionRegistry registry) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + this.timeout;
+		for (int i = 0; i < this.destinationCount; i++) {
+			SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+			accessor.setDestination(DESTINATION_PREFIX + i);
+			Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+			while (registry.findSubscriptions(message).size() < getSubscriberCount(i)) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException("Subscriptions to " + DESTINATION_PREFIX + i +
+							" not registered within " + this.timeout + " ms");
+				}
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	private int getSubscriberCount(int destinationIndex) {
+		int count = this.sessionCount / this.destinationCount;
+		return (destinationIndex < this.sessionCount % this.destinationCount ? count + 1 : count);
+	}
+
+	private boolean awaitCount(AtomicLong count, long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + this.timeout;
+		while (count.get() < expected) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	private boolean awaitDeliveries(LatencyHistogram histogram, long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + this.timeout;
+		while (histogram.getCount() < expected) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	/**
+	 * Return the number of bytes allocated by all live threads so far,
+	 * or -1 if not supported by the JVM.
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		if (!mxBean.isThreadAllocatedMemorySupported() || !mxBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long sum = 0;
+		for (long bytes : mxBean.getThreadAllocatedBytes(mxBean.getAllThreadIds())) {
+			if (bytes > 0) {
+				sum += bytes;
+			}
+		}
+		return sum;
+	}
+
+
+	/**
+	 * Sends messages from the sessions assigned to one publisher thread, so
+	 * that each session is only ever used by a single thread.
+	 */
+	private class Publisher implements Runnable {
+
+		private final SubProtocolWebSocketHandler webSocketHandler;
+
+		private final List<LoadTestWebSocketSession> sessions;
+
+		private final int index;
+
+		private final int threads;
+
+		public Publisher(SubProtocolWebSocketHandler webSocketHandler,
+				List<LoadTestWebSocketSession> sessions, int index, int threads) {
+
+			this.webSocketHandler = webSocketHandler;
+			this.sessions = sessions;
+			this.index = index;
+			this.threads = threads;
+		}
+
+		@Override
+		public void run() {
+			int sessionIndex = this.index;
+			for (int i = this.index; i < messageCount; i += this.threads) {
+				LoadTestWebSocketSession session = this.sessions.get(sessionIndex);
+				sessionIndex += this.threads;
+				if (sessionIndex >= this.sessions.size()) {
+					sessionIndex = this.index;
+				}
+				TextMessage message = createFrame(StompCommand.SEND, String.valueOf(System.nanoTime()),
+						"destination:" + DESTINATION_PREFIX + (i % destinationCount));
+				try {
+					this.webSocketHandler.handleMessage(session, message);
+				}
+				catch (Exception ex) {
+					throw new IllegalStateException("Failed to handle message from " + session.getId(), ex);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * A session recording the latency of MESSAGE frames written to it,
+	 * rather than keeping the frames themselves.
+	 */
+	private static class LoadTestWebSocketSession implements WebSocketSession {
+
+		private final String id;
+
+		private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+		private final LatencyHistogram histogram;
+
+		private final AtomicLong connectedCount;
+
+		private final AtomicLong errorCount;
+
+		private volatile boolean open = true;
+
+		public LoadTestWebSocketSession(String id, LatencyHistogram histogram,
+				AtomicLong connectedCount, AtomicLong errorCount) {
+
+			this.id = id;
+			this.histogram = histogram;
+			this.connectedCount = connectedCount;
+			this.errorCount = errorCount;
+		}
+
+		@Override
+		public String getId() {
+			return this.id;
+		}
+
+		@Override
+		public URI getUri() {
+			return null;
+		}
+
+		@Override
+		public HttpHeaders getHandshakeHeaders() {
+			return new HttpHeaders();
+		}
+
+		@Override
+		public Map<String, Object> getAttributes() {
+			return this.attributes;
+		}
+
+		@Override
+		public Principal getPrincipal() {
+			return null;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public String getAcceptedProtocol() {
+			return null;
+		}
+
+		@Override
+		public void setTextMessageSizeLimit(int messageSizeLimit) {
+		}
+
+		@Override
+		public int getTextMessageSizeLimit() {
+			return 0;
+		}
+
+		@Override
+		public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+		}
+
+		@Override
+		public int getBinaryMessageSizeLimit() {
+			return 0;
+		}
+
+		@Override
+		public List<WebSocketExtension> getExtensions() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return this.open;
+		}
+
+		@Override
+		public void close() throws IOException {
+			close(CloseStatus.NORMAL);
+		}
+
+		@Override
+		public void close(CloseStatus status) throws IOException {
+			this.open = false;
+		}
+
+		@Override
+		public void sendMessage(WebSocketMessage<?> message) throws IOException {
+			String payload = ((TextMessage) message).getPayload();
+			if (payload.startsWith("MESSAGE\n")) {
+				long sendTime = Long.parseLong(payload.substring(payload.indexOf("\n\n") + 2, payload.length() - 1));
+				this.histogram.record(System.nanoTime() - sendTime);
+			}
+			else if (payload.startsWith("CONNECTED\n")) {
+				this.connectedCount.incrementAndGet();
+			}
+			else if (payload.startsWith("ERROR\n")) {
+				this.errorCount.incrementAndGet();
+			}
+		}
+	}
+
+
+	/**
+	 * A lock-free histogram of latencies in microseconds, with exact buckets up to
+	 * 64 microseconds and 32 buckets per power of two beyond that.
+	 */
+	static class LatencyHistogram {
+
+		private static final int LINEAR_BUCKETS = 64;
+
+		private static final int SUB_BUCKET_BITS = 5;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(LINEAR_BUCKETS + (64 << SUB_BUCKET_BITS));
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong max = new AtomicLong();
+
+		public void record(long nanos) {
+			long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0);
+			this.buckets.incrementAndGet(getBucketIndex(micros));
+			long currentMax = this.max.get();
+			while (micros > currentMax && !this.max.compareAndSet(currentMax, micros)) {
+				currentMax = this.max.get();
+			}
+			this.count.incrementAndGet();
+		}
+
+		public long getCount() {
+			return this.count.get();
+		}
+
+		public long getMaxMicros() {
+			return this.max.get();
+		}
+
+		/**
+		 * Return the lower bound of the bucket containing the given percentile.
+		 * @param percentile the percentile between 0 and 100
+		 */
+		public long getPercentileMicros(double percentile) {
+			long threshold = (long) Math.ceil(this.count.get() * percentile / 100);
+			long cumulative = 0;
+			for (int i = 0; i < this.buckets.length(); i++) {
+				cumulative += this.buckets.get(i);
+				if (cumulative >= threshold && cumulative > 0) {
+					return getBucketLowerBound(i);
+				}
+			}
+			return 0;
+		}
+
+		static int getBucketIndex(long micros) {
+			if (micros < LINEAR_BUCKETS) {
+				return (int) micros;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(micros);
+			int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+			return LINEAR_BUCKETS + ((exponent - 6) << SUB_BUCKET_BITS) + subBucket;
+		}
+
+		static long getBucketLowerBound(int index) {
+			if (index < LINEAR_BUCKETS) {
+				return index;
+			}
+			int exponent = ((index - LINEAR_BUCKETS) >> SUB_BUCKET_BITS) + 6;
+			long subBucket = (index - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+			return (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+		}
+	}
+
+
+	/**
+	 * The outcome of a load generator run.
+	 */
+	public static class Report {
+
+		private final int sessionCount;
+
+		private final int destinationCount;
+
+		private final int messageCount;
+
+		private final long expectedDeliveries;
+
+		private final LatencyHistogram histogram;
+
+		private final long errorCount;
+
+		private final boolean completed;
+
+		private final long elapsedNanos;
+
+		private final long allocatedBytes;
+
+		private final String statsInfo;
+
+		Report(int sessionCount, int destinationCount, int messageCount, long expectedDeliveries,
+				LatencyHistogram histogram, long errorCount, boolean completed, long elapsedNanos,
+				long allocatedBytes, String statsInfo) {
+
+			this.sessionCount = sessionCount;
+			this.destinationCount = destinationCount;
+			this.messageCount = messageCount;
+			this.expectedDeliveries = expectedDeliveries;
+			this.histogram = histogram;
+			this.errorCount = errorCount;
+			this.completed = completed;
+			this.elapsedNanos = elapsedNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.statsInfo = statsInfo;
+		}
+
+		/**
+		 * Whether all expected messages were delivered before the timeout.
+		 */
+		public boolean isCompleted() {
+			return this.completed;
+		}
+
+		public long getExpectedDeliveries() {
+			return this.expectedDeliveries;
+		}
+
+		public long getDeliveredCount() {
+			return this.histogram.getCount();
+		}
+
+		/**
+		 * Return the number of STOMP ERROR frames sent to sessions.
+		 */
+		public long getErrorCount() {
+			return this.errorCount;
+		}
+
+		public long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos);
+		}
+
+		/**
+		 * Return the number of messages delivered to sessions per second.
+		 */
+		public double getDeliveryRate() {
+			return getDeliveredCount() * 1e9 / Math.max(this.elapsedNanos, 1);
+		}
+
+		public long getLatencyPercentileMicros(double percentile) {
+			return this.histogram.getPercentileMicros(percentile);
+		}
+
+		public long getMaxLatencyMicros() {
+			return this.histogram.getMaxMicros();
+		}
+
+		/**
+		 * Return the number of bytes allocated per second across all threads,
+		 * or -1 if not supported by the JVM.
+		 */
+		public double getAllocationRate() {
+			return (this.allocatedBytes != -1 ? this.allocatedBytes * 1e9 / Math.max(this.elapsedNanos, 1) : -1);
+		}
+
+		/**
+		 * Return the number of bytes allocated per delivered message,
+		 * or -1 if not supported by the JVM.
+		 */
+		public long getAllocatedBytesPerDelivery() {
+			return (this.allocatedBytes != -1 ? this.allocatedBytes / Math.max(getDeliveredCount(), 1) : -1);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(this.sessionCount).append(" sessions, ").append(this.destinationCount).append(" destinations, ");
+			sb.append(this.messageCount).append(" messages sent, ");
+			sb.append(getDeliveredCount()).append(" of ").append(this.expectedDeliveries).append(" delivered");
+			sb.append(this.completed ? "" : " (timed out)").append(" in ").append(getElapsedMillis()).append(" ms");
+			sb.append(", ").append(this.errorCount).append(" errors\n");
+			sb.append("delivery rate: ").append(String.format("%.0f", getDeliveryRate())).append(" msg/s\n");
+			sb.append("latency: p50=").append(getLatencyPercentileMicros(50));
+			sb.append("us, p90=").append(getLatencyPercentileMicros(90));
+			sb.append("us, p99=").append(getLatencyPercentileMicros(99));
+			sb.append("us, p99.9=").append(getLatencyPercentileMicros(99.9));
+			sb.append("us, max=").append(getMaxLatencyMicros()).append("us\n");
+			if (this.allocatedBytes != -1) {
+				sb.append("allocation rate: ").append(String.format("%.1f", getAllocationRate() / (1024 * 1024)));
+				sb.append(" MB/s, ").append(getAllocatedBytesPerDelivery()).append(" bytes per delivered message\n");
+			}
+			sb.append(this.statsInfo);
+			return sb.toString();
+		}
+	}
+
+}